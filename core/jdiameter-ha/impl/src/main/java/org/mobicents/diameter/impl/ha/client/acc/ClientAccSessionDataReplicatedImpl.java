@@ -43,18 +43,18 @@
 package org.mobicents.diameter.impl.ha.client.acc;
 
 import java.io.Serializable;
-import java.nio.ByteBuffer;
 
 import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.acc.ClientAccSession;
 import org.jdiameter.client.api.IContainer;
-import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.app.acc.IClientAccSessionData;
 import org.jdiameter.common.api.app.acc.ClientAccSessionState;
+import org.jdiameter.common.impl.data.SessionStateCodec;
+import org.jdiameter.common.impl.data.SessionStateCodec.CachedMessage;
 import org.mobicents.cluster.MobicentsCluster;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
@@ -76,7 +76,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   private static final String DEST_REALM = "DEST_REALM";
   private static final String BUFFER = "BUFFER";
 
-  private IMessageParser messageParser;
+  private final CachedMessage bufferCache;
 
   /**
    * @param nodeFqn
@@ -85,13 +85,16 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
    */
   public ClientAccSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
     super(nodeFqn, mobicentsCluster);
+    setWriteVersion(container);
 
     if (super.create()) {
       setAppSessionIface(this, ClientAccSession.class);
       setClientAccSessionState(ClientAccSessionState.IDLE);
     }
 
-    this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    IMessageParser parser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    SessionStateCodec codec = new SessionStateCodec(parser, getWriteVersion());
+    this.bufferCache = new CachedMessage(codec);
   }
 
   /**
@@ -112,7 +115,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setClientAccSessionState(ClientAccSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -127,7 +130,7 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public ClientAccSessionState getClientAccSessionState() {
     if (exists()) {
-      return (ClientAccSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ClientAccSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -226,17 +229,11 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
 
   @Override
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
-    if (data != null) {
-      try {
-        return this.messageParser.createMessage(ByteBuffer.wrap(data));
-      }
-      catch (AvpDataException e) {
-        logger.error("Unable to recreate message from buffer.");
-        return null;
-      }
+    try {
+      return this.bufferCache.get((byte[]) getNode().get(BUFFER));
     }
-    else {
+    catch (AvpDataException e) {
+      logger.error("Unable to recreate message from buffer.");
       return null;
     }
   }
@@ -245,14 +242,14 @@ public class ClientAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   public void setBuffer(Request buffer) {
     if (buffer != null) {
       try {
-        byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        getNode().put(BUFFER, this.bufferCache.set(buffer));
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
+      this.bufferCache.clear();
       getNode().remove(BUFFER);
     }
   }
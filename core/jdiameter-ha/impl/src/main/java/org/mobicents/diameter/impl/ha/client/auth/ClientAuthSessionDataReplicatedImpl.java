@@ -97,7 +97,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public void setClientAuthSessionState(ClientAuthSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -112,7 +112,7 @@ public class ClientAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public ClientAuthSessionState getClientAuthSessionState() {
     if (exists()) {
-      return (ClientAuthSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ClientAuthSessionState.class);
     }
     else {
       throw new IllegalStateException();
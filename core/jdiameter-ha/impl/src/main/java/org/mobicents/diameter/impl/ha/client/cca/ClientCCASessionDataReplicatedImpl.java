@@ -43,18 +43,18 @@
 package org.mobicents.diameter.impl.ha.client.cca;
 
 import java.io.Serializable;
-import java.nio.ByteBuffer;
 
 import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.cca.ClientCCASession;
 import org.jdiameter.client.api.IContainer;
-import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.app.cca.IClientCCASessionData;
 import org.jdiameter.common.api.app.cca.ClientCCASessionState;
+import org.jdiameter.common.impl.data.SessionStateCodec;
+import org.jdiameter.common.impl.data.SessionStateCodec.CachedMessage;
 import org.mobicents.cluster.MobicentsCluster;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
@@ -80,7 +80,8 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   private static final String GDDFH = "GDDFH";
   private static final String GCCFH = "GCCFH";
 
-  private IMessageParser messageParser;
+  private final CachedMessage txTimerRequestCache;
+  private final CachedMessage bufferCache;
 
   /**
    * @param nodeFqn
@@ -89,13 +90,17 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
    */
   public ClientCCASessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
     super(nodeFqn, mobicentsCluster);
+    setWriteVersion(container);
 
     if (super.create()) {
       setAppSessionIface(this, ClientCCASession.class);
       setClientCCASessionState(ClientCCASessionState.IDLE);
     }
 
-    this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    IMessageParser parser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    SessionStateCodec codec = new SessionStateCodec(parser, getWriteVersion());
+    this.txTimerRequestCache = new CachedMessage(codec);
+    this.bufferCache = new CachedMessage(codec);
   }
 
   /**
@@ -110,7 +115,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public boolean isEventBased() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(EVENT_BASED), true);
+      return toPrimitive((Boolean) getAttribute(EVENT_BASED), true);
     }
     else {
       throw new IllegalStateException();
@@ -120,7 +125,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setEventBased(boolean isEventBased) {
     if (exists()) {
-      getNode().put(EVENT_BASED, isEventBased);
+      putAttribute(EVENT_BASED, isEventBased);
     }
     else {
       throw new IllegalStateException();
@@ -130,7 +135,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public boolean isRequestTypeSet() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(REQUEST_TYPE), false);
+      return toPrimitive((Boolean) getAttribute(REQUEST_TYPE), false);
     }
     else {
       throw new IllegalStateException();
@@ -140,7 +145,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setRequestTypeSet(boolean requestTypeSet) {
     if (exists()) {
-      getNode().put(REQUEST_TYPE, requestTypeSet);
+      putAttribute(REQUEST_TYPE, requestTypeSet);
     }
     else {
       throw new IllegalStateException();
@@ -150,7 +155,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public ClientCCASessionState getClientCCASessionState() {
     if (exists()) {
-      return (ClientCCASessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ClientCCASessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -160,7 +165,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setClientCCASessionState(ClientCCASessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -170,7 +175,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public Serializable getTxTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TXTIMER_ID);
+      return (Serializable) getAttribute(TXTIMER_ID);
     }
     else {
       throw new IllegalStateException();
@@ -180,7 +185,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setTxTimerId(Serializable txTimerId) {
     if (exists()) {
-      getNode().put(TXTIMER_ID, txTimerId);
+      putAttribute(TXTIMER_ID, txTimerId);
     }
     else {
       throw new IllegalStateException();
@@ -191,17 +196,11 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   public Request getTxTimerRequest() {
     if (exists()) {
 
-      byte[] data = (byte[]) getNode().get(TXTIMER_REQUEST);
-      if (data != null) {
-        try {
-          return this.messageParser.createMessage(ByteBuffer.wrap(data));
-        }
-        catch (AvpDataException e) {
-          logger.error("Unable to recreate Tx Timer Request from buffer.");
-          return null;
-        }
+      try {
+        return this.txTimerRequestCache.get((byte[]) getAttribute(TXTIMER_REQUEST));
       }
-      else {
+      catch (AvpDataException e) {
+        logger.error("Unable to recreate Tx Timer Request from buffer.");
         return null;
       }
     }
@@ -215,15 +214,15 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
     if (exists()) {
       if (txTimerRequest != null) {
         try {
-          byte[] data = this.messageParser.encodeMessage((IMessage) txTimerRequest).array();
-          getNode().put(TXTIMER_REQUEST, data);
+          putAttribute(TXTIMER_REQUEST, this.txTimerRequestCache.set(txTimerRequest));
         }
         catch (ParseException e) {
           logger.error("Unable to encode Tx Timer Request to buffer.");
         }
       }
       else {
-        getNode().remove(TXTIMER_REQUEST);
+        this.txTimerRequestCache.clear();
+        removeAttribute(TXTIMER_REQUEST);
       }
     }
     else {
@@ -233,17 +232,11 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
 
   @Override
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
-    if (data != null) {
-      try {
-        return this.messageParser.createMessage(ByteBuffer.wrap(data));
-      }
-      catch (AvpDataException e) {
-        logger.error("Unable to recreate message from buffer.");
-        return null;
-      }
+    try {
+      return this.bufferCache.get((byte[]) getAttribute(BUFFER));
     }
-    else {
+    catch (AvpDataException e) {
+      logger.error("Unable to recreate message from buffer.");
       return null;
     }
   }
@@ -252,22 +245,22 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   public void setBuffer(Request buffer) {
     if (buffer != null) {
       try {
-        byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        putAttribute(BUFFER, this.bufferCache.set(buffer));
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
-      getNode().remove(BUFFER);
+      this.bufferCache.clear();
+      removeAttribute(BUFFER);
     }
   }
 
   @Override
   public int getGatheredRequestedAction() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GRA));
+      return toPrimitive((Integer) getAttribute(GRA));
     }
     else {
       throw new IllegalStateException();
@@ -277,7 +270,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setGatheredRequestedAction(int gatheredRequestedAction) {
     if (exists()) {
-      getNode().put(GRA, gatheredRequestedAction);
+      putAttribute(GRA, gatheredRequestedAction);
     }
     else {
       throw new IllegalStateException();
@@ -287,7 +280,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public int getGatheredCCFH() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GCCFH));
+      return toPrimitive((Integer) getAttribute(GCCFH));
     }
     else {
       throw new IllegalStateException();
@@ -297,7 +290,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setGatheredCCFH(int gatheredCCFH) {
     if (exists()) {
-      getNode().put(GCCFH, gatheredCCFH);
+      putAttribute(GCCFH, gatheredCCFH);
     }
     else {
       throw new IllegalStateException();
@@ -307,7 +300,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public int getGatheredDDFH() {
     if (exists()) {
-      return toPrimitive((Integer) getNode().get(GDDFH));
+      return toPrimitive((Integer) getAttribute(GDDFH));
     }
     else {
       throw new IllegalStateException();
@@ -317,7 +310,7 @@ public class ClientCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setGatheredDDFH(int gatheredDDFH) {
     if (exists()) {
-      getNode().put(GDDFH, gatheredDDFH);
+      putAttribute(GDDFH, gatheredDDFH);
     }
     else {
       throw new IllegalStateException();
@@ -43,18 +43,18 @@
 package org.mobicents.diameter.impl.ha.client.rf;
 
 import java.io.Serializable;
-import java.nio.ByteBuffer;
 
 import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.rf.ClientRfSession;
 import org.jdiameter.client.api.IContainer;
-import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.app.rf.IClientRfSessionData;
 import org.jdiameter.common.api.app.rf.ClientRfSessionState;
+import org.jdiameter.common.impl.data.SessionStateCodec;
+import org.jdiameter.common.impl.data.SessionStateCodec.CachedMessage;
 import org.mobicents.cluster.MobicentsCluster;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
@@ -76,7 +76,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   private static final String DESTINATION_HOST = "DESTINATION_HOST";
   private static final String DESTINATION_REALM = "DESTINATION_REALM";
 
-  private IMessageParser messageParser;
+  private final CachedMessage bufferCache;
 
   /**
    * @param nodeFqn
@@ -85,13 +85,16 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
    */
   public ClientRfSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
     super(nodeFqn, mobicentsCluster);
+    setWriteVersion(container);
 
     if (super.create()) {
       setAppSessionIface(this, ClientRfSession.class);
       setClientRfSessionState(ClientRfSessionState.IDLE);
     }
 
-    this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    IMessageParser parser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    SessionStateCodec codec = new SessionStateCodec(parser, getWriteVersion());
+    this.bufferCache = new CachedMessage(codec);
   }
 
   /**
@@ -106,7 +109,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ClientRfSessionState getClientRfSessionState() {
     if (exists()) {
-      return (ClientRfSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ClientRfSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -116,7 +119,7 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setClientRfSessionState(ClientRfSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -125,17 +128,11 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   @Override
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
-    if (data != null) {
-      try {
-        return this.messageParser.createMessage(ByteBuffer.wrap(data));
-      }
-      catch (AvpDataException e) {
-        logger.error("Unable to recreate message from buffer.");
-        return null;
-      }
+    try {
+      return this.bufferCache.get((byte[]) getNode().get(BUFFER));
     }
-    else {
+    catch (AvpDataException e) {
+      logger.error("Unable to recreate message from buffer.");
       return null;
     }
   }
@@ -143,16 +140,15 @@ public class ClientRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setBuffer(Request buffer) {
     if (buffer != null) {
-
       try {
-        byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        getNode().put(BUFFER, this.bufferCache.set(buffer));
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
+      this.bufferCache.clear();
       getNode().remove(BUFFER);
     }
   }
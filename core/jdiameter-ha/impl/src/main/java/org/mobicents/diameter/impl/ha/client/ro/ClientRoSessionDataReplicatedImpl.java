@@ -43,18 +43,18 @@
 package org.mobicents.diameter.impl.ha.client.ro;
 
 import java.io.Serializable;
-import java.nio.ByteBuffer;
 
 import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.ro.ClientRoSession;
 import org.jdiameter.client.api.IContainer;
-import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.app.ro.IClientRoSessionData;
 import org.jdiameter.common.api.app.ro.ClientRoSessionState;
+import org.jdiameter.common.impl.data.SessionStateCodec;
+import org.jdiameter.common.impl.data.SessionStateCodec.CachedMessage;
 import org.mobicents.cluster.MobicentsCluster;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
 import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
@@ -80,7 +80,8 @@ public class ClientRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   private static final String GDDFH = "GDDFH";
   private static final String GCCFH = "GCCFH";
 
-  private IMessageParser messageParser;
+  private final CachedMessage txTimerRequestCache;
+  private final CachedMessage bufferCache;
 
   /**
    * @param nodeFqn
@@ -89,13 +90,17 @@ public class ClientRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
    */
   public ClientRoSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
     super(nodeFqn, mobicentsCluster);
+    setWriteVersion(container);
 
     if (super.create()) {
       setAppSessionIface(this, ClientRoSession.class);
       setClientRoSessionState(ClientRoSessionState.IDLE);
     }
 
-    this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    IMessageParser parser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    SessionStateCodec codec = new SessionStateCodec(parser, getWriteVersion());
+    this.txTimerRequestCache = new CachedMessage(codec);
+    this.bufferCache = new CachedMessage(codec);
   }
 
   /**
@@ -150,7 +155,7 @@ public class ClientRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ClientRoSessionState getClientRoSessionState() {
     if (exists()) {
-      return (ClientRoSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ClientRoSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -160,7 +165,7 @@ public class ClientRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setClientRoSessionState(ClientRoSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -190,17 +195,11 @@ public class ClientRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public Request getTxTimerRequest() {
     if (exists()) {
-      byte[] data = (byte[]) getNode().get(TXTIMER_REQUEST);
-      if (data != null) {
-        try {
-          return this.messageParser.createMessage(ByteBuffer.wrap(data));
-        }
-        catch (AvpDataException e) {
-          logger.error("Unable to recreate Tx Timer Request from buffer.");
-          return null;
-        }
+      try {
+        return this.txTimerRequestCache.get((byte[]) getNode().get(TXTIMER_REQUEST));
       }
-      else {
+      catch (AvpDataException e) {
+        logger.error("Unable to recreate Tx Timer Request from buffer.");
         return null;
       }
     }
@@ -214,14 +213,14 @@ public class ClientRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
     if (exists()) {
       if (txTimerRequest != null) {
         try {
-          byte[] data = this.messageParser.encodeMessage((IMessage) txTimerRequest).array();
-          getNode().put(TXTIMER_REQUEST, data);
+          getNode().put(TXTIMER_REQUEST, this.txTimerRequestCache.set(txTimerRequest));
         }
         catch (ParseException e) {
           logger.error("Unable to encode Tx Timer Request to buffer.");
         }
       }
       else {
+        this.txTimerRequestCache.clear();
         getNode().remove(TXTIMER_REQUEST);
       }
     }
@@ -232,17 +231,11 @@ public class ClientRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
 
   @Override
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
-    if (data != null) {
-      try {
-        return this.messageParser.createMessage(ByteBuffer.wrap(data));
-      }
-      catch (AvpDataException e) {
-        logger.error("Unable to recreate message from buffer.");
-        return null;
-      }
+    try {
+      return this.bufferCache.get((byte[]) getNode().get(BUFFER));
     }
-    else {
+    catch (AvpDataException e) {
+      logger.error("Unable to recreate message from buffer.");
       return null;
     }
   }
@@ -251,14 +244,14 @@ public class ClientRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   public void setBuffer(Request buffer) {
     if (buffer != null) {
       try {
-        byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        getNode().put(BUFFER, this.bufferCache.set(buffer));
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
+      this.bufferCache.clear();
       getNode().remove(BUFFER);
     }
   }
@@ -124,7 +124,7 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ClientRxSessionState getClientRxSessionState() {
     if (exists()) {
-      return (ClientRxSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ClientRxSessionState.class);
     } else {
       throw new IllegalStateException();
     }
@@ -133,7 +133,7 @@ public class ClientRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setClientRxSessionState(ClientRxSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     } else {
       throw new IllegalStateException();
     }
@@ -42,11 +42,22 @@
 
 package org.mobicents.diameter.impl.ha.common;
 
+import static org.jdiameter.client.impl.helpers.Parameters.SessionDataWriteVersion;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.jboss.cache.Fqn;
 import org.jboss.cache.Node;
 import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.app.AppSession;
-import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.common.api.app.IBatchedAppSessionData;
+import org.jdiameter.common.impl.data.SessionStateCodec;
 import org.mobicents.cache.MobicentsCache;
 import org.mobicents.cluster.MobicentsCluster;
 import org.mobicents.cluster.cache.ClusteredCacheData;
@@ -57,12 +68,28 @@ import org.mobicents.diameter.impl.ha.data.ReplicatedSessionDatasource;
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  */
-public class AppSessionDataReplicatedImpl extends ClusteredCacheData implements IAppSessionData {
+public class AppSessionDataReplicatedImpl extends ClusteredCacheData implements IBatchedAppSessionData {
 
   protected static final String SID = "SID";
   protected static final String APID = "APID";
   protected static final String SIFACE = "SIFACE";
 
+  // marks an attribute cleared inside a batch, ConcurrentHashMap takes no null values
+  private static final Object REMOVED = new Object();
+
+  /**
+   * Write version storing enum attributes by name, see {@link #getEnumAttribute(String, Class)}, and messages and
+   * Application-Id in the layout of {@link SessionStateCodec#FORMAT_VERSION}.
+   */
+  public static final int WRITE_VERSION_ENUM_NAMES = SessionStateCodec.FORMAT_VERSION;
+
+  // attribute changes collected while a batch is open, flushed with a single putAll
+  private final ConcurrentMap<String, Object> pending = new ConcurrentHashMap<String, Object>();
+  private final AtomicInteger batchDepth = new AtomicInteger();
+
+  // SessionDataWriteVersion of the stack, 0 until a subclass sets it
+  private int writeVersion;
+
   /**
    * @param nodeFqn
    * @param mobicentsCluster
@@ -85,6 +112,19 @@ public class AppSessionDataReplicatedImpl extends ClusteredCacheData implements
     return (Class<AppSession>) n.get(SIFACE);
   }
 
+  /**
+   * Sets the layout version used for writes from the stack configuration. Called by subclasses before their
+   * first write.
+   */
+  protected void setWriteVersion(IContainer container) {
+    this.writeVersion = container.getConfiguration().getIntValue(SessionDataWriteVersion.ordinal(),
+        (Integer) SessionDataWriteVersion.defValue());
+  }
+
+  protected int getWriteVersion() {
+    return writeVersion;
+  }
+
   @Override
   public String getSessionId() {
     return (String) super.getNodeFqn().getLastElement();
@@ -93,7 +133,7 @@ public class AppSessionDataReplicatedImpl extends ClusteredCacheData implements
   @Override
   public void setApplicationId(ApplicationId applicationId) {
     if (exists()) {
-      getNode().put(APID, applicationId);
+      getNode().put(APID, SessionStateCodec.encodeApplicationId(applicationId, writeVersion));
     }
     else {
       throw new IllegalStateException();
@@ -103,13 +143,106 @@ public class AppSessionDataReplicatedImpl extends ClusteredCacheData implements
   @Override
   public ApplicationId getApplicationId() {
     if (exists()) {
-      return (ApplicationId) getNode().get(APID);
+      try {
+        return SessionStateCodec.decodeApplicationId(getNode().get(APID));
+      }
+      catch (AvpDataException e) {
+        throw new IllegalStateException("Unable to decode Application-Id of session " + getSessionId(), e);
+      }
     }
     else {
       throw new IllegalStateException();
     }
   }
 
+  @Override
+  public void beginBatch() {
+    batchDepth.incrementAndGet();
+  }
+
+  @Override
+  public void endBatch() {
+    int depth;
+    do {
+      depth = batchDepth.get();
+      if (depth == 0) {
+        return;
+      }
+    } while (!batchDepth.compareAndSet(depth, depth - 1));
+    if (depth > 1 || pending.isEmpty()) {
+      return;
+    }
+    Map<String, Object> delta = new HashMap<String, Object>(pending);
+    try {
+      if (exists()) {
+        Map<String, Object> values = new HashMap<String, Object>(delta.size());
+        for (Map.Entry<String, Object> entry : delta.entrySet()) {
+          // cleared attributes are written as null, so the whole delta stays one replicated write
+          values.put(entry.getKey(), entry.getValue() == REMOVED ? null : entry.getValue());
+        }
+        getNode().putAll(values);
+      }
+    }
+    finally {
+      // also when the write failed: the delta is dropped, reads fall back to the stored values and the caller
+      // gets the exception
+      for (Map.Entry<String, Object> entry : delta.entrySet()) {
+        pending.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  // Attribute access, goes through the open batch if there is one
+
+  protected void putAttribute(String key, Object value) {
+    Object encoded = value instanceof Enum && writeVersion >= WRITE_VERSION_ENUM_NAMES ? ((Enum<?>) value).name() : value;
+    if (batchDepth.get() > 0) {
+      pending.put(key, encoded == null ? REMOVED : encoded);
+    }
+    else if (encoded == null) {
+      getNode().remove(key);
+    }
+    else {
+      getNode().put(key, encoded);
+    }
+  }
+
+  protected void removeAttribute(String key) {
+    putAttribute(key, null);
+  }
+
+  protected Object getAttribute(String key) {
+    Object value = pending.get(key);
+    if (value != null) {
+      return value == REMOVED ? null : value;
+    }
+    return getNode().get(key);
+  }
+
+  /**
+   * Enums are stored as enum instances while SessionDataWriteVersion is 0, which every node reads, and by
+   * {@link Enum#name()} from {@link #WRITE_VERSION_ENUM_NAMES} on, which keeps Java serialization out of the
+   * replicated data and survives reordered constants. All forms are read, so a cluster is upgraded by first
+   * rolling out nodes with version 0 and then raising the version node by node. Ordinals are only read for data
+   * written by nodes which stored enums that way.
+   */
+  protected <E extends Enum<E>> E getEnumAttribute(String key, Class<E> type) {
+    Object value = getAttribute(key);
+    if (value instanceof String) {
+      return Enum.valueOf(type, (String) value);
+    }
+    if (value instanceof Integer) {
+      E[] constants = type.getEnumConstants();
+      int ordinal = (Integer) value;
+      if (ordinal < 0 || ordinal >= constants.length) {
+        throw new IllegalStateException("Unknown " + type.getSimpleName() + " ordinal " + ordinal + " in session " + getSessionId());
+      }
+      return constants[ordinal];
+    }
+    // null or written as enum instance
+    return type.cast(value);
+  }
+
   // Some util methods for handling primitives
 
   protected boolean toPrimitive(Boolean b, boolean _default) {
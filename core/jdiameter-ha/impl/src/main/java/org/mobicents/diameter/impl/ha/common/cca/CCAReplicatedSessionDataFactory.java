@@ -85,7 +85,8 @@ public class CCAReplicatedSessionDataFactory implements IAppSessionDataFactory<I
       return data;
     }
     else if (clazz.equals(ServerCCASession.class)) {
-      ServerCCASessionDataReplicatedImpl data = new ServerCCASessionDataReplicatedImpl(sessionId, this.mobicentsCluster);
+      ServerCCASessionDataReplicatedImpl data =
+          new ServerCCASessionDataReplicatedImpl(sessionId, this.mobicentsCluster, this.replicatedSessionDataSource.getContainer());
       return data;
     }
     throw new IllegalArgumentException();
@@ -43,17 +43,17 @@
 package org.mobicents.diameter.impl.ha.common.cxdx;
 
 import java.io.Serializable;
-import java.nio.ByteBuffer;
 
 import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.client.api.IContainer;
-import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.common.api.app.cxdx.CxDxSessionState;
 import org.jdiameter.common.api.app.cxdx.ICxDxSessionData;
+import org.jdiameter.common.impl.data.SessionStateCodec;
+import org.jdiameter.common.impl.data.SessionStateCodec.CachedMessage;
 import org.mobicents.cluster.MobicentsCluster;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
 import org.slf4j.Logger;
@@ -72,7 +72,7 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   private static final String BUFFER = "BUFFER";
   private static final String TS_TIMERID = "TS_TIMERID";
 
-  private IMessageParser messageParser;
+  private final CachedMessage bufferCache;
 
   /**
    * @param nodeFqn
@@ -81,7 +81,10 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
    */
   public CxDxSessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
     super(nodeFqn, mobicentsCluster);
-    this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    setWriteVersion(container);
+    IMessageParser parser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    SessionStateCodec codec = new SessionStateCodec(parser, getWriteVersion());
+    this.bufferCache = new CachedMessage(codec);
   }
 
   /*
@@ -92,7 +95,7 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   @Override
   public void setCxDxSessionState(CxDxSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -107,7 +110,7 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   @Override
   public CxDxSessionState getCxDxSessionState() {
     if (exists()) {
-      return (CxDxSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, CxDxSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -146,17 +149,11 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
 
   @Override
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
-    if (data != null) {
-      try {
-        return this.messageParser.createMessage(ByteBuffer.wrap(data));
-      }
-      catch (AvpDataException e) {
-        logger.error("Unable to recreate message from buffer.");
-        return null;
-      }
+    try {
+      return this.bufferCache.get((byte[]) getNode().get(BUFFER));
     }
-    else {
+    catch (AvpDataException e) {
+      logger.error("Unable to recreate message from buffer.");
       return null;
     }
   }
@@ -165,14 +162,14 @@ public abstract class CxDxSessionDataReplicatedImpl extends AppSessionDataReplic
   public void setBuffer(Request buffer) {
     if (buffer != null) {
       try {
-        byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        getNode().put(BUFFER, this.bufferCache.set(buffer));
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
+      this.bufferCache.clear();
       getNode().remove(BUFFER);
     }
   }
@@ -20,17 +20,17 @@
 package org.mobicents.diameter.impl.ha.common.s13;
 
 import java.io.Serializable;
-import java.nio.ByteBuffer;
 
 import org.jboss.cache.Fqn;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Request;
 import org.jdiameter.client.api.IContainer;
-import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.common.api.app.s13.IS13SessionData;
 import org.jdiameter.common.api.app.s13.S13SessionState;
+import org.jdiameter.common.impl.data.SessionStateCodec;
+import org.jdiameter.common.impl.data.SessionStateCodec.CachedMessage;
 import org.mobicents.cluster.MobicentsCluster;
 import org.mobicents.diameter.impl.ha.common.AppSessionDataReplicatedImpl;
 import org.slf4j.Logger;
@@ -49,7 +49,7 @@ public abstract class S13SessionDataReplicatedImpl extends AppSessionDataReplica
   private static final String BUFFER = "BUFFER";
   private static final String TS_TIMERID = "TS_TIMERID";
 
-  private IMessageParser messageParser;
+  private final CachedMessage bufferCache;
 
   /**
    * @param nodeFqn
@@ -58,7 +58,10 @@ public abstract class S13SessionDataReplicatedImpl extends AppSessionDataReplica
    */
   public S13SessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
     super(nodeFqn, mobicentsCluster);
-    this.messageParser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    setWriteVersion(container);
+    IMessageParser parser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    SessionStateCodec codec = new SessionStateCodec(parser, getWriteVersion());
+    this.bufferCache = new CachedMessage(codec);
   }
 
   /*
@@ -69,7 +72,7 @@ public abstract class S13SessionDataReplicatedImpl extends AppSessionDataReplica
   @Override
   public void setS13SessionState(S13SessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -84,7 +87,7 @@ public abstract class S13SessionDataReplicatedImpl extends AppSessionDataReplica
   @Override
   public S13SessionState getS13SessionState() {
     if (exists()) {
-      return (S13SessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, S13SessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -123,17 +126,11 @@ public abstract class S13SessionDataReplicatedImpl extends AppSessionDataReplica
 
   @Override
   public Request getBuffer() {
-    byte[] data = (byte[]) getNode().get(BUFFER);
-    if (data != null) {
-      try {
-        return this.messageParser.createMessage(ByteBuffer.wrap(data));
-      }
-      catch (AvpDataException e) {
-        logger.error("Unable to recreate message from buffer.");
-        return null;
-      }
+    try {
+      return this.bufferCache.get((byte[]) getNode().get(BUFFER));
     }
-    else {
+    catch (AvpDataException e) {
+      logger.error("Unable to recreate message from buffer.");
       return null;
     }
   }
@@ -142,14 +139,14 @@ public abstract class S13SessionDataReplicatedImpl extends AppSessionDataReplica
   public void setBuffer(Request buffer) {
     if (buffer != null) {
       try {
-        byte[] data = this.messageParser.encodeMessage((IMessage) buffer).array();
-        getNode().put(BUFFER, data);
+        getNode().put(BUFFER, this.bufferCache.set(buffer));
       }
       catch (ParseException e) {
         logger.error("Unable to encode message to buffer.");
       }
     }
     else {
+      this.bufferCache.clear();
       getNode().remove(BUFFER);
     }
   }
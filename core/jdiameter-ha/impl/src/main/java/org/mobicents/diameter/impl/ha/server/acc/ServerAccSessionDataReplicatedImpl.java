@@ -125,7 +125,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public ServerAccSessionState getServerAccSessionState() {
     if (exists()) {
-      return (ServerAccSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ServerAccSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -141,7 +141,7 @@ public class ServerAccSessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setServerAccSessionState(ServerAccSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -125,7 +125,7 @@ public class ServerAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public ServerAuthSessionState getServerAuthSessionState() {
     if (exists()) {
-      return (ServerAuthSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ServerAuthSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -141,7 +141,7 @@ public class ServerAuthSessionDataReplicatedImpl extends AppSessionDataReplicate
   @Override
   public void setServerAuthSessionState(ServerAuthSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
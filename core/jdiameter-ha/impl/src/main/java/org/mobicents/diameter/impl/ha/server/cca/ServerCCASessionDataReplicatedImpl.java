@@ -46,6 +46,7 @@ import java.io.Serializable;
 
 import org.jboss.cache.Fqn;
 import org.jdiameter.api.cca.ServerCCASession;
+import org.jdiameter.client.api.IContainer;
 import org.jdiameter.common.api.app.cca.ServerCCASessionState;
 import org.jdiameter.server.impl.app.cca.IServerCCASessionData;
 import org.mobicents.cluster.MobicentsCluster;
@@ -69,7 +70,19 @@ public class ServerCCASessionDataReplicatedImpl extends AppSessionDataReplicated
    * @param iface
    */
   public ServerCCASessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster) {
+    this(nodeFqn, mobicentsCluster, null);
+  }
+
+  /**
+   * @param nodeFqn
+   * @param mobicentsCluster
+   * @param container stack container, its configuration sets the write version
+   */
+  public ServerCCASessionDataReplicatedImpl(Fqn<?> nodeFqn, MobicentsCluster mobicentsCluster, IContainer container) {
     super(nodeFqn, mobicentsCluster);
+    if (container != null) {
+      setWriteVersion(container);
+    }
 
     if (super.create()) {
       setAppSessionIface(this, ServerCCASession.class);
@@ -83,7 +96,16 @@ public class ServerCCASessionDataReplicatedImpl extends AppSessionDataReplicated
    * @param iface
    */
   public ServerCCASessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster) {
-    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster);
+    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, null);
+  }
+
+  /**
+   * @param sessionId
+   * @param mobicentsCluster
+   * @param container stack container, its configuration sets the write version
+   */
+  public ServerCCASessionDataReplicatedImpl(String sessionId, MobicentsCluster mobicentsCluster, IContainer container) {
+    this(Fqn.fromRelativeElements(ReplicatedSessionDatasource.SESSIONS_FQN, sessionId), mobicentsCluster, container);
   }
 
   /*
@@ -94,7 +116,7 @@ public class ServerCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public boolean isStateless() {
     if (exists()) {
-      return toPrimitive((Boolean) getNode().get(STATELESS), true);
+      return toPrimitive((Boolean) getAttribute(STATELESS), true);
     }
     else {
       throw new IllegalStateException();
@@ -109,7 +131,7 @@ public class ServerCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setStateless(boolean stateless) {
     if (exists()) {
-      getNode().put(STATELESS, stateless);
+      putAttribute(STATELESS, stateless);
     }
     else {
       throw new IllegalStateException();
@@ -124,7 +146,7 @@ public class ServerCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public ServerCCASessionState getServerCCASessionState() {
     if (exists()) {
-      return (ServerCCASessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ServerCCASessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -140,7 +162,7 @@ public class ServerCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setServerCCASessionState(ServerCCASessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
@@ -155,7 +177,7 @@ public class ServerCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public void setTccTimerId(Serializable tccTimerId) {
     if (exists()) {
-      getNode().put(TCCID, tccTimerId);
+      putAttribute(TCCID, tccTimerId);
     }
     else {
       throw new IllegalStateException();
@@ -170,7 +192,7 @@ public class ServerCCASessionDataReplicatedImpl extends AppSessionDataReplicated
   @Override
   public Serializable getTccTimerId() {
     if (exists()) {
-      return (Serializable) getNode().get(TCCID);
+      return (Serializable) getAttribute(TCCID);
     }
     else {
       throw new IllegalStateException();
@@ -124,7 +124,7 @@ public class ServerGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ServerGxSessionState getServerGxSessionState() {
     if (exists()) {
-      return (ServerGxSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ServerGxSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -141,7 +141,7 @@ public class ServerGxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   public void setServerGxSessionState(ServerGxSessionState state) {
 
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
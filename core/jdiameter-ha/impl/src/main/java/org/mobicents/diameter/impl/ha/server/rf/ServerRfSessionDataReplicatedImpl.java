@@ -125,7 +125,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ServerRfSessionState getServerRfSessionState() {
     if (exists()) {
-      return (ServerRfSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ServerRfSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -141,7 +141,7 @@ public class ServerRfSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setServerRfSessionState(ServerRfSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
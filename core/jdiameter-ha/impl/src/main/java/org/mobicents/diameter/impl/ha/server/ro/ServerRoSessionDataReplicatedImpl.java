@@ -124,7 +124,7 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ServerRoSessionState getServerRoSessionState() {
     if (exists()) {
-      return (ServerRoSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ServerRoSessionState.class);
     }
     else {
       throw new IllegalStateException();
@@ -140,7 +140,7 @@ public class ServerRoSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public void setServerRoSessionState(ServerRoSessionState state) {
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     }
     else {
       throw new IllegalStateException();
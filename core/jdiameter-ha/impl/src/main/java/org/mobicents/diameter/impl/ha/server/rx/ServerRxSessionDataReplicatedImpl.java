@@ -119,7 +119,7 @@ public class ServerRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   @Override
   public ServerRxSessionState getServerRxSessionState() {
     if (exists()) {
-      return (ServerRxSessionState) getNode().get(STATE);
+      return getEnumAttribute(STATE, ServerRxSessionState.class);
     } else {
       throw new IllegalStateException();
     }
@@ -135,7 +135,7 @@ public class ServerRxSessionDataReplicatedImpl extends AppSessionDataReplicatedI
   public void setServerRxSessionState(ServerRxSessionState state) {
 
     if (exists()) {
-      getNode().put(STATE, state);
+      putAttribute(STATE, state);
     } else {
       throw new IllegalStateException();
     }
@@ -90,6 +90,17 @@ public class ReplicatedTimerFacilityImpl implements ITimerFacility {
     this.ftScheduler.cancel(id);
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.common.api.timer.ITimerFacility#cancelAll(java.lang.String)
+   */
+  @Override
+  public void cancelAll(String sessionId) {
+    // replicated timers are not tracked per session, sessions cancel each of them on their own and
+    // any left over finds no session when it fires
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -42,12 +42,16 @@
 
 package org.jdiameter.client.api;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.AvpDataException;
 import org.jdiameter.client.api.controller.IPeer;
 
+import io.netty.util.Timer;
+
 /**
  * This interface extends basic message interface
  * Data: $Date: 2009/07/27 18:05:03 $
@@ -118,6 +122,15 @@ public interface IMessage extends IRequest, IAnswer {
    */
   void createTimer(ScheduledExecutorService scheduledFacility, long timeOut, TimeUnit timeUnit);
 
+  /**
+   * Create timer for request timout procedure on a timer wheel
+   * @param timer timer wheel tracking the timeout
+   * @param executor executor running the timeout procedure once the timer expires
+   * @param timeOut value of timeout
+   * @param timeUnit time unit
+   */
+  void createTimer(Timer timer, Executor executor, long timeOut, TimeUnit timeUnit);
+
   /**
    * Execute timer task
    */
@@ -164,12 +177,52 @@ public interface IMessage extends IRequest, IAnswer {
    */
   ApplicationId getSingleApplicationId(long id);
 
+  /**
+   * Return value of Origin-Host AVP
+   * @return Origin-Host value or null if message has no such AVP
+   * @throws AvpDataException
+   */
+  String getOriginHost() throws AvpDataException;
+
+  /**
+   * Return value of Origin-Realm AVP
+   * @return Origin-Realm value or null if message has no such AVP
+   * @throws AvpDataException
+   */
+  String getOriginRealm() throws AvpDataException;
+
+  /**
+   * Return value of Destination-Host AVP
+   * @return Destination-Host value or null if message has no such AVP
+   * @throws AvpDataException
+   */
+  String getDestinationHost() throws AvpDataException;
+
+  /**
+   * Return value of Destination-Realm AVP
+   * @return Destination-Realm value or null if message has no such AVP
+   * @throws AvpDataException
+   */
+  String getDestinationRealm() throws AvpDataException;
+
   /**
    * Check timeout
    * @return true if request has timeout
    */
   boolean isTimeOut();
 
+  /**
+   * Set time the request was handed over to a peer
+   * @param nanos value of System.nanoTime()
+   */
+  void setSendTime(long nanos);
+
+  /**
+   * Return time the request was handed over to a peer
+   * @return value of System.nanoTime(), 0 if not set
+   */
+  long getSendTime();
+
   /**
    * Set event listener
    * @param listener event listener
@@ -83,7 +83,7 @@ public interface IPeer extends Peer {
   void addMessage(IMessage message);
 
   /**
-   * Remove request from request storage map
+   * Remove request from request storage map, called when its answer timed out
    *
    * @param message request instance
    */
@@ -57,7 +57,7 @@ import org.jdiameter.client.api.IMessage;
 public interface IMessageParser {
 
   /**
-   * Create message from bytebuffer
+   * Create message from the remaining bytes of a bytebuffer
    * @param data message bytebuffer
    * @return instance of message
    * @throws AvpDataException
@@ -72,6 +72,17 @@ public interface IMessageParser {
    */
   IMessage createMessage(byte[] message) throws AvpDataException;
 
+  /**
+   * Create message from a region of a byte array. The decoded message keeps referencing
+   * the array, so the region must not be modified afterwards
+   * @param buffer array holding the message
+   * @param offset position of the message header in the array
+   * @param length message length
+   * @return instance of message
+   * @throws AvpDataException
+   */
+  IMessage createMessage(byte[] buffer, int offset, int length) throws AvpDataException;
+
   /**
    * Created specified type of message
    * @param iface type of message
@@ -129,4 +140,19 @@ public interface IMessageParser {
    */
   ByteBuffer encodeMessage(IMessage message) throws ParseException;
 
+  /**
+   * Compute number of bytes needed to encode message
+   * @param message diameter message
+   * @return encoded message length
+   */
+  int getMessageLength(IMessage message);
+
+  /**
+   * Encode message into ByteBuffer, starting at its current position
+   * @param message diameter message
+   * @param buffer destination buffer, with at least {@link #getMessageLength(IMessage)} bytes remaining
+   * @throws ParseException
+   */
+  void encodeMessage(IMessage message, ByteBuffer buffer) throws ParseException;
+
 }
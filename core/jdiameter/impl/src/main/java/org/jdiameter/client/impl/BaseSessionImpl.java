@@ -160,7 +160,8 @@ public abstract class BaseSessionImpl implements BaseSession {
         throw new IllegalDiameterStateException("Illegal state");
       }
 
-      message.createTimer(container.getScheduledFacility(), timeout, timeUnit);
+      // answer timeouts are tracked on the stack's timer wheel and processed by the scheduled facility
+      message.createTimer(container.getConcurrentFactory().getWheelTimer(), container.getScheduledFacility(), timeout, timeUnit);
       try {
         container.sendMessage(message);
       }
@@ -44,6 +44,7 @@ package org.jdiameter.client.impl;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.InternalException;
@@ -72,7 +73,18 @@ public class SessionFactoryImpl implements ISessionFactory {
   private Map<Class, IAppSessionFactory> appFactories = new ConcurrentHashMap<Class, IAppSessionFactory>();
   private ISessionDatasource dataSource;
 
-  protected static UIDGenerator uid = new UIDGenerator();
+  // RFC 6733, 8.8: high 32 bits start at the time of startup, low 32 bits at zero, which keeps
+  // Session-Ids unique across restarts
+  protected static UIDGenerator uid = new UIDGenerator(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) << 32);
+
+  // Session-Ids are built over and over, reuse a buffer per thread and the "<DiameterIdentity>;" prefix
+  private static final ThreadLocal<StringBuilder> sessionIdBuilder = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(64);
+    }
+  };
+  private volatile String sessionIdPrefix;
 
   public SessionFactoryImpl(IContainer stack) {
     this.stack = stack;
@@ -82,14 +94,19 @@ public class SessionFactoryImpl implements ISessionFactory {
   @Override
   public String getSessionId(String custom) {
     long id = uid.nextLong();
-    long high32 = (id & 0xffffffff00000000L) >> 32;
+    long high32 = (id & 0xffffffff00000000L) >>> 32;
     long low32 = (id & 0xffffffffL);
-    StringBuilder sb = new StringBuilder();
-    sb.append(stack.getMetaData().getLocalPeer().getUri().getFQDN()).
-    append(";").append(high32).append(";").append(low32);
+    String prefix = sessionIdPrefix;
+    if (prefix == null) {
+      prefix = stack.getMetaData().getLocalPeer().getUri().getFQDN() + ";";
+      sessionIdPrefix = prefix;
+    }
+    StringBuilder sb = sessionIdBuilder.get();
+    sb.setLength(0);
+    sb.append(prefix).append(high32).append(';').append(low32);
     if (custom != null) {
       //FIXME: add checks for not allowed chars?
-      sb.append(";").append(custom);
+      sb.append(';').append(custom);
     }
     return sb.toString();
   }
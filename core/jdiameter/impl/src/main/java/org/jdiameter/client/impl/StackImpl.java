@@ -83,6 +83,7 @@ import org.jdiameter.client.api.controller.IPeerTable;
 import org.jdiameter.client.impl.helpers.Parameters;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticProcessor;
 import org.jdiameter.common.api.timer.ITimerFacility;
 import org.slf4j.Logger;
@@ -376,6 +377,11 @@ public class StackImpl implements IContainer, StackImplMBean {
       if (scheduledFacility != null) {
         concurrentFactory.shutdownNow(scheduledFacility);
       }
+      if (concurrentFactory != null) {
+        concurrentFactory.shutdownEventLoopGroups();
+        concurrentFactory.shutdownWheelTimer();
+        concurrentFactory.shutdownSelectorPool();
+      }
     }
     catch (Exception e) {
       log.warn("Destroy error", e);
@@ -532,6 +538,14 @@ public class StackImpl implements IContainer, StackImplMBean {
     }
   }
 
+  @Override
+  public String messageMetrics() {
+    if (assembler == null) {
+      return "not set";
+    }
+    return assembler.getComponentInstance(IStatisticManager.class).getMessageMetrics().toText();
+  }
+
   @Override
   public void stop(int disconnectCause) {
     try {
@@ -78,6 +78,12 @@ public interface StackImplMBean {
    */
   String peerList();
 
+  /**
+   * Return request/answer latency and result code metrics per application, command and peer
+   * @return metrics in Prometheus text exposition format
+   */
+  String messageMetrics();
+
   /**
    * Return true if stack is started
    * @return true if stack is started
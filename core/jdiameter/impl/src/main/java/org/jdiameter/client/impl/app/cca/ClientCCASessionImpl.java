@@ -213,6 +213,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
   protected boolean handleEventForEventBased(StateEvent event) throws InternalException, OverloadException {
     try {
       sendAndStateLock.lock();
+      beginDataBatch();
       final Event localEvent = (Event) event;
       final Event.Type eventType = (Type) localEvent.getType();
       final ClientCCASessionState state = this.sessionData.getClientCCASessionState();
@@ -304,6 +305,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
       throw new InternalException(e);
     }
     finally {
+      endDataBatch();
       sendAndStateLock.unlock();
     }
   }
@@ -311,6 +313,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
   protected boolean handleEventForSessionBased(StateEvent event) throws InternalException, OverloadException {
     try {
       sendAndStateLock.lock();
+      beginDataBatch();
       Event localEvent = (Event) event;
       Event.Type eventType = (Type) localEvent.getType();
       ClientCCASessionState state = this.sessionData.getClientCCASessionState();
@@ -556,6 +559,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
       throw new InternalException(e);
     }
     finally {
+      endDataBatch();
       sendAndStateLock.unlock();
     }
   }
@@ -679,6 +683,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
     logger.debug("Failed to send message, type: {} message: {}, failure: {}", new Object[]{eventType, request, e != null ? e.getLocalizedMessage() : ""});
     try {
       this.sendAndStateLock.lock();
+      beginDataBatch();
       ClientCCASessionState state = this.sessionData.getClientCCASessionState();
       // Event Based ----------------------------------------------------------
       if (isEventBased()) {
@@ -777,6 +782,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
       dispatch();
     }
     finally {
+      endDataBatch();
       this.sendAndStateLock.unlock();
     }
   }
@@ -1267,6 +1273,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
     public void run() {
       try {
         sendAndStateLock.lock();
+        beginDataBatch();
         logger.debug("Fired TX Timer");
         sessionData.setTxTimerId(null);
         try {
@@ -1288,6 +1295,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
         logger.error("Exception", e);
       }
       finally {
+        endDataBatch();
         sendAndStateLock.unlock();
       }
     }
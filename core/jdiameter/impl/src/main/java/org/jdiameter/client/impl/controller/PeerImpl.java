@@ -48,6 +48,8 @@ import static org.jdiameter.api.Avp.DESTINATION_HOST;
 import static org.jdiameter.api.Avp.DESTINATION_REALM;
 import static org.jdiameter.api.Avp.DISCONNECT_CAUSE;
 import static org.jdiameter.api.Avp.ERROR_MESSAGE;
+import static org.jdiameter.api.Avp.EXPERIMENTAL_RESULT;
+import static org.jdiameter.api.Avp.EXPERIMENTAL_RESULT_CODE;
 import static org.jdiameter.api.Avp.FIRMWARE_REVISION;
 import static org.jdiameter.api.Avp.HOST_IP_ADDRESS;
 import static org.jdiameter.api.Avp.ORIGIN_HOST;
@@ -85,8 +87,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.Avp;
@@ -124,8 +124,11 @@ import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.api.router.IRouter;
 import org.jdiameter.client.impl.AbstractStateChangeListener;
 import org.jdiameter.client.impl.DictionarySingleton;
+import org.jdiameter.client.impl.helpers.ConcurrentLongHashMap;
+import org.jdiameter.client.impl.helpers.UIDGenerator;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.statistic.IMessageMetrics;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
@@ -152,7 +155,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
   protected String productName;
   protected int firmWare;
   protected Set<ApplicationId> commonApplications = new HashSet<ApplicationId>();
-  protected AtomicLong hopByHopId = new AtomicLong(uid.nextInt());
+  protected UIDGenerator hopByHopGen = new UIDGenerator(uid.nextInt());
   protected int rating;
   protected boolean stopping = false;
   // Members
@@ -161,8 +164,12 @@ public class PeerImpl extends AbstractPeer implements IPeer {
   // Facilities
   protected IRouter router;
   // XXX: FT/HA // protected Map<String, NetworkReqListener> slc;
-  protected final Map<Long, IMessage> peerRequests = new ConcurrentHashMap<Long, IMessage>();
+  // in-flight requests by hop-by-hop id
+  protected final ConcurrentLongHashMap<IMessage> peerRequests = new ConcurrentLongHashMap<IMessage>();
   protected final Dictionary dictionary = DictionarySingleton.getDictionary();
+  // Latency metrics, keyed by remote peer uri
+  protected final IMessageMetrics messageMetrics;
+  protected final String metricsPeerName;
   // FSM layer
   protected IStateMachine fsm;
   protected IMessageParser parser;
@@ -272,6 +279,8 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       IMessageParser parser, IStatisticManager statisticFactory, IConcurrentFactory concurrentFactory,
       IConnection connection, final ISessionDatasource sessionDataSource) throws InternalException, TransportException {
     super(remotePeer, statisticFactory);
+    this.messageMetrics = statisticFactory.getMessageMetrics();
+    this.metricsPeerName = remotePeer.toString();
     this.table = table;
     this.rating = rating;
     this.router = table.router;
@@ -374,6 +383,25 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     return new ActionContext();
   }
 
+  private int getResultCode(Avp avpResCode, IMessage answer) {
+    try {
+      if (avpResCode != null) {
+        return avpResCode.getInteger32();
+      }
+      Avp experimentalResult = answer.getAvps().getAvp(EXPERIMENTAL_RESULT);
+      if (experimentalResult != null) {
+        Avp experimentalResultCode = experimentalResult.getGrouped().getAvp(EXPERIMENTAL_RESULT_CODE);
+        if (experimentalResultCode != null) {
+          return experimentalResultCode.getInteger32();
+        }
+      }
+    }
+    catch (AvpDataException e) {
+      logger.debug("Unable to read result code of answer", e);
+    }
+    return IMessageMetrics.NO_RESULT_CODE;
+  }
+
   private boolean isRedirectAnswer(Avp avpResCode, IMessage answer) {
     try {
       return (answer.getFlags() & 0x20) != 0 && avpResCode != null && avpResCode.getInteger32() == ResultCode.REDIRECT_INDICATION;
@@ -552,24 +580,31 @@ public class PeerImpl extends AbstractPeer implements IPeer {
 
   @Override
   public long getHopByHopIdentifier() {
-    return hopByHopId.incrementAndGet();
+    return hopByHopGen.nextLong();
   }
 
   @Override
   public void addMessage(IMessage message) {
+    if (messageMetrics.isEnabled()) {
+      message.setSendTime(System.nanoTime());
+    }
     peerRequests.put(message.getHopByHopIdentifier(), message);
   }
 
   @Override
   public void remMessage(IMessage message) {
-    peerRequests.remove(message.getHopByHopIdentifier());
+    IMessage request = peerRequests.remove(message.getHopByHopIdentifier());
+    // still pending, so its answer did not win the race with the timeout
+    if (request != null && messageMetrics.isEnabled() && request.getSendTime() != 0) {
+      messageMetrics.recordTimeout(metricsPeerName, request.getApplicationId(), request.getCommandCode(),
+          System.nanoTime() - request.getSendTime());
+    }
   }
 
   @Override
   public IMessage[] remAllMessage() {
-    IMessage[] m = peerRequests.values().toArray(new IMessage[peerRequests.size()]);
-    peerRequests.clear();
-    return m;
+    List<IMessage> m = peerRequests.drain();
+    return m.toArray(new IMessage[m.size()]);
   }
 
   @Override
@@ -701,14 +736,14 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       logger.debug("Sending response indicating we could not process request");
       sendMessage((IMessage) request);
       if (statistic.isEnabled()) {
-        statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse.name()).inc();
+        statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse).inc();
       }
     }
     catch (Exception e) {
       logger.debug("Unable to send answer", e);
     }
     if (statistic.isEnabled()) {
-      statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest.name()).inc();
+      statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest).inc();
     }
   }
 
@@ -999,7 +1034,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
               try {
                 sendMessage(answer);
                 if (statistic.isEnabled()) {
-                  statistic.getRecordByName(IStatisticRecord.Counters.AppGenResponse.name()).inc();
+                  statistic.getRecordByName(IStatisticRecord.Counters.AppGenResponse).inc();
                 }
               }
               catch (Exception e) {
@@ -1008,13 +1043,13 @@ public class PeerImpl extends AbstractPeer implements IPeer {
             }
 
             if (statistic.isEnabled()) {
-              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest.name()).inc();
+              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest).inc();
             }
             isProcessed = true;
           }
           else {
             if (statistic.isEnabled()) {
-              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest.name()).inc();
+              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest).inc();
             }
           }
         }
@@ -1028,6 +1063,10 @@ public class PeerImpl extends AbstractPeer implements IPeer {
           request.clearTimer();
           request.setState(IMessage.STATE_ANSWERED);
           Avp avpResCode = message.getAvps().getAvp(RESULT_CODE);
+          if (messageMetrics.isEnabled() && request.getSendTime() != 0) {
+            messageMetrics.recordAnswer(metricsPeerName, request.getApplicationId(), request.getCommandCode(),
+                System.nanoTime() - request.getSendTime(), getResultCode(avpResCode, message));
+          }
           if (isRedirectAnswer(avpResCode, message)) {
             message.setListener(request.getEventListener());
             message = processRedirectAnswer(request, message);
@@ -1042,24 +1081,24 @@ public class PeerImpl extends AbstractPeer implements IPeer {
             else {
               logger.debug("Unable to call answer listener for request {} because listener is not set", message);
               if (statistic.isEnabled()) {
-                statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse.name()).inc();
+                statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse).inc();
               }
             }
 
             isProcessed = true;
             if (statistic.isEnabled()) {
-              statistic.getRecordByName(IStatisticRecord.Counters.NetGenResponse.name()).inc();
+              statistic.getRecordByName(IStatisticRecord.Counters.NetGenResponse).inc();
             }
           }
           else {
             if (statistic.isEnabled()) {
-              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse.name()).inc();
+              statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse).inc();
             }
           }
         }
         else {
           if (statistic.isEnabled()) {
-            statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse.name()).inc();
+            statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedResponse).inc();
           }
         }
       }
@@ -231,12 +231,12 @@ public class PeerTableImpl implements IPeerTable {
         logger.debug("Message was submitted to be sent, now adding statistics");
         if (message.isRequest()) {
           if (peer.getStatistic().isEnabled()) {
-            peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenRequest.name()).inc();
+            peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenRequest).inc();
           }
         }
         else {
           if (peer.getStatistic().isEnabled()) {
-            peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenResponse.name()).inc();
+            peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenResponse).inc();
           }
         }
       }
@@ -245,12 +245,12 @@ public class PeerTableImpl implements IPeerTable {
       logger.error("Can not send message", e);
       if (message.isRequest()) {
         if (peer.getStatistic().isEnabled()) {
-          peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenRejectedRequest.name()).inc();
+          peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenRejectedRequest).inc();
         }
       }
       else {
         if (peer.getStatistic().isEnabled()) {
-          peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenRejectedResponse.name()).inc();
+          peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenRejectedResponse).inc();
         }
       }
 
@@ -51,7 +51,6 @@ import java.util.Map;
 import java.util.Set;
 
 import org.jdiameter.api.ApplicationId;
-import org.jdiameter.api.Avp;
 import org.jdiameter.api.InternalException;
 import org.jdiameter.api.LocalAction;
 import org.jdiameter.api.Realm;
@@ -228,7 +227,11 @@ public class RealmTableImpl implements IRealmTable {
     try {
       // once again casting...
       IMessage req = (IMessage) request;
-      String destinationRealm = req.getAvps().getAvp(Avp.DESTINATION_REALM).getDiameterIdentity();
+      String destinationRealm = req.getDestinationRealm();
+      if (destinationRealm == null) {
+        logger.error("Unable to read Destination-Realm AVP to match realm to request, AVP is missing");
+        return null;
+      }
       // we have req, we need match, not dummy longest from right BS match.
       return this.matchRealm(req, destinationRealm);
     }
@@ -48,14 +48,17 @@ import static org.jdiameter.client.impl.helpers.Parameters.CeaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.DpaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.DwaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.IacTimeOut;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMSharedExecutor;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMThreadCount;
 import static org.jdiameter.client.impl.helpers.Parameters.QueueSize;
 import static org.jdiameter.client.impl.helpers.Parameters.RecTimeOut;
 
 import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -77,12 +80,17 @@ import org.jdiameter.client.api.fsm.IContext;
 import org.jdiameter.client.api.fsm.IStateMachine;
 import org.jdiameter.client.impl.DictionarySingleton;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory.ScheduledExecServices;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
 /**
  *
  * @author erick.svenson@yahoo.com
@@ -124,6 +132,22 @@ public class PeerFSMImpl implements IStateMachine {
   protected boolean mustRun = false;
   protected AtomicInteger numberOfThreadsRunning = new AtomicInteger(0);
 
+  // shared executor mode: events are processed one batch at a time by a task on the shared executor
+  // and the peer timer is armed on the shared wheel timer instead of being polled
+  private static final int MAX_EVENTS_PER_RUN = 64;
+
+  protected boolean sharedExecutor;
+  protected Executor executor;
+  // blocking connect and CER send run here, so a slow peer does not hold a shared mailbox thread
+  protected Executor connectorExecutor;
+  // set while a connect attempt is in progress, so reconnect timeouts do not pile attempts up
+  protected final AtomicBoolean connecting = new AtomicBoolean();
+  protected Timer wheelTimer;
+  protected final AtomicBoolean mailboxScheduled = new AtomicBoolean();
+  protected final MailboxProcessor mailboxProcessor = new MailboxProcessor();
+  protected Timeout timerTimeout;
+  protected long scheduledTimer;
+
   public PeerFSMImpl(IContext aContext, IConcurrentFactory concurrentFactory, Configuration config, IStatisticManager statisticFactory) {
     this.context = aContext;
     this.statisticFactory = statisticFactory;
@@ -135,6 +159,7 @@ public class PeerFSMImpl implements IStateMachine {
     loadTimeOuts(config);
     this.concurrentFactory = concurrentFactory;
     FSM_THREAD_COUNT = config.getIntValue(PeerFSMThreadCount.ordinal(), (Integer) PeerFSMThreadCount.defValue());
+    this.sharedExecutor = config.getBooleanValue(PeerFSMSharedExecutor.ordinal(), (Boolean) PeerFSMSharedExecutor.defValue());
     runQueueProcessing();
   }
 
@@ -182,7 +207,7 @@ public class PeerFSMImpl implements IStateMachine {
               if (queueStat == null) {
                 return 0;
               }
-              IStatisticRecord mpta = queueStat.getRecordByName(IStatisticRecord.Counters.MessageProcessingTime.name());
+              IStatisticRecord mpta = queueStat.getRecordByName(IStatisticRecord.Counters.MessageProcessingTime);
               org.jdiameter.api.StatisticRecord[] children = mpta.getChilds();
               if (children.length == 2 && children[1].getValueAsLong() != 0) {
                 long count = children[1].getValueAsLong();
@@ -203,6 +228,16 @@ public class PeerFSMImpl implements IStateMachine {
       queueStat = statisticFactory.newStatistic(context.getPeerDescription(), IStatistic.Groups.PeerFSM, queueSize, messagePrcAverageTime);
       logger.debug("Finished Initializing QueueStat @ Thread[{}]", Thread.currentThread().getName());
 
+      if (sharedExecutor) {
+        executor = concurrentFactory.getScheduledExecutorService(ScheduledExecServices.PeerFSM.name());
+        connectorExecutor = concurrentFactory.getScheduledExecutorService(ScheduledExecServices.PeerFSMConnector.name());
+        wheelTimer = concurrentFactory.getWheelTimer();
+        // the mailbox counts as the single running FSM thread
+        numberOfThreadsRunning.set(1);
+        logger.debug("FSM of [{}] is running on the shared executor", context.getPeerDescription());
+        return;
+      }
+
       Runnable fsmQueueProcessor = new Runnable() {
         @Override
         public void run() {
@@ -226,30 +261,9 @@ public class PeerFSMImpl implements IStateMachine {
             // lock.lock();
             try {
               if (event != null) {
-                if (event instanceof FsmEvent && queueStat != null && queueStat.isEnabled()) {
-                  timeSumm.inc(System.currentTimeMillis() - ((FsmEvent) event).getCreatedTime());
-                  timeCount.inc();
-                }
-                logger.debug("Process event [{}]. Peer State is [{}]", event, state);
-                getStates()[state.ordinal()].processEvent(event);
-              }
-              if (timer != 0 && timer < System.currentTimeMillis()) {
-                // ZhixiaoLuo: add lock here to avoid 2 timeout events at the same time if 2 threads get into timer=0
-                // ZhixiaoLuo: use double check strategy to avoid locking most normal cases
-                lock.lock();
-                try {
-                  if (timer != 0 && timer < System.currentTimeMillis()) {
-                    timer = 0;
-                    if (state != DOWN) { //without this check this event is fired in DOWN state.... it should not be.
-                      logger.debug("Sending timeout event");
-                      handleEvent(timeOutEvent); //FIXME: check why timer is not killed?
-                    }
-                  }
-                }
-                finally {
-                  lock.unlock();
-                }
+                dispatchEvent(event);
               }
+              checkTimer();
             }
             catch (Exception e) {
               logger.debug("Error during processing FSM event", e);
@@ -282,6 +296,165 @@ public class PeerFSMImpl implements IStateMachine {
     }
   }
 
+  protected void dispatchEvent(StateEvent event) {
+    if (event instanceof FsmEvent && queueStat != null && queueStat.isEnabled()) {
+      timeSumm.inc(System.currentTimeMillis() - ((FsmEvent) event).getCreatedTime());
+      timeCount.inc();
+    }
+    logger.debug("Process event [{}]. Peer State is [{}]", event, state);
+    getStates()[state.ordinal()].processEvent(event);
+  }
+
+  protected void checkTimer() throws OverloadException {
+    if (timer != 0 && timer < System.currentTimeMillis()) {
+      // ZhixiaoLuo: add lock here to avoid 2 timeout events at the same time if 2 threads get into timer=0
+      // ZhixiaoLuo: use double check strategy to avoid locking most normal cases
+      lock.lock();
+      try {
+        if (timer != 0 && timer < System.currentTimeMillis()) {
+          timer = 0;
+          if (state != DOWN) { //without this check this event is fired in DOWN state.... it should not be.
+            logger.debug("Sending timeout event");
+            if (sharedExecutor) {
+              // already running in the mailbox, queueing would only delay it behind pending events
+              dispatchEvent(timeOutEvent);
+            }
+            else {
+              handleEvent(timeOutEvent); //FIXME: check why timer is not killed?
+            }
+          }
+        }
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  protected void scheduleMailbox() {
+    if (mailboxScheduled.compareAndSet(false, true)) {
+      executor.execute(mailboxProcessor);
+    }
+  }
+
+  /**
+   * Arms the wheel timer for the current value of {@link #timer}. A pending timeout due before the new
+   * deadline is kept, and simply re-armed when it fires, so moving the inactivity timer forward on every
+   * message does not reschedule anything.
+   */
+  protected void rescheduleTimer() {
+    long deadline = timer;
+    boolean pending = timerTimeout != null && !timerTimeout.isExpired();
+    if (deadline == 0 ? !pending : pending && scheduledTimer <= deadline) {
+      return;
+    }
+    if (pending) {
+      timerTimeout.cancel();
+    }
+    timerTimeout = null;
+    scheduledTimer = deadline;
+    if (deadline != 0) {
+      timerTimeout = wheelTimer.newTimeout(mailboxProcessor, Math.max(deadline - System.currentTimeMillis() + 1, 1), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Connects and/or sends CER on the connector pool, for shared executor mode. A successful connect
+   * is reported by the connection itself with a CONNECT_EVENT, a failure of either step is posted
+   * back as a DISCONNECT_EVENT, which is what the connection reports when it goes down.
+   *
+   * @param connect true to open the connection
+   * @param sendCer true to send CER once connected
+   */
+  protected void startConnector(final boolean connect, final boolean sendCer) {
+    if (connect && !connecting.compareAndSet(false, true)) {
+      logger.debug("Connection to [{}] is already being set up", context.getPeerDescription());
+      return;
+    }
+    try {
+      connectorExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (connect) {
+              context.connect();
+            }
+            if (sendCer) {
+              context.sendCerMessage();
+            }
+          }
+          catch (Throwable e) {
+            logger.debug("Can not set up connection to [{}]", context.getPeerDescription(), e);
+            try {
+              handleEvent(new FsmEvent(EventTypes.DISCONNECT_EVENT));
+            }
+            catch (Exception ex) {
+              logger.debug("Can not report connection failure to FSM", ex);
+            }
+          }
+          finally {
+            if (connect) {
+              connecting.set(false);
+            }
+          }
+        }
+      });
+    }
+    catch (RuntimeException e) {
+      if (connect) {
+        connecting.set(false);
+      }
+      throw e;
+    }
+  }
+
+  protected void stopMailbox() {
+    if (numberOfThreadsRunning.compareAndSet(1, 0)) {
+      logger.debug("FSM of [{}] stopped on the shared executor", context.getPeerDescription());
+      statisticFactory.removeStatistic(queueStat);
+      queueStat = null;
+    }
+  }
+
+  protected class MailboxProcessor implements Runnable, TimerTask {
+
+    @Override
+    public void run() {
+      try {
+        StateEvent event;
+        for (int i = 0; i < MAX_EVENTS_PER_RUN && (event = eventQueue.poll()) != null; i++) {
+          try {
+            dispatchEvent(event);
+          }
+          catch (Exception e) {
+            logger.debug("Error during processing FSM event", e);
+          }
+        }
+        try {
+          checkTimer();
+        }
+        catch (Exception e) {
+          logger.debug("Error during processing FSM timeout", e);
+        }
+        rescheduleTimer();
+        if (!mustRun) {
+          stopMailbox();
+        }
+      }
+      finally {
+        mailboxScheduled.set(false);
+      }
+      if (mustRun && !eventQueue.isEmpty()) {
+        scheduleMailbox();
+      }
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+      scheduleMailbox();
+    }
+  }
+
   @Override
   public double getQueueInfo() {
     return eventQueue.size() * 1.0 / predefSize;
@@ -374,6 +547,9 @@ public class PeerFSMImpl implements IStateMachine {
     if (!rc) {
       throw new OverloadException("FSM overloaded");
     }
+    if (sharedExecutor) {
+      scheduleMailbox();
+    }
     return true;
   }
 
@@ -637,8 +813,13 @@ public class PeerFSMImpl implements IStateMachine {
                 case START_EVENT:
                   try {
                     context.createStatistics();
-                    context.connect();
-                    context.sendCerMessage();
+                    if (sharedExecutor) {
+                      startConnector(true, true);
+                    }
+                    else {
+                      context.connect();
+                      context.sendCerMessage();
+                    }
                     setTimer(CEA_TIMEOUT);
                     switchToNextState(FsmState.INITIAL);
                   }
@@ -666,7 +847,12 @@ public class PeerFSMImpl implements IStateMachine {
               switch (event.encodeType(EventTypes.class)) {
                 case CONNECT_EVENT:
                   try {
-                    context.sendCerMessage();
+                    if (sharedExecutor) {
+                      startConnector(false, true);
+                    }
+                    else {
+                      context.sendCerMessage();
+                    }
                     setTimer(CEA_TIMEOUT);
                     switchToNextState(FsmState.INITIAL);
                   }
@@ -676,6 +862,12 @@ public class PeerFSMImpl implements IStateMachine {
                   }
                   break;
                 case TIMEOUT_EVENT:
+                  if (sharedExecutor) {
+                    // tried again on the next timeout, unless CONNECT_EVENT comes first
+                    setTimer(REC_TIMEOUT);
+                    startConnector(true, false);
+                    break;
+                  }
                   try {
                     context.connect();
                   }
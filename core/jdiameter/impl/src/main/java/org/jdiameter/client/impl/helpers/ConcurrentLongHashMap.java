@@ -0,0 +1,343 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.helpers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent hash map with primitive long keys. Keys are spread over independently locked segments,
+ * each one an open addressing table, so neither keys nor entries are boxed. Updates lock their segment,
+ * lookups don't lock unless they race with an update of the same segment. Null values are not
+ * supported.
+ */
+public class ConcurrentLongHashMap<V> {
+
+  private static final int DEFAULT_SEGMENT_COUNT = 16;
+  private static final int MIN_SEGMENT_CAPACITY = 16;
+
+  private final Segment<V>[] segments;
+  private final int segmentShift;
+
+  public ConcurrentLongHashMap() {
+    this(DEFAULT_SEGMENT_COUNT * MIN_SEGMENT_CAPACITY / 2);
+  }
+
+  /**
+   * @param expectedSize number of entries the map should hold without resizing
+   */
+  public ConcurrentLongHashMap(int expectedSize) {
+    this(expectedSize, DEFAULT_SEGMENT_COUNT);
+  }
+
+  @SuppressWarnings("unchecked")
+  public ConcurrentLongHashMap(int expectedSize, int segmentCount) {
+    int count = powerOfTwo(Math.max(segmentCount, 1));
+    this.segments = new Segment[count];
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+    int capacity = powerOfTwo(Math.max(MIN_SEGMENT_CAPACITY, 2 * Math.max(expectedSize, 0) / count));
+    for (int i = 0; i < count; i++) {
+      segments[i] = new Segment<V>(capacity);
+    }
+  }
+
+  public V get(long key) {
+    int hash = hash(key);
+    return segmentFor(hash).get(key, hash);
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @return previous value for the key, or null
+   */
+  public V put(long key, V value) {
+    if (value == null) {
+      throw new NullPointerException("Null values are not supported");
+    }
+    int hash = hash(key);
+    return segmentFor(hash).put(key, hash, value, false);
+  }
+
+  /**
+   * @return current value for the key, or null if the value was added
+   */
+  public V putIfAbsent(long key, V value) {
+    if (value == null) {
+      throw new NullPointerException("Null values are not supported");
+    }
+    int hash = hash(key);
+    return segmentFor(hash).put(key, hash, value, true);
+  }
+
+  /**
+   * @return removed value, or null
+   */
+  public V remove(long key) {
+    int hash = hash(key);
+    return segmentFor(hash).remove(key, hash);
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    for (Segment<V> segment : segments) {
+      if (segment.size != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void clear() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * @return snapshot of the values, each segment copied atomically
+   */
+  public List<V> values() {
+    List<V> values = new ArrayList<V>(size());
+    for (Segment<V> segment : segments) {
+      segment.copyTo(values);
+    }
+    return values;
+  }
+
+  /**
+   * Removes all entries and returns their values. Each segment is emptied atomically by swapping in a
+   * fresh table, values are collected from the old one outside of the lock.
+   *
+   * @return removed values
+   */
+  public List<V> drain() {
+    List<V> values = new ArrayList<V>(size());
+    for (Segment<V> segment : segments) {
+      addValues(segment.detach(), values);
+    }
+    return values;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> void addValues(Table table, List<V> values) {
+    if (table != null) {
+      for (int i = 0, n = table.values.length(); i < n; i++) {
+        Object value = table.values.get(i);
+        if (value != null) {
+          values.add((V) value);
+        }
+      }
+    }
+  }
+
+  private Segment<V> segmentFor(int hash) {
+    return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+  }
+
+  static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static int powerOfTwo(int value) {
+    int n = Integer.highestOneBit(value);
+    return n == value ? n : n << 1;
+  }
+
+  /**
+   * Open addressing table. Slots are read with volatile semantics, so a reader not holding the segment
+   * lock sees a consistent entry as long as the segment version did not change meanwhile.
+   */
+  private static final class Table {
+
+    final AtomicLongArray keys;
+    final AtomicReferenceArray<Object> values;
+    final int mask;
+
+    Table(int capacity) {
+      this.keys = new AtomicLongArray(capacity);
+      this.values = new AtomicReferenceArray<Object>(capacity);
+      this.mask = capacity - 1;
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+
+    Object find(long key, int hash) {
+      Object value;
+      for (int i = hash & mask; (value = values.get(i)) != null; i = (i + 1) & mask) {
+        if (keys.get(i) == key) {
+          return value;
+        }
+      }
+      return null;
+    }
+
+    void set(int i, long key, Object value) {
+      keys.lazySet(i, key);
+      values.lazySet(i, value);
+    }
+  }
+
+  /**
+   * Writers hold the segment lock and make the version odd while they change the table. Readers don't
+   * lock: they search the table between two reads of the version and only retry under the lock when a
+   * writer was active meanwhile.
+   */
+  private static final class Segment<V> {
+
+    private volatile int version;
+    private volatile Table table;
+    private volatile int size;
+    private final int minCapacity;
+
+    Segment(int capacity) {
+      this.minCapacity = capacity;
+      this.table = new Table(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key, int hash) {
+      int before = version;
+      if ((before & 1) == 0) {
+        Object value = table.find(key, hash);
+        if (version == before) {
+          return (V) value;
+        }
+      }
+      synchronized (this) {
+        return (V) table.find(key, hash);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized V put(long key, int hash, V value, boolean onlyIfAbsent) {
+      Table t = table;
+      int mask = t.mask;
+      int i = hash & mask;
+      for (Object current; (current = t.values.get(i)) != null; i = (i + 1) & mask) {
+        if (t.keys.get(i) == key) {
+          if (!onlyIfAbsent) {
+            // a single slot write, readers see either value
+            t.values.lazySet(i, value);
+          }
+          return (V) current;
+        }
+      }
+      version++;
+      try {
+        t.set(i, key, value);
+        // keep the table at most half full, so probe sequences stay short
+        if (++size > t.capacity() >> 1) {
+          resize(t.capacity() << 1);
+        }
+      }
+      finally {
+        version++;
+      }
+      return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized V remove(long key, int hash) {
+      Table t = table;
+      int mask = t.mask;
+      int i = hash & mask;
+      for (Object current; (current = t.values.get(i)) != null; i = (i + 1) & mask) {
+        if (t.keys.get(i) == key) {
+          version++;
+          try {
+            // backward shift deletion: move up entries of the probe sequence, no tombstones needed
+            for (int j = (i + 1) & mask; t.values.get(j) != null; j = (j + 1) & mask) {
+              int home = hash(t.keys.get(j)) & mask;
+              if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                t.set(i, t.keys.get(j), t.values.get(j));
+                i = j;
+              }
+            }
+            t.values.lazySet(i, null);
+            size--;
+          }
+          finally {
+            version++;
+          }
+          return (V) current;
+        }
+      }
+      return null;
+    }
+
+    synchronized void copyTo(List<V> target) {
+      addValues(table, target);
+    }
+
+    /**
+     * @return table holding the entries removed, null if there were none
+     */
+    synchronized Table detach() {
+      if (size == 0) {
+        return null;
+      }
+      Table detached = table;
+      // a new table is published in a single write, readers of the old one are still consistent
+      table = new Table(minCapacity);
+      size = 0;
+      return detached;
+    }
+
+    synchronized void clear() {
+      if (size != 0) {
+        table = new Table(minCapacity);
+        size = 0;
+      }
+    }
+
+    private void resize(int capacity) {
+      Table old = table;
+      Table resized = new Table(capacity);
+      int mask = resized.mask;
+      for (int j = 0, n = old.capacity(); j < n; j++) {
+        Object value = old.values.get(j);
+        if (value != null) {
+          long key = old.keys.get(j);
+          int i = hash(key) & mask;
+          while (resized.values.get(i) != null) {
+            i = (i + 1) & mask;
+          }
+          resized.set(i, key, value);
+        }
+      }
+      table = resized;
+    }
+  }
+}
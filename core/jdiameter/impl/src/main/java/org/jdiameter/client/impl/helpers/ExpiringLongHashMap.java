@@ -0,0 +1,149 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.helpers;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long keyed map whose entries expire after a fixed time. Entries are kept in a ring of generations:
+ * new entries go to the newest one and, every <code>expiry / (generations - 1)</code> milliseconds,
+ * the oldest generation is dropped as a whole and a new empty one takes its place. An entry thus lives
+ * between <code>expiry</code> and <code>expiry * generations / (generations - 1)</code> milliseconds,
+ * and nothing has to be scanned or locked for a long time to evict it.
+ * <p>
+ * When the newest generation grows over its share of the maximum size, the ring is rotated early, so
+ * a burst only evicts the oldest entries instead of the whole map.
+ */
+public class ExpiringLongHashMap<V> {
+
+  private static final Logger logger = LoggerFactory.getLogger(ExpiringLongHashMap.class);
+
+  public static final int DEFAULT_GENERATIONS = 4;
+
+  private final long rotationInterval;
+  private final int generationMaxSize;
+  private final Lock rotationLock = new ReentrantLock();
+
+  // newest generation first, replaced as a whole on rotation
+  private volatile ConcurrentLongHashMap<V>[] generations;
+  private volatile long nextRotation;
+
+  public ExpiringLongHashMap(long expiry, int maxSize) {
+    this(expiry, maxSize, DEFAULT_GENERATIONS);
+  }
+
+  /**
+   * @param expiry minimum time in milliseconds an entry is kept
+   * @param maxSize soft limit for the number of entries, 0 for no limit
+   * @param generations number of generations, at least 2
+   */
+  @SuppressWarnings("unchecked")
+  public ExpiringLongHashMap(long expiry, int maxSize, int generations) {
+    if (generations < 2) {
+      throw new IllegalArgumentException("At least two generations are required");
+    }
+    this.rotationInterval = Math.max(expiry / (generations - 1), 1);
+    this.generationMaxSize = maxSize > 0 ? Math.max(maxSize / (generations - 1), 1) : Integer.MAX_VALUE;
+    int expectedSize = maxSize > 0 ? generationMaxSize : 0;
+    ConcurrentLongHashMap<V>[] ring = new ConcurrentLongHashMap[generations];
+    for (int i = 0; i < generations; i++) {
+      ring[i] = new ConcurrentLongHashMap<V>(expectedSize);
+    }
+    this.generations = ring;
+    this.nextRotation = System.currentTimeMillis() + rotationInterval;
+  }
+
+  public V put(long key, V value) {
+    ConcurrentLongHashMap<V> current = generations[0];
+    if (System.currentTimeMillis() >= nextRotation || current.size() >= generationMaxSize) {
+      rotate();
+      current = generations[0];
+    }
+    return current.put(key, value);
+  }
+
+  public V get(long key) {
+    for (ConcurrentLongHashMap<V> generation : generations) {
+      V value = generation.get(key);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  public V remove(long key) {
+    for (ConcurrentLongHashMap<V> generation : generations) {
+      V value = generation.remove(key);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  public int size() {
+    int size = 0;
+    for (ConcurrentLongHashMap<V> generation : generations) {
+      size += generation.size();
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (ConcurrentLongHashMap<V> generation : generations) {
+      generation.clear();
+    }
+  }
+
+  private void rotate() {
+    // a thread missing the lock simply keeps using the current generation, nobody waits for the rotation
+    if (!rotationLock.tryLock()) {
+      return;
+    }
+    try {
+      long now = System.currentTimeMillis();
+      ConcurrentLongHashMap<V>[] ring = generations;
+      boolean expired = now >= nextRotation;
+      if (!expired && ring[0].size() < generationMaxSize) {
+        return;
+      }
+      // after a quiet period, several generations may have expired at once
+      int steps = expired ? (int) Math.min(ring.length, 1 + (now - nextRotation) / rotationInterval) : 1;
+      ConcurrentLongHashMap<V>[] rotated = ring.clone();
+      System.arraycopy(ring, 0, rotated, steps, ring.length - steps);
+      for (int i = 0; i < steps; i++) {
+        rotated[i] = new ConcurrentLongHashMap<V>(generationMaxSize == Integer.MAX_VALUE ? 0 : generationMaxSize);
+      }
+      generations = rotated;
+      nextRotation = now + rotationInterval;
+      if (!expired && ring[ring.length - 1].size() > 0) {
+        logger.warn("Map is full, dropped [{}] entries before their expiry time", ring[ring.length - 1].size());
+      }
+    }
+    finally {
+      rotationLock.unlock();
+    }
+  }
+}
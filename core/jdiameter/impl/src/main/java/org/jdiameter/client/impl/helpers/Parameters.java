@@ -129,6 +129,56 @@ public class Parameters extends Ordinal {
    */
   public static final Parameters PeerFSMThreadCount = new Parameters("PeerFSMThreadCount", Integer.class, 3);
 
+  /**
+   * Drive peer FSMs from a shared executor and timer wheel instead of dedicated threads per peer
+   */
+  public static final Parameters PeerFSMSharedExecutor = new Parameters("PeerFSMSharedExecutor", Boolean.class, false);
+
+  /**
+   * Tick duration, in milliseconds, of the timer wheel used for request and peer timeouts
+   */
+  public static final Parameters TimerWheelTick = new Parameters("TimerWheelTick", Long.class, 10L);
+
+  /**
+   * Number of selector threads shared by pooled TCP connections, 0 means one per available processor
+   */
+  public static final Parameters SelectorThreadCount = new Parameters("SelectorThreadCount", Integer.class, 0);
+
+  /**
+   * Use the native epoll transport for Netty connections when available
+   */
+  public static final Parameters UseNativeTransport = new Parameters("UseNativeTransport", Boolean.class, false);
+
+  /**
+   * TCP_NODELAY socket option of Netty connections
+   */
+  public static final Parameters TcpNoDelay = new Parameters("TcpNoDelay", Boolean.class, true);
+
+  /**
+   * SO_SNDBUF socket option of Netty connections, 0 keeps the system default
+   */
+  public static final Parameters SendBufferSize = new Parameters("SendBufferSize", Integer.class, 0);
+
+  /**
+   * SO_RCVBUF socket option of Netty connections, 0 keeps the system default
+   */
+  public static final Parameters ReceiveBufferSize = new Parameters("ReceiveBufferSize", Integer.class, 0);
+
+  /**
+   * Write buffer high water mark of Netty connections in bytes, 0 keeps the Netty default
+   */
+  public static final Parameters WriteBufferHighWaterMark = new Parameters("WriteBufferHighWaterMark", Integer.class, 0);
+
+  /**
+   * Write buffer low water mark of Netty connections in bytes, 0 keeps the Netty default
+   */
+  public static final Parameters WriteBufferLowWaterMark = new Parameters("WriteBufferLowWaterMark", Integer.class, 0);
+
+  /**
+   * Layout version used when writing replicated session data, 0 keeps the layout every node can read
+   */
+  public static final Parameters SessionDataWriteVersion = new Parameters("SessionDataWriteVersion", Integer.class, 0);
+
   /**
    * Orig_host avp set as URI into CER message
    */
@@ -42,43 +42,41 @@
 
 package org.jdiameter.client.impl.helpers;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This class provide uid range generator functionality
+ * This class provide uid range generator functionality. Each thread takes a block of uids from the
+ * shared counter with a single atomic add and hands them out on its own, so threads never wait for each
+ * other. Uids are unique but only increase within the block of a thread.
  *
  * @author erick.svenson@yahoo.com
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  */
-public class UIDGenerator {  // todo remove or redesign
+public class UIDGenerator {
 
-  private /*static*/ long value; // static causes repetitions
-  private static final Lock mutex = new ReentrantLock();
-  private static final ThreadLocal<Delta> ranges = new ThreadLocal<Delta>() {
+  public static final int DEFAULT_BLOCK_SIZE = 256;
+
+  private final AtomicLong value;
+  private final int blockSize;
+  // per instance, a block of one generator must never be used by another
+  private final ThreadLocal<Block> blocks = new ThreadLocal<Block>() {
     @Override
-    protected synchronized Delta initialValue() {
-      return new Delta();
+    protected Block initialValue() {
+      return new Block();
     }
   };
 
-  private static class Delta {
-    long start;
+  private static final class Block {
+    long next;
     long stop;
-
-    public long update(long value) {
-      start = value;
-      stop  = value + 1;
-      return stop;
-    }
   }
 
   /**
    * Create instance of class
    */
   public UIDGenerator() {
-    value = System.currentTimeMillis();
+    this(System.currentTimeMillis());
   }
 
   /**
@@ -87,7 +85,21 @@ public class UIDGenerator {  // todo remove or redesign
    * @param startValue start value of counter
    */
   public UIDGenerator(long startValue) {
-    value = startValue;
+    this(startValue, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Create instance of class with predefined start value and block size
+   *
+   * @param startValue start value of counter
+   * @param blockSize number of uids taken at once by a thread
+   */
+  public UIDGenerator(long startValue, int blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Block size must be positive");
+    }
+    this.value = new AtomicLong(startValue);
+    this.blockSize = blockSize;
   }
 
   /**
@@ -105,12 +117,11 @@ public class UIDGenerator {  // todo remove or redesign
    * @return uid as long
    */
   public long nextLong() {
-    Delta d = ranges.get();
-    if (d.start <= d.stop) {
-      mutex.lock();
-      value = d.update(value);
-      mutex.unlock();
+    Block b = blocks.get();
+    if (b.next == b.stop) {
+      b.next = value.getAndAdd(blockSize);
+      b.stop = b.next + blockSize;
     }
-    return d.start++;
+    return b.next++;
   }
 }
@@ -42,9 +42,13 @@
 
 package org.jdiameter.client.impl.parser;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.net.UnknownServiceException;
+import java.util.Arrays;
 import java.util.Date;
 
 import org.jdiameter.api.Avp;
@@ -72,7 +76,9 @@ class AvpImpl implements Avp {
   boolean isEncrypted = false;
   boolean isVendorSpecific = false;
 
-  byte[] rawData = new byte[0];
+  // When decoded from the wire the payload is a view over the whole message buffer, until the AVP
+  // needs a copy of its own. Replaced as a whole, so readers never see half of a change.
+  transient volatile Payload payload = Payload.EMPTY;
   AvpSet groupedData;
 
   private static final Logger logger = LoggerFactory.getLogger(AvpImpl.class);
@@ -85,7 +91,12 @@ class AvpImpl implements Avp {
     isVendorSpecific = (flags & 0x80) != 0;
     //
     vendorID = vnd;
-    rawData  = data;
+    setRawData(data);
+  }
+
+  AvpImpl(int code, int flags, long vnd, byte[] buffer, int offset, int length) {
+    this(code, flags, vnd, (byte[]) null);
+    payload = new Payload(buffer, offset, length);
   }
 
   AvpImpl(Avp avp) {
@@ -95,8 +106,8 @@ class AvpImpl implements Avp {
     isEncrypted = avp.isEncrypted();
     isVendorSpecific = avp.isVendorId();
     try {
-      rawData = avp.getRaw();
-      if (rawData == null || rawData.length == 0) {
+      setRawData(avp.getRaw());
+      if (payload.length == 0) {
         groupedData = avp.getGrouped();
       }
     }
@@ -135,20 +146,46 @@ class AvpImpl implements Avp {
     return vendorID;
   }
 
+  void setRawData(byte[] data) {
+    payload = data != null ? new Payload(data, 0, data.length) : Payload.EMPTY;
+  }
+
+  /**
+   * Returns payload as an array of its own, copying it out of the message buffer if this AVP
+   * is still a view over it.
+   */
+  byte[] materialize() {
+    Payload p = payload;
+    if (p.data != null && (p.offset != 0 || p.length != p.data.length)) {
+      p = new Payload(Arrays.copyOfRange(p.data, p.offset, p.offset + p.length), 0, p.length);
+      payload = p;
+    }
+    return p.data;
+  }
+
+  private Payload checkLength(int length) throws AvpDataException {
+    Payload p = payload;
+    if (p.length < length) {
+      throw new AvpDataException("Not enough data in AVP payload", this);
+    }
+    return p;
+  }
+
   @Override
   public byte[] getRaw() throws AvpDataException {
-    return rawData;
+    return materialize();
   }
 
   @Override
   public byte[] getOctetString() throws AvpDataException {
-    return rawData;
+    return materialize();
   }
 
   @Override
   public String getUTF8String() throws AvpDataException {
+    Payload p = payload;
     try {
-      return parser.bytesToUtf8String(rawData);
+      return parser.bytesToUtf8String(p.data, p.offset, p.length);
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -157,8 +194,9 @@ class AvpImpl implements Avp {
 
   @Override
   public int getInteger32() throws AvpDataException {
+    Payload p = checkLength(4);
     try {
-      return parser.bytesToInt(rawData);
+      return parser.bytesToInt(p.data, p.offset);
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -167,8 +205,9 @@ class AvpImpl implements Avp {
 
   @Override
   public long getInteger64() throws AvpDataException {
+    Payload p = checkLength(8);
     try {
-      return parser.bytesToLong(rawData);
+      return parser.bytesToLong(p.data, p.offset);
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -177,10 +216,9 @@ class AvpImpl implements Avp {
 
   @Override
   public long getUnsigned32() throws AvpDataException {
+    Payload p = checkLength(4);
     try {
-      byte[] u32ext = new byte[8];
-      System.arraycopy(rawData, 0, u32ext, 4, 4);
-      return parser.bytesToLong(u32ext);
+      return parser.bytesToInt(p.data, p.offset) & 0xFFFFFFFFL;
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -189,8 +227,9 @@ class AvpImpl implements Avp {
 
   @Override
   public long getUnsigned64() throws AvpDataException {
+    Payload p = checkLength(8);
     try {
-      return parser.bytesToLong(rawData);
+      return parser.bytesToLong(p.data, p.offset);
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -199,8 +238,9 @@ class AvpImpl implements Avp {
 
   @Override
   public float getFloat32() throws AvpDataException {
+    Payload p = checkLength(4);
     try {
-      return parser.bytesToFloat(rawData);
+      return Float.intBitsToFloat(parser.bytesToInt(p.data, p.offset));
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -209,8 +249,9 @@ class AvpImpl implements Avp {
 
   @Override
   public double getFloat64() throws AvpDataException {
+    Payload p = checkLength(8);
     try {
-      return parser.bytesToDouble(rawData);
+      return Double.longBitsToDouble(parser.bytesToLong(p.data, p.offset));
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -220,7 +261,7 @@ class AvpImpl implements Avp {
   @Override
   public InetAddress getAddress() throws AvpDataException {
     try {
-      return parser.bytesToAddress(rawData);
+      return parser.bytesToAddress(materialize());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -230,7 +271,7 @@ class AvpImpl implements Avp {
   @Override
   public Date getTime() throws AvpDataException {
     try {
-      return parser.bytesToDate(rawData);
+      return parser.bytesToDate(materialize());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -239,8 +280,9 @@ class AvpImpl implements Avp {
 
   @Override
   public String getDiameterIdentity() throws AvpDataException {
+    Payload p = payload;
     try {
-      return parser.bytesToOctetString(rawData);
+      return parser.bytesToOctetString(p.data, p.offset, p.length);
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -249,8 +291,9 @@ class AvpImpl implements Avp {
 
   @Override
   public URI getDiameterURI() throws AvpDataException {
+    Payload p = payload;
     try {
-      return new URI(parser.bytesToOctetString(rawData));
+      return new URI(parser.bytesToOctetString(p.data, p.offset, p.length));
     }
     catch (URISyntaxException e) {
       throw new AvpDataException(e, this);
@@ -263,11 +306,15 @@ class AvpImpl implements Avp {
   @Override
   public AvpSet getGrouped() throws AvpDataException {
     try {
-      if (groupedData == null) {
-        groupedData = parser.decodeAvpSet(rawData);
-        rawData = new byte[0];
+      AvpSet grouped = groupedData;
+      if (grouped == null) {
+        Payload p = payload;
+        grouped = parser.decodeAvpSet(p.data, p.offset, p.length);
+        // published by the volatile write of the payload
+        groupedData = grouped;
+        payload = Payload.EMPTY;
       }
-      return groupedData;
+      return grouped;
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -286,7 +333,36 @@ class AvpImpl implements Avp {
 
   @Override
   public byte[] getRawData() {
-    return (rawData == null || rawData.length == 0) ? parser.encodeAvpSet(groupedData) : rawData;
+    return payload.length == 0 ? parser.encodeAvpSet(groupedData) : materialize();
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    // do not drag the whole message buffer along with a decoded AVP
+    out.writeObject(materialize());
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    setRawData((byte[]) in.readObject());
+  }
+
+  /**
+   * Payload bytes, <code>data[offset, offset + length)</code>. Never changed once created.
+   */
+  static final class Payload {
+
+    static final Payload EMPTY = new Payload(new byte[0], 0, 0);
+
+    final byte[] data;
+    final int offset;
+    final int length;
+
+    Payload(byte[] data, int offset, int length) {
+      this.data = data;
+      this.offset = offset;
+      this.length = length;
+    }
   }
 
   // Caching toString.. Avp shouldn't be modified once created.
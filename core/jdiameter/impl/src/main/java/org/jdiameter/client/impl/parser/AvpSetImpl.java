@@ -51,11 +51,9 @@ package org.jdiameter.client.impl.parser;
  */
 
 import java.net.InetAddress;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.List;
 
 import org.jdiameter.api.Avp;
 import org.jdiameter.api.AvpSet;
@@ -77,7 +75,7 @@ class AvpSetImpl implements AvpSet {
   private static final long serialVersionUID = 1L;
   private static final ElementParser parser = new ElementParser();
 
-  List<Avp> avps = new ArrayList<Avp>();
+  final IndexedAvpList avps = new IndexedAvpList();
 
   AvpSetImpl() {
 
@@ -85,12 +83,8 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public Avp getAvp(int avpCode) {
-    for (Avp avp : this.avps) {
-      if (avp.getCode() == avpCode) {
-        return avp;
-      }
-    }
-    return null;
+    int i = this.avps.first(avpCode);
+    return i >= 0 ? this.avps.get(i) : null;
   }
 
   @Override
@@ -100,8 +94,9 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public Avp getAvp(int avpCode, long vendorId) {
-    for (Avp avp : this.avps) {
-      if (avp.getCode() == avpCode && avp.getVendorId() == vendorId) {
+    for (int i = this.avps.first(avpCode); i >= 0; i = this.avps.next(i)) {
+      Avp avp = this.avps.get(i);
+      if (avp.getVendorId() == vendorId) {
         return avp;
       }
     }
@@ -110,11 +105,9 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public AvpSet getAvps(int avpCode) {
-    AvpSet result = new AvpSetImpl();
-    for (Avp avp : this.avps) {
-      if (avp.getCode() == avpCode) {
-        result.addAvp(avp);
-      }
+    AvpSetImpl result = new AvpSetImpl();
+    for (int i = this.avps.first(avpCode); i >= 0; i = this.avps.next(i)) {
+      result.avps.add(this.avps.get(i));
     }
     return result;
   }
@@ -123,10 +116,11 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public AvpSet getAvps(int avpCode, long vendorId) {
-    AvpSet result = new AvpSetImpl();
-    for (Avp avp : this.avps) {
-      if (avp.getCode() == avpCode && avp.getVendorId() == vendorId) {
-        result.addAvp(avp);
+    AvpSetImpl result = new AvpSetImpl();
+    for (int i = this.avps.first(avpCode); i >= 0; i = this.avps.next(i)) {
+      Avp avp = this.avps.get(i);
+      if (avp.getVendorId() == vendorId) {
+        result.avps.add(avp);
       }
     }
     return result;
@@ -139,21 +133,8 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public AvpSet removeAvp(int avpCode, long vendorId) {
-    AvpSet result = new AvpSetImpl();
-    //  for (Avp avp : this.avps) {
-    //    if (avp.getCode() == avpCode) {
-    //      result.addAvp(avp);
-    //      this.avps.remove(avp);
-    //    }
-    //  }
-    Iterator<Avp> it = this.avps.iterator();
-    while (it.hasNext()) {
-      Avp avp = it.next();
-      if (avp.getCode() == avpCode && avp.getVendorId() == vendorId) {
-        result.addAvp(avp);
-        it.remove();
-      }
-    }
+    AvpSetImpl result = new AvpSetImpl();
+    this.avps.remove(avpCode, vendorId, result.avps);
     return result;
   }
 
@@ -42,14 +42,11 @@
 
 package org.jdiameter.client.impl.parser;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.Date;
 
 import org.jdiameter.api.Avp;
@@ -83,25 +80,33 @@ public class ElementParser implements IElementParser {
 
   @Override
   public int bytesToInt(byte[] rawData) throws AvpDataException {
+    return bytesToInt(rawData, 0);
+  }
+
+  int bytesToInt(byte[] rawData, int offset) {
     // http://stackoverflow.com/a/9581858
     return
-        (rawData[0] & 0xFF) << 24 |
-        (rawData[1] & 0xFF) << 16 |
-        (rawData[2] & 0xFF) << 8 |
-        (rawData[3] & 0xFF) << 0;
+        (rawData[offset] & 0xFF) << 24 |
+        (rawData[offset + 1] & 0xFF) << 16 |
+        (rawData[offset + 2] & 0xFF) << 8 |
+        (rawData[offset + 3] & 0xFF) << 0;
   }
 
   @Override
   public long bytesToLong(byte[] rawData) throws AvpDataException {
+    return bytesToLong(rawData, 0);
+  }
+
+  long bytesToLong(byte[] rawData, int offset) {
     // http://stackoverflow.com/a/1026804
-    return (rawData[0] & 0xFFL) << 56
-        | (rawData[1] & 0xFFL) << 48
-        | (rawData[2] & 0xFFL) << 40
-        | (rawData[3] & 0xFFL) << 32
-        | (rawData[4] & 0xFFL) << 24
-        | (rawData[5] & 0xFFL) << 16
-        | (rawData[6] & 0xFFL) << 8
-        | (rawData[7] & 0xFFL) << 0;
+    return (rawData[offset] & 0xFFL) << 56
+        | (rawData[offset + 1] & 0xFFL) << 48
+        | (rawData[offset + 2] & 0xFFL) << 40
+        | (rawData[offset + 3] & 0xFFL) << 32
+        | (rawData[offset + 4] & 0xFFL) << 24
+        | (rawData[offset + 5] & 0xFFL) << 16
+        | (rawData[offset + 6] & 0xFFL) << 8
+        | (rawData[offset + 7] & 0xFFL) << 0;
   }
 
   public long bytesToUnsignedInt32(byte[] rawData) throws AvpDataException {
@@ -123,8 +128,12 @@ public class ElementParser implements IElementParser {
 
   @Override
   public String bytesToOctetString(byte[] rawData) throws AvpDataException {
+    return bytesToOctetString(rawData, 0, rawData.length);
+  }
+
+  String bytesToOctetString(byte[] rawData, int offset, int length) throws AvpDataException {
     try {
-      return new String(rawData, "iso-8859-1");
+      return new String(rawData, offset, length, "iso-8859-1");
     }
     catch (UnsupportedEncodingException e) {
       throw new AvpDataException("Invalid data type", e);
@@ -133,8 +142,12 @@ public class ElementParser implements IElementParser {
 
   @Override
   public String bytesToUtf8String(byte[] rawData) throws AvpDataException {
+    return bytesToUtf8String(rawData, 0, rawData.length);
+  }
+
+  String bytesToUtf8String(byte[] rawData, int offset, int length) throws AvpDataException {
     try {
-      return new String(rawData, "utf8");
+      return new String(rawData, offset, length, "utf8");
     }
     catch (UnsupportedEncodingException e) {
       throw new AvpDataException("Invalid data type", e);
@@ -273,108 +286,106 @@ public class ElementParser implements IElementParser {
    * @throws AvpDataException
    */
   public AvpSetImpl decodeAvpSet(byte[] buffer, int shift) throws IOException, AvpDataException {
-    AvpSetImpl avps = new AvpSetImpl();
-    int tmp, counter = shift;
-    DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer, shift, buffer.length /* - shift ? */));
+    return this.decodeAvpSet(buffer, shift, buffer.length - shift);
+  }
 
-    while (counter < buffer.length) {
-      int code = in.readInt();
-      tmp = in.readInt();
-      int flags = (tmp >> 24) & 0xFF;
-      int length  = tmp & 0xFFFFFF;
-      if (length < 0 || counter + length > buffer.length) {
+  /**
+   * Decodes AVPs stored in given region of buffer. AVPs do not copy their payload, they keep
+   * a view (offset and length) over buffer and materialize their own copy only when needed,
+   * so buffer content must not be changed afterwards.
+   *
+   * @param buffer
+   * @param offset - position of first AVP in buffer
+   * @param length - number of bytes occupied by AVPs, including padding
+   * @return
+   * @throws IOException
+   * @throws AvpDataException
+   */
+  public AvpSetImpl decodeAvpSet(byte[] buffer, int offset, int length) throws IOException, AvpDataException {
+    AvpSetImpl avps = new AvpSetImpl();
+    int end = offset + length;
+    if (offset < 0 || end > buffer.length) {
+      throw new AvpDataException("Not enough data in buffer!");
+    }
+    int counter = offset;
+    while (counter < end) {
+      if (end - counter < 8) {
         throw new AvpDataException("Not enough data in buffer!");
       }
-      long vendor = 0;
-      if ((flags & 0x80) != 0) {
-        vendor = in.readInt();
-      }
+      int code = bytesToInt(buffer, counter);
+      int tmp = bytesToInt(buffer, counter + 4);
+      int flags = (tmp >> 24) & 0xFF;
+      int avpLength  = tmp & 0xFFFFFF;
       // Determine body L = length - 4(code) -1(flags) -3(length) [-4(vendor)]
-      byte[] rawData = new byte[length - (8 + (vendor == 0 ? 0 : 4))];
-      in.read(rawData);
-      // skip remaining.
-      // TODO: Do we need to padd everything? Or on send stack should properly fill byte[] ... ?
-      if (length % 4 != 0) {
-        for (int i; length % 4 != 0; length += i) {
-          i = (int) in.skip((4 - length % 4));
-        }
+      int headerLength = (flags & 0x80) != 0 ? 12 : 8;
+      if (avpLength < headerLength || counter + avpLength > end) {
+        throw new AvpDataException("Not enough data in buffer!");
       }
-      AvpImpl avp = new AvpImpl(code, (short) flags, (int) vendor, rawData);
+      long vendor = headerLength == 12 ? bytesToInt(buffer, counter + 8) : 0;
+      AvpImpl avp = new AvpImpl(code, (short) flags, (int) vendor, buffer, counter + headerLength, avpLength - headerLength);
       avps.addAvp(avp);
-      counter += length;
+      // skip remaining padding
+      counter += (avpLength + 3) & ~3;
     }
     return avps;
   }
 
   public byte[] encodeAvpSet(AvpSet avps) {
-    //ByteArrayOutputStream out = new ByteArrayOutputStream();
-    DynamicByteArray dba = new DynamicByteArray(0);
+    byte[] data = new byte[getAvpSetLength(avps)];
     try {
-      //DataOutputStream data = new DataOutputStream(out);
-      for (Avp a : avps) {
-        if (a instanceof AvpImpl) {
-          AvpImpl aImpl = (AvpImpl) a;
-          if (aImpl.rawData.length == 0 && aImpl.groupedData != null) {
-            aImpl.rawData = encodeAvpSet(a.getGrouped());
-          }
-          //data.write(newEncodeAvp(aImpl));
-          dba.add(encodeAvp(aImpl));
-        }
-      }
+      encodeAvpSet(avps, ByteBuffer.wrap(data));
     }
     catch (Exception e) {
-      e.printStackTrace();
       logger.debug("Error during encode avps", e);
     }
-    return dba.getResult();
+    return data;
   }
 
-  protected class DynamicByteArray {
-
-    private byte[] array;
-    private int size;
-
-    public DynamicByteArray(int cap) {
-      array = new byte[cap > 0 ? cap : 256];
-      size = 0;
-    }
-
-    public int get(int pos) {
-      if (pos >= size) {
-        throw new ArrayIndexOutOfBoundsException();
+  /**
+   * Computes number of bytes needed to encode given AVPs, including headers and padding
+   * of grouped AVPs children.
+   *
+   * @param avps
+   * @return
+   */
+  public int getAvpSetLength(AvpSet avps) {
+    int length = 0;
+    for (Avp a : avps) {
+      if (a instanceof AvpImpl) {
+        length += getAvpLength((AvpImpl) a);
       }
-      return array[pos];
     }
+    return length;
+  }
 
-    public void add(byte[] bytes) {
-      if (size + bytes.length > array.length) {
-        byte[] newarray = new byte[array.length + bytes.length * 2];
-        System.arraycopy(array, 0, newarray, 0, size);
-        array = newarray;
-      }
-      System.arraycopy(bytes, 0, array, size, bytes.length);
-      size += bytes.length;
+  int getAvpLength(AvpImpl avp) {
+    AvpImpl.Payload payload = avp.payload;
+    if (payload.length == 0 && avp.groupedData != null) {
+      return getAvpHeaderLength(avp) + getAvpSetLength(avp.groupedData);
     }
+    return payload.data != null ? (getAvpHeaderLength(avp) + payload.length + 3) & ~3 : 0;
+  }
 
-    public byte[] getResult() {
-      return Arrays.copyOfRange(array, 0, size);
+  /**
+   * Encodes given AVPs into buffer, starting at its current position. Buffer must have at least
+   * {@link #getAvpSetLength(AvpSet)} bytes remaining.
+   *
+   * @param avps
+   * @param buffer
+   */
+  public void encodeAvpSet(AvpSet avps, ByteBuffer buffer) {
+    for (Avp a : avps) {
+      if (a instanceof AvpImpl) {
+        encodeAvp((AvpImpl) a, buffer);
+      }
     }
   }
 
   public byte[] encodeAvp(AvpImpl avp) {
     try {
-      int payloadSize = avp.getRaw().length;
-      boolean hasVendorId = avp.getVendorId() != 0;
-      int origLength = payloadSize + 8 + (hasVendorId ? 4 : 0);
-      int tmp = payloadSize % 4;
-      int paddingSize = tmp > 0 ? (4 - tmp) : 0;
-
-      byte[] bCode = this.int32ToBytes(avp.getCode());
-      int flags = (byte) ((hasVendorId ? 0x80 : 0) |
-          (avp.isMandatory() ? 0x40 : 0) | (avp.isEncrypted() ? 0x20 : 0));
-      byte[] bFlags = this.int32ToBytes(((flags << 24) & 0xFF000000) + origLength);
-      byte[] bVendor = hasVendorId ? int32ToBytes((int) avp.getVendorId()) : new byte[0];
-      return concat(origLength + paddingSize, bCode, bFlags, bVendor, avp.getRaw());
+      byte[] data = new byte[getAvpLength(avp)];
+      encodeAvp(avp, ByteBuffer.wrap(data));
+      return data;
     }
     catch (Exception e) {
       logger.debug("Error during encode avp", e);
@@ -382,19 +393,43 @@ public class ElementParser implements IElementParser {
     }
   }
 
-  private byte[] concat(int length, byte[]... arrays) {
-    if (length == 0) {
-      for (byte[] array : arrays) {
-        length += array.length;
-      }
+  /**
+   * Encodes AVP into buffer, starting at its current position. Grouped AVP length is only known
+   * once its children are written, so it gets patched into the header afterwards.
+   *
+   * @param avp
+   * @param buffer
+   */
+  void encodeAvp(AvpImpl avp, ByteBuffer buffer) {
+    AvpImpl.Payload payload = avp.payload;
+    boolean isGrouped = payload.length == 0 && avp.groupedData != null;
+    if (!isGrouped && payload.data == null) {
+      return;
+    }
+    boolean hasVendorId = avp.getVendorId() != 0;
+    int flags = (byte) ((hasVendorId ? 0x80 : 0) |
+        (avp.isMandatory() ? 0x40 : 0) | (avp.isEncrypted() ? 0x20 : 0));
+    int start = buffer.position();
+    buffer.putInt(avp.getCode());
+    buffer.putInt(0);
+    if (hasVendorId) {
+      buffer.putInt((int) avp.getVendorId());
+    }
+    if (isGrouped) {
+      encodeAvpSet(avp.groupedData, buffer);
     }
-    byte[] result = new byte[length];
-    int pos = 0;
-    for (byte[] array : arrays) {
-      System.arraycopy(array, 0, result, pos, array.length);
-      pos += array.length;
+    else {
+      buffer.put(payload.data, payload.offset, payload.length);
     }
-    return result;
+    int origLength = buffer.position() - start;
+    buffer.putInt(start + 4, ((flags << 24) & 0xFF000000) + origLength);
+    for (int i = origLength; i % 4 != 0; i++) {
+      buffer.put((byte) 0);
+    }
+  }
+
+  private int getAvpHeaderLength(AvpImpl avp) {
+    return avp.getVendorId() != 0 ? 12 : 8;
   }
 
   protected ByteBuffer prepareBuffer(byte [] bytes, int len) throws AvpDataException  {
@@ -0,0 +1,221 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jdiameter.api.Avp;
+
+/**
+ * List of AVPs kept in insertion (wire) order, which also maintains an index of AVP positions
+ * by AVP code. Index is built lazily on first lookup, kept up to date when AVPs are appended and
+ * dropped on any other structural change. Small lists are simply scanned.
+ *
+ * Traversal of AVPs with a given code is done with {@link #first(int)} and {@link #next(int)}:
+ * <pre>
+ * for (int i = avps.first(code); i &gt;= 0; i = avps.next(i)) {
+ *   ...
+ * }
+ * </pre>
+ *
+ * Index may be built by a reader, so it is published through a volatile field and its tables
+ * are allocated before it becomes visible. As with any list, writers need external ordering.
+ */
+class IndexedAvpList extends ArrayList<Avp> {
+
+  private static final long serialVersionUID = 1L;
+
+  // below this size a linear scan is cheaper than building the index
+  private static final int INDEX_THRESHOLD = 8;
+
+  private transient volatile Index index;
+
+  IndexedAvpList() {
+    super();
+  }
+
+  @Override
+  public boolean add(Avp avp) {
+    Index current = validIndex();
+    super.add(avp);
+    if (current != null) {
+      if (current.append(size() - 1, avp.getCode())) {
+        current.modCount = modCount;
+      }
+      else {
+        index = null;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return number of structural modifications made to this list so far
+   */
+  int getModCount() {
+    return modCount;
+  }
+
+  /**
+   * @param code AVP code
+   * @return position of first AVP with given code or -1 if there is none
+   */
+  int first(int code) {
+    Index current = lookupIndex();
+    if (current != null) {
+      return current.first(code);
+    }
+    for (int i = 0, n = size(); i < n; i++) {
+      if (get(i).getCode() == code) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param position position of an AVP, as returned by {@link #first(int)} or this method
+   * @return position of next AVP with the same code or -1 if there is none
+   */
+  int next(int position) {
+    Index current = validIndex();
+    if (current != null) {
+      return current.next[position];
+    }
+    int code = get(position).getCode();
+    for (int i = position + 1, n = size(); i < n; i++) {
+      if (get(i).getCode() == code) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Removes all AVPs with given code and vendor in a single compacting pass.
+   *
+   * @param code AVP code
+   * @param vendorId AVP vendor id
+   * @param removed list to which removed AVPs are added, in order
+   */
+  void remove(int code, long vendorId, List<Avp> removed) {
+    int start = first(code);
+    if (start < 0) {
+      return;
+    }
+    int write = start;
+    for (int read = start, n = size(); read < n; read++) {
+      Avp avp = get(read);
+      if (avp.getCode() == code && avp.getVendorId() == vendorId) {
+        removed.add(avp);
+      }
+      else {
+        set(write++, avp);
+      }
+    }
+    if (write < size()) {
+      removeRange(write, size());
+    }
+  }
+
+  private Index validIndex() {
+    Index current = index;
+    return current != null && current.modCount == modCount ? current : null;
+  }
+
+  private Index lookupIndex() {
+    Index current = validIndex();
+    if (current == null && size() >= INDEX_THRESHOLD) {
+      current = new Index(this, modCount);
+      index = current;
+    }
+    return current;
+  }
+
+  /**
+   * Open addressing table of AVP codes, each slot pointing at the first and last position of
+   * AVPs with that code, which are chained through next array.
+   */
+  private static final class Index {
+
+    int modCount;
+
+    private final int mask;
+    private final int[] codes;
+    private final int[] heads;
+    private final int[] tails;
+    private int used;
+    int[] next;
+
+    Index(List<Avp> avps, int modCount) {
+      this.modCount = modCount;
+      int size = avps.size();
+      int capacity = Integer.highestOneBit(Math.max(size, 4) * 2 - 1) << 1;
+      mask = capacity - 1;
+      codes = new int[capacity];
+      heads = new int[capacity];
+      tails = new int[capacity];
+      Arrays.fill(heads, -1);
+      next = new int[Math.max(size * 2, INDEX_THRESHOLD)];
+      for (int i = 0; i < size; i++) {
+        append(i, avps.get(i).getCode());
+      }
+    }
+
+    int first(int code) {
+      return heads[slot(code)];
+    }
+
+    /**
+     * @return false when index is full and has to be rebuilt
+     */
+    boolean append(int position, int code) {
+      int slot = slot(code);
+      if (heads[slot] < 0) {
+        if ((used + 1) * 2 > codes.length) {
+          return false;
+        }
+        used++;
+        codes[slot] = code;
+        heads[slot] = position;
+      }
+      else {
+        next[tails[slot]] = position;
+      }
+      tails[slot] = position;
+      if (position >= next.length) {
+        next = Arrays.copyOf(next, next.length * 2);
+      }
+      next[position] = -1;
+      return true;
+    }
+
+    private int slot(int code) {
+      int hash = code * 0x9E3779B9;
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      while (heads[slot] >= 0 && codes[slot] != code) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+  }
+}
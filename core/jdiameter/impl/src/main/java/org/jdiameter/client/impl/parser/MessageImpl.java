@@ -44,6 +44,8 @@ package org.jdiameter.client.impl.parser;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -62,6 +64,9 @@ import org.jdiameter.client.impl.router.RouterImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+
 /**
  * Represents a Diameter message.
  *
@@ -91,10 +96,12 @@ public class MessageImpl implements IMessage {
   transient IPeer peer;
   transient TimerTask timerTask;
   transient IEventListener listener;
+  transient long sendTime;
 
-  // Cached result for getApplicationIdAvps() method. It is called extensively and takes some time.
-  // Potential place for dirt, but Application IDs don't change during message life time.
-  transient List<ApplicationId> applicationIds;
+  // Decoded values of well-known AVPs, looked up over and over by peer, router and sessions.
+  // Dropped whenever AVPs are added to or removed from the message. Filled in by getters, possibly
+  // from several threads, so the cache and each of its entries are volatile.
+  transient volatile HeaderCache headerCache;
 
   /**
    * Create empty message
@@ -272,14 +279,69 @@ public class MessageImpl implements IMessage {
 
   @Override
   public String getSessionId() {
-    try {
-      Avp avpSessionId = avpSet.getAvp(Avp.SESSION_ID);
-      return avpSessionId != null ? avpSessionId.getUTF8String() : null;
+    HeaderCache cache = getHeaderCache();
+    if (cache.sessionId == HeaderCache.UNRESOLVED) {
+      try {
+        Avp avpSessionId = avpSet.getAvp(Avp.SESSION_ID);
+        cache.sessionId = avpSessionId != null ? avpSessionId.getUTF8String() : null;
+      }
+      catch (AvpDataException ade) {
+        logger.error("Failed to fetch Session-Id", ade);
+        return null;
+      }
+    }
+    return cache.sessionId;
+  }
+
+  @Override
+  public String getOriginHost() throws AvpDataException {
+    HeaderCache cache = getHeaderCache();
+    if (cache.originHost == HeaderCache.UNRESOLVED) {
+      cache.originHost = getDiameterIdentity(Avp.ORIGIN_HOST);
+    }
+    return cache.originHost;
+  }
+
+  @Override
+  public String getOriginRealm() throws AvpDataException {
+    HeaderCache cache = getHeaderCache();
+    if (cache.originRealm == HeaderCache.UNRESOLVED) {
+      cache.originRealm = getDiameterIdentity(Avp.ORIGIN_REALM);
     }
-    catch (AvpDataException ade) {
-      logger.error("Failed to fetch Session-Id", ade);
-      return null;
+    return cache.originRealm;
+  }
+
+  @Override
+  public String getDestinationHost() throws AvpDataException {
+    HeaderCache cache = getHeaderCache();
+    if (cache.destinationHost == HeaderCache.UNRESOLVED) {
+      cache.destinationHost = getDiameterIdentity(Avp.DESTINATION_HOST);
     }
+    return cache.destinationHost;
+  }
+
+  @Override
+  public String getDestinationRealm() throws AvpDataException {
+    HeaderCache cache = getHeaderCache();
+    if (cache.destinationRealm == HeaderCache.UNRESOLVED) {
+      cache.destinationRealm = getDiameterIdentity(Avp.DESTINATION_REALM);
+    }
+    return cache.destinationRealm;
+  }
+
+  private String getDiameterIdentity(int avpCode) throws AvpDataException {
+    Avp avp = avpSet.getAvp(avpCode);
+    return avp != null ? avp.getDiameterIdentity() : null;
+  }
+
+  private HeaderCache getHeaderCache() {
+    int modCount = avpSet.avps.getModCount();
+    HeaderCache cache = this.headerCache;
+    if (cache == null || cache.modCount != modCount) {
+      cache = new HeaderCache(modCount);
+      this.headerCache = cache;
+    }
+    return cache;
   }
 
   @Override
@@ -324,13 +386,24 @@ public class MessageImpl implements IMessage {
 
   @Override
   public ApplicationId getSingleApplicationId() {
-    return getSingleApplicationId(this.applicationId);
+    HeaderCache cache = getHeaderCache();
+    long applicationId = this.applicationId;
+    ResolvedApplicationId resolved = cache.singleApplicationId;
+    if (resolved == null || resolved.applicationId != applicationId) {
+      resolved = new ResolvedApplicationId(applicationId, getSingleApplicationId(applicationId));
+      cache.singleApplicationId = resolved;
+    }
+    return resolved.value;
   }
 
   @Override
   public List<ApplicationId> getApplicationIdAvps() {
-    if (this.applicationIds != null) {
-      return this.applicationIds;
+    // Grouped Vendor-Specific-Application-Id content changes go unnoticed, but Application IDs
+    // don't change during message life time.
+    HeaderCache cache = getHeaderCache();
+    List<ApplicationId> cached = cache.applicationIds;
+    if (cached != null) {
+      return cached;
     }
 
     List<ApplicationId> rc = new ArrayList<ApplicationId>();
@@ -370,8 +443,8 @@ public class MessageImpl implements IMessage {
       return new ArrayList<ApplicationId>();
     }
 
-    this.applicationIds = rc;
-    return this.applicationIds;
+    cache.applicationIds = rc;
+    return rc;
   }
 
   @Override
@@ -445,7 +518,12 @@ public class MessageImpl implements IMessage {
 
   @Override
   public Avp getResultCode() {
-    return getAvps().getAvp(Avp.RESULT_CODE);
+    HeaderCache cache = getHeaderCache();
+    if (!cache.resultCodeResolved) {
+      cache.resultCode = avpSet.getAvp(Avp.RESULT_CODE);
+      cache.resultCodeResolved = true;
+    }
+    return cache.resultCode;
   }
 
   @Override
@@ -528,6 +606,13 @@ public class MessageImpl implements IMessage {
     timerTask.setTimerHandler(scheduledFacility, scheduledFacility.schedule(timerTask, timeOut, timeUnit));
   }
 
+  @Override
+  public void createTimer(Timer timer, Executor executor, long timeOut, TimeUnit timeUnit) {
+    // the executor is in place before the wheel can fire the task
+    timerTask = new TimerTask(this, executor);
+    timerTask.timeout = timer.newTimeout(timerTask, timeOut, timeUnit);
+  }
+
   @Override
   public void runTimer() {
     if (timerTask != null && !timerTask.isDone() && !timerTask.isCancelled()) {
@@ -540,6 +625,16 @@ public class MessageImpl implements IMessage {
     return timerTask != null && timerTask.isDone() && !timerTask.isCancelled();
   }
 
+  @Override
+  public void setSendTime(long nanos) {
+    this.sendTime = nanos;
+  }
+
+  @Override
+  public long getSendTime() {
+    return sendTime;
+  }
+
   @Override
   public void setListener(IEventListener listener) {
     this.listener = listener;
@@ -613,14 +708,61 @@ public class MessageImpl implements IMessage {
     }
   }
 
-  protected static class TimerTask implements Runnable {
+  private static final class HeaderCache {
+
+    // marks values not looked up yet, as null stands for absent AVP
+    static final String UNRESOLVED = new String();
+
+    final int modCount;
+
+    volatile String sessionId = UNRESOLVED;
+    volatile String originHost = UNRESOLVED;
+    volatile String originRealm = UNRESOLVED;
+    volatile String destinationHost = UNRESOLVED;
+    volatile String destinationRealm = UNRESOLVED;
+
+    // resultCode is written before resultCodeResolved and read after it
+    volatile Avp resultCode;
+    volatile boolean resultCodeResolved;
+
+    volatile List<ApplicationId> applicationIds;
+    volatile ResolvedApplicationId singleApplicationId;
+
+    HeaderCache(int modCount) {
+      this.modCount = modCount;
+    }
+  }
+
+  private static final class ResolvedApplicationId {
+
+    final long applicationId;
+    final ApplicationId value;
+
+    ResolvedApplicationId(long applicationId, ApplicationId value) {
+      this.applicationId = applicationId;
+      this.value = value;
+    }
+  }
+
+  protected static class TimerTask implements Runnable, io.netty.util.TimerTask {
 
     ScheduledFuture timerHandler;
     MessageImpl message;
     ScheduledExecutorService scheduledFacility;
+    // set instead of timerHandler when the timeout is tracked by a timer wheel
+    volatile Timeout timeout;
+    final Executor executor;
 
     public TimerTask(MessageImpl message) {
+      this(message, null);
+    }
+
+    /**
+     * @param executor runs the timeout processing when the task is fired by a timer wheel
+     */
+    public TimerTask(MessageImpl message, Executor executor) {
       this.message = message;
+      this.executor = executor;
     }
 
     public void setTimerHandler(ScheduledExecutorService scheduledFacility, ScheduledFuture timerHandler) {
@@ -628,6 +770,19 @@ public class MessageImpl implements IMessage {
       this.timerHandler = timerHandler;
     }
 
+    @Override
+    public void run(Timeout timeout) {
+      // called by the wheel thread, which must not run listeners
+      try {
+        executor.execute(this);
+      }
+      catch (RejectedExecutionException e) {
+        // the request would otherwise never time out and stay with its peer
+        logger.warn("Executor rejected timeout processing of a request, processing it on the timer thread");
+        run();
+      }
+    }
+
     @Override
     public void run() {
       try {
@@ -650,6 +805,10 @@ public class MessageImpl implements IMessage {
     }
 
     public void cancel() {
+      if (timeout != null) {
+        // O(1), the wheel drops cancelled timeouts on its next tick
+        timeout.cancel();
+      }
       if (timerHandler != null) {
         timerHandler.cancel(true);
         if (scheduledFacility instanceof ThreadPoolExecutor && timerHandler instanceof Runnable) {
@@ -660,10 +819,16 @@ public class MessageImpl implements IMessage {
     }
 
     public boolean isDone() {
+      if (timeout != null) {
+        return timeout.isExpired() || timeout.isCancelled();
+      }
       return timerHandler != null && timerHandler.isDone();
     }
 
     public boolean isCancelled() {
+      if (timeout != null) {
+        return timeout.isCancelled();
+      }
       return timerHandler == null || timerHandler.isCancelled();
     }
   }
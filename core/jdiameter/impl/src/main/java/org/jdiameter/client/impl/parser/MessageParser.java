@@ -47,10 +47,6 @@ import static org.jdiameter.api.Avp.AUTH_APPLICATION_ID;
 import static org.jdiameter.api.Avp.SESSION_ID;
 import static org.jdiameter.api.Avp.VENDOR_SPECIFIC_APPLICATION_ID;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
@@ -88,32 +84,35 @@ public class MessageParser extends ElementParser implements IMessageParser {
 
   @Override
   public IMessage createMessage(byte[] message) throws AvpDataException {
+    return createMessage(message, 0, message.length);
+  }
+
+  @Override
+  public IMessage createMessage(byte[] buffer, int offset, int length) throws AvpDataException {
     // Read header
     try {
-      long tmp;
-      DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
-      tmp = in.readInt();
-      short version = (short) (tmp >> 24);
+      if (length < 20 || offset < 0 || offset + length > buffer.length) {
+        throw new Exception("Not enough data for message header: " + length);
+      }
+      int tmp = bytesToInt(buffer, offset);
+      short version = (short) ((tmp >> 24) & 0xFF);
       if (version != 1) {
         throw new Exception("Illegal value of version " + version);
       }
 
-      if (message.length != (tmp & 0x00FFFFFF)) {
+      if (length != (tmp & 0x00FFFFFF)) {
         //throw new ParseException("Wrong length of data: " + (tmp & 0x00FFFFFF));
         throw new Exception("Wrong length of data: " + (tmp & 0x00FFFFFF));
       }
 
-      tmp = in.readInt();
+      tmp = bytesToInt(buffer, offset + 4);
       short flags        = (short) ((tmp >> 24) & 0xFF);
-      int commandCode    = (int) (tmp & 0xFFFFFF);
-      long applicationId = ((long) in.readInt() << 32) >>> 32;
-      long hopByHopId    = ((long) in.readInt() << 32) >>> 32;
-      long endToEndId    = ((long) in.readInt() << 32) >>> 32;
-      // Read body
-      // byte[] body = new byte[message.length - 20];
-      // System.arraycopy(message, 20, body, 0, body.length);
-      // AvpSetImpl avpSet = decodeAvpSet(body);
-      AvpSetImpl avpSet = decodeAvpSet(message, 20);
+      int commandCode    = tmp & 0xFFFFFF;
+      long applicationId = bytesToInt(buffer, offset + 8) & 0xFFFFFFFFL;
+      long hopByHopId    = bytesToInt(buffer, offset + 12) & 0xFFFFFFFFL;
+      long endToEndId    = bytesToInt(buffer, offset + 16) & 0xFFFFFFFFL;
+      // Read body, AVPs keep referencing the buffer
+      AvpSetImpl avpSet = decodeAvpSet(buffer, offset + 20, length - 20);
 
       return new MessageImpl(commandCode, applicationId, flags, hopByHopId, endToEndId, avpSet);
     }
@@ -124,7 +123,11 @@ public class MessageParser extends ElementParser implements IMessageParser {
 
   @Override
   public IMessage createMessage(ByteBuffer data) throws AvpDataException {
-    byte[] message = data.array();
+    if (data.hasArray()) {
+      return createMessage(data.array(), data.arrayOffset() + data.position(), data.remaining());
+    }
+    byte[] message = new byte[data.remaining()];
+    data.duplicate().get(message);
     return createMessage(message);
   }
 
@@ -252,44 +255,40 @@ public class MessageParser extends ElementParser implements IMessageParser {
 
   @Override
   public ByteBuffer encodeMessage(IMessage message) throws ParseException {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(getMessageLength(message));
+    encodeMessage(message, buffer);
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public int getMessageLength(IMessage message) {
+    return 20 + getAvpSetLength(message.getAvps());
+  }
+
+  @Override
+  public void encodeMessage(IMessage message, ByteBuffer buffer) throws ParseException {
     try {
-      byte[] rawData = encodeAvpSet(message.getAvps());
-      DataOutputStream data = new DataOutputStream(out);
-      // Wasting processor time, are we ?
-      // int tmp = (1 << 24) & 0xFF000000;
-      int tmp = (1 << 24);
-      tmp += 20 + rawData.length;
-      data.writeInt(tmp);
+      int start = buffer.position();
+      // Length is written once AVPs are in place
+      buffer.putInt(0);
       // Again, unneeded operation ?
       // tmp = (message.getFlags() << 24) & 0xFF000000;
-      tmp = (message.getFlags() << 24);
+      int tmp = (message.getFlags() << 24);
       tmp += message.getCommandCode();
-      data.writeInt(tmp);
-      data.write(toBytes(message.getHeaderApplicationId()));
-      data.write(toBytes(message.getHopByHopIdentifier()));
-      data.write(toBytes(message.getEndToEndIdentifier()));
-      data.write(rawData);
+      buffer.putInt(tmp);
+      buffer.putInt((int) message.getHeaderApplicationId());
+      buffer.putInt((int) message.getHopByHopIdentifier());
+      buffer.putInt((int) message.getEndToEndIdentifier());
+      encodeAvpSet(message.getAvps(), buffer);
+      // Wasting processor time, are we ?
+      // int tmp = (1 << 24) & 0xFF000000;
+      buffer.putInt(start, (1 << 24) + buffer.position() - start);
     }
     catch (Exception e) {
       //logger.debug("Error during encode message", e);
       throw new ParseException("Failed to encode message.", e);
     }
-    try {
-      return prepareBuffer(out.toByteArray(), out.size());
-    }
-    catch (AvpDataException ade) {
-      throw new ParseException(ade);
-    }
-  }
-
-  private byte[] toBytes(long value) {
-    byte[] data = new byte[4];
-    data[0] = (byte) ((value >> 24) & 0xFF);
-    data[1] = (byte) ((value >> 16) & 0xFF);
-    data[2] = (byte) ((value >> 8) & 0xFF);
-    data[3] = (byte) ((value) & 0xFF);
-    return data;
   }
 
   @Override
@@ -46,6 +46,7 @@ import static org.jdiameter.client.impl.helpers.Parameters.AcctApplId;
 import static org.jdiameter.client.impl.helpers.Parameters.Agent;
 import static org.jdiameter.client.impl.helpers.Parameters.ApplicationId;
 import static org.jdiameter.client.impl.helpers.Parameters.AuthApplId;
+import static org.jdiameter.client.impl.helpers.Parameters.MessageTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnRealm;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmEntry;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmTable;
@@ -65,12 +66,7 @@ import java.net.UnknownServiceException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-//PCB added for thread safe
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.jdiameter.api.ApplicationId;
@@ -96,6 +92,7 @@ import org.jdiameter.client.api.controller.IRealm;
 import org.jdiameter.client.api.controller.IRealmTable;
 import org.jdiameter.client.api.router.IRouter;
 import org.jdiameter.client.impl.helpers.AppConfiguration;
+import org.jdiameter.client.impl.helpers.ExpiringLongHashMap;
 import org.jdiameter.client.impl.helpers.Parameters;
 import org.jdiameter.client.impl.parser.MessageImpl;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
@@ -134,12 +131,10 @@ public class RouterImpl implements IRouter {
 
   // Answer routing feature
   public static int REQUEST_TABLE_SIZE = 10 * 1024;
-  public static int REQUEST_TABLE_CLEAR_SIZE = 2 * 1024;
 
-  protected Lock requestEntryTableLock = new ReentrantLock();
   protected ReadWriteLock redirectTableLock = new ReentrantReadWriteLock();
-  //PCB added
-  protected Map<String, AnswerEntry> requestEntryMap;
+  // keyed by hop-by-hop and end-to-end identifiers of the request, see routingKey()
+  protected ExpiringLongHashMap<AnswerEntry> requestEntryMap;
   //protected List<Long> requestSortedEntryTable = new ArrayList<Long>();
   protected boolean isStopped = true;
 
@@ -168,20 +163,16 @@ public class RouterImpl implements IRouter {
     }
     if (config.getChildren(RequestTable.ordinal()) != null) {
       AppConfiguration requestTableConfig = (AppConfiguration) config.getChildren(org.jdiameter.server.impl.helpers.Parameters.RequestTable.ordinal())[0];
-      int tSize = requestTableConfig.getIntValue(RequestTableSize.ordinal(),(Integer) RequestTableSize.defValue());
-      int tClearSize = requestTableConfig.getIntValue(RequestTableClearSize.ordinal(),(Integer) RequestTableClearSize.defValue());
-      if (tSize > 0 && tClearSize >= tSize) {
-        logger.warn("Configuration entry RequestTable, attribute 'clear_size' [{}] should not be greater than 'size' [{}]. Adjusting.", tSize, tClearSize);
-        while (tClearSize >= tSize) {
-          tSize *= 10;
-        }
+      REQUEST_TABLE_SIZE = requestTableConfig.getIntValue(RequestTableSize.ordinal(),(Integer) RequestTableSize.defValue());
+      if (requestTableConfig.isAttributeExist(RequestTableClearSize.ordinal())) {
+        logger.warn("Configuration entry RequestTable, attribute 'clear_size' is deprecated and ignored. "
+            + "Request table entries now expire after MessageTimeOut.");
       }
-      REQUEST_TABLE_SIZE = tSize;
-      REQUEST_TABLE_CLEAR_SIZE = tClearSize;
     }
-    //PCB added thread safety
-    this.requestEntryMap = new ConcurrentHashMap<String, AnswerEntry>(REQUEST_TABLE_SIZE);
-    logger.debug("Configured Request Table with size[{}] and clear size[{}].", REQUEST_TABLE_SIZE, REQUEST_TABLE_CLEAR_SIZE);
+    // answers arriving after the message timeout are of no use, so route info does not have to be kept longer
+    long expiry = config.getLongValue(MessageTimeOut.ordinal(), (Long) MessageTimeOut.defValue());
+    this.requestEntryMap = new ExpiringLongHashMap<AnswerEntry>(expiry, REQUEST_TABLE_SIZE);
+    logger.debug("Configured Request Table with size[{}] and expiry [{}] ms.", REQUEST_TABLE_SIZE, expiry);
 
     //add realms based on realm table.
     if (config.getChildren(RealmTable.ordinal()) != null) {
@@ -252,64 +243,27 @@ public class RouterImpl implements IRouter {
     }
 
     try {
-      // PCB removed lock
-      // requestEntryTableLock.writeLock().lock();
       long hopByHopId = request.getHopByHopIdentifier();
-      Avp hostAvp = request.getAvps().getAvp(Avp.ORIGIN_HOST);
-      Avp realmAvp = request.getAvps().getAvp(Avp.ORIGIN_REALM);
-      AnswerEntry entry = new AnswerEntry(hopByHopId, hostAvp != null ? hostAvp.getDiameterIdentity() : null,
-          realmAvp != null ? realmAvp.getDiameterIdentity() : null);
-
-      int s = requestEntryMap.size();
-      // PCB added logging
-      logger.debug("RequestRoute map size is [{}]", s);
-
-      //PCB added
-      if (s > REQUEST_TABLE_CLEAR_SIZE) {
-        try {
-          requestEntryTableLock.lock();
-          s = requestEntryMap.size();
-          logger.debug("After 'lock', RequestRoute map size is [{}]", s);
-          // The double-check with a gap is in case while about to clear the map, it drops below REQUEST_TABLE_SIZE due to a
-          // response being sent, and then the lock might not be in effect for another thread
-          // Hence lock at REQUEST_TABLE_CLEAR_SIZE and clear at REQUEST_TABLE_SIZE so that all threads would be locked not
-          // just the first to reach REQUEST_TABLE_SIZE
-          if (s > REQUEST_TABLE_SIZE) {
-            // Going to clear it out and suffer the consequences of some messages possibly not being routed back the clients..
-            logger.warn("RequestRoute map size is [{}]. There's probably a leak. Cleaning up after a short wait...", s);
-            // Lets do our best to avoid lost messages by locking table from writes (as this is the only code writing to it),
-            // sleeping for a while for responses to be sent and then clearing it
-            Thread.sleep(5000);
-            logger.warn("RequestRoute map size is now [{}] after sleeping. Clearing it!", requestEntryMap.size());
-            requestEntryMap.clear();
-          }
-        }
-        catch (Exception e) {
-          logger.warn("Failure trying to clear RequestRoute map", e);
-        }
-        finally {
-          requestEntryTableLock.unlock();
-        }
-      }
+      IMessage message = (IMessage) request;
+      AnswerEntry entry = new AnswerEntry(hopByHopId, message.getOriginHost(), message.getOriginRealm());
 
-      String messageKey = makeRoutingKey(request);
-      logger.debug("Adding request key [{}] to RequestRoute map for routing answers back to the requesting peer", messageKey);
+      long messageKey = routingKey(request);
+      if (logger.isDebugEnabled()) {
+        logger.debug("Adding request key [{}] to RequestRoute map for routing answers back to the requesting peer",
+            Long.toHexString(messageKey));
+      }
       requestEntryMap.put(messageKey, entry);
-      // requestSortedEntryTable.add(hopByHopId);
     }
     catch (Exception e) {
       logger.warn("Unable to store route info", e);
     }
-    finally {
-      // requestEntryTableLock.writeLock().unlock();
-    }
   }
 
-  // PCB - Made better routing algorithm that should not grow all the time
-  private String makeRoutingKey(Message message) {
-    String sessionId = message.getSessionId();
-    return new StringBuilder(sessionId != null ? sessionId : "null").append(message.getEndToEndIdentifier())
-        .append(message.getHopByHopIdentifier()).toString();
+  /**
+   * Both identifiers are 32 bit values, and an answer carries the same ones as its request.
+   */
+  private static long routingKey(Message message) {
+    return (message.getHopByHopIdentifier() << 32) | (message.getEndToEndIdentifier() & 0xFFFFFFFFL);
   }
 
   @Override
@@ -319,17 +273,18 @@ public class RouterImpl implements IRouter {
     }
 
     // using request table
-    String messageKey = makeRoutingKey(message);
+    long messageKey = routingKey(message);
     AnswerEntry ans = requestEntryMap.get(messageKey);
     if (ans != null) {
       if (logger.isDebugEnabled()) {
-        logger.debug("getRequestRouteInfo found host [{}] and realm [{}] for Message key Id [{}]", new Object[]{ans.getHost(), ans.getRealm(), messageKey});
+        logger.debug("getRequestRouteInfo found host [{}] and realm [{}] for Message key Id [{}]",
+            new Object[]{ans.getHost(), ans.getRealm(), Long.toHexString(messageKey)});
       }
       return new String[] {ans.getHost(), ans.getRealm()};
     }
     else {
       if (logger.isWarnEnabled()) {
-        logger.warn("Could not find route info for message key [{}]. Table size is [{}]", messageKey, requestEntryMap.size());
+        logger.warn("Could not find route info for message key [{}]. Table size is [{}]", Long.toHexString(messageKey), requestEntryMap.size());
       }
       return null;
     }
@@ -342,8 +297,7 @@ public class RouterImpl implements IRouter {
       return; // we don't have anything to do as we are storing routing info at answer message
     }
 
-    String messageKey = makeRoutingKey(message);
-    requestEntryMap.remove(messageKey);
+    requestEntryMap.remove(routingKey(message));
   }
 
   @Override
@@ -357,16 +311,12 @@ public class RouterImpl implements IRouter {
     String[] info = null;
     // Get destination information
     if (message.isRequest()) {
-      Avp avpRealm = message.getAvps().getAvp(Avp.DESTINATION_REALM);
-      if (avpRealm == null) {
+      destRealm = message.getDestinationRealm();
+      if (destRealm == null) {
         throw new RouteException("Destination realm avp is empty");
       }
-      destRealm = avpRealm.getDiameterIdentity();
 
-      Avp avpHost = message.getAvps().getAvp(Avp.DESTINATION_HOST);
-      if (avpHost != null) {
-        destHost = avpHost.getDiameterIdentity();
-      }
+      destHost = message.getDestinationHost();
       if (logger.isDebugEnabled()) {
         logger.debug("Looking up peer for request: [{}], DestHost=[{}], DestRealm=[{}]", new Object[] {message, destHost, destRealm});
       }
@@ -629,17 +579,13 @@ public class RouterImpl implements IRouter {
 
   @Override
   public boolean updateRoute(IRequest message) throws RouteException, AvpDataException {
-    AvpSet set = message.getAvps();
-    Avp destRealmAvp = set.getAvp(Avp.DESTINATION_REALM);
-    Avp destHostAvp = set.getAvp(Avp.DESTINATION_HOST);
+    String destRealm = ((IMessage) message).getDestinationRealm();
+    String destHost = ((IMessage) message).getDestinationHost();
 
-    if (destRealmAvp == null) {
+    if (destRealm == null) {
       throw new RouteException("Request does not have Destination-Realm AVP!");
     }
 
-    String destRealm = destRealmAvp.getDiameterIdentity();
-    String destHost = destHostAvp != null ? destHostAvp.getDiameterIdentity() : null;
-
     boolean matchedEntry = false;
     String userName = null;
     // get Session id
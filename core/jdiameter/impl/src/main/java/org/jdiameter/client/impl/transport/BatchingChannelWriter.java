@@ -0,0 +1,82 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.netty.channel.Channel;
+
+/**
+ * Batches writes to a Netty channel. Messages are queued and written by a single task on the
+ * channel event loop, followed by one flush, instead of one write task and one flush per message.
+ * The task is scheduled as soon as the first message is queued, so batching does not add any delay:
+ * a batch holds what was queued while the event loop was busy, capped at a maximum size.
+ */
+public class BatchingChannelWriter implements Runnable {
+
+  public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+
+  private final Channel channel;
+  private final int maxBatchSize;
+  private final Queue<Object> queue = new ConcurrentLinkedQueue<Object>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final WriteBatchStatistics statistics;
+
+  public BatchingChannelWriter(Channel channel, WriteBatchStatistics statistics) {
+    this(channel, statistics, DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  public BatchingChannelWriter(Channel channel, WriteBatchStatistics statistics, int maxBatchSize) {
+    this.channel = channel;
+    this.statistics = statistics;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public void write(Object message) {
+    queue.add(message);
+    if (scheduled.compareAndSet(false, true)) {
+      channel.eventLoop().execute(this);
+    }
+  }
+
+  @Override
+  public void run() {
+    scheduled.set(false);
+    int count = 0;
+    Object message;
+    while ((message = queue.poll()) != null) {
+      channel.write(message);
+      if (++count == maxBatchSize) {
+        flush(count);
+        count = 0;
+      }
+    }
+    if (count > 0) {
+      flush(count);
+    }
+  }
+
+  private void flush(int count) {
+    channel.flush();
+    statistics.record(count);
+  }
+}
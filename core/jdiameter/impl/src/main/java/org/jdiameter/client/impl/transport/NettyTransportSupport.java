@@ -0,0 +1,198 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import static org.jdiameter.client.impl.helpers.Parameters.ReceiveBufferSize;
+import static org.jdiameter.client.impl.helpers.Parameters.SendBufferSize;
+import static org.jdiameter.client.impl.helpers.Parameters.TcpNoDelay;
+import static org.jdiameter.client.impl.helpers.Parameters.UseNativeTransport;
+import static org.jdiameter.client.impl.helpers.Parameters.WriteBufferHighWaterMark;
+import static org.jdiameter.client.impl.helpers.Parameters.WriteBufferLowWaterMark;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.jdiameter.api.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * Transport selection (NIO or native epoll) and socket options shared by the Netty TCP and TLS
+ * connections and network guards. Native transport needs the linux-x86_64 build of
+ * netty-transport-native-epoll on the class path, otherwise NIO is used.
+ */
+public final class NettyTransportSupport {
+
+  private static final Logger logger = LoggerFactory.getLogger(NettyTransportSupport.class);
+
+  private NettyTransportSupport() {
+  }
+
+  /**
+   * Creates an event loop group, using native epoll when requested and available.
+   *
+   * @param useNativeTransport true to try the native epoll transport
+   * @param size number of threads, 0 lets Netty decide
+   * @param threadFactory factory for loop threads
+   * @return event loop group
+   */
+  public static EventLoopGroup newEventLoopGroup(boolean useNativeTransport, int size, ThreadFactory threadFactory) {
+    if (useNativeTransport) {
+      if (isNativeTransportAvailable()) {
+        logger.info("Using native epoll transport");
+        return new EpollEventLoopGroup(size, threadFactory);
+      }
+      logger.warn("Native epoll transport is not available, falling back to NIO");
+    }
+    logger.info("Using NIO transport");
+    return new NioEventLoopGroup(size, threadFactory);
+  }
+
+  public static boolean isNativeTransportAvailable() {
+    try {
+      if (Epoll.isAvailable()) {
+        return true;
+      }
+      logger.debug("Native epoll transport is not available", Epoll.unavailabilityCause());
+      return false;
+    }
+    catch (Throwable e) {
+      logger.debug("Native epoll transport is not available", e);
+      return false;
+    }
+  }
+
+  public static boolean isUseNativeTransport(Configuration config) {
+    return config != null && config.getBooleanValue(UseNativeTransport.ordinal(), (Boolean) UseNativeTransport.defValue());
+  }
+
+  /**
+   * @return socket channel class matching the type of the event loop group
+   */
+  public static Class<? extends SocketChannel> getSocketChannelClass(EventLoopGroup group) {
+    return group instanceof EpollEventLoopGroup ? EpollSocketChannel.class : NioSocketChannel.class;
+  }
+
+  /**
+   * @return server socket channel class matching the type of the event loop group
+   */
+  public static Class<? extends ServerSocketChannel> getServerSocketChannelClass(EventLoopGroup group) {
+    return group instanceof EpollEventLoopGroup ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+  }
+
+  /**
+   * Applies configured socket options to an outgoing connection.
+   *
+   * @param bootstrap client bootstrap
+   * @param config stack configuration, may be null for defaults
+   */
+  public static void applySocketOptions(final Bootstrap bootstrap, Configuration config) {
+    new OptionSetter(config) {
+      @Override
+      <T> void set(ChannelOption<T> option, T value) {
+        bootstrap.option(option, value);
+      }
+    }.apply();
+  }
+
+  /**
+   * Applies configured socket options to connections accepted by a server.
+   *
+   * @param bootstrap server bootstrap
+   * @param config stack configuration, may be null for defaults
+   */
+  public static void applyChildSocketOptions(final ServerBootstrap bootstrap, Configuration config) {
+    new OptionSetter(config) {
+      @Override
+      <T> void set(ChannelOption<T> option, T value) {
+        bootstrap.childOption(option, value);
+      }
+    }.apply();
+  }
+
+  private abstract static class OptionSetter {
+
+    // Netty defaults, each new mark is validated against the current value of the other one
+    private static final int DEFAULT_LOW_WATER_MARK = 32 * 1024;
+    private static final int DEFAULT_HIGH_WATER_MARK = 64 * 1024;
+
+    private final Configuration config;
+
+    OptionSetter(Configuration config) {
+      this.config = config;
+    }
+
+    abstract <T> void set(ChannelOption<T> option, T value);
+
+    void apply() {
+      set(ChannelOption.TCP_NODELAY, config != null ? config.getBooleanValue(TcpNoDelay.ordinal(), (Boolean) TcpNoDelay.defValue()) :
+        (Boolean) TcpNoDelay.defValue());
+      setIfPositive(ChannelOption.SO_SNDBUF, getIntValue(SendBufferSize));
+      setIfPositive(ChannelOption.SO_RCVBUF, getIntValue(ReceiveBufferSize));
+      int high = getIntValue(WriteBufferHighWaterMark);
+      int low = getIntValue(WriteBufferLowWaterMark);
+      if (high <= 0 && low <= 0) {
+        return;
+      }
+      if (high <= 0) {
+        high = Math.max(low, DEFAULT_HIGH_WATER_MARK);
+      }
+      if (low <= 0) {
+        low = Math.min(high, DEFAULT_LOW_WATER_MARK);
+      }
+      if (low > high) {
+        logger.warn("Write buffer low water mark {} is above high water mark {}, using the high one for both", low, high);
+        low = high;
+      }
+      // options are applied in order, so a low mark above the default high one goes last
+      if (low > DEFAULT_HIGH_WATER_MARK) {
+        set(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high);
+        set(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low);
+      }
+      else {
+        set(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low);
+        set(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high);
+      }
+    }
+
+    private int getIntValue(org.jdiameter.client.impl.helpers.Parameters parameter) {
+      return config != null ? config.getIntValue(parameter.ordinal(), (Integer) parameter.defValue()) : (Integer) parameter.defValue();
+    }
+
+    private void setIfPositive(ChannelOption<Integer> option, int value) {
+      if (value > 0) {
+        set(option, value);
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts messages and flushes (socket writes) of a connection, to show how well outgoing
+ * messages are batched.
+ */
+public class WriteBatchStatistics {
+
+  private final AtomicLong messages = new AtomicLong();
+  private final AtomicLong flushes = new AtomicLong();
+
+  /**
+   * Records one flush.
+   *
+   * @param messageCount number of messages written by the flush
+   */
+  public void record(int messageCount) {
+    messages.addAndGet(messageCount);
+    flushes.incrementAndGet();
+  }
+
+  public long getMessageCount() {
+    return messages.get();
+  }
+
+  public long getFlushCount() {
+    return flushes.get();
+  }
+
+  public double getMessagesPerFlush() {
+    long flushCount = flushes.get();
+    return flushCount == 0 ? 0 : (double) messages.get() / flushCount;
+  }
+
+  @Override
+  public String toString() {
+    return "WriteBatchStatistics [messages=" + getMessageCount() + ", flushes=" + getFlushCount() + ", messagesPerFlush="
+        + getMessagesPerFlush() + "]";
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport.tcp;
+
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.api.io.IConnectionListener;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+
+/**
+ * {@link TCPClientConnection} using {@link PooledTCPTransportClient}, so that reading does not need a
+ * thread per connection. Enabled through the <code>InternalConnectionClass</code> extension point.
+ */
+public class PooledTCPClientConnection extends TCPClientConnection {
+
+  public PooledTCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, Socket socket,
+      IMessageParser parser, String ref) throws Exception {
+    super(config, concurrentFactory, socket, parser, ref);
+  }
+
+  public PooledTCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress,
+      int remotePort, InetAddress localAddress, int localPort, IMessageParser parser, String ref) {
+    super(config, concurrentFactory, remoteAddress, remotePort, localAddress, localPort, parser, ref);
+  }
+
+  public PooledTCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress,
+      int remotePort, InetAddress localAddress, int localPort, IConnectionListener listener,
+      IMessageParser parser, String ref) {
+    super(config, concurrentFactory, remoteAddress, remotePort, localAddress, localPort, listener, parser, ref);
+  }
+
+  @Override
+  protected TCPTransportClient createTransportClient(Configuration config, IConcurrentFactory concurrentFactory) {
+    return new PooledTCPTransportClient(concurrentFactory, this);
+  }
+}
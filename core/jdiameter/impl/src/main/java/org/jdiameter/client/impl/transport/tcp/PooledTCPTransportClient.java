@@ -0,0 +1,230 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.client.api.io.NotInitializedException;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link TCPTransportClient} served by the stack's {@link SelectorPool} instead of a dedicated reader
+ * thread. Incoming data is read into a buffer reused for the whole life of the transport and framed in
+ * place; every complete message is copied once into its own array, which the parser keeps referencing.
+ * Messages larger than the read buffer are read directly into their final array.
+ */
+public class PooledTCPTransportClient extends TCPTransportClient {
+
+  private static final Logger logger = LoggerFactory.getLogger(PooledTCPTransportClient.class);
+
+  public static final int DEFAULT_READ_BUFFER_SIZE = 8192;
+
+  private static final int HEADER_LENGTH = 20;
+
+  private final IConcurrentFactory concurrentFactory;
+
+  private volatile ChannelReader reader;
+
+  PooledTCPTransportClient(IConcurrentFactory concurrentFactory, TCPClientConnection parentConnection) {
+    super(concurrentFactory, parentConnection);
+    this.concurrentFactory = concurrentFactory;
+    this.bufferSize = DEFAULT_READ_BUFFER_SIZE;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    this.storage = null;
+  }
+
+  @Override
+  public void start() throws NotInitializedException {
+    logger.debug("Starting transport. Socket is {}", socketChannel);
+    if (socketChannel == null) {
+      throw new NotInitializedException("Transport is not initialized");
+    }
+    if (!socketChannel.isConnected()) {
+      throw new NotInitializedException("Socket channel is not connected");
+    }
+    if (getParent() == null) {
+      throw new NotInitializedException("No parent connection is set is set");
+    }
+    if (reader != null && reader.channel == socketChannel && !reader.closed.get()) {
+      return;
+    }
+    SelectorPool pool;
+    try {
+      pool = concurrentFactory.getSelectorPool();
+    }
+    catch (IOException e) {
+      throw new NotInitializedException(e);
+    }
+    ChannelReader newReader = new ChannelReader(socketChannel);
+    reader = newReader;
+    newReader.worker = pool.register(socketChannel, newReader);
+    logger.debug("Transport is started. Socket is [{}]", newReader.description);
+  }
+
+  @Override
+  public void run() {
+    // reading is driven by the selector pool
+  }
+
+  @Override
+  public void stop() throws Exception {
+    logger.debug("Stopping transport. Socket is [{}]", socketChannel);
+    if (socketChannel != null && socketChannel.isOpen()) {
+      socketChannel.close();
+    }
+    final ChannelReader current = reader;
+    if (current != null && current.worker != null) {
+      current.worker.execute(new Runnable() {
+        @Override
+        public void run() {
+          current.onClosed();
+        }
+      });
+    }
+    logger.debug("Transport is stopped. Socket is [{}]", socketChannel);
+  }
+
+  /**
+   * Per connection reading state, registered in the selector pool while the channel is open.
+   */
+  private class ChannelReader implements SelectorPool.ChannelHandler {
+
+    private final SocketChannel channel;
+    private final String description;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private SelectorPool.Worker worker;
+
+    // target of a message not fitting into the read buffer
+    private ByteBuffer pending;
+
+    ChannelReader(SocketChannel channel) {
+      this.channel = channel;
+      this.description = channel.socket().toString();
+      buffer.clear();
+    }
+
+    @Override
+    public void onReadable() {
+      try {
+        if (pending != null) {
+          if (channel.read(pending) == -1) {
+            onClosed();
+          }
+          else if (!pending.hasRemaining()) {
+            ByteBuffer message = pending;
+            pending = null;
+            message.flip();
+            deliver(message);
+          }
+          return;
+        }
+        int dataLength = channel.read(buffer);
+        logger.debug("Just read [{}] bytes on [{}]", dataLength, description);
+        if (dataLength == -1) {
+          onClosed();
+          return;
+        }
+        buffer.flip();
+        frame();
+        buffer.compact();
+      }
+      catch (IOException e) {
+        logger.debug("Failed to read from [{}]", description, e);
+        onClosed();
+      }
+      catch (Throwable e) {
+        logger.error("Transport exception ", e);
+        onClosed();
+      }
+    }
+
+    private void frame() {
+      while (buffer.remaining() >= 4 && !closed.get()) {
+        // 0                   1                   2                   3
+        // 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+        // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+        // |    Version    |                 Message Length                |
+        // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+        int tmp = buffer.getInt(buffer.position());
+        int messageLength = tmp & 0xFFFFFF;
+        if ((byte) (tmp >> 24) != 1 || messageLength < HEADER_LENGTH) {
+          // not at a message boundary, drop what we have (same as the legacy transport)
+          logger.debug("Garbage was received on [{}]. Discarding {} bytes.", description, buffer.remaining());
+          buffer.position(buffer.limit());
+          return;
+        }
+        if (buffer.remaining() >= messageLength) {
+          byte[] data = new byte[messageLength];
+          buffer.get(data);
+          deliver(ByteBuffer.wrap(data));
+        }
+        else if (messageLength > buffer.capacity()) {
+          pending = ByteBuffer.allocate(messageLength);
+          pending.put(buffer);
+          logger.debug("Received partial message, waiting for remaining (expected: {} bytes, got {} bytes).", messageLength, pending.position());
+          return;
+        }
+        else {
+          logger.debug("Received partial message, waiting for remaining (expected: {} bytes, got {} bytes).", messageLength, buffer.remaining());
+          return;
+        }
+      }
+    }
+
+    private void deliver(ByteBuffer message) {
+      try {
+        getParent().onMessageReceived(message);
+      }
+      catch (AvpDataException e) {
+        logger.debug("Garbage was received. Discarding.");
+        getParent().onAvpDataException(e);
+      }
+    }
+
+    @Override
+    public void onClosed() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      pending = null;
+      try {
+        if (channel.isOpen()) {
+          channel.close();
+        }
+      }
+      catch (IOException e) {
+        logger.debug("Failed to close [{}]", description, e);
+      }
+      try {
+        getParent().onDisconnect();
+      }
+      catch (Exception e) {
+        logger.error("Error", e);
+      }
+      logger.info("Transport is closed for socket [{}]", description);
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport.tcp;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fixed set of selector threads shared by all {@link PooledTCPTransportClient} instances of a stack,
+ * replacing the reader thread per connection used by {@link TCPTransportClient}. Channels are spread
+ * over the selectors round-robin and stay on the same selector for their whole life, so every callback
+ * of a connection is executed by one thread.
+ *
+ * The pool is owned by the stack's {@link IConcurrentFactory}, which creates it on first use, sized by
+ * {@link org.jdiameter.client.impl.helpers.Parameters#SelectorThreadCount}, and stops it when the stack
+ * is destroyed. Channels still registered at that point are closed.
+ */
+public class SelectorPool {
+
+  private static final Logger logger = LoggerFactory.getLogger(SelectorPool.class);
+
+  private static final long SELECT_TIMEOUT = 500; // milliseconds
+
+  private final Worker[] workers;
+  private final AtomicInteger nextWorker = new AtomicInteger();
+
+  /**
+   * Starts the selector threads.
+   *
+   * @param size number of selector threads, one per processor if not positive
+   * @param concurrentFactory factory used to create selector threads
+   * @throws IOException if a selector can not be opened
+   */
+  public SelectorPool(int size, IConcurrentFactory concurrentFactory) throws IOException {
+    if (size <= 0) {
+      size = Runtime.getRuntime().availableProcessors();
+    }
+    logger.debug("Starting selector pool with {} threads", size);
+    workers = new Worker[size];
+    try {
+      for (int i = 0; i < size; i++) {
+        workers[i] = new Worker(Selector.open());
+        Thread thread = concurrentFactory.getThread("TCPSelector-" + i, workers[i]);
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+    catch (IOException e) {
+      stop();
+      throw e;
+    }
+  }
+
+  public int getSize() {
+    return workers.length;
+  }
+
+  /**
+   * Registers channel for reading. The returned worker should be used to run any further task
+   * related to that channel, so it is serialized with the handler callbacks.
+   */
+  Worker register(final SocketChannel channel, final ChannelHandler handler) {
+    final Worker worker = workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+    if (!worker.running) {
+      throw new IllegalStateException("Selector pool is stopped");
+    }
+    worker.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          channel.register(worker.selector, SelectionKey.OP_READ, handler);
+        }
+        catch (IOException e) {
+          logger.debug("Failed to register channel", e);
+          handler.onClosed();
+        }
+        catch (RuntimeException e) {
+          logger.debug("Failed to register channel", e);
+          handler.onClosed();
+        }
+      }
+    });
+    return worker;
+  }
+
+  /**
+   * Stops the selector threads. Channels still registered are closed by their selector thread.
+   */
+  public void stop() {
+    logger.debug("Stopping selector pool");
+    for (Worker worker : workers) {
+      if (worker != null) {
+        worker.running = false;
+        worker.selector.wakeup();
+      }
+    }
+  }
+
+  /**
+   * Receives events of a channel registered in the pool. Always invoked on the selector thread.
+   */
+  interface ChannelHandler {
+
+    void onReadable();
+
+    void onClosed();
+  }
+
+  static class Worker implements Runnable {
+
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private volatile boolean running = true;
+
+    Worker(Selector selector) {
+      this.selector = selector;
+    }
+
+    /**
+     * Runs task on the selector thread.
+     */
+    void execute(Runnable task) {
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (running) {
+          selector.select(SELECT_TIMEOUT);
+          runTasks();
+          Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+          while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            if (key.isValid() && key.isReadable()) {
+              ((ChannelHandler) key.attachment()).onReadable();
+            }
+          }
+        }
+      }
+      catch (Throwable e) {
+        logger.error("Selector thread failed", e);
+      }
+      finally {
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+          ((ChannelHandler) key.attachment()).onClosed();
+        }
+        try {
+          selector.close();
+        }
+        catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+
+    private void runTasks() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        try {
+          task.run();
+        }
+        catch (Throwable e) {
+          logger.error("Selector task failed", e);
+        }
+      }
+    }
+  }
+}
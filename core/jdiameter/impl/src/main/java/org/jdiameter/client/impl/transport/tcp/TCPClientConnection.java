@@ -89,22 +89,25 @@ public class TCPClientConnection implements IConnection {
   private String cachedKey = null;
 
   protected TCPClientConnection(IConcurrentFactory concurrentFactory, IMessageParser parser) {
+    this(null, concurrentFactory, parser);
+  }
+
+  protected TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, IMessageParser parser) {
     this.createdTime = System.currentTimeMillis();
     this.parser = parser;
-    client = new TCPTransportClient(concurrentFactory, this);
+    client = createTransportClient(config, concurrentFactory);
   }
 
   public TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, Socket socket,
       IMessageParser parser, String ref) throws Exception {
-    this(concurrentFactory, parser);
-    client = new TCPTransportClient(concurrentFactory, this);
+    this(config, concurrentFactory, parser);
     client.initialize(socket);
     client.start();
   }
 
   public TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress,
       int remotePort, InetAddress localAddress, int localPort, IMessageParser parser, String ref) {
-    this(concurrentFactory, parser);
+    this(config, concurrentFactory, parser);
     client.setDestAddress(new InetSocketAddress(remoteAddress, remotePort));
     client.setOrigAddress(new InetSocketAddress(localAddress, localPort));
   }
@@ -112,7 +115,7 @@ public class TCPClientConnection implements IConnection {
   public TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress,
       int remotePort, InetAddress localAddress, int localPort, IConnectionListener listener,
       IMessageParser parser, String ref) {
-    this(concurrentFactory, parser);
+    this(config, concurrentFactory, parser);
     client.setDestAddress(new InetSocketAddress(remoteAddress, remotePort));
     client.setOrigAddress(new InetSocketAddress(localAddress, localPort));
     listeners.add(listener);
@@ -197,6 +200,17 @@ public class TCPClientConnection implements IConnection {
     }
   }
 
+  /**
+   * Creates the transport used by this connection. Invoked once, from the constructor.
+   *
+   * @param config stack configuration, may be null
+   * @param concurrentFactory factory for create threads
+   * @return transport bound to this connection
+   */
+  protected TCPTransportClient createTransportClient(Configuration config, IConcurrentFactory concurrentFactory) {
+    return new TCPTransportClient(concurrentFactory, this);
+  }
+
   protected TCPTransportClient getClient() {
     return client;
   }
@@ -298,7 +312,7 @@ public class TCPClientConnection implements IConnection {
 
   protected void onMessageReceived(ByteBuffer message) throws AvpDataException {
     if (logger.isDebugEnabled()) {
-      logger.debug("Received message of size [{}]", message.array().length);
+      logger.debug("Received message of size [{}]", message.remaining());
     }
     onEvent(new Event(EventType.MESSAGE_RECEIVED, message));
   }
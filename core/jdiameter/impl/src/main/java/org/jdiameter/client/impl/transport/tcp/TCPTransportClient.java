@@ -55,11 +55,14 @@ import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.client.api.io.NotInitializedException;
+import org.jdiameter.client.impl.transport.WriteBatchStatistics;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +93,12 @@ public class TCPTransportClient implements Runnable {
   protected SocketChannel socketChannel;
   protected Lock lock = new ReentrantLock();
 
+  // messages waiting to be written, gathered into a single write by the thread holding the lock
+  protected final Queue<PendingWrite> writeQueue = new ConcurrentLinkedQueue<PendingWrite>();
+  protected final PendingWrite[] writeBatch = new PendingWrite[MAX_WRITE_BATCH_SIZE];
+  private final ByteBuffer[] writeBuffers = new ByteBuffer[MAX_WRITE_BATCH_SIZE];
+  protected final WriteBatchStatistics writeStatistics = new WriteBatchStatistics();
+
   protected int storageSize = DEFAULT_STORAGE_SIZE;
   protected ByteBuffer storage = ByteBuffer.allocate(storageSize);
 
@@ -100,6 +109,7 @@ public class TCPTransportClient implements Runnable {
   //PCB - allow non blocking IO
   private static final boolean BLOCKING_IO = false;
   private static final long SELECT_TIMEOUT = 500; // milliseconds
+  private static final int MAX_WRITE_BATCH_SIZE = 64;
 
   public TCPTransportClient() {
   }
@@ -294,30 +304,83 @@ public class TCPTransportClient implements Runnable {
     if (logger.isDebugEnabled()) {
       logger.debug("About to send a byte buffer of size [{}] over the TCP nio socket [{}]", bytes.array().length, socketDescription);
     }
-    int rc = 0;
     // PCB - removed locking
     // ZhixiaoLuo: Fix #28, without the lock the data in the socketChannel will get mixed in multi-threads.
+    // Messages queued while another thread holds the lock are written by that thread together with its own.
+    // Writes complete under the lock, so once a caller gets it, its message is either written with its
+    // outcome recorded, or still queued and written by the caller itself.
+    PendingWrite write = new PendingWrite(bytes);
+    writeQueue.offer(write);
     lock.lock();
     try {
-      while (rc < bytes.array().length) {
-        rc += socketChannel.write(bytes);
+      int count;
+      while (!write.done && (count = drainWriteQueue()) > 0) {
+        try {
+          writeBatch(count);
+        }
+        finally {
+          for (int i = 0; i < count; i++) {
+            writeBatch[i] = null;
+            writeBuffers[i] = null;
+          }
+        }
       }
     }
-    catch (Exception e) {
-      logger.error("Unable to send message", e);
-      throw new IOException("Error while sending message: " + e);
-    }
     finally {
       lock.unlock();
     }
-    if (rc == -1) {
-      throw new IOException("Connection closed");
+    if (write.failure != null) {
+      throw write.failure;
     }
     if (logger.isDebugEnabled()) {
       logger.debug("Sent a byte buffer of size [{}] over the TCP nio socket [{}]", bytes.array().length, socketDescription);
     }
   }
 
+  private int drainWriteQueue() {
+    int count = 0;
+    PendingWrite next;
+    while (count < MAX_WRITE_BATCH_SIZE && (next = writeQueue.poll()) != null) {
+      writeBatch[count] = next;
+      writeBuffers[count++] = next.buffer;
+    }
+    return count;
+  }
+
+  /**
+   * Writes the first count queued messages with a single gathering write and records the outcome
+   * of each of them. A failure is reported only to the callers whose messages were not fully written.
+   */
+  private void writeBatch(int count) {
+    long remaining = 0;
+    for (int i = 0; i < count; i++) {
+      remaining += writeBuffers[i].remaining();
+    }
+    IOException failure = null;
+    try {
+      while (remaining > 0) {
+        long rc = socketChannel.write(writeBuffers, 0, count);
+        if (rc == -1) {
+          throw new IOException("Connection closed");
+        }
+        remaining -= rc;
+      }
+      writeStatistics.record(count);
+    }
+    catch (Exception e) {
+      logger.error("Unable to send message", e);
+      failure = new IOException("Error while sending message: " + e);
+    }
+    for (int i = 0; i < count; i++) {
+      writeBatch[i].failure = writeBuffers[i].hasRemaining() ? failure : null;
+      writeBatch[i].done = true;
+    }
+  }
+
+  public WriteBatchStatistics getWriteStatistics() {
+    return writeStatistics;
+  }
+
   @Override
   public String toString() {
     StringBuffer buffer = new StringBuffer();
@@ -432,4 +495,18 @@ public class TCPTransportClient implements Runnable {
     }
     return true;
   }
+
+  /**
+   * Message queued for writing and the outcome of its write, both guarded by the write lock.
+   */
+  protected static final class PendingWrite {
+
+    final ByteBuffer buffer;
+    boolean done;
+    IOException failure;
+
+    PendingWrite(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+  }
 }
\ No newline at end of file
@@ -55,6 +55,8 @@ public class DiameterMessageDecoder extends ByteToMessageDecoder {
         return;
       }
 
+      // the pooled buffer is recycled once decoded, while the message AVPs stay views over their
+      // backing array, so the frame is copied once into its own array and parsed in place
       byte[] bytes = new byte[messageLength];
       in.readBytes(bytes);
 
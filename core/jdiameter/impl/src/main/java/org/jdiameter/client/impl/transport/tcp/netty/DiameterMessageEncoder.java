@@ -23,7 +23,6 @@ import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
@@ -34,13 +33,34 @@ import io.netty.handler.codec.MessageToByteEncoder;
 public class DiameterMessageEncoder extends MessageToByteEncoder<IMessage> {
   protected final IMessageParser parser;
 
+  // length computed by allocateBuffer for the message encode gets next, the handler is not shared and both run
+  // on the event loop of its channel
+  private int allocatedLength = -1;
+
   public DiameterMessageEncoder(IMessageParser parser) {
     this.parser = parser;
   }
 
   @Override
   protected void encode(ChannelHandlerContext ctx, IMessage msg, ByteBuf out) throws Exception {
-    out.writeBytes(Unpooled.wrappedBuffer(parser.encodeMessage(msg)));
+    int length = allocatedLength >= 0 ? allocatedLength : parser.getMessageLength(msg);
+    allocatedLength = -1;
+    out.ensureWritable(length);
+    if (out.nioBufferCount() == 1) {
+      // encode straight into the outbound buffer memory
+      parser.encodeMessage(msg, out.nioBuffer(out.writerIndex(), length));
+      out.writerIndex(out.writerIndex() + length);
+    }
+    else {
+      out.writeBytes(parser.encodeMessage(msg));
+    }
+  }
+
+  @Override
+  protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, IMessage msg, boolean preferDirect) throws Exception {
+    int length = parser.getMessageLength(msg);
+    allocatedLength = length;
+    return preferDirect ? ctx.alloc().ioBuffer(length) : ctx.alloc().heapBuffer(length);
   }
 
 }
@@ -67,7 +67,7 @@ public class TCPClientConnection implements IConnection {
   public TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress,
       int remotePort, InetAddress localAddress, int localPort, IMessageParser parser, String ref) {
     this.parser = parser;
-    this.client = new TCPTransportClient(this, parser, new InetSocketAddress(remoteAddress, remotePort),
+    this.client = new TCPTransportClient(this, config, concurrentFactory, parser, new InetSocketAddress(remoteAddress, remotePort),
         new InetSocketAddress(localAddress, localPort));
 
   }
@@ -80,8 +80,12 @@ public class TCPClientConnection implements IConnection {
   }
 
   public TCPClientConnection(Channel channel, IMessageParser parser) {
+    this(channel, null, parser);
+  }
+
+  public TCPClientConnection(Channel channel, IConcurrentFactory concurrentFactory, IMessageParser parser) {
     this.parser = parser;
-    this.client = new TCPTransportClient(this, parser, channel);
+    this.client = new TCPTransportClient(this, concurrentFactory, parser, channel);
   }
 
   public long getCreatedTime() {
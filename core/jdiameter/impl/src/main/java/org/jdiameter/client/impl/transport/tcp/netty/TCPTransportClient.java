@@ -22,8 +22,14 @@ package org.jdiameter.client.impl.transport.tcp.netty;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 
+import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.transport.BatchingChannelWriter;
+import org.jdiameter.client.impl.transport.NettyTransportSupport;
+import org.jdiameter.client.impl.transport.WriteBatchStatistics;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,20 +39,20 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
-import io.netty.util.concurrent.EventExecutorGroup;
 
 /**
  *
  * @author <a href="mailto:jqayyum@gmail.com"> Jehanzeb Qayyum </a>
  */
 public class TCPTransportClient {
-  protected EventLoopGroup workerGroup;
-  protected EventExecutorGroup eventExecutorGroup = new DefaultEventExecutorGroup(1);
+  protected IConcurrentFactory concurrentFactory;
+  // true when no factory was given and the transport runs on event loops of its own
+  private boolean ownsConcurrentFactory;
+  protected Configuration config;
   protected Channel channel;
+  protected BatchingChannelWriter writer;
+  protected final WriteBatchStatistics writeStatistics = new WriteBatchStatistics();
   protected TCPClientConnection parentConnection;
   protected InetSocketAddress destAddress;
   protected InetSocketAddress sourceAddress; // TODO: what?
@@ -56,7 +62,7 @@ public class TCPTransportClient {
 
   protected static final int CONNECT_TIMEOUT = 500; // mills
 
-  protected TCPTransportClient(TCPClientConnection parentConnection, IMessageParser parser) {
+  protected TCPTransportClient(TCPClientConnection parentConnection, IConcurrentFactory concurrentFactory, IMessageParser parser) {
     if (parentConnection == null) {
       throw new IllegalArgumentException("Parent connection cannot be null");
     }
@@ -66,11 +72,19 @@ public class TCPTransportClient {
       throw new IllegalArgumentException("Parser cannot be null");
     }
     this.parser = parser;
+    this.ownsConcurrentFactory = concurrentFactory == null;
+    this.concurrentFactory = ownsConcurrentFactory ? new DummyConcurrentFactory() : concurrentFactory;
   }
 
-  public TCPTransportClient(TCPClientConnection parentConnection, IMessageParser parser, InetSocketAddress destAddress,
-      InetSocketAddress sourceAddress) {
-    this(parentConnection, parser);
+  public TCPTransportClient(TCPClientConnection parentConnection, IConcurrentFactory concurrentFactory, IMessageParser parser,
+      InetSocketAddress destAddress, InetSocketAddress sourceAddress) {
+    this(parentConnection, null, concurrentFactory, parser, destAddress, sourceAddress);
+  }
+
+  public TCPTransportClient(TCPClientConnection parentConnection, Configuration config, IConcurrentFactory concurrentFactory,
+      IMessageParser parser, InetSocketAddress destAddress, InetSocketAddress sourceAddress) {
+    this(parentConnection, concurrentFactory, parser);
+    this.config = config;
 
     logger.debug("Client only connection");
 
@@ -88,18 +102,20 @@ public class TCPTransportClient {
     }
   }
 
-  public TCPTransportClient(TCPClientConnection parentConnection, IMessageParser parser, Channel channel) {
-    this(parentConnection, parser);
+  public TCPTransportClient(TCPClientConnection parentConnection, IConcurrentFactory concurrentFactory, IMessageParser parser,
+      Channel channel) {
+    this(parentConnection, concurrentFactory, parser);
     logger.debug("Server only connection");
 
     if (channel == null) {
       throw new IllegalArgumentException("Channel cannot be null");
     }
     this.channel = channel;
+    this.writer = new BatchingChannelWriter(channel, writeStatistics);
     ChannelPipeline pipeline = this.channel.pipeline();
     pipeline.addLast("decoder", new DiameterMessageDecoder(parentConnection, parser));
     pipeline.addLast("encoder", new DiameterMessageEncoder(parser));
-    pipeline.addLast(eventExecutorGroup, "msgHandler", new DiameterMessageHandler(parentConnection));
+    pipeline.addLast(concurrentFactory.getEventExecutorGroup(), "msgHandler", new DiameterMessageHandler(parentConnection));
 
     this.destAddress = (InetSocketAddress) this.channel.remoteAddress();
   }
@@ -111,8 +127,8 @@ public class TCPTransportClient {
       return;
     }
 
-    this.workerGroup = new NioEventLoopGroup();
-    Bootstrap bootstrap = new Bootstrap().group(workerGroup).channel(NioSocketChannel.class)
+    EventLoopGroup workerGroup = concurrentFactory.getEventLoopGroup();
+    Bootstrap bootstrap = new Bootstrap().group(workerGroup).channel(NettyTransportSupport.getSocketChannelClass(workerGroup))
         .option(ChannelOption.SO_KEEPALIVE, true).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT)
         .handler(new ChannelInitializer<SocketChannel>() {
           @Override
@@ -120,11 +136,14 @@ public class TCPTransportClient {
             ChannelPipeline pipeline = ch.pipeline();
             pipeline.addLast("decoder", new DiameterMessageDecoder(parentConnection, parser));
             pipeline.addLast("encoder", new DiameterMessageEncoder(parser));
-            pipeline.addLast(eventExecutorGroup, "msgHandler", new DiameterMessageHandler(parentConnection));
+            pipeline.addLast(concurrentFactory.getEventExecutorGroup(), "msgHandler", new DiameterMessageHandler(parentConnection));
           }
         });
 
+    NettyTransportSupport.applySocketOptions(bootstrap, config);
+
     this.channel = bootstrap.remoteAddress(destAddress).connect().sync().channel();
+    this.writer = new BatchingChannelWriter(channel, writeStatistics);
     logger.debug("TCP Transport connected successfully, [{}]", socketDescription);
 
     parentConnection.onConnected();
@@ -137,37 +156,14 @@ public class TCPTransportClient {
       return;
     }
     closeChannel();
-    closeWorkerGroup();
-    closeEventExecutorGroup();
     logger.debug("Transport is stopped [{}]", socketDescription);
   }
 
-  private void closeEventExecutorGroup() {
-    if (eventExecutorGroup != null) {
-      try {
-        eventExecutorGroup.shutdownGracefully().sync();
-      } catch (InterruptedException e) {
-        logger.error("Error stopping socket " + socketDescription, e);
-      }
-      eventExecutorGroup = null;
-    }
-  }
-
-  private void closeWorkerGroup() {
-    if (workerGroup != null) {
-      try {
-        workerGroup.shutdownGracefully().sync();
-      } catch (InterruptedException e) {
-        logger.error("Error stopping socket " + socketDescription, e);
-      }
-      workerGroup = null;
-    }
-  }
-
   private void closeChannel() {
     if (channel != null) {
       try {
-        channel.closeFuture().sync();
+        // event loops are shared, so the channel has to be closed explicitly
+        channel.close().sync();
       } catch (InterruptedException e) {
         logger.error("Error stopping socket " + socketDescription, e);
       }
@@ -180,13 +176,16 @@ public class TCPTransportClient {
     stop();
     destAddress = null;
     sourceAddress = null;
+    if (ownsConcurrentFactory) {
+      concurrentFactory.shutdownEventLoopGroups();
+    }
   }
 
   public void sendMessage(IMessage message) {
     if (!isConnected()) {
       throw new IllegalStateException("TCP transport is stopped on socket " + socketDescription);
     }
-    channel.writeAndFlush(message);
+    writer.write(message);
   }
 
   public String toString() {
@@ -212,6 +211,10 @@ public class TCPTransportClient {
     return this.destAddress;
   }
 
+  public WriteBatchStatistics getWriteStatistics() {
+    return writeStatistics;
+  }
+
   boolean isConnected() {
     return channel != null && channel.isActive();
   }
@@ -25,7 +25,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
@@ -38,6 +37,10 @@ public class DiameterMessageEncoder extends MessageToByteEncoder<IMessage> {
 
   protected final IMessageParser parser;
 
+  // length computed by allocateBuffer for the message encode gets next, the handler is not shared and both run
+  // on the event loop of its channel
+  private int allocatedLength = -1;
+
   public DiameterMessageEncoder(IMessageParser parser) {
     this.parser = parser;
   }
@@ -46,7 +49,24 @@ public class DiameterMessageEncoder extends MessageToByteEncoder<IMessage> {
   protected void encode(ChannelHandlerContext ctx, IMessage msg, ByteBuf out) throws Exception {
     logger.debug("DiameterMessageEncoder");
     logger.debug("Encoding message command code {}", msg.getCommandCode());
-    out.writeBytes(Unpooled.wrappedBuffer(parser.encodeMessage(msg)));
+    int length = allocatedLength >= 0 ? allocatedLength : parser.getMessageLength(msg);
+    allocatedLength = -1;
+    out.ensureWritable(length);
+    if (out.nioBufferCount() == 1) {
+      // encode straight into the outbound buffer memory
+      parser.encodeMessage(msg, out.nioBuffer(out.writerIndex(), length));
+      out.writerIndex(out.writerIndex() + length);
+    }
+    else {
+      out.writeBytes(parser.encodeMessage(msg));
+    }
+  }
+
+  @Override
+  protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, IMessage msg, boolean preferDirect) throws Exception {
+    int length = parser.getMessageLength(msg);
+    allocatedLength = length;
+    return preferDirect ? ctx.alloc().ioBuffer(length) : ctx.alloc().heapBuffer(length);
   }
 
 }
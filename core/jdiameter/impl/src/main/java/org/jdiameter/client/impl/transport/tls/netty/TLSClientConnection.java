@@ -80,7 +80,7 @@ public class TLSClientConnection implements IConnection {
       }
     }
     this.sslConfig = TLSUtils.getSSLConfiguration(config, secRef);
-    this.client = new TLSTransportClient(this, concurrentFactory, parser, sslConfig,
+    this.client = new TLSTransportClient(this, concurrentFactory, parser, sslConfig, config,
         new InetSocketAddress(remoteAddress, remotePort), new InetSocketAddress(localAddress, localPort));
     // this.client.start();
   }
@@ -100,7 +100,7 @@ public class TLSClientConnection implements IConnection {
     }
     this.sslConfig = TLSUtils.getSSLConfiguration(config, secRef);
 
-    this.client = new TLSTransportClient(this, concurrentFactory, parser, sslConfig,
+    this.client = new TLSTransportClient(this, concurrentFactory, parser, sslConfig, config,
         new InetSocketAddress(remoteAddress, remotePort), new InetSocketAddress(localAddress, localPort));
     // this.client.start();
   }
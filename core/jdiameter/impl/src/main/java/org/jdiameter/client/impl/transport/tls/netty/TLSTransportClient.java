@@ -25,6 +25,10 @@ import java.net.InetSocketAddress;
 import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.transport.BatchingChannelWriter;
+import org.jdiameter.client.impl.transport.NettyTransportSupport;
+import org.jdiameter.client.impl.transport.WriteBatchStatistics;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,9 +38,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
 /**
  *
@@ -47,15 +49,19 @@ public class TLSTransportClient {
 
   private TLSClientConnection parentConnection;
   private IConcurrentFactory concurrentFactory;
+  // true when no factory was given and the transport runs on event loops of its own
+  private boolean ownsConcurrentFactory;
   private IMessageParser parser;
   private Configuration config;
+  private Configuration stackConfig;
 
   private InetSocketAddress destAddress;
   private InetSocketAddress origAddress;
   private String socketDescription = null;
 
   private Channel channel;
-  private EventLoopGroup workerGroup;
+  private BatchingChannelWriter writer;
+  private final WriteBatchStatistics writeStatistics = new WriteBatchStatistics();
 
   private volatile TlsHandshakingState tlsHandshakingState = TlsHandshakingState.INIT;
 
@@ -66,14 +72,21 @@ public class TLSTransportClient {
   protected TLSTransportClient(TLSClientConnection parenConnection, IConcurrentFactory concurrentFactory, IMessageParser parser,
       Configuration config) {
     this.parentConnection = parenConnection;
-    this.concurrentFactory = concurrentFactory;
+    this.ownsConcurrentFactory = concurrentFactory == null;
+    this.concurrentFactory = ownsConcurrentFactory ? new DummyConcurrentFactory() : concurrentFactory;
     this.parser = parser;
     this.config = config;
   }
 
   public TLSTransportClient(TLSClientConnection parenConnection, IConcurrentFactory concurrentFactory, IMessageParser parser,
       Configuration config, InetSocketAddress destAddress, InetSocketAddress origAddress) {
+    this(parenConnection, concurrentFactory, parser, config, null, destAddress, origAddress);
+  }
+
+  public TLSTransportClient(TLSClientConnection parenConnection, IConcurrentFactory concurrentFactory, IMessageParser parser,
+      Configuration config, Configuration stackConfig, InetSocketAddress destAddress, InetSocketAddress origAddress) {
     this(parenConnection, concurrentFactory, parser, config);
+    this.stackConfig = stackConfig;
 
     if (destAddress == null) {
       throw new IllegalArgumentException("Destination address is required");
@@ -92,6 +105,7 @@ public class TLSTransportClient {
       throw new IllegalArgumentException("Channel is required");
     }
     this.channel = channel;
+    this.writer = new BatchingChannelWriter(channel, writeStatistics);
     this.origAddress = (InetSocketAddress) this.channel.localAddress();
     this.destAddress = (InetSocketAddress) this.channel.remoteAddress();
     this.socketDescription = origAddress.toString() + "->" + destAddress.toString();
@@ -114,9 +128,9 @@ public class TLSTransportClient {
       return;
     }
 
-    workerGroup = new NioEventLoopGroup();
+    EventLoopGroup workerGroup = concurrentFactory.getEventLoopGroup();
     Bootstrap bootstrap = new Bootstrap();
-    bootstrap.group(workerGroup).channel(NioSocketChannel.class).handler(new ChannelInitializer<SocketChannel>() {
+    bootstrap.group(workerGroup).channel(NettyTransportSupport.getSocketChannelClass(workerGroup)).handler(new ChannelInitializer<SocketChannel>() {
       @Override
       protected void initChannel(SocketChannel channel) throws Exception {
         ChannelPipeline pipeline = channel.pipeline();
@@ -128,7 +142,10 @@ public class TLSTransportClient {
       }
     });
 
+    NettyTransportSupport.applySocketOptions(bootstrap, stackConfig);
+
     this.channel = bootstrap.remoteAddress(destAddress).connect().sync().channel();
+    this.writer = new BatchingChannelWriter(channel, writeStatistics);
 
     parentConnection.onConnected();
 
@@ -161,6 +178,10 @@ public class TLSTransportClient {
     return this.origAddress;
   }
 
+  public WriteBatchStatistics getWriteStatistics() {
+    return writeStatistics;
+  }
+
   void sendMessage(IMessage message) throws IOException {
     if (!isConnected()) {
       throw new IOException("Failed to send message over [" + socketDescription + "]");
@@ -171,7 +192,7 @@ public class TLSTransportClient {
     }
 
     logger.debug("About to send a message over the TLS socket [{}]", socketDescription);
-    channel.writeAndFlush(message);
+    writer.write(message);
   }
 
   boolean isConnected() {
@@ -182,7 +203,6 @@ public class TLSTransportClient {
     //logger.debug("Stopping TLS Transport {}", socketDescription);
 
     closeChannel();
-    closeWorkerGroup();
 
     //logger.debug("TLS Transport is stopped {}", socketDescription);
 
@@ -193,12 +213,16 @@ public class TLSTransportClient {
     stop();
     destAddress = null;
     origAddress = null;
+    if (ownsConcurrentFactory) {
+      concurrentFactory.shutdownEventLoopGroups();
+    }
   }
 
   private void closeChannel() {
     if (channel != null && channel.isActive()) {
       try {
-        channel.closeFuture().sync();
+        // event loops are shared, so the channel has to be closed explicitly
+        channel.close().sync();
       } catch (InterruptedException e) {
         logger.error("Error stopping socket " + socketDescription, e);
       }
@@ -206,17 +230,6 @@ public class TLSTransportClient {
     }
   }
 
-  private void closeWorkerGroup() {
-    if (workerGroup != null && !workerGroup.isShuttingDown()) {
-      try {
-        workerGroup.shutdownGracefully().sync();
-      } catch (InterruptedException e) {
-        logger.error("Error stopping socket " + socketDescription, e);
-      }
-      workerGroup = null;
-    }
-  }
-
   public TlsHandshakingState getTlsHandshakingState() {
     return tlsHandshakingState;
   }
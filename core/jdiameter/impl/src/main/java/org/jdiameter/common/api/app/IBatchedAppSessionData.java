@@ -0,0 +1,39 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.api.app;
+
+/**
+ * Session data that can defer its writes. Everything changed between {@link #beginBatch()} and the matching
+ * {@link #endBatch()} is applied to the backing store as one update. Batches nest, only the outermost
+ * {@link #endBatch()} applies the changes. Reads inside a batch see the pending values.
+ */
+public interface IBatchedAppSessionData extends IAppSessionData {
+
+  /**
+   * Starts collecting changes instead of writing them through.
+   */
+  void beginBatch();
+
+  /**
+   * Closes the current batch, writing the collected changes if it is the outermost one.
+   */
+  void endBatch();
+
+}
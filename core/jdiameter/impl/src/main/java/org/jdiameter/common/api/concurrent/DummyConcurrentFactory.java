@@ -42,14 +42,24 @@
 
 package org.jdiameter.common.api.concurrent;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
+import org.jdiameter.client.impl.transport.tcp.SelectorPool;
 import org.jdiameter.common.api.statistic.IStatistic;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+
 /**
  *
  * @author erick.svenson@yahoo.com
@@ -58,6 +68,13 @@ import org.jdiameter.common.api.statistic.IStatistic;
  */
 public class DummyConcurrentFactory implements IConcurrentFactory {
 
+  // created on first use and owned by this factory, so whoever falls back to a dummy factory
+  // has to shut them down when it is done with it
+  private EventLoopGroup eventLoopGroup;
+  private EventExecutorGroup eventExecutorGroup;
+  private Timer wheelTimer;
+  private SelectorPool selectorPool;
+
   @Override
   public Thread getThread(Runnable runnuble) {
     return new Thread(runnuble);
@@ -92,6 +109,67 @@ public class DummyConcurrentFactory implements IConcurrentFactory {
   public void shutdownNow(ScheduledExecutorService service) {
   }
 
+  @Override
+  public synchronized EventLoopGroup getEventLoopGroup() {
+    if (eventLoopGroup == null) {
+      eventLoopGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("NettyWorker", true));
+    }
+    return eventLoopGroup;
+  }
+
+  @Override
+  public synchronized EventExecutorGroup getEventExecutorGroup() {
+    if (eventExecutorGroup == null) {
+      eventExecutorGroup = new DefaultEventExecutorGroup(Runtime.getRuntime().availableProcessors(),
+          new DefaultThreadFactory("NettyHandler", true));
+    }
+    return eventExecutorGroup;
+  }
+
+  @Override
+  public synchronized void shutdownEventLoopGroups() {
+    if (eventLoopGroup != null) {
+      eventLoopGroup.shutdownGracefully();
+      eventLoopGroup = null;
+    }
+    if (eventExecutorGroup != null) {
+      eventExecutorGroup.shutdownGracefully();
+      eventExecutorGroup = null;
+    }
+  }
+
+  @Override
+  public synchronized Timer getWheelTimer() {
+    if (wheelTimer == null) {
+      wheelTimer = new HashedWheelTimer(new DefaultThreadFactory("WheelTimer", true));
+    }
+    return wheelTimer;
+  }
+
+  @Override
+  public synchronized void shutdownWheelTimer() {
+    if (wheelTimer != null) {
+      wheelTimer.stop();
+      wheelTimer = null;
+    }
+  }
+
+  @Override
+  public synchronized SelectorPool getSelectorPool() throws IOException {
+    if (selectorPool == null) {
+      selectorPool = new SelectorPool(0, this);
+    }
+    return selectorPool;
+  }
+
+  @Override
+  public synchronized void shutdownSelectorPool() {
+    if (selectorPool != null) {
+      selectorPool.stop();
+      selectorPool = null;
+    }
+  }
+
   @Override
   public IStatistic getStatistic() {
     return null;
@@ -105,5 +183,8 @@ public class DummyConcurrentFactory implements IConcurrentFactory {
 
   @Override
   public void shutdownAllNow() {
+    shutdownEventLoopGroups();
+    shutdownWheelTimer();
+    shutdownSelectorPool();
   }
 }
@@ -42,12 +42,18 @@
 
 package org.jdiameter.common.api.concurrent;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 
+import org.jdiameter.client.impl.transport.tcp.SelectorPool;
 import org.jdiameter.common.api.statistic.IStatistic;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.EventExecutorGroup;
+
 /**
  *
  * @author erick.svenson@yahoo.com
@@ -63,7 +69,9 @@ public interface IConcurrentFactory {
     PeerOverloadTimer,
     ConnectionTimer,
     StatisticTimer,
-    ApplicationSession
+    ApplicationSession,
+    PeerFSM,
+    PeerFSMConnector
   }
 
   // Thread
@@ -82,6 +90,35 @@ public interface IConcurrentFactory {
 
   void shutdownNow(ScheduledExecutorService service);
 
+  // Netty
+  /**
+   * @return event loop group shared by all Netty connections and network guards of the stack
+   */
+  EventLoopGroup getEventLoopGroup();
+
+  /**
+   * @return executor group running the message handlers of Netty connections
+   */
+  EventExecutorGroup getEventExecutorGroup();
+
+  void shutdownEventLoopGroups();
+
+  /**
+   * @return hashed wheel timer shared by the stack for coarse grained timeouts
+   */
+  Timer getWheelTimer();
+
+  void shutdownWheelTimer();
+
+  // Selector
+  /**
+   * @return selector pool shared by all pooled TCP connections of the stack
+   * @throws IOException if the pool has to be started and a selector can not be opened
+   */
+  SelectorPool getSelectorPool() throws IOException;
+
+  void shutdownSelectorPool();
+
   // Common
   IStatistic getStatistic();
 
@@ -0,0 +1,95 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.api.data;
+
+import java.util.Map;
+
+/**
+ * SPI for replicated application session state. A store keeps, per session id, a flat map of attributes and
+ * the id of the node owning the session, and makes both available to the other nodes of the cluster.
+ * <p>
+ * Attribute values must be <code>null</code>, {@link Boolean}, {@link Integer}, {@link Long}, {@link String} or
+ * <code>byte[]</code>, other values are rejected with {@link IllegalArgumentException}. Richer state is encoded
+ * by the session data itself, e.g. with {@link org.jdiameter.common.impl.data.SessionStateCodec}, so that no node
+ * ever deserializes Java objects received from the cluster. Attributes whose name starts with
+ * {@link #TIMER_PREFIX} hold pending timers of the session, as 16 bytes: the duration and the time it started,
+ * both in milliseconds, the start on the monotonic clock of the node holding the value. Stores replicating them
+ * send the remaining time and restart it on the receiving node, so no synchronized wall clock is needed.
+ * <p>
+ * Implementations must be thread safe. They are created by {@link ISessionDatasource} implementations, which
+ * pass them a {@link java.util.Properties} with their configuration.
+ */
+public interface IReplicatedSessionStore {
+
+  String TIMER_PREFIX = "timer.";
+
+  void start();
+
+  void stop();
+
+  /**
+   * @return id of this node, as used for session ownership
+   */
+  String getLocalNodeId();
+
+  /**
+   * Creates an empty entry owned by this node.
+   *
+   * @return <code>true</code> if created, <code>false</code> if the session already existed
+   */
+  boolean create(String sessionId);
+
+  boolean exists(String sessionId);
+
+  /**
+   * @return value of the attribute, <code>null</code> if the session or the attribute do not exist
+   */
+  Object get(String sessionId, String key);
+
+  /**
+   * @return copy of all attributes of the session, <code>null</code> if the session does not exist
+   */
+  Map<String, Object> getAll(String sessionId);
+
+  /**
+   * Applies a set of attribute changes as one update. <code>null</code> values remove the attribute. Does
+   * nothing if the session does not exist.
+   *
+   * @throws IllegalArgumentException if a value is of an unsupported type
+   */
+  void put(String sessionId, Map<String, ?> changes);
+
+  void remove(String sessionId);
+
+  /**
+   * @return id of the owning node, <code>null</code> if the session does not exist
+   */
+  String getOwner(String sessionId);
+
+  /**
+   * Makes this node the owner of the session, e.g. because traffic for it now arrives here.
+   */
+  void takeOwnership(String sessionId);
+
+  void addListener(IReplicatedSessionStoreListener listener);
+
+  void removeListener(IReplicatedSessionStoreListener listener);
+
+}
@@ -0,0 +1,40 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.api.data;
+
+import java.util.Collection;
+
+/**
+ * Callbacks of {@link IReplicatedSessionStore} about changes made by the cluster rather than by this node.
+ */
+public interface IReplicatedSessionStoreListener {
+
+  /**
+   * A session was removed by another node.
+   */
+  void sessionRemoved(String sessionId);
+
+  /**
+   * This node became the owner of sessions whose previous owner left the cluster. Called once per failover
+   * with all sessions adopted by this node.
+   */
+  void sessionsAdopted(Collection<String> sessionIds);
+
+}
@@ -0,0 +1,113 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+package org.jdiameter.common.api.statistic;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request/answer latency and result code distribution, kept per (Application-Id, Command-Code, peer).
+ * Requests which time out are part of the latency distribution at the time they waited, so
+ * percentiles are not biased towards answered requests, and are counted separately as well.
+ */
+public interface IMessageMetrics {
+
+  /**
+   * Result code recorded for answers carrying neither Result-Code nor Experimental-Result-Code
+   */
+  int NO_RESULT_CODE = 0;
+
+  /**
+   * Metrics of one (Application-Id, Command-Code, peer) triple
+   */
+  interface IAnswerMetric {
+
+    String getPeer();
+
+    long getApplicationId();
+
+    int getCommandCode();
+
+    /**
+     * @return number of answers received plus number of requests timed out
+     */
+    long getCount();
+
+    /**
+     * @return number of requests which timed out waiting for an answer
+     */
+    long getTimeoutCount();
+
+    /**
+     * @return mean latency in microseconds
+     */
+    double getMeanLatency();
+
+    /**
+     * @return highest latency seen, in microseconds
+     */
+    long getMaxLatency();
+
+    /**
+     * @param percentile value between 0 and 100
+     * @return latency in microseconds below which the given percentile of requests was answered
+     */
+    long getLatencyAtPercentile(double percentile);
+
+    /**
+     * @return number of answers per result code
+     */
+    Map<Integer, Long> getResultCodes();
+  }
+
+  boolean isEnabled();
+
+  /**
+   * Record answer to a request sent to peer
+   *
+   * @param peer uri of peer which answered
+   * @param applicationId application id of request
+   * @param commandCode command code of request
+   * @param latencyNanos time between sending request and receiving answer
+   * @param resultCode result code of answer
+   */
+  void recordAnswer(String peer, long applicationId, int commandCode, long latencyNanos, int resultCode);
+
+  /**
+   * Record request sent to peer which timed out before its answer arrived
+   *
+   * @param peer uri of peer the request was sent to
+   * @param applicationId application id of request
+   * @param commandCode command code of request
+   * @param elapsedNanos time between sending request and its timeout
+   */
+  void recordTimeout(String peer, long applicationId, int commandCode, long elapsedNanos);
+
+  /**
+   * @return current metrics of every (Application-Id, Command-Code, peer) seen so far
+   */
+  List<IAnswerMetric> getAnswerMetrics();
+
+  /**
+   * @return metrics in Prometheus text exposition format
+   */
+  String toText();
+
+  void reset();
+}
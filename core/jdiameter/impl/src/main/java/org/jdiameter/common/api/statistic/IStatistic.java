@@ -58,7 +58,8 @@ public interface IStatistic extends Statistic {
     PeerFSM("Peer FSM statistic"),
     Network("Network statistic"),
     Concurrent(" Concurrent factory statistics"),
-    ScheduledExecService("ScheduledExecutorService statistic");
+    ScheduledExecService("ScheduledExecutorService statistic"),
+    Timer("Application session timer statistic");
 
     private String description;
 
@@ -80,6 +81,13 @@ public interface IStatistic extends Statistic {
 
   IStatisticRecord getRecordByName(String name);
 
+  /**
+   * Lookup of a record created for a counter, resolved by the counter ordinal rather than by name.
+   * Prefer it to {@link #getRecordByName(String)} on per message paths.
+   *
+   * @param name counter
+   * @return record of the counter, or null
+   */
   IStatisticRecord getRecordByName(IStatisticRecord.Counters name);
 
 }
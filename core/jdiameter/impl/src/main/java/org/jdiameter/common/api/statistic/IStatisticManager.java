@@ -94,4 +94,9 @@ public interface IStatisticManager {
 
   List<IStatistic> getStatistic();
 
+  /**
+   * @return per application and command latency metrics, recording only if statistics are on
+   */
+  IMessageMetrics getMessageMetrics();
+
 }
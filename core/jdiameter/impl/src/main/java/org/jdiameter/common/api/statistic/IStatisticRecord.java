@@ -86,7 +86,11 @@ public interface IStatisticRecord extends StatisticRecord {
     WaitTimeTask("Average waiting time for execution task"),
     BrokenTasks("Count of broken thread"),
     RejectedTasks("Count of rejected tasks"),
-    QueueSize("Peer FSM queue size");
+    QueueSize("Peer FSM queue size"),
+
+    PendingTimers("Count of pending application session timers"),
+    ScheduledTimers("Count of scheduled application session timers"),
+    ExpiredTimers("Count of expired application session timers");
 
     private String description;
 
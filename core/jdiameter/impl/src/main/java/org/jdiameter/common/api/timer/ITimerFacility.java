@@ -55,4 +55,11 @@ public interface ITimerFacility {
 
   void cancel(Serializable id);
 
+  /**
+   * Cancel all timers of a session still pending
+   *
+   * @param sessionId id of session being released
+   */
+  void cancelAll(String sessionId);
+
 }
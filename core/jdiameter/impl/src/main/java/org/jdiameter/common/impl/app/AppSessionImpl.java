@@ -53,6 +53,7 @@ import org.jdiameter.api.app.AppSession;
 import org.jdiameter.client.api.IAssembler;
 import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IBatchedAppSessionData;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.timer.ITimerFacility;
 import org.slf4j.Logger;
@@ -130,10 +131,27 @@ public abstract class AppSessionImpl implements AppSession {
     return this.sessions; //....
   }
 
+  /**
+   * Opens a write batch if the session data supports one. Must be paired with {@link #endDataBatch()}, usually
+   * right after taking and before releasing the session state lock.
+   */
+  protected void beginDataBatch() {
+    if (appSessionData instanceof IBatchedAppSessionData) {
+      ((IBatchedAppSessionData) appSessionData).beginBatch();
+    }
+  }
+
+  protected void endDataBatch() {
+    if (appSessionData instanceof IBatchedAppSessionData) {
+      ((IBatchedAppSessionData) appSessionData).endBatch();
+    }
+  }
+
   @Override
   public void release() {
     logger.debug("Releasing application session for Session ID '{}' ({}).", getSessionId(), getSessionAppId());
     this.session.setRequestListener(null);
+    this.timerFacility.cancelAll(getSessionId());
     this.session.release();
     this.appSessionData.remove();
   }
@@ -42,6 +42,7 @@
 
 package org.jdiameter.common.impl.concurrent;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -50,15 +51,25 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.Configuration;
 import org.jdiameter.client.impl.helpers.Parameters;
+import org.jdiameter.client.impl.transport.NettyTransportSupport;
+import org.jdiameter.client.impl.transport.tcp.SelectorPool;
 import org.jdiameter.common.api.concurrent.IConcurrentEntityFactory;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+
 /**
  *
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
@@ -66,7 +77,31 @@ import org.jdiameter.common.api.statistic.IStatisticRecord;
  */
 public class ConcurrentFactory implements IConcurrentFactory {
 
+  /**
+   * Concurrent entity sizing the Netty event loop group, 0 (default) lets Netty decide
+   */
+  public static final String NETTY_WORKER_GROUP = "NettyWorkerGroup";
+
+  /**
+   * Concurrent entity sizing the Netty message handler group, defaults to one thread per processor
+   */
+  public static final String NETTY_HANDLER_GROUP = "NettyHandlerGroup";
+
+  /**
+   * Name of the thread running the shared wheel timer
+   */
+  public static final String WHEEL_TIMER = "WheelTimer";
+
+  private static final int WHEEL_TIMER_TICKS_PER_WHEEL = 1024;
+
   private BaseThreadFactory threadFactory;
+  private EventLoopGroup eventLoopGroup;
+  private EventExecutorGroup eventExecutorGroup;
+  private volatile Timer wheelTimer;
+  private long wheelTimerTick;
+  private boolean useNativeTransport;
+  private SelectorPool selectorPool;
+  private int selectorThreadCount;
 
   private Map<String, CommonScheduledExecutorService> scheduledExecutorServices;
   private Configuration[] config;
@@ -76,6 +111,9 @@ public class ConcurrentFactory implements IConcurrentFactory {
   public ConcurrentFactory(Configuration config, IStatisticManager statisticFactory, IConcurrentEntityFactory entityFactory) {
 
     this.config = config.getChildren(Parameters.Concurrent.ordinal());
+    this.useNativeTransport = NettyTransportSupport.isUseNativeTransport(config);
+    this.selectorThreadCount = config.getIntValue(Parameters.SelectorThreadCount.ordinal(), (Integer) Parameters.SelectorThreadCount.defValue());
+    this.wheelTimerTick = Math.max(config.getLongValue(Parameters.TimerWheelTick.ordinal(), (Long) Parameters.TimerWheelTick.defValue()), 1);
     this.entityFactory = entityFactory;
     Configuration dgConfig = getConfigByName(BaseThreadFactory.ENTITY_NAME);
     String defThreadGroupName = dgConfig != null ?
@@ -193,6 +231,80 @@ public class ConcurrentFactory implements IConcurrentFactory {
     }
   }
 
+  @Override
+  public synchronized EventLoopGroup getEventLoopGroup() {
+    if (eventLoopGroup == null) {
+      Configuration groupConfig = getConfigByName(NETTY_WORKER_GROUP);
+      int size = groupConfig != null ? groupConfig.getIntValue(Parameters.ConcurrentEntityPoolSize.ordinal(), 0) : 0;
+      eventLoopGroup = NettyTransportSupport.newEventLoopGroup(useNativeTransport, size, new DefaultThreadFactory(NETTY_WORKER_GROUP, true));
+    }
+    return eventLoopGroup;
+  }
+
+  @Override
+  public synchronized EventExecutorGroup getEventExecutorGroup() {
+    if (eventExecutorGroup == null) {
+      Configuration groupConfig = getConfigByName(NETTY_HANDLER_GROUP);
+      int size = groupConfig != null ? groupConfig.getIntValue(Parameters.ConcurrentEntityPoolSize.ordinal(), 0) : 0;
+      eventExecutorGroup = new DefaultEventExecutorGroup(size > 0 ? size : Runtime.getRuntime().availableProcessors(),
+          new DefaultThreadFactory(NETTY_HANDLER_GROUP, true));
+    }
+    return eventExecutorGroup;
+  }
+
+  @Override
+  public synchronized void shutdownEventLoopGroups() {
+    if (eventLoopGroup != null) {
+      eventLoopGroup.shutdownGracefully();
+      eventLoopGroup = null;
+    }
+    if (eventExecutorGroup != null) {
+      eventExecutorGroup.shutdownGracefully();
+      eventExecutorGroup = null;
+    }
+  }
+
+  @Override
+  public Timer getWheelTimer() {
+    // looked up for every request sent, so only creation is synchronized
+    Timer timer = wheelTimer;
+    if (timer == null) {
+      synchronized (this) {
+        timer = wheelTimer;
+        if (timer == null) {
+          timer = new HashedWheelTimer(new DefaultThreadFactory(WHEEL_TIMER, true), wheelTimerTick, TimeUnit.MILLISECONDS,
+              WHEEL_TIMER_TICKS_PER_WHEEL);
+          wheelTimer = timer;
+        }
+      }
+    }
+    return timer;
+  }
+
+  @Override
+  public synchronized void shutdownWheelTimer() {
+    if (wheelTimer != null) {
+      wheelTimer.stop();
+      wheelTimer = null;
+    }
+  }
+
+  @Override
+  public synchronized SelectorPool getSelectorPool() throws IOException {
+    if (selectorPool == null) {
+      selectorPool = new SelectorPool(selectorThreadCount, this);
+    }
+    return selectorPool;
+  }
+
+  @Override
+  public synchronized void shutdownSelectorPool() {
+    if (selectorPool != null) {
+      selectorPool.stop();
+      selectorPool = null;
+    }
+  }
+
   @Override
   public IStatistic getStatistic() {
     return statistic;
@@ -214,6 +326,8 @@ public class ConcurrentFactory implements IConcurrentFactory {
       ExecutorService e = scheduledExecutorServices.remove(name);
       e.shutdownNow();
     }
-
+    shutdownEventLoopGroups();
+    shutdownWheelTimer();
+    shutdownSelectorPool();
   }
 }
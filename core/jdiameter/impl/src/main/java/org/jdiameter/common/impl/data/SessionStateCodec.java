@@ -0,0 +1,186 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data;
+
+import java.nio.ByteBuffer;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.Request;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.api.parser.ParseException;
+
+/**
+ * Binary layout of the session state kept by replicated session data. Every value starts with a format byte
+ * (high bit set, low bits the layout version) and a type byte:
+ * <ul>
+ * <li>message: the Diameter encoded message</li>
+ * <li>application id: vendor, auth and acct application ids, as longs</li>
+ * </ul>
+ * Messages stored before the format byte was introduced are plain Diameter messages, whose first byte is the
+ * Diameter version (1), and are still accepted, as are {@link ApplicationId} instances.
+ * <p>
+ * Nodes released before this layout only read the legacy forms. Data replicated to such nodes is written with
+ * {@link #LEGACY_VERSION}, plain messages and {@link ApplicationId} instances, until the whole cluster reads
+ * {@link #FORMAT_VERSION}.
+ */
+public class SessionStateCodec {
+
+  public static final int LEGACY_VERSION = 0;
+  public static final int FORMAT_VERSION = 1;
+
+  private static final byte FORMAT = (byte) (0x80 | FORMAT_VERSION);
+  private static final int HEADER_LENGTH = 2;
+
+  private static final byte TYPE_MESSAGE = 1;
+  private static final byte TYPE_APPLICATION_ID = 2;
+
+  private final IMessageParser parser;
+  private final int writeVersion;
+
+  public SessionStateCodec(IMessageParser parser) {
+    this(parser, FORMAT_VERSION);
+  }
+
+  /**
+   * @param writeVersion layout written, {@link #LEGACY_VERSION} or {@link #FORMAT_VERSION}
+   */
+  public SessionStateCodec(IMessageParser parser, int writeVersion) {
+    checkWriteVersion(writeVersion);
+    this.parser = parser;
+    this.writeVersion = writeVersion;
+  }
+
+  public byte[] encodeMessage(Request message) throws ParseException {
+    IMessage msg = (IMessage) message;
+    if (writeVersion == LEGACY_VERSION) {
+      return parser.encodeMessage(msg).array();
+    }
+    // encoded straight behind the header, in an array of the exact size
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + parser.getMessageLength(msg));
+    buffer.put(FORMAT).put(TYPE_MESSAGE);
+    parser.encodeMessage(msg, buffer);
+    return buffer.array();
+  }
+
+  public IMessage decodeMessage(byte[] data) throws AvpDataException {
+    if (data.length > 0 && data[0] == FORMAT) {
+      checkType(data, TYPE_MESSAGE);
+      return parser.createMessage(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+    }
+    else if (data.length > 0 && (data[0] & 0x80) != 0) {
+      throw new AvpDataException("Unsupported session state format " + (data[0] & 0x7F));
+    }
+    // stored without format byte
+    return parser.createMessage(data);
+  }
+
+  public static byte[] encodeApplicationId(ApplicationId applicationId) {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + 24);
+    buffer.put(FORMAT).put(TYPE_APPLICATION_ID);
+    buffer.putLong(applicationId.getVendorId()).putLong(applicationId.getAuthAppId()).putLong(applicationId.getAcctAppId());
+    return buffer.array();
+  }
+
+  /**
+   * @param writeVersion layout written, {@link #LEGACY_VERSION} or {@link #FORMAT_VERSION}
+   * @return the form to store, the {@link ApplicationId} itself for {@link #LEGACY_VERSION}
+   */
+  public static Object encodeApplicationId(ApplicationId applicationId, int writeVersion) {
+    checkWriteVersion(writeVersion);
+    return writeVersion == LEGACY_VERSION ? applicationId : encodeApplicationId(applicationId);
+  }
+
+  /**
+   * @param value as stored, <code>null</code>, encoded or an {@link ApplicationId} instance
+   */
+  public static ApplicationId decodeApplicationId(Object value) throws AvpDataException {
+    if (value == null || value instanceof ApplicationId) {
+      return (ApplicationId) value;
+    }
+    byte[] data = (byte[]) value;
+    if (data.length != HEADER_LENGTH + 24 || data[0] != FORMAT) {
+      throw new AvpDataException("Unsupported application id encoding");
+    }
+    checkType(data, TYPE_APPLICATION_ID);
+    ByteBuffer buffer = ByteBuffer.wrap(data, HEADER_LENGTH, 24);
+    long vendorId = buffer.getLong();
+    long authAppId = buffer.getLong();
+    long acctAppId = buffer.getLong();
+    if (authAppId != ApplicationId.UNDEFINED_VALUE) {
+      return ApplicationId.createByAuthAppId(vendorId, authAppId);
+    }
+    return ApplicationId.createByAccAppId(vendorId, acctAppId);
+  }
+
+  private static void checkWriteVersion(int writeVersion) {
+    if (writeVersion != LEGACY_VERSION && writeVersion != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unsupported session state write version " + writeVersion);
+    }
+  }
+
+  private static void checkType(byte[] data, byte type) throws AvpDataException {
+    if (data.length < HEADER_LENGTH || data[1] != type) {
+      throw new AvpDataException("Expected session state of type " + type + ", found " + (data.length < HEADER_LENGTH ? -1 : data[1]));
+    }
+  }
+
+  /**
+   * Local copy of one message attribute of a session data object. It keeps the last message set or read next to
+   * its stored form, so the message is only decoded again once the stored form changed, i.e. after another node
+   * wrote it, and is encoded once per change.
+   */
+  public static final class CachedMessage {
+
+    private final SessionStateCodec codec;
+    private byte[] data;
+    private Request message;
+
+    public CachedMessage(SessionStateCodec codec) {
+      this.codec = codec;
+    }
+
+    /**
+     * @param stored the stored form of the attribute, <code>null</code> if not set
+     */
+    public synchronized Request get(byte[] stored) throws AvpDataException {
+      if (stored != data) {
+        message = stored == null ? null : codec.decodeMessage(stored);
+        data = stored;
+      }
+      return message;
+    }
+
+    /**
+     * @return the form to store
+     */
+    public synchronized byte[] set(Request message) throws ParseException {
+      this.data = codec.encodeMessage(message);
+      this.message = message;
+      return data;
+    }
+
+    public synchronized void clear() {
+      this.data = null;
+      this.message = null;
+    }
+  }
+}
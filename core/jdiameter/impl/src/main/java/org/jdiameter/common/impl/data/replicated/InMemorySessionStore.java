@@ -0,0 +1,384 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jdiameter.common.api.data.IReplicatedSessionStore;
+import org.jdiameter.common.api.data.IReplicatedSessionStoreListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory {@link IReplicatedSessionStore}. Sessions are spread over a fixed number of partitions by session
+ * id hash; on its own this is a single node stand-in for a replicated store, subclasses add the replication by
+ * overriding {@link #replicatePut(String, String, Map, boolean)} and {@link #replicateRemove(String)} and feeding
+ * remote changes to the <code>apply*</code> methods.
+ * <p>
+ * Every change to a session is made and handed to replication under the lock of that session, so the
+ * replication stream of a session is in the order the changes were made.
+ */
+public class InMemorySessionStore implements IReplicatedSessionStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(InMemorySessionStore.class);
+
+  public static final String PARTITIONS = "partitions";
+  public static final String NODE_ID = "node.id";
+
+  private final List<ConcurrentMap<String, Entry>> partitions;
+  private final int partitionMask;
+  private volatile String nodeId;
+
+  private final List<IReplicatedSessionStoreListener> listeners = new CopyOnWriteArrayList<IReplicatedSessionStoreListener>();
+
+  public InMemorySessionStore() {
+    this(new Properties());
+  }
+
+  public InMemorySessionStore(Properties properties) {
+    int requested = Integer.parseInt(properties.getProperty(PARTITIONS, "64"));
+    int count = Integer.highestOneBit(Math.max(1, requested));
+    if (count < requested) {
+      count <<= 1;
+    }
+    this.partitions = new ArrayList<ConcurrentMap<String, Entry>>(count);
+    for (int i = 0; i < count; i++) {
+      partitions.add(new ConcurrentHashMap<String, Entry>());
+    }
+    this.partitionMask = count - 1;
+    this.nodeId = properties.getProperty(NODE_ID, "local");
+  }
+
+  @Override
+  public void start() {
+    // NOP
+  }
+
+  @Override
+  public void stop() {
+    // NOP
+  }
+
+  @Override
+  public String getLocalNodeId() {
+    return nodeId;
+  }
+
+  protected void setLocalNodeId(String nodeId) {
+    this.nodeId = nodeId;
+  }
+
+  public int getPartitionCount() {
+    return partitions.size();
+  }
+
+  /**
+   * @return number of sessions held, owned by any node
+   */
+  public int size() {
+    int size = 0;
+    for (ConcurrentMap<String, Entry> partition : partitions) {
+      size += partition.size();
+    }
+    return size;
+  }
+
+  @Override
+  public boolean create(String sessionId) {
+    Entry entry = new Entry(nodeId);
+    synchronized (entry) {
+      if (partition(sessionId).putIfAbsent(sessionId, entry) != null) {
+        return false;
+      }
+      replicatePut(sessionId, entry.owner, entry.attributes, true);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean exists(String sessionId) {
+    return partition(sessionId).containsKey(sessionId);
+  }
+
+  @Override
+  public Object get(String sessionId, String key) {
+    Entry entry = partition(sessionId).get(sessionId);
+    if (entry == null) {
+      return null;
+    }
+    synchronized (entry) {
+      return entry.attributes.get(key);
+    }
+  }
+
+  @Override
+  public Map<String, Object> getAll(String sessionId) {
+    Entry entry = partition(sessionId).get(sessionId);
+    if (entry == null) {
+      return null;
+    }
+    synchronized (entry) {
+      return new HashMap<String, Object>(entry.attributes);
+    }
+  }
+
+  @Override
+  public void put(String sessionId, Map<String, ?> changes) {
+    for (Map.Entry<String, ?> change : changes.entrySet()) {
+      Object value = change.getValue();
+      if (!(value == null || value instanceof Boolean || value instanceof Integer || value instanceof Long
+          || value instanceof String || value instanceof byte[])) {
+        throw new IllegalArgumentException("Attribute " + change.getKey() + " of session " + sessionId + " is a "
+            + value.getClass().getName() + ", which can not be stored");
+      }
+    }
+    Entry entry = partition(sessionId).get(sessionId);
+    if (entry == null || changes.isEmpty()) {
+      return;
+    }
+    synchronized (entry) {
+      entry.apply(changes);
+      replicatePut(sessionId, entry.owner, changes, false);
+    }
+  }
+
+  @Override
+  public void remove(String sessionId) {
+    Entry entry = partition(sessionId).remove(sessionId);
+    if (entry != null) {
+      synchronized (entry) {
+        replicateRemove(sessionId);
+      }
+    }
+  }
+
+  @Override
+  public String getOwner(String sessionId) {
+    Entry entry = partition(sessionId).get(sessionId);
+    return entry == null ? null : entry.owner;
+  }
+
+  @Override
+  public void takeOwnership(String sessionId) {
+    Entry entry = partition(sessionId).get(sessionId);
+    if (entry == null) {
+      return;
+    }
+    synchronized (entry) {
+      if (!nodeId.equals(entry.owner)) {
+        entry.owner = nodeId;
+        replicatePut(sessionId, nodeId, Collections.<String, Object>emptyMap(), false);
+      }
+    }
+  }
+
+  @Override
+  public void addListener(IReplicatedSessionStoreListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeListener(IReplicatedSessionStoreListener listener) {
+    listeners.remove(listener);
+  }
+
+  // Replication hooks ----------------------------------------------------
+
+  /**
+   * Called under the session lock after a local change.
+   *
+   * @param owner current owner of the session
+   * @param changes changed attributes, <code>null</code> values are removals
+   * @param replace <code>true</code> if the changes are the complete attribute set of the session
+   */
+  protected void replicatePut(String sessionId, String owner, Map<String, ?> changes, boolean replace) {
+    // NOP, nothing to replicate to
+  }
+
+  /**
+   * Called under the session lock after a local removal.
+   */
+  protected void replicateRemove(String sessionId) {
+    // NOP, nothing to replicate to
+  }
+
+  /**
+   * Applies a change received from another node. Partial changes to unknown sessions are dropped, the owner
+   * replicates the full session before anything else.
+   */
+  protected void applyPut(String sessionId, String owner, Map<String, ?> changes, boolean replace) {
+    ConcurrentMap<String, Entry> partition = partition(sessionId);
+    Entry entry = partition.get(sessionId);
+    if (entry == null) {
+      if (!replace) {
+        return;
+      }
+      Entry created = new Entry(owner);
+      entry = partition.putIfAbsent(sessionId, created);
+      if (entry == null) {
+        entry = created;
+      }
+    }
+    synchronized (entry) {
+      if (replace) {
+        entry.attributes.clear();
+      }
+      entry.apply(changes);
+      entry.owner = owner;
+    }
+  }
+
+  protected void applyRemove(String sessionId) {
+    if (partition(sessionId).remove(sessionId) != null) {
+      for (IReplicatedSessionStoreListener listener : listeners) {
+        try {
+          listener.sessionRemoved(sessionId);
+        }
+        catch (Exception e) {
+          logger.warn("Failure notifying removal of session " + sessionId, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return ids of the sessions currently owned by the given node
+   */
+  protected List<String> getOwnedBy(String owner) {
+    List<String> sessionIds = new ArrayList<String>();
+    for (ConcurrentMap<String, Entry> partition : partitions) {
+      for (Map.Entry<String, Entry> e : partition.entrySet()) {
+        if (owner.equals(e.getValue().owner)) {
+          sessionIds.add(e.getKey());
+        }
+      }
+    }
+    return sessionIds;
+  }
+
+  /**
+   * Hands every session owned by this node to the visitor, each under its session lock.
+   *
+   * @throws IOException if {@link EntryVisitor#released()} fails, nothing further is visited
+   */
+  protected void visitOwned(EntryVisitor visitor) throws IOException {
+    for (ConcurrentMap<String, Entry> partition : partitions) {
+      for (Map.Entry<String, Entry> e : partition.entrySet()) {
+        Entry entry = e.getValue();
+        boolean visited = false;
+        synchronized (entry) {
+          if (nodeId.equals(entry.owner)) {
+            visitor.visit(e.getKey(), entry.owner, entry.attributes);
+            visited = true;
+          }
+        }
+        if (visited) {
+          visitor.released();
+        }
+      }
+    }
+  }
+
+  /**
+   * Redistributes the sessions of a node that left. Partition <i>p</i> goes to
+   * <code>liveNodes[p % liveNodes.size()]</code>, so with the same view of the cluster every node takes the
+   * same decision without talking to the others, and the load of the failed node is spread evenly.
+   *
+   * @param failedNode id of the node that left
+   * @param liveNodes ids of the remaining nodes, including this one, in the same order on every node
+   */
+  protected void adoptSessions(String failedNode, List<String> liveNodes) {
+    List<String> adopted = new ArrayList<String>();
+    for (int p = 0; p < partitions.size(); p++) {
+      if (!nodeId.equals(liveNodes.get(p % liveNodes.size()))) {
+        continue;
+      }
+      for (Map.Entry<String, Entry> e : partitions.get(p).entrySet()) {
+        Entry entry = e.getValue();
+        synchronized (entry) {
+          if (failedNode.equals(entry.owner)) {
+            entry.owner = nodeId;
+            replicatePut(e.getKey(), nodeId, Collections.<String, Object>emptyMap(), false);
+            adopted.add(e.getKey());
+          }
+        }
+      }
+    }
+    logger.info("Node {} left, {} of its sessions adopted by {}", new Object[] {failedNode, adopted.size(), nodeId});
+    if (adopted.isEmpty()) {
+      return;
+    }
+    List<String> sessionIds = Collections.unmodifiableList(adopted);
+    for (IReplicatedSessionStoreListener listener : listeners) {
+      try {
+        listener.sessionsAdopted(sessionIds);
+      }
+      catch (Exception e) {
+        logger.warn("Failure notifying adopted sessions", e);
+      }
+    }
+  }
+
+  private ConcurrentMap<String, Entry> partition(String sessionId) {
+    int h = sessionId.hashCode();
+    return partitions.get((h ^ (h >>> 16)) & partitionMask);
+  }
+
+  protected interface EntryVisitor {
+
+    void visit(String sessionId, String owner, Map<String, Object> attributes);
+
+    /**
+     * Called once the lock of the session just visited is released, so blocking work such as
+     * network writes does not hold up changes to it.
+     */
+    void released() throws IOException;
+  }
+
+  private static final class Entry {
+
+    private String owner;
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+    private Entry(String owner) {
+      this.owner = owner;
+    }
+
+    private void apply(Map<String, ?> changes) {
+      for (Map.Entry<String, ?> change : changes.entrySet()) {
+        if (change.getValue() == null) {
+          attributes.remove(change.getKey());
+        }
+        else {
+          attributes.put(change.getKey(), change.getValue());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Properties;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.IllegalDiameterStateException;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.IAppSessionFactory;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+import org.jdiameter.common.api.data.IReplicatedSessionStore;
+import org.jdiameter.common.api.data.IReplicatedSessionStoreListener;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.impl.data.LocalDataSource;
+import org.jdiameter.common.impl.data.replicated.cca.CCAStoreSessionDataFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replicated datasource implementation for {@link ISessionDatasource} on top of an
+ * {@link IReplicatedSessionStore}, so that a cluster does not need JBoss Cache. Session objects live in a
+ * {@link LocalDataSource}; sessions found only in the store are recreated locally on first use, and this node
+ * then takes their ownership.
+ * <p>
+ * The store is configured by <code>jdiameter-replication.properties</code>, looked up in the classpath and then
+ * in <code>config/</code>; the stack does not start without it. Its <code>store</code> property names the
+ * {@link IReplicatedSessionStore} class, which must have a constructor taking {@link Properties}; by default
+ * {@link SocketReplicatedSessionStore} when <code>members</code> are set and {@link InMemorySessionStore}
+ * otherwise, so a single node setup has to provide the file too. The other properties are passed on to the store.
+ * <p>
+ * Only Credit-Control session data is kept in the store, the other applications use local session data. Timers
+ * have to be scheduled by {@link StoreTimerFacility}, whose timer ids the store can hold.
+ */
+public class ReplicatedStoreDatasource implements ISessionDatasource, IReplicatedSessionStoreListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReplicatedStoreDatasource.class);
+
+  public static final String STORE_DEFAULT_FILE = "jdiameter-replication.properties";
+  public static final String STORE_CLASS = "store";
+
+  private IContainer container;
+  private ISessionDatasource localDataSource;
+  private IReplicatedSessionStore store;
+
+  // provided by impl, no way to change that, no conf! :)
+  protected HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>> appSessionDataFactories =
+      new HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>>();
+
+  public ReplicatedStoreDatasource(IContainer container) {
+    this(container, new LocalDataSource(), loadProperties(STORE_DEFAULT_FILE));
+  }
+
+  public ReplicatedStoreDatasource(IContainer container, ISessionDatasource localDataSource, Properties properties) {
+    this(container, localDataSource, createStore(properties));
+  }
+
+  public ReplicatedStoreDatasource(IContainer container, ISessionDatasource localDataSource, IReplicatedSessionStore store) {
+    super();
+    this.container = container;
+    this.localDataSource = localDataSource;
+    this.store = store;
+    this.store.addListener(this);
+
+    appSessionDataFactories.put(ICCASessionData.class, new CCAStoreSessionDataFactory(this));
+  }
+
+  @Override
+  public boolean exists(String sessionId) {
+    return this.localDataSource.exists(sessionId) || this.store.exists(sessionId);
+  }
+
+  @Override
+  public void addSession(BaseSession session) {
+    this.localDataSource.addSession(session);
+  }
+
+  @Override
+  public BaseSession getSession(String sessionId) {
+    if (this.localDataSource.exists(sessionId)) {
+      return this.localDataSource.getSession(sessionId);
+    }
+    else if (this.makeLocal(sessionId)) {
+      return this.localDataSource.getSession(sessionId);
+    }
+    return null;
+  }
+
+  @Override
+  public NetworkReqListener getSessionListener(String sessionId) {
+    if (this.localDataSource.exists(sessionId)) {
+      return this.localDataSource.getSessionListener(sessionId);
+    }
+    else if (this.makeLocal(sessionId)) {
+      return this.localDataSource.getSessionListener(sessionId);
+    }
+    return null;
+  }
+
+  @Override
+  public void removeSession(String sessionId) {
+    logger.debug("removeSession({}) in Local DataSource", sessionId);
+    // the store entry goes with the session data, see IAppSessionData#remove()
+    this.localDataSource.removeSession(sessionId);
+  }
+
+  @Override
+  public NetworkReqListener removeSessionListener(String sessionId) {
+    if (this.localDataSource.exists(sessionId)) {
+      return this.localDataSource.removeSessionListener(sessionId);
+    }
+    else if (this.makeLocal(sessionId)) {
+      return this.localDataSource.removeSessionListener(sessionId);
+    }
+    return null;
+  }
+
+  @Override
+  public void setSessionListener(String sessionId, NetworkReqListener data) {
+    if (this.localDataSource.exists(sessionId)) {
+      this.localDataSource.setSessionListener(sessionId, data);
+    }
+    else if (this.makeLocal(sessionId)) {
+      this.localDataSource.setSessionListener(sessionId, data);
+    }
+  }
+
+  @Override
+  public void start() {
+    this.store.start();
+  }
+
+  @Override
+  public void stop() {
+    this.store.stop();
+  }
+
+  @Override
+  public boolean isClustered() {
+    return true;
+  }
+
+  @Override
+  public IAppSessionDataFactory<? extends IAppSessionData> getDataFactory(Class<? extends IAppSessionData> x) {
+    IAppSessionDataFactory<? extends IAppSessionData> factory = this.appSessionDataFactories.get(x);
+    return factory != null ? factory : this.localDataSource.getDataFactory(x);
+  }
+
+  @Override
+  public void sessionRemoved(String sessionId) {
+    this.localDataSource.removeSession(sessionId);
+  }
+
+  @Override
+  public void sessionsAdopted(Collection<String> sessionIds) {
+    // recreated lazily, on the next message or timer of each session
+  }
+
+  public IReplicatedSessionStore getStore() {
+    return this.store;
+  }
+
+  public IContainer getContainer() {
+    return this.container;
+  }
+
+  /**
+   * Recreates locally a session known only to the store.
+   *
+   * @return true if the session is now local
+   */
+  private boolean makeLocal(String sessionId) {
+    Class<? extends AppSession> appSessionInterfaceClass = StoreAppSessionData.getAppSessionIface(this.store, sessionId);
+    if (appSessionInterfaceClass == null) {
+      return false;
+    }
+    try {
+      IAppSessionFactory fct = ((ISessionFactory) this.container.getSessionFactory()).getAppSessionFactory(appSessionInterfaceClass);
+      if (fct == null) {
+        logger.warn("Session with id:{}, is in replicated data source, but no Application Session Factory for:{}.",
+            sessionId, appSessionInterfaceClass);
+        return false;
+      }
+      this.store.takeOwnership(sessionId);
+      BaseSession session = fct.getSession(sessionId, appSessionInterfaceClass);
+      this.localDataSource.addSession(session);
+      this.localDataSource.setSessionListener(sessionId, (NetworkReqListener) session);
+      return true;
+    }
+    catch (IllegalDiameterStateException e) {
+      logger.error("Failed to obtain factory from stack...", e);
+      return false;
+    }
+  }
+
+  private static Properties loadProperties(String name) {
+    Properties properties = new Properties();
+    InputStream is = null;
+    try {
+      is = ReplicatedStoreDatasource.class.getClassLoader().getResourceAsStream(name);
+      if (is == null) {
+        try {
+          is = new FileInputStream("config/" + name);
+        }
+        catch (IOException e) {
+          // a cluster silently running as independent nodes would only show on the first failover
+          logger.error("No {} found in the classpath or config/, the replicated session store is not configured", name);
+          throw new IllegalStateException("Missing " + name + ", required by " + ReplicatedStoreDatasource.class.getName(), e);
+        }
+      }
+      properties.load(is);
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Failed to read " + name, e);
+    }
+    finally {
+      if (is != null) {
+        try {
+          is.close();
+        }
+        catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+    return properties;
+  }
+
+  private static IReplicatedSessionStore createStore(Properties properties) {
+    String defaultStore = properties.getProperty(SocketReplicatedSessionStore.MEMBERS, "").trim().length() > 0 ?
+        SocketReplicatedSessionStore.class.getName() : InMemorySessionStore.class.getName();
+    String storeClass = properties.getProperty(STORE_CLASS, defaultStore);
+    try {
+      return (IReplicatedSessionStore) Class.forName(storeClass).getConstructor(Properties.class).newInstance(properties);
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("Failed to create session store " + storeClass, e);
+    }
+  }
+
+}
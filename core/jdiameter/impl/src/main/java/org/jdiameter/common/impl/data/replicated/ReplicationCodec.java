@@ -0,0 +1,308 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Wire format of {@link SocketReplicatedSessionStore}. Every frame is <code>[int length][byte type][body]</code>,
+ * length excluding itself and at most the configured maximum frame size:
+ * <ul>
+ * <li>HELLO: node id and incarnation (start time) of the sender, first frame on every connection</li>
+ * <li>PING: empty, keeps the sender alive while it has nothing to replicate</li>
+ * <li>PUT: session id, owner, replace flag, attribute count, then key and tagged value per attribute. Timers
+ * (see {@link TimerValue}) are sent as their remaining time and restarted on the local clock when read.</li>
+ * <li>REMOVE: session id</li>
+ * <li>SNAPSHOT_BEGIN / SNAPSHOT_END: enclose the full PUTs of all sessions owned by the sender</li>
+ * </ul>
+ * With a shared secret, frames are preceded by a mutual challenge-response: the connecting node sends a nonce, the
+ * accepting node answers with its own nonce and the HMAC-SHA256 of both, and the connecting node proves the secret
+ * the same way with the nonces swapped. Neither node reads a frame before the other one proved the secret.
+ * <p>
+ * Values are limited to the types of {@link org.jdiameter.common.api.data.IReplicatedSessionStore}, nothing is
+ * deserialized with Java serialization. Every length and count read is checked against the bytes left in the
+ * frame before anything is allocated for it.
+ */
+final class ReplicationCodec {
+
+  static final byte HELLO = 1;
+  static final byte PING = 2;
+  static final byte PUT = 3;
+  static final byte REMOVE = 4;
+  static final byte SNAPSHOT_BEGIN = 5;
+  static final byte SNAPSHOT_END = 6;
+
+  private static final byte TAG_NULL = 0;
+  private static final byte TAG_BOOLEAN = 1;
+  private static final byte TAG_INTEGER = 2;
+  private static final byte TAG_LONG = 3;
+  private static final byte TAG_STRING = 4;
+  private static final byte TAG_BYTES = 5;
+  // 6 was used for Java serialized values and is not accepted anymore
+  private static final byte TAG_TIMER = 7;
+
+  // smallest encoding of a changed attribute: empty key and a null value
+  private static final int MIN_CHANGE_LENGTH = 5;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  static final int NONCE_LENGTH = 16;
+  static final int MAC_LENGTH = 32;
+  // keeps the proof of one side from being replayed as the proof of the other
+  static final byte ROLE_ACCEPTOR = 'A';
+  static final byte ROLE_CONNECTOR = 'C';
+
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+  private static final SecureRandom random = new SecureRandom();
+
+  static final byte[] PING_FRAME = frame(PING);
+  static final byte[] SNAPSHOT_BEGIN_FRAME = frame(SNAPSHOT_BEGIN);
+  static final byte[] SNAPSHOT_END_FRAME = frame(SNAPSHOT_END);
+
+  private ReplicationCodec() {
+  }
+
+  static byte[] hello(String nodeId, long incarnation, int maxFrameSize) throws IOException {
+    Writer w = new Writer(HELLO);
+    writeString(w.out, nodeId);
+    w.out.writeLong(incarnation);
+    return w.toFrame(maxFrameSize);
+  }
+
+  static byte[] put(String sessionId, String owner, Map<String, ?> changes, boolean replace, int maxFrameSize)
+      throws IOException {
+    Writer w = new Writer(PUT);
+    writeString(w.out, sessionId);
+    writeString(w.out, owner);
+    w.out.writeBoolean(replace);
+    w.out.writeInt(changes.size());
+    long now = TimerValue.now();
+    for (Map.Entry<String, ?> change : changes.entrySet()) {
+      writeString(w.out, change.getKey());
+      if (TimerValue.isTimer(change.getKey(), change.getValue())) {
+        w.out.writeByte(TAG_TIMER);
+        w.out.writeLong(TimerValue.remaining((byte[]) change.getValue(), now));
+      }
+      else {
+        writeValue(w.out, change.getValue());
+      }
+    }
+    return w.toFrame(maxFrameSize);
+  }
+
+  static byte[] remove(String sessionId, int maxFrameSize) throws IOException {
+    Writer w = new Writer(REMOVE);
+    writeString(w.out, sessionId);
+    return w.toFrame(maxFrameSize);
+  }
+
+  static byte[] nonce() {
+    byte[] nonce = new byte[NONCE_LENGTH];
+    random.nextBytes(nonce);
+    return nonce;
+  }
+
+  /**
+   * @return proof of the secret by the given role, over its peer's nonce and then its own
+   */
+  static byte[] mac(byte[] secret, byte role, byte[] peerNonce, byte[] ownNonce) throws IOException {
+    try {
+      Mac mac = Mac.getInstance(MAC_ALGORITHM);
+      mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+      mac.update(role);
+      mac.update(peerNonce);
+      mac.update(ownNonce);
+      return mac.doFinal();
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("Unable to compute " + MAC_ALGORITHM, e);
+    }
+  }
+
+  static boolean verify(byte[] expected, byte[] actual) {
+    // constant time
+    return MessageDigest.isEqual(expected, actual);
+  }
+
+  static byte[] secret(String secret) {
+    return secret.getBytes(UTF8);
+  }
+
+  /**
+   * @return frame body, type first, or <code>null</code> at end of stream
+   */
+  static byte[] readFrame(DataInputStream in, int maxFrameSize) throws IOException {
+    int length;
+    try {
+      length = in.readInt();
+    }
+    catch (EOFException e) {
+      return null;
+    }
+    if (length <= 0 || length > maxFrameSize) {
+      throw new ProtocolException("Invalid frame length " + length + ", maximum is " + maxFrameSize);
+    }
+    byte[] body = new byte[length];
+    in.readFully(body);
+    return body;
+  }
+
+  static DataInputStream body(byte[] frame) {
+    return new DataInputStream(new ByteArrayInputStream(frame, 1, frame.length - 1));
+  }
+
+  static Map<String, Object> readChanges(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    if (count < 0 || count > in.available() / MIN_CHANGE_LENGTH) {
+      throw new ProtocolException("Invalid attribute count " + count);
+    }
+    Map<String, Object> changes = new HashMap<String, Object>(count * 2);
+    for (int i = 0; i < count; i++) {
+      String key = readString(in);
+      changes.put(key, readValue(in));
+    }
+    return changes;
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    return new String(readBytes(in), UTF8);
+  }
+
+  /**
+   * Reads a length prefixed byte array, the length being checked against the rest of the frame.
+   */
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    // frames are decoded from memory, available() is exactly what is left
+    if (length < 0 || length > in.available()) {
+      throw new ProtocolException("Invalid length " + length + ", " + in.available() + " bytes left in frame");
+    }
+    byte[] data = new byte[length];
+    in.readFully(data);
+    return data;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] data = value.getBytes(UTF8);
+    out.writeInt(data.length);
+    out.write(data);
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(TAG_NULL);
+    }
+    else if (value instanceof Boolean) {
+      out.writeByte(TAG_BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    }
+    else if (value instanceof Integer) {
+      out.writeByte(TAG_INTEGER);
+      out.writeInt((Integer) value);
+    }
+    else if (value instanceof Long) {
+      out.writeByte(TAG_LONG);
+      out.writeLong((Long) value);
+    }
+    else if (value instanceof String) {
+      out.writeByte(TAG_STRING);
+      writeString(out, (String) value);
+    }
+    else if (value instanceof byte[]) {
+      byte[] data = (byte[]) value;
+      out.writeByte(TAG_BYTES);
+      out.writeInt(data.length);
+      out.write(data);
+    }
+    else {
+      throw new IOException("Attribute value of " + value.getClass() + " can not be replicated");
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case TAG_NULL:
+        return null;
+      case TAG_BOOLEAN:
+        return in.readBoolean();
+      case TAG_INTEGER:
+        return in.readInt();
+      case TAG_LONG:
+        return in.readLong();
+      case TAG_STRING:
+        return readString(in);
+      case TAG_BYTES:
+        return readBytes(in);
+      case TAG_TIMER:
+        long remaining = in.readLong();
+        if (remaining < 0) {
+          throw new ProtocolException("Invalid timer duration " + remaining);
+        }
+        return TimerValue.encode(remaining, TimerValue.now());
+      default:
+        throw new ProtocolException("Unknown value tag " + tag);
+    }
+  }
+
+  private static byte[] frame(byte type) {
+    return new byte[] {0, 0, 0, 1, type};
+  }
+
+  private static final class Writer {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    private Writer(byte type) throws IOException {
+      out.writeInt(0);
+      out.writeByte(type);
+    }
+
+    private byte[] toFrame(int maxFrameSize) throws IOException {
+      int length = bytes.size() - 4;
+      if (length > maxFrameSize) {
+        // the receiver would drop the connection
+        throw new IOException("Frame of " + length + " bytes exceeds the maximum frame size of " + maxFrameSize);
+      }
+      byte[] frame = bytes.toByteArray();
+      frame[0] = (byte) (length >>> 24);
+      frame[1] = (byte) (length >>> 16);
+      frame[2] = (byte) (length >>> 8);
+      frame[3] = (byte) length;
+      return frame;
+    }
+  }
+}
@@ -0,0 +1,600 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link InMemorySessionStore} replicated to a static set of members over plain TCP. Every node holds every
+ * session; changes are pushed by the node making them to all other members, one connection and one sender
+ * thread per member.
+ * <p>
+ * Configuration properties:
+ * <ul>
+ * <li><code>members</code>: comma separated <code>host:port</code> of all nodes, identical on every node. A node
+ * listens on the first member address it is able to bind, which also becomes its node id.</li>
+ * <li><code>failure.timeout</code>: ms without any frame from a node before it is considered gone, default 3000</li>
+ * <li><code>heartbeat.interval</code>: ms between keepalives of an idle connection, default 1000</li>
+ * <li><code>queue.size</code>: frames buffered per member, default 65536. On overflow the member is brought back
+ * in sync with a snapshot instead.</li>
+ * <li><code>max.frame.size</code>: largest frame, in bytes, sent or accepted, default 4194304. A node sending a
+ * larger frame is disconnected; a local change that does not fit is not replicated.</li>
+ * <li><code>secret</code>: shared secret, identical on every node, each connection is authenticated with it
+ * before anything is replicated over it. Strongly recommended; without it any process on a member host may
+ * connect.</li>
+ * </ul>
+ * Connections are only accepted from the addresses of the members.
+ * On connect, and after an overflow, the sender first pushes a snapshot of all sessions this node owns; the
+ * receiver drops sessions it still attributes to the sender but which are not part of it. When a node is
+ * considered gone its sessions are adopted by the remaining nodes as per
+ * {@link #adoptSessions(String, List)}.
+ * <p>
+ * This is a small-cluster store with no consensus: nodes that disagree about membership, e.g. during a
+ * network partition, may both adopt the same session, and the last writer wins once they see each other again.
+ */
+public class SocketReplicatedSessionStore extends InMemorySessionStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(SocketReplicatedSessionStore.class);
+
+  // bytes of encoded snapshot frames held before they are written out
+  private static final int SNAPSHOT_CHUNK_SIZE = 65536;
+
+  public static final String MEMBERS = "members";
+  public static final String FAILURE_TIMEOUT = "failure.timeout";
+  public static final String HEARTBEAT_INTERVAL = "heartbeat.interval";
+  public static final String QUEUE_SIZE = "queue.size";
+  public static final String MAX_FRAME_SIZE = "max.frame.size";
+  public static final String SECRET = "secret";
+
+  private final List<InetSocketAddress> members = new ArrayList<InetSocketAddress>();
+  private final Set<InetAddress> memberAddresses = new HashSet<InetAddress>();
+  private final byte[] secret;
+  private final long failureTimeout;
+  private final long heartbeatInterval;
+  private final int queueSize;
+  private final int maxFrameSize;
+  private final long incarnation = System.currentTimeMillis();
+
+  private volatile boolean running;
+  private ServerSocket serverSocket;
+  private Thread acceptor;
+  private Thread monitor;
+  private final List<Peer> peers = new CopyOnWriteArrayList<Peer>();
+  private final Set<Socket> inbound = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+  // node id -> ms of the last frame received, for the nodes considered alive
+  private final ConcurrentMap<String, Long> lastSeen = new ConcurrentHashMap<String, Long>();
+  private final ConcurrentMap<String, Long> incarnations = new ConcurrentHashMap<String, Long>();
+
+  public SocketReplicatedSessionStore(Properties properties) {
+    super(properties);
+    String value = properties.getProperty(MEMBERS, "").trim();
+    if (value.length() > 0) {
+      for (String member : value.split(",")) {
+        member = member.trim();
+        int colon = member.lastIndexOf(':');
+        if (colon <= 0) {
+          throw new IllegalArgumentException("Member '" + member + "' is not in host:port form");
+        }
+        InetSocketAddress address = new InetSocketAddress(member.substring(0, colon), Integer.parseInt(member.substring(colon + 1)));
+        if (address.isUnresolved()) {
+          throw new IllegalArgumentException("Member '" + member + "' can not be resolved");
+        }
+        members.add(address);
+        memberAddresses.add(address.getAddress());
+      }
+    }
+    String secret = properties.getProperty(SECRET, "");
+    this.secret = secret.length() > 0 ? ReplicationCodec.secret(secret) : null;
+    this.failureTimeout = Long.parseLong(properties.getProperty(FAILURE_TIMEOUT, "3000"));
+    this.heartbeatInterval = Long.parseLong(properties.getProperty(HEARTBEAT_INTERVAL, "1000"));
+    this.queueSize = Integer.parseInt(properties.getProperty(QUEUE_SIZE, "65536"));
+    this.maxFrameSize = Integer.parseInt(properties.getProperty(MAX_FRAME_SIZE, "4194304"));
+    if (maxFrameSize < 64) {
+      throw new IllegalArgumentException(MAX_FRAME_SIZE + " of " + maxFrameSize + " bytes is too small");
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running || members.isEmpty()) {
+      return;
+    }
+    InetSocketAddress self = null;
+    for (InetSocketAddress member : members) {
+      ServerSocket socket = null;
+      try {
+        socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(member);
+        serverSocket = socket;
+        self = member;
+        break;
+      }
+      catch (IOException e) {
+        close(socket);
+      }
+    }
+    if (self == null) {
+      throw new IllegalStateException("None of the members " + members + " can be bound on this host");
+    }
+    setLocalNodeId(nodeId(self));
+    if (secret == null) {
+      logger.warn("No {} set, replication connections are only checked against the member addresses", SECRET);
+    }
+    running = true;
+    for (InetSocketAddress member : members) {
+      if (member != self) {
+        Peer peer = new Peer(nodeId(member), member);
+        peers.add(peer);
+        peer.thread = start(peer, "ReplicatedStore-Sender-" + peer.nodeId);
+      }
+    }
+    acceptor = start(new Acceptor(), "ReplicatedStore-Acceptor");
+    monitor = start(new Monitor(), "ReplicatedStore-Monitor");
+    logger.info("Replicated session store started as {} with members {}", getLocalNodeId(), members);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    close(serverSocket);
+    for (Peer peer : peers) {
+      peer.thread.interrupt();
+      close(peer.socket);
+    }
+    peers.clear();
+    for (Socket socket : inbound) {
+      close(socket);
+    }
+    acceptor.interrupt();
+    monitor.interrupt();
+    lastSeen.clear();
+    incarnations.clear();
+  }
+
+  /**
+   * @return ids of the other nodes currently considered alive
+   */
+  public Set<String> getLiveMembers() {
+    return Collections.unmodifiableSet(lastSeen.keySet());
+  }
+
+  @Override
+  protected void replicatePut(String sessionId, String owner, Map<String, ?> changes, boolean replace) {
+    if (peers.isEmpty()) {
+      return;
+    }
+    try {
+      offer(ReplicationCodec.put(sessionId, owner, changes, replace, maxFrameSize));
+    }
+    catch (IOException e) {
+      logger.error("Failed to encode changes of session " + sessionId + ", not replicated", e);
+    }
+  }
+
+  @Override
+  protected void replicateRemove(String sessionId) {
+    if (peers.isEmpty()) {
+      return;
+    }
+    try {
+      offer(ReplicationCodec.remove(sessionId, maxFrameSize));
+    }
+    catch (IOException e) {
+      logger.error("Failed to encode removal of session " + sessionId + ", not replicated", e);
+    }
+  }
+
+  private void offer(byte[] frame) {
+    for (Peer peer : peers) {
+      peer.offer(frame);
+    }
+  }
+
+  private void joined(String nodeId, long nodeIncarnation) {
+    Long previous = incarnations.put(nodeId, nodeIncarnation);
+    if (previous != null && previous != nodeIncarnation && lastSeen.remove(nodeId) != null) {
+      // restarted faster than the failure timeout, its sessions are only left here
+      left(nodeId);
+    }
+    if (lastSeen.put(nodeId, now()) == null) {
+      logger.info("Node {} joined", nodeId);
+    }
+  }
+
+  private void left(String nodeId) {
+    List<String> live = new ArrayList<String>(lastSeen.keySet());
+    live.add(getLocalNodeId());
+    Collections.sort(live);
+    adoptSessions(nodeId, live);
+  }
+
+  private static long now() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  private static String nodeId(InetSocketAddress address) {
+    return address.getHostString() + ":" + address.getPort();
+  }
+
+  private static Thread start(Runnable task, String name) {
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private static void close(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      }
+      catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  private final class Peer implements Runnable {
+
+    private final String nodeId;
+    private final InetSocketAddress address;
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(queueSize);
+    private volatile boolean connected;
+    private volatile boolean resync;
+    private volatile Socket socket;
+    private Thread thread;
+
+    private Peer(String nodeId, InetSocketAddress address) {
+      this.nodeId = nodeId;
+      this.address = address;
+    }
+
+    private void offer(byte[] frame) {
+      // while disconnected the snapshot sent on connect brings the member up to date
+      if (connected && !queue.offer(frame)) {
+        resync = true;
+      }
+    }
+
+    @Override
+    public void run() {
+      while (running) {
+        Socket s = new Socket();
+        socket = s;
+        try {
+          s.connect(address, (int) heartbeatInterval);
+          s.setTcpNoDelay(true);
+          if (secret != null) {
+            authenticateAcceptor(s);
+          }
+          OutputStream out = new BufferedOutputStream(s.getOutputStream(), 65536);
+          out.write(ReplicationCodec.hello(getLocalNodeId(), incarnation, maxFrameSize));
+          connected = true;
+          sendSnapshot(out);
+          logger.debug("Replicating to {}", nodeId);
+          while (running) {
+            if (resync) {
+              logger.warn("Replication queue of {} overflowed, sending snapshot", nodeId);
+              sendSnapshot(out);
+            }
+            byte[] frame = queue.poll(heartbeatInterval, TimeUnit.MILLISECONDS);
+            if (frame == null) {
+              frame = ReplicationCodec.PING_FRAME;
+            }
+            do {
+              out.write(frame);
+            }
+            while ((frame = queue.poll()) != null);
+            out.flush();
+          }
+        }
+        catch (IOException e) {
+          logger.debug("Connection to {} failed: {}", nodeId, e.getMessage());
+        }
+        catch (InterruptedException e) {
+          break;
+        }
+        finally {
+          connected = false;
+          close(s);
+        }
+        try {
+          Thread.sleep(heartbeatInterval);
+        }
+        catch (InterruptedException e) {
+          break;
+        }
+      }
+    }
+
+    /**
+     * Connecting side of the handshake, see {@link ReplicationCodec}.
+     */
+    private void authenticateAcceptor(Socket s) throws IOException {
+      s.setSoTimeout((int) failureTimeout);
+      OutputStream out = s.getOutputStream();
+      DataInputStream in = new DataInputStream(s.getInputStream());
+      byte[] nonce = ReplicationCodec.nonce();
+      out.write(nonce);
+      out.flush();
+      byte[] peerNonce = new byte[ReplicationCodec.NONCE_LENGTH];
+      byte[] peerMac = new byte[ReplicationCodec.MAC_LENGTH];
+      in.readFully(peerNonce);
+      in.readFully(peerMac);
+      if (!ReplicationCodec.verify(ReplicationCodec.mac(secret, ReplicationCodec.ROLE_ACCEPTOR, nonce, peerNonce), peerMac)) {
+        logger.warn("Member {} failed authentication, check {}", nodeId, SECRET);
+        throw new IOException("Authentication failed");
+      }
+      out.write(ReplicationCodec.mac(secret, ReplicationCodec.ROLE_CONNECTOR, peerNonce, nonce));
+      out.flush();
+      s.setSoTimeout(0);
+    }
+
+    private void sendSnapshot(OutputStream out) throws IOException {
+      resync = false;
+      queue.clear();
+      out.write(ReplicationCodec.SNAPSHOT_BEGIN_FRAME);
+      SnapshotWriter writer = new SnapshotWriter(out);
+      visitOwned(writer);
+      writer.writeChunk();
+      out.write(ReplicationCodec.SNAPSHOT_END_FRAME);
+      out.flush();
+    }
+  }
+
+  /**
+   * Encodes each owned session under its lock and writes the frames once about {@link #SNAPSHOT_CHUNK_SIZE}
+   * bytes are pending, so a snapshot never holds more than a chunk of the data set in memory.
+   */
+  private final class SnapshotWriter implements EntryVisitor {
+
+    private final OutputStream out;
+    private final List<byte[]> chunk = new ArrayList<byte[]>();
+    private int chunkSize;
+
+    private SnapshotWriter(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void visit(String sessionId, String owner, Map<String, Object> attributes) {
+      try {
+        byte[] frame = ReplicationCodec.put(sessionId, owner, attributes, true, maxFrameSize);
+        chunk.add(frame);
+        chunkSize += frame.length;
+      }
+      catch (IOException e) {
+        logger.error("Failed to encode session " + sessionId + ", not replicated", e);
+      }
+    }
+
+    @Override
+    public void released() throws IOException {
+      if (chunkSize >= SNAPSHOT_CHUNK_SIZE) {
+        writeChunk();
+      }
+    }
+
+    private void writeChunk() throws IOException {
+      for (byte[] frame : chunk) {
+        out.write(frame);
+      }
+      chunk.clear();
+      chunkSize = 0;
+    }
+  }
+
+  private final class Acceptor implements Runnable {
+
+    @Override
+    public void run() {
+      while (running) {
+        try {
+          Socket socket = serverSocket.accept();
+          if (!memberAddresses.contains(socket.getInetAddress())) {
+            logger.warn("Refused replication connection from {}, not a member address", socket.getRemoteSocketAddress());
+            close(socket);
+            continue;
+          }
+          inbound.add(socket);
+          start(new Receiver(socket), "ReplicatedStore-Receiver-" + socket.getRemoteSocketAddress());
+        }
+        catch (IOException e) {
+          if (running) {
+            logger.warn("Failed to accept replication connection", e);
+          }
+        }
+      }
+    }
+  }
+
+  private final class Receiver implements Runnable {
+
+    private final Socket socket;
+    // node id of the sender, once its HELLO arrived
+    private String remote;
+    // sessions of the sender not part of the snapshot being received, null outside of a snapshot
+    private Set<String> stale;
+
+    private Receiver(Socket socket) {
+      this.socket = socket;
+    }
+
+    @Override
+    public void run() {
+      try {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+        if (secret != null) {
+          authenticateConnector(in);
+        }
+        byte[] frame;
+        while (running && (frame = ReplicationCodec.readFrame(in, maxFrameSize)) != null) {
+          if (remote != null && lastSeen.replace(remote, now()) == null) {
+            // declared gone meanwhile, it has to reconnect and send a snapshot again
+            break;
+          }
+          try {
+            process(frame[0], ReplicationCodec.body(frame));
+          }
+          catch (EOFException e) {
+            throw new ProtocolException("Truncated frame of type " + frame[0]);
+          }
+        }
+      }
+      catch (ProtocolException e) {
+        // the stream can not be trusted past a malformed frame
+        logger.warn("Replication connection from {} closed on protocol error: {}",
+            remote != null ? remote : socket.getRemoteSocketAddress(), e.getMessage());
+      }
+      catch (IOException e) {
+        if (running) {
+          logger.debug("Replication connection from {} closed: {}", remote, e.getMessage());
+        }
+      }
+      finally {
+        inbound.remove(socket);
+        close(socket);
+      }
+    }
+
+    private void process(byte type, DataInputStream body) throws IOException {
+      if (remote == null) {
+        if (type != ReplicationCodec.HELLO) {
+          throw new ProtocolException("Expected HELLO, got frame type " + type);
+        }
+        remote = ReplicationCodec.readString(body);
+        joined(remote, body.readLong());
+        return;
+      }
+      switch (type) {
+        case ReplicationCodec.PING:
+          break;
+        case ReplicationCodec.PUT:
+          String sessionId = ReplicationCodec.readString(body);
+          String owner = ReplicationCodec.readString(body);
+          boolean replace = body.readBoolean();
+          applyPut(sessionId, owner, ReplicationCodec.readChanges(body), replace);
+          if (stale != null) {
+            stale.remove(sessionId);
+          }
+          break;
+        case ReplicationCodec.REMOVE:
+          applyRemove(ReplicationCodec.readString(body));
+          break;
+        case ReplicationCodec.SNAPSHOT_BEGIN:
+          if (stale != null) {
+            throw new ProtocolException("SNAPSHOT_BEGIN inside a snapshot");
+          }
+          stale = new HashSet<String>(getOwnedBy(remote));
+          break;
+        case ReplicationCodec.SNAPSHOT_END:
+          if (stale == null) {
+            // dropping sessions of the sender is only safe at the end of a complete snapshot
+            throw new ProtocolException("SNAPSHOT_END without SNAPSHOT_BEGIN");
+          }
+          for (String staleId : stale) {
+            if (remote.equals(getOwner(staleId))) {
+              applyRemove(staleId);
+            }
+          }
+          stale = null;
+          break;
+        default:
+          throw new ProtocolException("Unknown frame type " + type);
+      }
+    }
+
+    /**
+     * Accepting side of the handshake, see {@link ReplicationCodec}.
+     */
+    private void authenticateConnector(DataInputStream data) throws IOException {
+      socket.setSoTimeout((int) failureTimeout);
+      byte[] peerNonce = new byte[ReplicationCodec.NONCE_LENGTH];
+      data.readFully(peerNonce);
+      byte[] nonce = ReplicationCodec.nonce();
+      OutputStream out = socket.getOutputStream();
+      out.write(nonce);
+      out.write(ReplicationCodec.mac(secret, ReplicationCodec.ROLE_ACCEPTOR, peerNonce, nonce));
+      out.flush();
+      byte[] peerMac = new byte[ReplicationCodec.MAC_LENGTH];
+      data.readFully(peerMac);
+      if (!ReplicationCodec.verify(ReplicationCodec.mac(secret, ReplicationCodec.ROLE_CONNECTOR, nonce, peerNonce), peerMac)) {
+        logger.warn("Replication connection from {} failed authentication, check {}", socket.getRemoteSocketAddress(), SECRET);
+        throw new IOException("Authentication failed");
+      }
+      socket.setSoTimeout(0);
+    }
+  }
+
+  private final class Monitor implements Runnable {
+
+    @Override
+    public void run() {
+      while (running) {
+        try {
+          Thread.sleep(heartbeatInterval);
+        }
+        catch (InterruptedException e) {
+          break;
+        }
+        long now = now();
+        for (Map.Entry<String, Long> e : lastSeen.entrySet()) {
+          if (now - e.getValue() > failureTimeout && lastSeen.remove(e.getKey(), e.getValue())) {
+            logger.warn("Node {} silent for more than {}ms, considered gone", e.getKey(), failureTimeout);
+            incarnations.remove(e.getKey());
+            left(e.getKey());
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.common.api.app.IBatchedAppSessionData;
+import org.jdiameter.common.api.data.IReplicatedSessionStore;
+import org.jdiameter.common.impl.data.SessionStateCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base of the application session data kept in an {@link IReplicatedSessionStore}. Like the JBoss Cache based
+ * data, attribute changes made inside a batch are written to the store as one update when the batch ends.
+ */
+public class StoreAppSessionData implements IBatchedAppSessionData {
+
+  private static final Logger logger = LoggerFactory.getLogger(StoreAppSessionData.class);
+
+  protected static final String APID = "APID";
+  protected static final String SIFACE = "SIFACE";
+
+  // marks an attribute cleared inside a batch, ConcurrentHashMap takes no null values
+  private static final Object REMOVED = new Object();
+
+  protected final String sessionId;
+  protected final IReplicatedSessionStore store;
+
+  // attribute changes collected while a batch is open, flushed with a single put
+  private final ConcurrentMap<String, Object> pending = new ConcurrentHashMap<String, Object>();
+  private final AtomicInteger batchDepth = new AtomicInteger();
+
+  public StoreAppSessionData(String sessionId, IReplicatedSessionStore store) {
+    this.sessionId = sessionId;
+    this.store = store;
+  }
+
+  /**
+   * @return interface of the application session, <code>null</code> if unknown
+   */
+  public static Class<? extends AppSession> getAppSessionIface(IReplicatedSessionStore store, String sessionId) {
+    String iface = (String) store.get(sessionId, SIFACE);
+    if (iface == null) {
+      return null;
+    }
+    try {
+      return Class.forName(iface, true, StoreAppSessionData.class.getClassLoader()).asSubclass(AppSession.class);
+    }
+    catch (ClassNotFoundException e) {
+      logger.warn("Unknown application session interface {} for session {}", iface, sessionId);
+      return null;
+    }
+  }
+
+  /**
+   * Creates the session in the store, if not there yet.
+   *
+   * @return <code>true</code> if created, <code>false</code> if it already existed
+   */
+  protected boolean create(Class<? extends AppSession> iface) {
+    if (store.create(sessionId)) {
+      putAttribute(SIFACE, iface.getName());
+      return true;
+    }
+    return false;
+  }
+
+  public boolean exists() {
+    return store.exists(sessionId);
+  }
+
+  @Override
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  @Override
+  public void setApplicationId(ApplicationId applicationId) {
+    if (exists()) {
+      putAttribute(APID, SessionStateCodec.encodeApplicationId(applicationId));
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public ApplicationId getApplicationId() {
+    if (exists()) {
+      try {
+        return SessionStateCodec.decodeApplicationId(getAttribute(APID));
+      }
+      catch (AvpDataException e) {
+        throw new IllegalStateException("Unable to decode Application-Id of session " + sessionId, e);
+      }
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public boolean remove() {
+    store.remove(sessionId);
+    return true;
+  }
+
+  @Override
+  public void beginBatch() {
+    batchDepth.incrementAndGet();
+  }
+
+  @Override
+  public void endBatch() {
+    int depth;
+    do {
+      depth = batchDepth.get();
+      if (depth == 0) {
+        return;
+      }
+    } while (!batchDepth.compareAndSet(depth, depth - 1));
+    if (depth > 1 || pending.isEmpty()) {
+      return;
+    }
+    Map<String, Object> delta = new HashMap<String, Object>(pending);
+    try {
+      Map<String, Object> values = new HashMap<String, Object>(delta.size());
+      for (Map.Entry<String, Object> entry : delta.entrySet()) {
+        values.put(entry.getKey(), entry.getValue() == REMOVED ? null : entry.getValue());
+      }
+      store.put(sessionId, values);
+    }
+    finally {
+      // also when the write failed: the delta is dropped, reads fall back to the stored values and the caller
+      // gets the exception
+      for (Map.Entry<String, Object> entry : delta.entrySet()) {
+        pending.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  // Attribute access, goes through the open batch if there is one
+
+  protected void putAttribute(String key, Object value) {
+    Object encoded = value instanceof Enum ? ((Enum<?>) value).name() : value;
+    if (batchDepth.get() > 0) {
+      pending.put(key, encoded == null ? REMOVED : encoded);
+    }
+    else {
+      Map<String, Object> change = new HashMap<String, Object>(2);
+      change.put(key, encoded);
+      store.put(sessionId, change);
+    }
+  }
+
+  protected void removeAttribute(String key) {
+    putAttribute(key, null);
+  }
+
+  protected Object getAttribute(String key) {
+    Object value = pending.get(key);
+    if (value != null) {
+      return value == REMOVED ? null : value;
+    }
+    return store.get(sessionId, key);
+  }
+
+  /**
+   * Enums are stored by {@link Enum#name()}, which stays valid when constants are added or reordered, so nodes
+   * of different releases can share the store. Ordinals are only read for sessions written by nodes which stored
+   * enums that way.
+   */
+  protected <E extends Enum<E>> E getEnumAttribute(String key, Class<E> type) {
+    Object value = getAttribute(key);
+    if (value instanceof Integer) {
+      E[] constants = type.getEnumConstants();
+      int ordinal = (Integer) value;
+      if (ordinal < 0 || ordinal >= constants.length) {
+        throw new IllegalStateException("Unknown " + type.getSimpleName() + " ordinal " + ordinal + " in session " + sessionId);
+      }
+      return constants[ordinal];
+    }
+    return value == null ? null : Enum.valueOf(type, (String) value);
+  }
+
+  // Some util methods for handling primitives
+
+  protected boolean toPrimitive(Boolean b, boolean _default) {
+    return b == null ? _default : b;
+  }
+
+  protected int toPrimitive(Integer i) {
+    return i == null ? NON_INITIALIZED : i;
+  }
+
+  protected long toPrimitive(Long l) {
+    return l == null ? NON_INITIALIZED : l;
+  }
+
+}
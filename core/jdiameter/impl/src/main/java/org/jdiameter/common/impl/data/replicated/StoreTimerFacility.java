@@ -0,0 +1,262 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.data.IReplicatedSessionStore;
+import org.jdiameter.common.api.data.IReplicatedSessionStoreListener;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.timer.ITimerFacility;
+import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+/**
+ * Replicated implementation of {@link ITimerFacility} for {@link ReplicatedStoreDatasource}. Timers run on the
+ * stack's timer wheel of the node that scheduled them, and their duration and start time are kept in the session
+ * store (see {@link IReplicatedSessionStore#TIMER_PREFIX}), so that the node adopting the session of a failed node
+ * starts them again for the time they had left. Start times are monotonic and rebased by the replication, so
+ * differences of the wall clocks of the nodes do not shift timers.
+ * <p>
+ * Timer ids are <code>sessionId/timerName</code> strings.
+ */
+public class StoreTimerFacility implements ITimerFacility, IReplicatedSessionStoreListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(StoreTimerFacility.class);
+
+  private ScheduledExecutorService executor;
+  private Timer timer;
+  private ISessionDatasource sessionDataSource;
+  private IReplicatedSessionStore store;
+
+  // session id -> timer name -> pending timeout, each inner map guarded by itself
+  private final ConcurrentMap<String, Map<String, Timeout>> sessionTimers = new ConcurrentHashMap<String, Map<String, Timeout>>();
+
+  public StoreTimerFacility(IContainer container) {
+    super();
+    IConcurrentFactory concurrentFactory = container.getConcurrentFactory();
+    this.executor = concurrentFactory.getScheduledExecutorService(IConcurrentFactory.ScheduledExecServices.ApplicationSession.name());
+    this.timer = concurrentFactory.getWheelTimer();
+    this.sessionDataSource = container.getAssemblerFacility().getComponentInstance(ISessionDatasource.class);
+    this.store = ((ReplicatedStoreDatasource) this.sessionDataSource).getStore();
+    this.store.addListener(this);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.common.api.timer.ITimerFacility#schedule(java.lang.String, java.lang.String, long)
+   */
+  @Override
+  public Serializable schedule(String sessionId, String timerName, long milliseconds) throws IllegalArgumentException {
+    logger.debug("Scheduling timer with id [{}/{}]", sessionId, timerName);
+    store.put(sessionId, Collections.singletonMap(IReplicatedSessionStore.TIMER_PREFIX + timerName,
+        TimerValue.encode(milliseconds, TimerValue.now())));
+    start(sessionId, timerName, milliseconds);
+    return sessionId + "/" + timerName;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.common.api.timer.ITimerFacility#cancel(java.io.Serializable)
+   */
+  @Override
+  public void cancel(Serializable id) {
+    if (!(id instanceof String)) {
+      return;
+    }
+    String timerId = (String) id;
+    int separator = timerId.lastIndexOf('/');
+    if (separator < 0) {
+      return;
+    }
+    String sessionId = timerId.substring(0, separator);
+    String timerName = timerId.substring(separator + 1);
+    Timeout timeout = release(sessionId, timerName, null);
+    if (timeout != null) {
+      timeout.cancel();
+    }
+    store.put(sessionId, Collections.singletonMap(IReplicatedSessionStore.TIMER_PREFIX + timerName, null));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.common.api.timer.ITimerFacility#cancelAll(java.lang.String)
+   */
+  @Override
+  public void cancelAll(String sessionId) {
+    Map<String, Timeout> timers = sessionTimers.remove(sessionId);
+    if (timers != null) {
+      synchronized (timers) {
+        for (Timeout timeout : timers.values()) {
+          timeout.cancel();
+        }
+        timers.clear();
+      }
+    }
+  }
+
+  @Override
+  public void sessionRemoved(String sessionId) {
+    cancelAll(sessionId);
+  }
+
+  @Override
+  public void sessionsAdopted(Collection<String> sessionIds) {
+    long now = TimerValue.now();
+    int count = 0;
+    for (String sessionId : sessionIds) {
+      Map<String, Object> attributes = store.getAll(sessionId);
+      if (attributes == null) {
+        continue;
+      }
+      for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+        String key = attribute.getKey();
+        if (!key.startsWith(IReplicatedSessionStore.TIMER_PREFIX)) {
+          continue;
+        }
+        String timerName = key.substring(IReplicatedSessionStore.TIMER_PREFIX.length());
+        Object value = attribute.getValue();
+        if (TimerValue.isTimer(key, value)) {
+          start(sessionId, timerName, TimerValue.remaining((byte[]) value, now));
+          count++;
+        }
+        else if (value instanceof Long) {
+          // absolute wall clock expiry, as written by earlier nodes
+          start(sessionId, timerName, Math.max(0, (Long) value - System.currentTimeMillis()));
+          count++;
+        }
+        else {
+          logger.warn("Timer [{}/{}] has an unsupported stored value, not restarted", sessionId, timerName);
+        }
+      }
+    }
+    logger.debug("Restarted {} timers of {} adopted sessions", count, sessionIds.size());
+  }
+
+  private void start(String sessionId, String timerName, long milliseconds) {
+    while (true) {
+      Map<String, Timeout> timers = sessionTimers.get(sessionId);
+      if (timers == null) {
+        Map<String, Timeout> created = new HashMap<String, Timeout>(4);
+        timers = sessionTimers.putIfAbsent(sessionId, created);
+        if (timers == null) {
+          timers = created;
+        }
+      }
+      synchronized (timers) {
+        // dropped meanwhile by the last timer of the session going away, retry with a fresh one
+        if (sessionTimers.get(sessionId) == timers) {
+          Timeout timeout = timer.newTimeout(new TimerTaskHandle(sessionId, timerName), milliseconds, TimeUnit.MILLISECONDS);
+          Timeout previous = timers.put(timerName, timeout);
+          if (previous != null) {
+            previous.cancel();
+          }
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops tracking a timer.
+   *
+   * @param expected the timeout to release, <code>null</code> for whichever is pending
+   * @return the released timeout, <code>null</code> if not pending (anymore)
+   */
+  private Timeout release(String sessionId, String timerName, Timeout expected) {
+    Map<String, Timeout> timers = sessionTimers.get(sessionId);
+    if (timers == null) {
+      return null;
+    }
+    synchronized (timers) {
+      Timeout timeout = timers.get(timerName);
+      if (timeout == null || (expected != null && timeout != expected)) {
+        return null;
+      }
+      timers.remove(timerName);
+      if (timers.isEmpty()) {
+        sessionTimers.remove(sessionId, timers);
+      }
+      return timeout;
+    }
+  }
+
+  private final class TimerTaskHandle implements TimerTask, Runnable {
+
+    private final String sessionId;
+    private final String timerName;
+
+    TimerTaskHandle(String sessionId, String timerName) {
+      this.sessionId = sessionId;
+      this.timerName = timerName;
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+      // called by the wheel thread, only the timer still registered fires
+      if (release(sessionId, timerName, timeout) == null) {
+        return;
+      }
+      store.put(sessionId, Collections.singletonMap(IReplicatedSessionStore.TIMER_PREFIX + timerName, null));
+      try {
+        executor.execute(this);
+      }
+      catch (RejectedExecutionException e) {
+        logger.warn("Unable to run timer [{}/{}], executor rejected it", sessionId, timerName);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        BaseSession bSession = sessionDataSource.getSession(sessionId);
+        if (bSession == null || !bSession.isAppSession()) {
+          logger.debug("No session {} for timer {}, dropped", sessionId, timerName);
+          return;
+        }
+        ((AppSessionImpl) bSession).onTimer(timerName);
+      }
+      catch (Exception e) {
+        logger.error("Failure executing timer task with id: " + sessionId + "/" + timerName, e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+
+package org.jdiameter.common.impl.data.replicated;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.common.api.data.IReplicatedSessionStore;
+
+/**
+ * Stored form of a pending timer, see {@link IReplicatedSessionStore#TIMER_PREFIX}: its duration and the time it
+ * started, both in milliseconds, the start on the monotonic clock of the node holding the value. Only the
+ * remaining time goes over the wire and the receiving node starts it again on its own clock, so the wall clocks
+ * of the nodes do not need to agree.
+ */
+final class TimerValue {
+
+  static final int LENGTH = 16;
+
+  private TimerValue() {
+  }
+
+  /**
+   * @return local monotonic time in milliseconds
+   */
+  static long now() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  static byte[] encode(long duration, long start) {
+    return ByteBuffer.allocate(LENGTH).putLong(duration).putLong(start).array();
+  }
+
+  static boolean isTimer(String key, Object value) {
+    return key.startsWith(IReplicatedSessionStore.TIMER_PREFIX) && value instanceof byte[] && ((byte[]) value).length == LENGTH;
+  }
+
+  /**
+   * @return milliseconds left until expiry at the given local time, 0 if already expired
+   */
+  static long remaining(byte[] value, long now) {
+    ByteBuffer buffer = ByteBuffer.wrap(value);
+    long duration = buffer.getLong();
+    long start = buffer.getLong();
+    return Math.max(0, duration - (now - start));
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated.cca;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.api.cca.ServerCCASession;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.impl.data.replicated.ReplicatedStoreDatasource;
+
+/**
+ */
+public class CCAStoreSessionDataFactory implements IAppSessionDataFactory<ICCASessionData> {
+
+  private ReplicatedStoreDatasource datasource;
+
+  public CCAStoreSessionDataFactory(ISessionDatasource datasource) {
+    super();
+    this.datasource = (ReplicatedStoreDatasource) datasource;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.common.api.app.IAppSessionDataFactory#getAppSessionData(java.lang.Class, java.lang.String)
+   */
+  @Override
+  public ICCASessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
+    if (clazz.equals(ClientCCASession.class)) {
+      return new ClientCCASessionDataStoreImpl(sessionId, datasource.getStore(), datasource.getContainer());
+    }
+    else if (clazz.equals(ServerCCASession.class)) {
+      return new ServerCCASessionDataStoreImpl(sessionId, datasource.getStore());
+    }
+    throw new IllegalArgumentException();
+  }
+
+}
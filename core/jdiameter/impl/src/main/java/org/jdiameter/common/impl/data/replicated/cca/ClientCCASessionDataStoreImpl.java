@@ -0,0 +1,276 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated.cca;
+
+import java.io.Serializable;
+
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.api.parser.ParseException;
+import org.jdiameter.client.impl.app.cca.IClientCCASessionData;
+import org.jdiameter.common.api.app.cca.ClientCCASessionState;
+import org.jdiameter.common.api.data.IReplicatedSessionStore;
+import org.jdiameter.common.impl.data.SessionStateCodec;
+import org.jdiameter.common.impl.data.SessionStateCodec.CachedMessage;
+import org.jdiameter.common.impl.data.replicated.StoreAppSessionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client Credit-Control session data kept in an {@link IReplicatedSessionStore}.
+ */
+public class ClientCCASessionDataStoreImpl extends StoreAppSessionData implements IClientCCASessionData {
+
+  private static final Logger logger = LoggerFactory.getLogger(ClientCCASessionDataStoreImpl.class);
+
+  private static final String EVENT_BASED = "EVENT_BASED";
+  private static final String REQUEST_TYPE = "REQUEST_TYPE";
+  private static final String STATE = "STATE";
+  private static final String TXTIMER_ID = "TXTIMER_ID";
+  private static final String TXTIMER_REQUEST = "TXTIMER_REQUEST";
+  private static final String BUFFER = "BUFFER";
+  private static final String GRA = "GRA";
+  private static final String GDDFH = "GDDFH";
+  private static final String GCCFH = "GCCFH";
+
+  private final CachedMessage txTimerRequestCache;
+  private final CachedMessage bufferCache;
+
+  public ClientCCASessionDataStoreImpl(String sessionId, IReplicatedSessionStore store, IContainer container) {
+    super(sessionId, store);
+
+    if (create(ClientCCASession.class)) {
+      setClientCCASessionState(ClientCCASessionState.IDLE);
+    }
+
+    SessionStateCodec codec = new SessionStateCodec(container.getAssemblerFacility().getComponentInstance(IMessageParser.class));
+    this.txTimerRequestCache = new CachedMessage(codec);
+    this.bufferCache = new CachedMessage(codec);
+  }
+
+  @Override
+  public boolean isEventBased() {
+    if (exists()) {
+      return toPrimitive((Boolean) getAttribute(EVENT_BASED), true);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void setEventBased(boolean isEventBased) {
+    if (exists()) {
+      putAttribute(EVENT_BASED, isEventBased);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public boolean isRequestTypeSet() {
+    if (exists()) {
+      return toPrimitive((Boolean) getAttribute(REQUEST_TYPE), false);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void setRequestTypeSet(boolean requestTypeSet) {
+    if (exists()) {
+      putAttribute(REQUEST_TYPE, requestTypeSet);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public ClientCCASessionState getClientCCASessionState() {
+    if (exists()) {
+      return getEnumAttribute(STATE, ClientCCASessionState.class);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void setClientCCASessionState(ClientCCASessionState state) {
+    if (exists()) {
+      putAttribute(STATE, state);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public Serializable getTxTimerId() {
+    if (exists()) {
+      return (Serializable) getAttribute(TXTIMER_ID);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void setTxTimerId(Serializable txTimerId) {
+    if (exists()) {
+      putAttribute(TXTIMER_ID, txTimerId);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public Request getTxTimerRequest() {
+    if (exists()) {
+
+      try {
+        return this.txTimerRequestCache.get((byte[]) getAttribute(TXTIMER_REQUEST));
+      }
+      catch (AvpDataException e) {
+        logger.error("Unable to recreate Tx Timer Request from buffer.");
+        return null;
+      }
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void setTxTimerRequest(Request txTimerRequest) {
+    if (exists()) {
+      if (txTimerRequest != null) {
+        try {
+          putAttribute(TXTIMER_REQUEST, this.txTimerRequestCache.set(txTimerRequest));
+        }
+        catch (ParseException e) {
+          logger.error("Unable to encode Tx Timer Request to buffer.");
+        }
+      }
+      else {
+        this.txTimerRequestCache.clear();
+        removeAttribute(TXTIMER_REQUEST);
+      }
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public Request getBuffer() {
+    try {
+      return this.bufferCache.get((byte[]) getAttribute(BUFFER));
+    }
+    catch (AvpDataException e) {
+      logger.error("Unable to recreate message from buffer.");
+      return null;
+    }
+  }
+
+  @Override
+  public void setBuffer(Request buffer) {
+    if (buffer != null) {
+      try {
+        putAttribute(BUFFER, this.bufferCache.set(buffer));
+      }
+      catch (ParseException e) {
+        logger.error("Unable to encode message to buffer.");
+      }
+    }
+    else {
+      this.bufferCache.clear();
+      removeAttribute(BUFFER);
+    }
+  }
+
+  @Override
+  public int getGatheredRequestedAction() {
+    if (exists()) {
+      return toPrimitive((Integer) getAttribute(GRA));
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void setGatheredRequestedAction(int gatheredRequestedAction) {
+    if (exists()) {
+      putAttribute(GRA, gatheredRequestedAction);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public int getGatheredCCFH() {
+    if (exists()) {
+      return toPrimitive((Integer) getAttribute(GCCFH));
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void setGatheredCCFH(int gatheredCCFH) {
+    if (exists()) {
+      putAttribute(GCCFH, gatheredCCFH);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public int getGatheredDDFH() {
+    if (exists()) {
+      return toPrimitive((Integer) getAttribute(GDDFH));
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void setGatheredDDFH(int gatheredDDFH) {
+    if (exists()) {
+      putAttribute(GDDFH, gatheredDDFH);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+}
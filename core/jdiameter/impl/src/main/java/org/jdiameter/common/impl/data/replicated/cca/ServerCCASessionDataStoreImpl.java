@@ -0,0 +1,138 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated.cca;
+
+import java.io.Serializable;
+
+import org.jdiameter.api.cca.ServerCCASession;
+import org.jdiameter.common.api.app.cca.ServerCCASessionState;
+import org.jdiameter.common.api.data.IReplicatedSessionStore;
+import org.jdiameter.common.impl.data.replicated.StoreAppSessionData;
+import org.jdiameter.server.impl.app.cca.IServerCCASessionData;
+
+/**
+ * Server Credit-Control session data kept in an {@link IReplicatedSessionStore}.
+ */
+public class ServerCCASessionDataStoreImpl extends StoreAppSessionData implements IServerCCASessionData {
+
+  private static final String TCCID = "TCCID";
+  private static final String STATELESS = "STATELESS";
+  private static final String STATE = "STATE";
+
+  public ServerCCASessionDataStoreImpl(String sessionId, IReplicatedSessionStore store) {
+    super(sessionId, store);
+
+    if (create(ServerCCASession.class)) {
+      setServerCCASessionState(ServerCCASessionState.IDLE);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.server.impl.app.cca.IServerCCASessionData#isStateless()
+   */
+  @Override
+  public boolean isStateless() {
+    if (exists()) {
+      return toPrimitive((Boolean) getAttribute(STATELESS), true);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.server.impl.app.cca.IServerCCASessionData#setStateless( boolean)
+   */
+  @Override
+  public void setStateless(boolean stateless) {
+    if (exists()) {
+      putAttribute(STATELESS, stateless);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.server.impl.app.cca.IServerCCASessionData# getServerCCASessionState()
+   */
+  @Override
+  public ServerCCASessionState getServerCCASessionState() {
+    if (exists()) {
+      return getEnumAttribute(STATE, ServerCCASessionState.class);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.server.impl.app.cca.IServerCCASessionData# setServerCCASessionState
+   * (org.jdiameter.common.api.app.cca.ServerCCASessionState)
+   */
+  @Override
+  public void setServerCCASessionState(ServerCCASessionState state) {
+    if (exists()) {
+      putAttribute(STATE, state);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.server.impl.app.cca.IServerCCASessionData#setTccTimerId (java.io.Serializable)
+   */
+  @Override
+  public void setTccTimerId(Serializable tccTimerId) {
+    if (exists()) {
+      putAttribute(TCCID, tccTimerId);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.server.impl.app.cca.IServerCCASessionData#getTccTimerId()
+   */
+  @Override
+  public Serializable getTccTimerId() {
+    if (exists()) {
+      return (Serializable) getAttribute(TCCID);
+    }
+    else {
+      throw new IllegalStateException();
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+package org.jdiameter.common.impl.statistic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, log-linear latency histogram. Values below 32 get a bucket each; above that every power
+ * of two is split into 32 linear sub-buckets, which keeps the relative error of any recorded value
+ * under ~3% across the whole long range. Recording is a couple of shifts and one atomic increment.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT * SUB_BUCKET_COUNT);
+  private final StripedCounter total = new StripedCounter(0);
+  private final StripedCounter sum = new StripedCounter(0);
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(index(value));
+    total.add(1);
+    sum.add(value);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  public long getCount() {
+    return total.get();
+  }
+
+  public long getSum() {
+    return sum.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long count = total.get();
+    return count == 0 ? 0 : (double) sum.get() / count;
+  }
+
+  /**
+   * @param percentile value between 0 and 100
+   * @return upper bound of the bucket holding the given percentile, 0 when nothing has been recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long count = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      count += counts.get(i);
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count);
+    if (rank < 1) {
+      rank = 1;
+    }
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+    total.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int msb = 63 - Long.numberOfLeadingZeros(value);
+    int bucket = msb - SUB_BUCKET_BITS + 1;
+    int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+    return bucket * SUB_BUCKET_COUNT + sub;
+  }
+
+  static long upperBound(int index) {
+    int bucket = index >>> SUB_BUCKET_BITS;
+    int sub = index & (SUB_BUCKET_COUNT - 1);
+    if (bucket == 0) {
+      return sub;
+    }
+    long lower = (long) (SUB_BUCKET_COUNT + sub) << (bucket - 1);
+    return lower + (1L << (bucket - 1)) - 1;
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+package org.jdiameter.common.impl.statistic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.client.impl.helpers.ConcurrentLongHashMap;
+import org.jdiameter.common.api.statistic.IMessageMetrics;
+
+/**
+ * Keeps one latency histogram and result code table per (Application-Id, Command-Code, peer). Lookups
+ * on the answer path go through a per peer map keyed by application id and command code packed into
+ * a long, so the answer path does not build composite keys.
+ */
+public class MessageMetricsImpl implements IMessageMetrics {
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private final boolean enabled;
+  private final ConcurrentMap<String, ConcurrentLongHashMap<AnswerMetric>> peers =
+      new ConcurrentHashMap<String, ConcurrentLongHashMap<AnswerMetric>>();
+  // creation order, for export
+  private final List<AnswerMetric> all = new CopyOnWriteArrayList<AnswerMetric>();
+
+  public MessageMetricsImpl(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public void recordAnswer(String peer, long applicationId, int commandCode, long latencyNanos, int resultCode) {
+    if (!enabled) {
+      return;
+    }
+    getMetric(peer, applicationId, commandCode).record(TimeUnit.NANOSECONDS.toMicros(latencyNanos), resultCode);
+  }
+
+  @Override
+  public void recordTimeout(String peer, long applicationId, int commandCode, long elapsedNanos) {
+    if (!enabled) {
+      return;
+    }
+    getMetric(peer, applicationId, commandCode).recordTimeout(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+  }
+
+  @Override
+  public List<IAnswerMetric> getAnswerMetrics() {
+    return new ArrayList<IAnswerMetric>(all);
+  }
+
+  @Override
+  public String toText() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# HELP diameter_answer_latency_microseconds Time between sending a request and receiving its answer or timing out\n");
+    sb.append("# TYPE diameter_answer_latency_microseconds summary\n");
+    for (AnswerMetric m : all) {
+      for (double q : QUANTILES) {
+        sb.append("diameter_answer_latency_microseconds{");
+        m.appendLabels(sb);
+        sb.append(",quantile=\"").append(q).append("\"} ").append(m.histogram.getValueAtPercentile(q * 100)).append('\n');
+      }
+      sb.append("diameter_answer_latency_microseconds_sum{");
+      m.appendLabels(sb);
+      sb.append("} ").append(m.histogram.getSum()).append('\n');
+      sb.append("diameter_answer_latency_microseconds_count{");
+      m.appendLabels(sb);
+      sb.append("} ").append(m.histogram.getCount()).append('\n');
+    }
+    sb.append("# HELP diameter_answer_timeouts_total Requests which timed out waiting for an answer\n");
+    sb.append("# TYPE diameter_answer_timeouts_total counter\n");
+    for (AnswerMetric m : all) {
+      sb.append("diameter_answer_timeouts_total{");
+      m.appendLabels(sb);
+      sb.append("} ").append(m.getTimeoutCount()).append('\n');
+    }
+    sb.append("# HELP diameter_answer_result_codes_total Answers received per result code\n");
+    sb.append("# TYPE diameter_answer_result_codes_total counter\n");
+    for (AnswerMetric m : all) {
+      for (Map.Entry<Integer, Long> e : m.getResultCodes().entrySet()) {
+        sb.append("diameter_answer_result_codes_total{");
+        m.appendLabels(sb);
+        sb.append(",result_code=\"").append(e.getKey()).append("\"} ").append(e.getValue()).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public void reset() {
+    for (AnswerMetric m : all) {
+      m.reset();
+    }
+  }
+
+  private AnswerMetric getMetric(String peer, long applicationId, int commandCode) {
+    ConcurrentLongHashMap<AnswerMetric> metrics = peers.get(peer);
+    if (metrics == null) {
+      ConcurrentLongHashMap<AnswerMetric> created = new ConcurrentLongHashMap<AnswerMetric>();
+      metrics = peers.putIfAbsent(peer, created);
+      if (metrics == null) {
+        metrics = created;
+      }
+    }
+    long key = (applicationId << 32) | (commandCode & 0xFFFFFFFFL);
+    AnswerMetric metric = metrics.get(key);
+    if (metric == null) {
+      AnswerMetric created = new AnswerMetric(peer, applicationId, commandCode);
+      metric = metrics.putIfAbsent(key, created);
+      if (metric == null) {
+        metric = created;
+        all.add(created);
+      }
+    }
+    return metric;
+  }
+
+  private static class AnswerMetric implements IAnswerMetric {
+
+    private final String peer;
+    private final long applicationId;
+    private final int commandCode;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final ConcurrentMap<Integer, AtomicLong> resultCodes = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    AnswerMetric(String peer, long applicationId, int commandCode) {
+      this.peer = peer;
+      this.applicationId = applicationId;
+      this.commandCode = commandCode;
+    }
+
+    void record(long latencyMicros, int resultCode) {
+      histogram.record(latencyMicros);
+      AtomicLong counter = resultCodes.get(resultCode);
+      if (counter == null) {
+        AtomicLong created = new AtomicLong();
+        counter = resultCodes.putIfAbsent(resultCode, created);
+        if (counter == null) {
+          counter = created;
+        }
+      }
+      counter.incrementAndGet();
+    }
+
+    void recordTimeout(long elapsedMicros) {
+      histogram.record(elapsedMicros);
+      timeouts.incrementAndGet();
+    }
+
+    void reset() {
+      histogram.reset();
+      timeouts.set(0);
+      for (AtomicLong counter : resultCodes.values()) {
+        counter.set(0);
+      }
+    }
+
+    void appendLabels(StringBuilder sb) {
+      sb.append("peer=\"");
+      for (int i = 0; i < peer.length(); i++) {
+        char c = peer.charAt(i);
+        if (c == '\\' || c == '"') {
+          sb.append('\\').append(c);
+        }
+        else if (c == '\n') {
+          sb.append("\\n");
+        }
+        else {
+          sb.append(c);
+        }
+      }
+      sb.append("\",application_id=\"").append(applicationId).append("\",command_code=\"").append(commandCode).append('"');
+    }
+
+    @Override
+    public String getPeer() {
+      return peer;
+    }
+
+    @Override
+    public long getApplicationId() {
+      return applicationId;
+    }
+
+    @Override
+    public int getCommandCode() {
+      return commandCode;
+    }
+
+    @Override
+    public long getCount() {
+      return histogram.getCount();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+      return timeouts.get();
+    }
+
+    @Override
+    public double getMeanLatency() {
+      return histogram.getMean();
+    }
+
+    @Override
+    public long getMaxLatency() {
+      return histogram.getMax();
+    }
+
+    @Override
+    public long getLatencyAtPercentile(double percentile) {
+      return histogram.getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public Map<Integer, Long> getResultCodes() {
+      Map<Integer, Long> codes = new TreeMap<Integer, Long>();
+      for (Map.Entry<Integer, AtomicLong> e : resultCodes.entrySet()) {
+        codes.put(e.getKey(), e.getValue().get());
+      }
+      return codes;
+    }
+
+    @Override
+    public String toString() {
+      return "AnswerMetric [peer=" + peer + ", applicationId=" + applicationId + ", commandCode=" + commandCode +
+          ", count=" + histogram.getCount() + ", timeouts=" + timeouts.get() +
+          ", p99=" + histogram.getValueAtPercentile(99) + "us, resultCodes=" + getResultCodes() + "]";
+    }
+  }
+}
@@ -42,7 +42,10 @@
 
 package org.jdiameter.common.impl.statistic;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.jdiameter.api.StatisticRecord;
 import org.jdiameter.common.api.statistic.IStatistic;
@@ -56,8 +59,18 @@ import org.jdiameter.common.api.statistic.IStatisticRecord.Counters;
  */
 class StatisticImpl implements IStatistic {
 
+  private static final Map<String, Counters> COUNTERS_BY_NAME = new HashMap<String, Counters>();
+
+  static {
+    for (Counters counter : Counters.values()) {
+      COUNTERS_BY_NAME.put(counter.name(), counter);
+    }
+  }
+
   protected boolean enable = true;
   protected ConcurrentLinkedQueue<StatisticRecord> records = new ConcurrentLinkedQueue<StatisticRecord>();
+  // records named after a counter, indexed by counter ordinal
+  protected AtomicReferenceArray<IStatisticRecord> counterRecords = new AtomicReferenceArray<IStatisticRecord>(Counters.values().length);
   protected String name;
   protected String description;
   protected IStatistic.Groups group;
@@ -92,14 +105,23 @@ class StatisticImpl implements IStatistic {
     this(name, group);
     this.description = desctiprion;
     for (IStatisticRecord r : rec) {
-      records.add(r);
+      addRecord(r);
     }
   }
   @Override
   public void appendCounter(IStatisticRecord... rec) {
     for (IStatisticRecord r : rec) {
       r.enable(this.enable);
-      records.add(r);
+      addRecord(r);
+    }
+  }
+
+  private void addRecord(IStatisticRecord r) {
+    records.add(r);
+    Counters counter = COUNTERS_BY_NAME.get(r.getName());
+    if (counter != null) {
+      // same as a lookup by name, the first record wins
+      counterRecords.compareAndSet(counter.ordinal(), null, r);
     }
   }
 
@@ -115,12 +137,7 @@ class StatisticImpl implements IStatistic {
 
   @Override
   public IStatisticRecord getRecordByName(Counters name) {
-    for (StatisticRecord r : records) {
-      if (r.getName().equals(name.toString())) {
-        return (IStatisticRecord) r;
-      }
-    }
-    return null;
+    return counterRecords.get(name.ordinal());
   }
 
   @Override
@@ -50,6 +50,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jdiameter.api.Configuration;
 import org.jdiameter.client.impl.helpers.Parameters;
+import org.jdiameter.common.api.statistic.IMessageMetrics;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
@@ -71,6 +72,7 @@ public class StatisticManagerImpl implements IStatisticManager {
   private boolean enabled;
   private long pause, delay;
   private Set<String> activeRecords; //list of stats enabled on start
+  private IMessageMetrics messageMetrics;
 
 
   public StatisticManagerImpl(Configuration config) {
@@ -95,6 +97,7 @@ public class StatisticManagerImpl implements IStatisticManager {
       }
     }
     this.activeRecords = Collections.unmodifiableSet(enabledSet);
+    this.messageMetrics = new MessageMetricsImpl(enabled);
 
   }
 
@@ -239,4 +242,9 @@ public class StatisticManagerImpl implements IStatisticManager {
     return this.frozenAllStatistic;
   }
 
+  @Override
+  public IMessageMetrics getMessageMetrics() {
+    return this.messageMetrics;
+  }
+
 }
@@ -0,0 +1,99 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.statistic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Long counter for frequent concurrent updates and rare reads. Updates go to a single value until
+ * threads start contending for it; from then on each thread adds to one of several cells, each on
+ * its own cache line, and reads sum them up.
+ */
+final class StripedCounter {
+
+  // longs per cell, so that two cells never share a 64 byte cache line
+  private static final int CELL_SPACING = 8;
+  private static final int CELL_COUNT = cellCount(Runtime.getRuntime().availableProcessors());
+
+  private final AtomicLong base;
+  private volatile AtomicLongArray cells;
+
+  StripedCounter(long value) {
+    this.base = new AtomicLong(value);
+  }
+
+  void add(long delta) {
+    AtomicLongArray cs = cells;
+    if (cs == null) {
+      long current = base.get();
+      if (base.compareAndSet(current, current + delta)) {
+        return;
+      }
+      cs = inflate();
+    }
+    cs.getAndAdd(index(), delta);
+  }
+
+  long get() {
+    long sum = base.get();
+    AtomicLongArray cs = cells;
+    if (cs != null) {
+      for (int i = 0; i < cs.length(); i += CELL_SPACING) {
+        sum += cs.get(i);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Not atomic with respect to concurrent updates, like resetting a LongAdder.
+   */
+  void set(long value) {
+    AtomicLongArray cs = cells;
+    if (cs != null) {
+      for (int i = 0; i < cs.length(); i += CELL_SPACING) {
+        cs.set(i, 0);
+      }
+    }
+    base.set(value);
+  }
+
+  private synchronized AtomicLongArray inflate() {
+    if (cells == null) {
+      cells = new AtomicLongArray(CELL_COUNT * CELL_SPACING);
+    }
+    return cells;
+  }
+
+  private static int index() {
+    long id = Thread.currentThread().getId();
+    int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    return ((h >>> 16) & (CELL_COUNT - 1)) * CELL_SPACING;
+  }
+
+  private static int cellCount(int processors) {
+    int count = 1;
+    while (count < processors) {
+      count <<= 1;
+    }
+    return count;
+  }
+}
@@ -39,7 +39,6 @@
   *   Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
   *   02110-1301 USA, or see the FSF site: http://www.fsf.org.
   */
-
 package org.jdiameter.common.impl.timer;
 
 import java.io.Externalizable;
@@ -47,23 +46,38 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.pool.BasePoolableObjectFactory;
-import org.apache.commons.pool.impl.GenericObjectPool;
 import org.jdiameter.api.BaseSession;
 import org.jdiameter.client.api.IContainer;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.statistic.IStatistic;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.common.api.statistic.IStatisticRecord;
 import org.jdiameter.common.api.timer.ITimerFacility;
 import org.jdiameter.common.impl.app.AppSessionImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
 /**
- * Local implementation of timer facility for {@link ITimerFacility}
+ * Local implementation of timer facility for {@link ITimerFacility}. Timers are kept on the stack's timer
+ * wheel, so scheduling and cancelling cost the same whatever the number of pending timers, and expired
+ * timers are handed to the "ApplicationSession" executor, which runs the session callbacks.
+ * <p>
+ * Pending timers are also tracked per session, so all of them can be cancelled at once when the session
+ * is released.
  *
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
@@ -72,18 +86,28 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
 
   private static final Logger logger = LoggerFactory.getLogger(LocalTimerFacilityImpl.class);
 
-  private ScheduledThreadPoolExecutor executor;
+  private ScheduledExecutorService executor;
+  private Timer timer;
   private ISessionDatasource sessionDataSource;
 
-  // TimerTaskHandle pooling to minimize impact on Eden space and avoid too
-  // much GC, consequently not loosing time during GC
-  private final GenericObjectPool pool = new GenericObjectPool(new TimerTaskHandleFactory(), 100000, GenericObjectPool.WHEN_EXHAUSTED_GROW, 10, 20000);
+  private final ConcurrentMap<String, SessionTimers> sessionTimers = new ConcurrentHashMap<String, SessionTimers>();
+
+  // metrics
+  private final AtomicLong pendingCount = new AtomicLong();
+  private final AtomicLong scheduledCount = new AtomicLong();
+  private final AtomicLong expiredCount = new AtomicLong();
+  private final ConcurrentMap<String, AtomicLong> pendingByName = new ConcurrentHashMap<String, AtomicLong>();
 
   public LocalTimerFacilityImpl(IContainer container) {
     super();
-    this.executor = (ScheduledThreadPoolExecutor) container.getConcurrentFactory().
-        getScheduledExecutorService(IConcurrentFactory.ScheduledExecServices.ApplicationSession.name());
+    IConcurrentFactory concurrentFactory = container.getConcurrentFactory();
+    this.executor = concurrentFactory.getScheduledExecutorService(IConcurrentFactory.ScheduledExecServices.ApplicationSession.name());
+    this.timer = concurrentFactory.getWheelTimer();
     this.sessionDataSource = container.getAssemblerFacility().getComponentInstance(ISessionDatasource.class);
+    IStatisticManager statisticFactory = container.getAssemblerFacility().getComponentInstance(IStatisticManager.class);
+    if (statisticFactory != null) {
+      createStatistic(statisticFactory);
+    }
   }
 
   /*
@@ -95,10 +119,24 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
   public void cancel(Serializable f) {
     if (f != null && f instanceof TimerTaskHandle) {
       TimerTaskHandle timerTaskHandle = (TimerTaskHandle) f;
-      if (timerTaskHandle.future != null) {
-        if (executor.remove((Runnable) timerTaskHandle.future)) {
-          timerTaskHandle.future.cancel(false);
-          returnTimerTaskHandle(timerTaskHandle);
+      if (timerTaskHandle.timeout.cancel()) {
+        release(timerTaskHandle);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jdiameter.common.api.timer.ITimerFacility#cancelAll(java.lang.String)
+   */
+  @Override
+  public void cancelAll(String sessionId) {
+    SessionTimers timers = sessionTimers.remove(sessionId);
+    if (timers != null) {
+      for (TimerTaskHandle timerTaskHandle : timers.close()) {
+        if (timerTaskHandle.timeout.cancel()) {
+          countDown(timerTaskHandle);
         }
       }
     }
@@ -110,58 +148,208 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
    */
   @Override
   public Serializable schedule(String sessionId, String timerName, long milliseconds) throws IllegalArgumentException {
-    String id = sessionId + "/" + timerName;
-    logger.debug("Scheduling timer with id [{}]", id);
-    TimerTaskHandle ir = borrowTimerTaskHandle();
-    ir.id = id;
-    ir.sessionId = sessionId;
-    ir.timerName = timerName;
-    ir.future = this.executor.schedule(ir, milliseconds, TimeUnit.MILLISECONDS);
-    return ir;
+    if (logger.isDebugEnabled()) {
+      logger.debug("Scheduling timer with id [{}/{}]", sessionId, timerName);
+    }
+    TimerTaskHandle ir = new TimerTaskHandle(sessionId, timerName);
+    pendingCount.incrementAndGet();
+    scheduledCount.incrementAndGet();
+    getPendingCounter(timerName).incrementAndGet();
+    while (true) {
+      SessionTimers timers = sessionTimers.get(sessionId);
+      if (timers == null) {
+        SessionTimers created = new SessionTimers();
+        timers = sessionTimers.putIfAbsent(sessionId, created);
+        if (timers == null) {
+          timers = created;
+        }
+      }
+      if (timers.add(ir, timer, milliseconds)) {
+        return ir;
+      }
+      // closed meanwhile by the last timer of the session going away, retry with a fresh one
+      sessionTimers.remove(sessionId, timers);
+    }
   }
 
-  protected void returnTimerTaskHandle(TimerTaskHandle timerTaskHandle) {
-    try {
-      pool.returnObject(timerTaskHandle);
-    }
-    catch (Exception e) {
-      logger.warn(e.getMessage());
+  /**
+   * @return number of timers scheduled and neither expired nor cancelled yet
+   */
+  public long getPendingTimers() {
+    return pendingCount.get();
+  }
+
+  /**
+   * @return number of pending timers per timer name
+   */
+  public Map<String, Long> getPendingTimersByName() {
+    Map<String, Long> pending = new HashMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> e : pendingByName.entrySet()) {
+      pending.put(e.getKey(), e.getValue().get());
     }
+    return pending;
+  }
+
+  /**
+   * @return number of sessions with pending timers
+   */
+  public int getSessionsWithTimers() {
+    return sessionTimers.size();
+  }
+
+  public long getScheduledTimers() {
+    return scheduledCount.get();
+  }
+
+  public long getExpiredTimers() {
+    return expiredCount.get();
   }
 
-  protected TimerTaskHandle borrowTimerTaskHandle() {
-    try {
-      TimerTaskHandle timerTaskHandle = (TimerTaskHandle) pool.borrowObject();
-      return timerTaskHandle;
+  private void release(TimerTaskHandle timerTaskHandle) {
+    SessionTimers timers = timerTaskHandle.timers;
+    if (timers != null && timers.remove(timerTaskHandle)) {
+      sessionTimers.remove(timerTaskHandle.sessionId, timers);
     }
-    catch (Exception e) {
-      logger.error("", e);
+    countDown(timerTaskHandle);
+  }
+
+  private void countDown(TimerTaskHandle timerTaskHandle) {
+    pendingCount.decrementAndGet();
+    getPendingCounter(timerTaskHandle.timerName).decrementAndGet();
+  }
+
+  private AtomicLong getPendingCounter(String timerName) {
+    AtomicLong counter = pendingByName.get(timerName);
+    if (counter == null) {
+      AtomicLong created = new AtomicLong();
+      counter = pendingByName.putIfAbsent(timerName, created);
+      if (counter == null) {
+        counter = created;
+      }
     }
-    return null;
+    return counter;
   }
 
-  class TimerTaskHandleFactory extends BasePoolableObjectFactory {
-    @Override
-    public Object makeObject() throws Exception {
-      return new TimerTaskHandle();
+  private void createStatistic(IStatisticManager statisticFactory) {
+    IStatisticRecord pending = statisticFactory.newCounterRecord(IStatisticRecord.Counters.PendingTimers,
+        new IStatisticRecord.LongValueHolder() {
+          @Override
+          public String getValueAsString() {
+            return String.valueOf(getValueAsLong());
+          }
+
+          @Override
+          public long getValueAsLong() {
+            return pendingCount.get();
+          }
+        });
+    IStatisticRecord scheduled = statisticFactory.newCounterRecord(IStatisticRecord.Counters.ScheduledTimers,
+        new IStatisticRecord.LongValueHolder() {
+          @Override
+          public String getValueAsString() {
+            return String.valueOf(getValueAsLong());
+          }
+
+          @Override
+          public long getValueAsLong() {
+            return scheduledCount.get();
+          }
+        });
+    IStatisticRecord expired = statisticFactory.newCounterRecord(IStatisticRecord.Counters.ExpiredTimers,
+        new IStatisticRecord.LongValueHolder() {
+          @Override
+          public String getValueAsString() {
+            return String.valueOf(getValueAsLong());
+          }
+
+          @Override
+          public long getValueAsLong() {
+            return expiredCount.get();
+          }
+        });
+    statisticFactory.newStatistic("timers", IStatistic.Groups.Timer, pending, scheduled, expired);
+  }
+
+  /**
+   * Pending timers of one session. Once emptied by its last timer going away it is closed, and a new
+   * one has to be registered for the session.
+   */
+  private static final class SessionTimers {
+
+    private TimerTaskHandle[] handles = new TimerTaskHandle[2];
+    private int size;
+    private boolean closed;
+
+    /**
+     * Tracks the handle and starts its timer, both under the lock, so that neither its expiry nor a
+     * bulk cancel can see it half set up.
+     */
+    synchronized boolean add(TimerTaskHandle handle, Timer timer, long milliseconds) {
+      if (closed) {
+        return false;
+      }
+      if (size == handles.length) {
+        TimerTaskHandle[] grown = new TimerTaskHandle[size * 2];
+        System.arraycopy(handles, 0, grown, 0, size);
+        handles = grown;
+      }
+      handle.timers = this;
+      handle.timeout = timer.newTimeout(handle, milliseconds, TimeUnit.MILLISECONDS);
+      handles[size++] = handle;
+      return true;
     }
 
-    @Override
-    public void passivateObject(Object obj) throws Exception {
-      TimerTaskHandle timerTaskHandle = (TimerTaskHandle) obj;
-      timerTaskHandle.id = null;
-      timerTaskHandle.sessionId = null;
-      timerTaskHandle.timerName = null;
-      timerTaskHandle.future = null;
+    /**
+     * @return true if this was the last pending timer, in which case this is now closed
+     */
+    synchronized boolean remove(TimerTaskHandle handle) {
+      for (int i = 0; i < size; i++) {
+        if (handles[i] == handle) {
+          handles[i] = handles[--size];
+          handles[size] = null;
+          break;
+        }
+      }
+      if (size == 0) {
+        closed = true;
+      }
+      return closed;
+    }
+
+    synchronized TimerTaskHandle[] close() {
+      closed = true;
+      TimerTaskHandle[] pending = new TimerTaskHandle[size];
+      System.arraycopy(handles, 0, pending, 0, size);
+      size = 0;
+      handles = pending;
+      return pending;
     }
   }
 
-  private final class TimerTaskHandle implements Runnable, Externalizable {
+  private final class TimerTaskHandle implements TimerTask, Runnable, Externalizable {
     // its not really serializable;
-    private String sessionId;
-    private String timerName;
-    private String id; //for debug, easier to check what's going on and what that timer does.
-    private transient ScheduledFuture<?> future;
+    private final String sessionId;
+    private final String timerName;
+    private transient Timeout timeout;
+    private transient SessionTimers timers;
+
+    TimerTaskHandle(String sessionId, String timerName) {
+      this.sessionId = sessionId;
+      this.timerName = timerName;
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+      // called by the wheel thread, session callbacks run on the executor
+      release(this);
+      expiredCount.incrementAndGet();
+      try {
+        executor.execute(this);
+      }
+      catch (RejectedExecutionException e) {
+        logger.warn("Unable to run timer [{}/{}], executor rejected it", sessionId, timerName);
+      }
+    }
 
     @Override
     public void run() {
@@ -183,10 +371,7 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
         }
       }
       catch (Exception e) {
-        logger.error("Failure executing timer task witb id: " + id, e);
-      }
-      finally {
-        returnTimerTaskHandle(this);
+        logger.error("Failure executing timer task witb id: " + sessionId + "/" + timerName, e);
       }
     }
 
@@ -209,6 +394,11 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
       throw new IOException("Failed to deserialize local timer!");
     }
+
+    @Override
+    public String toString() {
+      return sessionId + "/" + timerName;
+    }
   }
 
 }
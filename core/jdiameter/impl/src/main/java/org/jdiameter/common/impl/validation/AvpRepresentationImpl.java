@@ -80,6 +80,8 @@ public class AvpRepresentationImpl implements AvpRepresentation {
   protected boolean grouped = false;
   protected List<AvpRepresentation> children = new ArrayList<AvpRepresentation>();
   protected boolean weak = false;
+  // children rules compiled for validation, built on first use
+  private transient volatile AvpRuleTable childrenTable;
 
   public AvpRepresentationImpl(AvpRepresentationImpl clone) {
     this(-1, clone.code, clone.getVendorId(), clone.getMultiplicityIndicator(), clone.getName());
@@ -339,6 +341,7 @@ public class AvpRepresentationImpl implements AvpRepresentation {
 
   public void setChildren(List<AvpRepresentation> children) {
     this.children = children;
+    this.childrenTable = null;
   }
 
   public void setCode(int code) {
@@ -442,24 +445,33 @@ public class AvpRepresentationImpl implements AvpRepresentation {
 
   @Override
   public void validate(AvpSet avpSet) throws AvpNotAllowedException { //this is used in RAs, cause ... AvpSet is asexual AVP, no code, no vendor
+    AvpRuleTable table = this.childrenTable;
+    if (table == null) {
+      table = new AvpRuleTable(getChildren());
+      this.childrenTable = table;
+    }
+
     // let it rip
-    for (AvpRepresentation childrenVAvp : getChildren()) {
-      AvpSet childSset = avpSet.getAvps(childrenVAvp.getCode(), childrenVAvp.getVendorId());
-      int count = childSset.size();
+    int[] counts = table.count(avpSet);
+    for (int index = 0; index < table.size(); index++) {
+      AvpRepresentation childrenVAvp = table.getRule(index);
+      int count = counts[index];
 
       if (!childrenVAvp.isCountValidForMultiplicity(count)) {
         throw new AvpNotAllowedException("AVP: " + childrenVAvp + " has wrong count, in grouped parent avp - " + (count) + ", allowed: "
             + childrenVAvp.getMultiplicityIndicator(), getCode(), getVendorId());
       }
-      if (childrenVAvp.isGrouped()) {
-        for (int index = 0; index < childSset.size(); index++) {
-
-          Avp presumablyGrouped = childSset.getAvpByIndex(index);
-          childrenVAvp.validate(presumablyGrouped);
-        }
+    }
 
+    if (!table.hasGrouped()) {
+      return;
+    }
+    for (int index = 0; index < avpSet.size(); index++) {
+      Avp presumablyGrouped = avpSet.getAvpByIndex(index);
+      int rule = table.indexOf(presumablyGrouped.getCode(), presumablyGrouped.getVendorId());
+      if (rule >= 0 && table.getRule(rule).isGrouped()) {
+        table.getRule(rule).validate(presumablyGrouped);
       }
-      // else we are good ?
     }
   }
 
@@ -0,0 +1,159 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.validation;
+
+import java.util.Collection;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.api.validation.AvpRepresentation;
+
+/**
+ * Compiled form of a list of AVP rules (the AVPs of a command or the children of a grouped AVP).
+ * Rules are indexed by code and vendor in an open addressing table, so that an AVP set can be
+ * validated by counting its AVPs in a single pass instead of looking up every rule in the set.
+ */
+final class AvpRuleTable {
+
+  // occurrence counters, reused by every validation made on the same thread. Nested grouped AVPs
+  // are only validated after the counts of the enclosing set were checked, so one array is enough.
+  private static final ThreadLocal<int[]> counters = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[32];
+    }
+  };
+
+  private final AvpRepresentation[] rules;
+  private final long[] keys;
+  private final int[] slots; // rule index + 1, 0 for an empty slot
+  private final int mask;
+  private final int[] duplicates; // for rules repeating an earlier code and vendor, the index of that rule; null if none
+  private final boolean grouped;
+
+  AvpRuleTable(Collection<AvpRepresentation> rules) {
+    this.rules = rules.toArray(new AvpRepresentation[rules.size()]);
+    int capacity = 4;
+    while (capacity < this.rules.length * 2) {
+      capacity <<= 1;
+    }
+    this.keys = new long[capacity];
+    this.slots = new int[capacity];
+    this.mask = capacity - 1;
+
+    boolean grouped = false;
+    int[] duplicates = null;
+    for (int i = 0; i < this.rules.length; i++) {
+      AvpRepresentation rule = this.rules[i];
+      grouped |= rule.isGrouped();
+      int first = indexOf(rule.getCode(), rule.getVendorId());
+      if (first >= 0) {
+        if (duplicates == null) {
+          duplicates = new int[this.rules.length];
+          for (int j = 0; j < duplicates.length; j++) {
+            duplicates[j] = j;
+          }
+        }
+        duplicates[i] = first;
+        continue;
+      }
+      long key = key(rule.getCode(), rule.getVendorId());
+      int slot = hash(key) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      slots[slot] = i + 1;
+    }
+    this.grouped = grouped;
+    this.duplicates = duplicates;
+  }
+
+  private static long key(int code, long vendorId) {
+    return (vendorId << 32) | (code & 0xFFFFFFFFL);
+  }
+
+  private static int hash(long key) {
+    int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  int size() {
+    return rules.length;
+  }
+
+  AvpRepresentation getRule(int index) {
+    return rules[index];
+  }
+
+  /**
+   * @return true if at least one of the rules is a grouped AVP
+   */
+  boolean hasGrouped() {
+    return grouped;
+  }
+
+  /**
+   * @return the index of the rule for the given AVP, or -1 if the AVP has no rule
+   */
+  int indexOf(int code, long vendorId) {
+    long key = key(code, vendorId);
+    int slot = hash(key) & mask;
+    int index;
+    while ((index = slots[slot]) != 0) {
+      if (keys[slot] == key) {
+        return index - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Counts the occurrences of each rule in the given set. The returned array is shared by the
+   * calling thread and only valid until the next call; entry i holds the count of rule i.
+   */
+  int[] count(AvpSet set) {
+    int[] counts = counters.get();
+    if (counts.length < rules.length) {
+      counts = new int[Math.max(rules.length, counts.length * 2)];
+      counters.set(counts);
+    }
+    else {
+      for (int i = 0; i < rules.length; i++) {
+        counts[i] = 0;
+      }
+    }
+
+    for (int i = 0, n = set.size(); i < n; i++) {
+      Avp avp = set.getAvpByIndex(i);
+      int index = indexOf(avp.getCode(), avp.getVendorId());
+      if (index >= 0) {
+        counts[index]++;
+      }
+    }
+    if (duplicates != null) {
+      for (int i = 0; i < rules.length; i++) {
+        counts[i] = counts[duplicates[i]];
+      }
+    }
+    return counts;
+  }
+}
@@ -76,6 +76,8 @@ public class MessageRepresentationImpl implements MessageRepresentation {
   private boolean isRequest = false;
   protected Map<AvpRepresentation, AvpRepresentation> unmuttableMessageAvps = new HashMap<AvpRepresentation, AvpRepresentation>();
   private String name = null;
+  // rules compiled for validation, built on first use as the dictionary does not change once loaded
+  private transient volatile AvpRuleTable ruleTable;
 
   public MessageRepresentationImpl(int commandCode, long applicationId, boolean isRequest) {
     super();
@@ -148,6 +150,7 @@ public class MessageRepresentationImpl implements MessageRepresentation {
   public void setMessageAvps(Map<AvpRepresentation, AvpRepresentation> messageAvps) {
     //this.unmuttableMessageAvps = Collections.unmodifiableMap(messageAvps);
     this.unmuttableMessageAvps = messageAvps;
+    this.ruleTable = null;
   }
 
   @Override
@@ -294,82 +297,34 @@ public class MessageRepresentationImpl implements MessageRepresentation {
       return;
     }
 
-    // if its !OFF, we will go down, at least to this section
-    for (AvpRepresentation ap : this.unmuttableMessageAvps.values()) {
-      AvpSet innerSet = msg.getAvps().getAvps(ap.getCode(), ap.getVendorId());
-
-      int count = 0;
-      if (innerSet != null) {
-        count = innerSet.size();
-      }
+    AvpRuleTable table = this.ruleTable;
+    if (table == null) {
+      table = new AvpRuleTable(this.unmuttableMessageAvps.values());
+      this.ruleTable = table;
+    }
 
+    // if its !OFF, we will go down, at least to this section
+    AvpSet avps = msg.getAvps();
+    int[] counts = table.count(avps);
+    for (int index = 0; index < table.size(); index++) {
+      AvpRepresentation ap = table.getRule(index);
+      int count = counts[index];
       if (!ap.isCountValidForMultiplicity(count)) {
         throw new AvpNotAllowedException("AVP: \n" + ap + "\n, has wrong count in message - " + (count), ap.getCode(), ap.getVendorId());
       }
-      // if its ALL, we need to go down deeper in AVPs
-      if (validatorLevel != ValidatorLevel.ALL) {
-        continue;
-      }
-      if (count != 0 && ap.isGrouped()) {
-        // we are grouped
-        validateGrouped(ap, innerSet);
-      }
     }
-  }
 
-  /**
-   * @param ap
-   * @param innerSet
-   */
-  private void validateGrouped(AvpRepresentation ap, AvpSet innerSet) {
-    // we have set of grouped avps, and ap is grouped, lets validate
-    // NOTE this methods can be called multiple time, until we dont have
-
-    for (int index = 0; index < innerSet.size(); index++) {
-
-      Avp presumablyGrouped = innerSet.getAvpByIndex(index);
-      ap.validate(presumablyGrouped);
-      // AvpSet groupedPart = null;
-      // try {
-      //   groupedPart = presumablyGrouped.getGrouped();
-      // }
-      // catch (AvpDataException e) {
-      //   logger.debug("Failed to get grouped AVP.", e);
-      // }
-      //
-      // if (groupedPart == null) {
-      //   logger.error("Avp should be grouped, but its not: " + ap);
-      //
-      //   continue;
-      // }
-      // else {
-      //   validateGroupedChildren(ap, groupedPart);
-      // }
+    // if its ALL, we need to go down deeper in AVPs
+    if (validatorLevel != ValidatorLevel.ALL || !table.hasGrouped()) {
+      return;
+    }
+    for (int index = 0; index < avps.size(); index++) {
+      Avp avp = avps.getAvpByIndex(index);
+      int rule = table.indexOf(avp.getCode(), avp.getVendorId());
+      if (rule >= 0 && table.getRule(rule).isGrouped()) {
+        table.getRule(rule).validate(avp);
+      }
     }
   }
 
-  //  /**
-  //   * @param ap
-  //   * @param presumablyGrouped
-  //   */
-  //  private void validateGroupedChildren(AvpRepresentation ap, AvpSet groupedAvp) {
-  //    // we have grouped avp, and its representation, we should validate
-  //    // children.
-  //    for (AvpRepresentation childrenVAvp : ap.getChildren()) {
-  //      AvpSet childSset = groupedAvp.getAvps(childrenVAvp.getCode(), childrenVAvp.getVendorId());
-  //      int count = childSset.size();
-  //
-  //      if (!childrenVAvp.isCountValidForMultiplicity(count)) {
-  //        throw new AvpNotAllowedException("AVP: " + childrenVAvp + " has wrong count, in grouped parent avp - " + (count) + ", allowed: "
-  //            + childrenVAvp.getMultiplicityIndicator(), ap.getCode(), ap.getVendorId());
-  //      }
-  //      if (childrenVAvp.isGrouped()) {
-  //
-  //        validateGrouped(childrenVAvp, childSset);
-  //      }
-  //      // else we are good ?
-  //    }
-  //
-  //  }
-
 }
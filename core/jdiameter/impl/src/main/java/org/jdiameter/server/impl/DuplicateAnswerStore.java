@@ -0,0 +1,242 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+package org.jdiameter.server.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jdiameter.client.impl.helpers.ConcurrentLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers kept for duplicate protection, in their encoded form and keyed by a 64 bit hash of the
+ * duplication key. Entries live in a ring of generations, like {@link org.jdiameter.client.impl.helpers.ExpiringLongHashMap}:
+ * every <code>expiry / (generations - 1)</code> milliseconds the oldest generation is dropped as a whole,
+ * so eviction costs nothing per entry. When the newest generation takes more than its share of the memory
+ * budget (or of the optional entry limit), the ring is rotated early and the oldest answers go first.
+ */
+public class DuplicateAnswerStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(DuplicateAnswerStore.class);
+
+  public static final int DEFAULT_GENERATIONS = 4;
+
+  // rough heap cost of an entry besides the answer bytes: array header, key and value slots
+  static final int ENTRY_OVERHEAD = 40;
+
+  private final long rotationInterval;
+  private final long generationMaxBytes;
+  private final int generationMaxSize;
+  private final Lock rotationLock = new ReentrantLock();
+
+  // newest generation first, replaced as a whole on rotation
+  private volatile Generation[] generations;
+  private volatile long nextRotation;
+
+  /**
+   * @param expiry minimum time in milliseconds an answer is kept
+   * @param maxMemory soft limit for the bytes held, 0 for no limit
+   * @param maxSize soft limit for the number of answers, 0 for no limit
+   */
+  public DuplicateAnswerStore(long expiry, long maxMemory, int maxSize) {
+    this(expiry, maxMemory, maxSize, DEFAULT_GENERATIONS);
+  }
+
+  public DuplicateAnswerStore(long expiry, long maxMemory, int maxSize, int generations) {
+    if (generations < 2) {
+      throw new IllegalArgumentException("At least two generations are required");
+    }
+    this.rotationInterval = Math.max(expiry / (generations - 1), 1);
+    // every generation, not only the live ones, has to fit in the budget
+    this.generationMaxBytes = maxMemory > 0 ? Math.max(maxMemory / generations, 1) : Long.MAX_VALUE;
+    this.generationMaxSize = maxSize > 0 ? Math.max(maxSize / generations, 1) : Integer.MAX_VALUE;
+    Generation[] ring = new Generation[generations];
+    for (int i = 0; i < generations; i++) {
+      ring[i] = new Generation();
+    }
+    this.generations = ring;
+    this.nextRotation = System.currentTimeMillis() + rotationInterval;
+  }
+
+  /**
+   * @return compact key for the given duplication key
+   */
+  public static long key(String duplicationKey) {
+    // 64 bit FNV-1a
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < duplicationKey.length(); i++) {
+      hash ^= duplicationKey.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * @param key compact duplication key
+   * @param answer encoded answer, must not be modified afterwards
+   */
+  public void put(long key, byte[] answer) {
+    if (System.currentTimeMillis() >= nextRotation) {
+      rotate();
+    }
+    Generation current = generations[0];
+    while (current.isFull()) {
+      current = rotateFull(current);
+    }
+    current.put(key, answer);
+  }
+
+  /**
+   * @param key compact duplication key
+   * @param endToEndId End-to-End Identifier of the request, compared against the stored answer to rule out hash collisions
+   * @return encoded answer, or null if none is stored
+   */
+  public byte[] get(long key, long endToEndId) {
+    if (System.currentTimeMillis() >= nextRotation) {
+      rotate();
+    }
+    for (Generation generation : generations) {
+      byte[] answer = generation.answers.get(key);
+      if (answer != null) {
+        return getEndToEndId(answer) == (endToEndId & 0xFFFFFFFFL) ? answer : null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Drops expired generations, so memory is released even when no new answers come in.
+   */
+  public void expire() {
+    if (System.currentTimeMillis() >= nextRotation) {
+      rotate();
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Generation generation : generations) {
+      size += generation.answers.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return approximate number of bytes held
+   */
+  public long getMemoryUsage() {
+    long bytes = 0;
+    for (Generation generation : generations) {
+      bytes += generation.bytes.get();
+    }
+    return bytes;
+  }
+
+  public void clear() {
+    rotationLock.lock();
+    try {
+      Generation[] ring = new Generation[generations.length];
+      for (int i = 0; i < ring.length; i++) {
+        ring[i] = new Generation();
+      }
+      generations = ring;
+    }
+    finally {
+      rotationLock.unlock();
+    }
+  }
+
+  private static long getEndToEndId(byte[] answer) {
+    return ((answer[16] & 0xFFL) << 24) | ((answer[17] & 0xFFL) << 16) | ((answer[18] & 0xFFL) << 8) | (answer[19] & 0xFFL);
+  }
+
+  /**
+   * Time based rotation. A thread missing the lock keeps using the current generation, which is still within
+   * its budget, so nobody waits for it.
+   */
+  private void rotate() {
+    if (!rotationLock.tryLock()) {
+      return;
+    }
+    try {
+      long now = System.currentTimeMillis();
+      if (now >= nextRotation) {
+        // after a quiet period, several generations may have expired at once
+        shift((int) Math.min(generations.length, 1 + (now - nextRotation) / rotationInterval), now, true);
+      }
+    }
+    finally {
+      rotationLock.unlock();
+    }
+  }
+
+  /**
+   * Rotation of a generation over budget. Writers wait for it rather than writing past the budget, the
+   * rotation itself is only an array swap.
+   *
+   * @return the generation to write to
+   */
+  private Generation rotateFull(Generation full) {
+    rotationLock.lock();
+    try {
+      // another thread may have rotated meanwhile
+      if (generations[0] == full) {
+        shift(1, System.currentTimeMillis(), false);
+      }
+      return generations[0];
+    }
+    finally {
+      rotationLock.unlock();
+    }
+  }
+
+  // called with the rotation lock held
+  private void shift(int steps, long now, boolean expired) {
+    Generation[] ring = generations;
+    Generation[] rotated = ring.clone();
+    System.arraycopy(ring, 0, rotated, steps, ring.length - steps);
+    for (int i = 0; i < steps; i++) {
+      rotated[i] = new Generation();
+    }
+    generations = rotated;
+    nextRotation = now + rotationInterval;
+    Generation dropped = ring[ring.length - 1];
+    if (!expired && dropped.answers.size() > 0) {
+      logger.warn("Duplicate answer store is full, dropped [{}] answers ({} bytes) before their expiry time",
+          dropped.answers.size(), dropped.bytes.get());
+    }
+  }
+
+  private final class Generation {
+
+    final ConcurrentLongHashMap<byte[]> answers = new ConcurrentLongHashMap<byte[]>();
+    final AtomicLong bytes = new AtomicLong();
+
+    void put(long key, byte[] answer) {
+      byte[] previous = answers.put(key, answer);
+      bytes.addAndGet(answer.length + (previous == null ? ENTRY_OVERHEAD : -previous.length));
+    }
+
+    boolean isFull() {
+      return bytes.get() >= generationMaxBytes || answers.size() >= generationMaxSize;
+    }
+  }
+}
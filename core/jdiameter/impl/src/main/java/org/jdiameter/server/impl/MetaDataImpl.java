@@ -51,7 +51,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.Avp;
@@ -66,6 +65,7 @@ import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.client.api.controller.IPeer;
 import org.jdiameter.client.api.io.TransportException;
+import org.jdiameter.client.impl.helpers.ConcurrentLongHashMap;
 import org.jdiameter.client.impl.helpers.IPConverter;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.server.api.IMetaData;
@@ -148,7 +148,7 @@ public class MetaDataImpl extends org.jdiameter.client.impl.MetaDataImpl impleme
     protected IMutablePeerTable manager = null;
     protected ISessionFactory factory = null;
     // XXX: FT/HA // protected Map<String, NetworkReqListener> slc = null;
-    Map<Long, IMessage> peerRequests = new ConcurrentHashMap<Long, IMessage>();
+    ConcurrentLongHashMap<IMessage> peerRequests = new ConcurrentLongHashMap<IMessage>();
 
     public ServerLocalPeer(IStatisticManager statisticFactory) {
       super(statisticFactory);
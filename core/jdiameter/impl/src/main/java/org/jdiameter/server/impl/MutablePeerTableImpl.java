@@ -50,6 +50,7 @@ import static org.jdiameter.common.api.concurrent.IConcurrentFactory.ScheduledEx
 import static org.jdiameter.common.api.concurrent.IConcurrentFactory.ScheduledExecServices.DuplicationMessageTimer;
 import static org.jdiameter.common.api.concurrent.IConcurrentFactory.ScheduledExecServices.PeerOverloadTimer;
 import static org.jdiameter.server.impl.helpers.Parameters.AcceptUndefinedPeer;
+import static org.jdiameter.server.impl.helpers.Parameters.DuplicateMemory;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateProtection;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateSize;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateTimer;
@@ -99,6 +100,7 @@ import org.jdiameter.client.api.io.IConnection;
 import org.jdiameter.client.api.io.IConnectionListener;
 import org.jdiameter.client.api.io.TransportException;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.api.parser.ParseException;
 import org.jdiameter.client.impl.controller.PeerTableImpl;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.statistic.IStatisticManager;
@@ -137,10 +139,11 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
   // Duplicate handling -------------------------------------------------------
   protected boolean duplicateProtection = false;
   protected int duplicateSize;
+  protected long duplicateMemory;
   protected long duplicateTimer;
   protected ScheduledExecutorService duplicationScheduler = null;
   protected ScheduledFuture duplicationHandler = null;
-  protected ConcurrentHashMap<String, StorageEntry> storageAnswers = new ConcurrentHashMap<String, StorageEntry>();
+  protected DuplicateAnswerStore storageAnswers;
 
   protected boolean isAcceptUndefinedPeer  = false;
 
@@ -163,32 +166,6 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
 
   private IContainer stack;
 
-  protected class StorageEntry {
-
-    private String duplicationKey;
-    private long time = System.currentTimeMillis();
-    private IMessage answer;
-
-    public StorageEntry(IMessage message) {
-      answer = message;
-      // duplicationKey = message.getDuplicationKey(); doesn't work because it's answer
-      String[] originInfo = router.getRequestRouteInfo(answer);
-      duplicationKey = message.getDuplicationKey(originInfo[0], message.getEndToEndIdentifier());
-    }
-
-    public IMessage getMessage() {
-      return answer;
-    }
-
-    public long getTime() {
-      return time;
-    }
-
-    public String getDuplicationKey() {
-      return duplicationKey;
-    }
-  }
-
   public MutablePeerTableImpl(Configuration config, MetaData metaData, IContainer stack, org.jdiameter.server.api.IRouter router,
       ISessionFactory sessionFactory, IFsmFactory fsmFactory, ITransportLayerFactory trFactory,
       IMessageParser parser, INetwork network, IOverloadManager ovrManager,
@@ -211,10 +188,13 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
     this.duplicateProtection = config.getBooleanValue(DuplicateProtection.ordinal(), (Boolean) DuplicateProtection.defValue());
     if (this.duplicateProtection) {
       this.duplicateTimer = config.getLongValue(DuplicateTimer.ordinal(), (Long) DuplicateTimer.defValue());
-      this.duplicateSize = config.getIntValue(DuplicateSize.ordinal(), (Integer) DuplicateSize.defValue());
+      // the entry limit only applies when set explicitly, the memory limit is what bounds the store
+      this.duplicateSize = config.getIntValue(DuplicateSize.ordinal(), 0);
+      this.duplicateMemory = config.getLongValue(DuplicateMemory.ordinal(), (Long) DuplicateMemory.defValue());
+      this.storageAnswers = new DuplicateAnswerStore(duplicateTimer, duplicateMemory, duplicateSize);
     }
-    logger.debug("Duplicate Protection Configuration: Enabled? {}, Timer: {}, Size: {}",
-        new Object[]{this.duplicateProtection, this.duplicateTimer, this.duplicateSize});
+    logger.debug("Duplicate Protection Configuration: Enabled? {}, Timer: {}, Size: {}, Memory: {}",
+        new Object[]{this.duplicateProtection, this.duplicateTimer, this.duplicateSize, this.duplicateMemory});
     if (predefinedPeerTable == null) {
       predefinedPeerTable = new CopyOnWriteArraySet<String>();
     }
@@ -307,31 +287,15 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
       Runnable duplicateTask = new Runnable() {
         @Override
         public void run() {
-          long now = System.currentTimeMillis();
-          if (logger.isDebugEnabled()) {
-            logger.debug("Running Duplicate Cleaning Task. Duplicate Storage size is: {}. Removing entries with time <= '{}'",
-                storageAnswers.size(), now - duplicateTimer);
-          }
-          for (StorageEntry s : storageAnswers.values()) {
-            if (s != null && s.getTime() + duplicateTimer <= now) {
-              if (logger.isTraceEnabled()) {
-                logger.trace("Duplicate Cleaning Task - Removing Entry with key '{}' and time '{}'", s.getDuplicationKey(), s.getTime());
-              }
-              storageAnswers.remove(s.getDuplicationKey());
-            }
-            else {
-              if (logger.isTraceEnabled()) {
-                logger.trace("Duplicate Cleaning Task - Skipping Entry with key '{}' and time '{}'", s.getDuplicationKey(), s.getTime());
-              }
-            }
-          }
+          // expired answers go a generation at a time, this only matters when no new answers are stored
+          storageAnswers.expire();
           if (logger.isDebugEnabled()) {
-            logger.debug("Completed Duplicate Cleaning Task. New Duplicate Storage size is: {}. Total task runtime: {}ms",
-                storageAnswers.size(), System.currentTimeMillis() - now);
+            logger.debug("Duplicate Storage size is: {} answers, {} bytes", storageAnswers.size(), storageAnswers.getMemoryUsage());
           }
         }
       };
-      duplicationHandler = duplicationScheduler.scheduleAtFixedRate(duplicateTask, duplicateTimer, duplicateTimer, TimeUnit.MILLISECONDS);
+      long period = Math.max(duplicateTimer / (DuplicateAnswerStore.DEFAULT_GENERATIONS - 1), 1);
+      duplicationHandler = duplicationScheduler.scheduleAtFixedRate(duplicateTask, period, period, TimeUnit.MILLISECONDS);
     }
     //
     connScheduler = concurrentFactory.getScheduledExecutorService(ConnectionTimer.name());
@@ -618,7 +582,9 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
       connHandler = null;
     }
     //remove incoming data
-    storageAnswers.clear();
+    if (storageAnswers != null) {
+      storageAnswers.clear();
+    }
 
     // Clear dynamic peers from peertable
     Iterator<String> it = super.peerTable.keySet().iterator();
@@ -727,23 +693,36 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
 
   @Override
   public IMessage isDuplicate(IMessage request) {
+    if (storageAnswers == null) {
+      return null;
+    }
     String key = request.getDuplicationKey();
-    if (key != null && storageAnswers != null) {
-      StorageEntry entry = storageAnswers.get(key);
-      return entry != null ? (IMessage) entry.getMessage().clone() : null;
+    if (key != null) {
+      byte[] answer = storageAnswers.get(DuplicateAnswerStore.key(key), request.getEndToEndIdentifier());
+      if (answer != null) {
+        try {
+          return parser.createMessage(answer);
+        }
+        catch (AvpDataException e) {
+          logger.warn("Duplicate Protection - Unable to decode stored answer with key '{}'", key, e);
+        }
+      }
     }
     return null;
   }
 
   @Override
   public void saveToDuplicate(String key, IMessage answer) {
-    if (storageAnswers != null && storageAnswers.size() < duplicateSize) {
-      if (key != null) {
-        StorageEntry se = new StorageEntry((IMessage) answer.clone());
+    if (storageAnswers != null && key != null) {
+      try {
         if (logger.isTraceEnabled()) {
-          logger.trace("Duplicate Protection - Inserting Entry with key '{}' and time '{}'", key, se.getTime());
+          logger.trace("Duplicate Protection - Inserting Entry with key '{}'", key);
         }
-        storageAnswers.put(key, se);
+        // encodeMessage returns a buffer over an array of exactly the message length
+        storageAnswers.put(DuplicateAnswerStore.key(key), parser.encodeMessage(answer).array());
+      }
+      catch (ParseException e) {
+        logger.warn("Duplicate Protection - Unable to encode answer with key '{}'", key, e);
       }
     }
   }
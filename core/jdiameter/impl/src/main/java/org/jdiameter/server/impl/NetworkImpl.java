@@ -42,7 +42,11 @@
 
 package org.jdiameter.server.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.jdiameter.api.ApplicationAlreadyUseException;
@@ -65,6 +69,7 @@ import org.jdiameter.server.api.IMutablePeerTable;
 import org.jdiameter.server.api.INetwork;
 import org.jdiameter.server.api.IRouter;
 import org.jdiameter.server.api.agent.IAgentConfiguration;
+import org.jdiameter.server.impl.helpers.ApplicationIdSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,6 +90,8 @@ public class NetworkImpl implements INetwork {
   private final ApplicationId commonAccAppId = ApplicationId.createByAccAppId(0, 0xffffffff);
   private final ConcurrentHashMap<ApplicationId, NetworkReqListener> appIdToNetListener = new ConcurrentHashMap<ApplicationId, NetworkReqListener>();
   private final ConcurrentHashMap<Selector, NetworkReqListener> selectorToNetListener = new ConcurrentHashMap<Selector, NetworkReqListener>();
+  // read-only view of the two maps above used by getListener, rebuilt whenever a listener is added or removed
+  private volatile Dispatch dispatch = new Dispatch(new Rule[0], new HashMap<ApplicationId, NetworkReqListener>(), null);
 
   protected IStatistic statistic;
 
@@ -122,18 +129,23 @@ public class NetworkImpl implements INetwork {
 
   @Override
   public void addNetworkReqListener(NetworkReqListener networkReqListener, ApplicationId... applicationId) throws ApplicationAlreadyUseException {
-    for (ApplicationId a : applicationId) {
-      if (appIdToNetListener.containsKey(commonAuthAppId) || appIdToNetListener.containsKey(commonAccAppId)) {
-        throw new ApplicationAlreadyUseException(a + " already use by common application id");
-      }
+    try {
+      for (ApplicationId a : applicationId) {
+        if (appIdToNetListener.containsKey(commonAuthAppId) || appIdToNetListener.containsKey(commonAccAppId)) {
+          throw new ApplicationAlreadyUseException(a + " already use by common application id");
+        }
 
-      if (appIdToNetListener.containsKey(applicationId)) {
-        throw new ApplicationAlreadyUseException(a + " already use");
-      }
+        if (appIdToNetListener.containsKey(applicationId)) {
+          throw new ApplicationAlreadyUseException(a + " already use");
+        }
 
-      appIdToNetListener.put(a, networkReqListener);
-      metaData.addApplicationId(a); // this has ALL config declared, we need currently deployed
-      router.getRealmTable().addLocalApplicationId(a);
+        appIdToNetListener.put(a, networkReqListener);
+        metaData.addApplicationId(a); // this has ALL config declared, we need currently deployed
+        router.getRealmTable().addLocalApplicationId(a);
+      }
+    }
+    finally {
+      rebuildDispatch();
     }
   }
 
@@ -145,40 +157,86 @@ public class NetworkImpl implements INetwork {
       metaData.addApplicationId(ap);
       router.getRealmTable().addLocalApplicationId(ap);
     }
+    rebuildDispatch();
   }
 
   @Override
   public void removeNetworkReqListener(ApplicationId... applicationId) {
-    for (ApplicationId a : applicationId) {
-      appIdToNetListener.remove(a);
-      for (Selector<Message, ApplicationId> s : selectorToNetListener.keySet()) {
-        if (s.getMetaData().equals(a)) {
-          return;
+    try {
+      next:
+      for (ApplicationId a : applicationId) {
+        appIdToNetListener.remove(a);
+        // still served by a selector, keep it deployed
+        for (Selector<Message, ApplicationId> s : selectorToNetListener.keySet()) {
+          if (s.getMetaData().equals(a)) {
+            continue next;
+          }
         }
+        metaData.remApplicationId(a);
+        router.getRealmTable().removeLocalApplicationId(a);
       }
-      metaData.remApplicationId(a);
-      router.getRealmTable().removeLocalApplicationId(a);
+    }
+    finally {
+      rebuildDispatch();
     }
   }
 
   @Override
   public void removeNetworkReqListener(Selector<Message, ApplicationId>... selectors) {
-    for (Selector<Message, ApplicationId> s : selectors) {
-      selectorToNetListener.remove(s);
-      if (appIdToNetListener.containsKey(s.getMetaData())) {
-        return;
-      }
+    try {
+      next:
+      for (Selector<Message, ApplicationId> s : selectors) {
+        selectorToNetListener.remove(s);
+        // still served by an application id listener or another selector, keep it deployed
+        if (appIdToNetListener.containsKey(s.getMetaData())) {
+          continue;
+        }
 
-      for (Selector<Message, ApplicationId> i : selectorToNetListener.keySet()) {
-        if (i.getMetaData().equals(s.getMetaData())) {
-          return;
+        for (Selector<Message, ApplicationId> i : selectorToNetListener.keySet()) {
+          if (i.getMetaData().equals(s.getMetaData())) {
+            continue next;
+          }
         }
+        metaData.remApplicationId(s.getMetaData());
+        router.getRealmTable().removeLocalApplicationId(s.getMetaData());
       }
-      metaData.remApplicationId(s.getMetaData());
-      router.getRealmTable().removeLocalApplicationId(s.getMetaData());
+    }
+    finally {
+      rebuildDispatch();
     }
   }
 
+  /**
+   * Rebuilds the listener dispatch table from the registered application ids and selectors.
+   * {@link ApplicationIdSelector}s only match on the message application id, so they are folded
+   * into the application id map; any other selector keeps being evaluated through its rule.
+   * Precedence is: custom selectors, then application id selectors, then the common application id
+   * listener, then the plain application id listeners, which are not used at all while a common one is
+   * registered. Selectors used to be evaluated in no particular order, now custom ones are always
+   * evaluated before application id selectors.
+   */
+  protected synchronized void rebuildDispatch() {
+    List<Rule> rules = new ArrayList<Rule>();
+    Map<ApplicationId, NetworkReqListener> byAppId = new HashMap<ApplicationId, NetworkReqListener>();
+    NetworkReqListener common = appIdToNetListener.get(commonAuthAppId);
+    if (common == null) {
+      common = appIdToNetListener.get(commonAccAppId);
+    }
+    if (common == null) {
+      byAppId.putAll(appIdToNetListener);
+    }
+    for (Map.Entry<Selector, NetworkReqListener> e : selectorToNetListener.entrySet()) {
+      Selector<Message, ApplicationId> s = e.getKey();
+      if (s.getClass() == ApplicationIdSelector.class) {
+        byAppId.put(s.getMetaData(), e.getValue());
+      }
+      else {
+        rules.add(new Rule(s, e.getValue()));
+      }
+    }
+    dispatch = new Dispatch(rules.toArray(new Rule[rules.size()]), byAppId, common);
+  }
+
   public Peer addPeer(String name, String realm, boolean connecting) {
     if (manager != null) {
       try {
@@ -243,10 +301,10 @@ public class NetworkImpl implements INetwork {
     if (message == null) {
       return null;
     }
-    for (Selector<Message, ApplicationId> s : selectorToNetListener.keySet()) {
-      boolean r = s.checkRule(message);
-      if (r) {
-        return selectorToNetListener.get(s);
+    Dispatch d = dispatch;
+    for (Rule rule : d.rules) {
+      if (rule.selector.checkRule(message)) {
+        return rule.listener;
       }
     }
 
@@ -254,15 +312,8 @@ public class NetworkImpl implements INetwork {
     if (appId == null) {
       return null;
     }
-    if (appIdToNetListener.containsKey(commonAuthAppId)) {
-      return appIdToNetListener.get(commonAuthAppId);
-    }
-    else if (appIdToNetListener.containsKey(commonAccAppId)) {
-      return appIdToNetListener.get(commonAccAppId);
-    }
-    else {
-      return appIdToNetListener.get(appId);
-    }
+    NetworkReqListener listener = d.byAppId.get(appId);
+    return listener != null ? listener : d.common;
   }
 
   @Override
@@ -270,4 +321,28 @@ public class NetworkImpl implements INetwork {
     this.manager = manager;
   }
 
+  private static class Rule {
+
+    private final Selector<Message, ApplicationId> selector;
+    private final NetworkReqListener listener;
+
+    Rule(Selector<Message, ApplicationId> selector, NetworkReqListener listener) {
+      this.selector = selector;
+      this.listener = listener;
+    }
+  }
+
+  private static class Dispatch {
+
+    private final Rule[] rules;
+    private final Map<ApplicationId, NetworkReqListener> byAppId;
+    private final NetworkReqListener common;
+
+    Dispatch(Rule[] rules, Map<ApplicationId, NetworkReqListener> byAppId, NetworkReqListener common) {
+      this.rules = rules;
+      this.byAppId = byAppId;
+      this.common = common;
+    }
+  }
+
 }
\ No newline at end of file
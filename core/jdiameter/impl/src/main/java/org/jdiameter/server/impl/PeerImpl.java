@@ -354,7 +354,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
         }
         else {
           try {
-            destRealm = destRealmAvp.getDiameterIdentity();
+            destRealm = message.getDestinationRealm();
           }
           catch (AvpDataException ade) {
             sendErrorAnswer(message, "Failed to parse Destination-Realm AVP", ResultCode.INVALID_AVP_VALUE, destRealmAvp);
@@ -391,7 +391,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
         //     present.
         if (destHostAvp != null) {
           try {
-            String destHost = destHostAvp.getDiameterIdentity();
+            String destHost = message.getDestinationHost();
             //FIXME: add check with DNS/names to check 127 vs localhost
             if (destHost.equals(metaData.getLocalPeer().getUri().getFQDN())) {
 
@@ -530,7 +530,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
             sendMessage(answer);
           }
           if (statistic.isEnabled()) {
-            statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse.name()).inc();
+            statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse).inc();
           }
         }
         catch (Exception exc) {
@@ -543,7 +543,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       if (isProcessed) {
         // NOTE: done to inc stat which informs on net work request consumption :)
         if (statistic.isEnabled()) {
-          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest.name()).inc();
+          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest).inc();
         }
       }
       return isProcessed;
@@ -563,7 +563,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       if (!isProcessed) {
         if (statistic.isEnabled()) {
           // Decrement what we have incremented in super.receiveMessage(message) since it wasn't processed
-          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest.name()).dec();
+          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRejectedRequest).dec();
         }
 
         NetworkReqListener listener = network.getListener(message);
@@ -588,7 +588,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
             try {
               sendMessage(answer);
               if (statistic.isEnabled()) {
-                statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse.name()).inc();
+                statistic.getRecordByName(IStatisticRecord.Counters.SysGenResponse).inc();
               }
             }
             catch (Exception e) {
@@ -616,7 +616,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
                   sendMessage(answer);
                 }
                 if (statistic.isEnabled()) {
-                  statistic.getRecordByName(IStatisticRecord.Counters.AppGenResponse.name()).inc();
+                  statistic.getRecordByName(IStatisticRecord.Counters.AppGenResponse).inc();
                 }
               }
               catch (Exception exc) {
@@ -639,7 +639,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       if (isProcessed) {
         // NOTE: done to inc stat which informs on net work request consumption :)...
         if (statistic.isEnabled()) {
-          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest.name()).inc();
+          statistic.getRecordByName(IStatisticRecord.Counters.NetGenRequest).inc();
         }
       }
       return isProcessed;
@@ -154,6 +154,7 @@ public class ServerCCASessionImpl extends AppCCASessionImpl implements ServerCCA
 
     try {
       sendAndStateLock.lock();
+      beginDataBatch();
       ServerCCASessionState state = this.sessionData.getServerCCASessionState();
       // Can be null if there is no state transition, transition to IDLE state should terminate this app session
       Event localEvent = (Event) event;
@@ -315,6 +316,7 @@ public class ServerCCASessionImpl extends AppCCASessionImpl implements ServerCCA
       throw new InternalException(e);
     }
     finally {
+      endDataBatch();
       sendAndStateLock.unlock();
     }
   }
@@ -346,11 +348,13 @@ public class ServerCCASessionImpl extends AppCCASessionImpl implements ServerCCA
       context.sessionSupervisionTimerExpired(session);
       try {
         sendAndStateLock.lock();
+        beginDataBatch();
         // tccFuture = null;
         sessionData.setTccTimerId(null);
         setState(ServerCCASessionState.IDLE);
       }
       finally {
+        endDataBatch();
         sendAndStateLock.unlock();
       }
     }
@@ -334,10 +334,15 @@ public class PeerFSMImpl extends org.jdiameter.client.impl.fsm.PeerFSMImpl imple
                 case START_EVENT:
                   try {
                     context.createStatistics();
-                    if (!context.isConnected()) {
-                      context.connect();
+                    if (sharedExecutor) {
+                      startConnector(!context.isConnected(), true);
+                    }
+                    else {
+                      if (!context.isConnected()) {
+                        context.connect();
+                      }
+                      context.sendCerMessage();
                     }
-                    context.sendCerMessage();
                     setTimer(CEA_TIMEOUT);
                     switchToNextState(INITIAL);
                   }
@@ -392,7 +397,12 @@ public class PeerFSMImpl extends org.jdiameter.client.impl.fsm.PeerFSMImpl imple
               switch (type(event)) {
                 case CONNECT_EVENT:
                   try {
-                    context.sendCerMessage();
+                    if (sharedExecutor) {
+                      startConnector(false, true);
+                    }
+                    else {
+                      context.sendCerMessage();
+                    }
                     setTimer(CEA_TIMEOUT);
                     switchToNextState(INITIAL);
                   }
@@ -402,6 +412,12 @@ public class PeerFSMImpl extends org.jdiameter.client.impl.fsm.PeerFSMImpl imple
                   }
                   break;
                 case TIMEOUT_EVENT:
+                  if (sharedExecutor) {
+                    // tried again on the next timeout, unless CONNECT_EVENT comes first
+                    setTimer(REC_TIMEOUT);
+                    startConnector(true, false);
+                    break;
+                  }
                   try {
                     context.connect();
                   }
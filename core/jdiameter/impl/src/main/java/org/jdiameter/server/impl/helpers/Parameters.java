@@ -65,9 +65,13 @@ public class Parameters extends org.jdiameter.client.impl.helpers.Parameters {
    */
   public static final Parameters DuplicateTimer = new Parameters("DuplicateTimer", Long.class, 4 * 60 * 1000L);
   /**
-   * Maximum number of Answers to keep for duplicate detection
+   * Maximum number of Answers to keep for duplicate detection, only enforced when configured
    */
   public static final Parameters DuplicateSize = new Parameters("DuplicateSize", Integer.class, 5000);
+  /**
+   * Maximum number of bytes taken by Answers kept for duplicate detection
+   */
+  public static final Parameters DuplicateMemory = new Parameters("DuplicateMemory", Long.class, 32 * 1024 * 1024L);
   /**
    * On/Off
    */
@@ -138,6 +142,11 @@ public class Parameters extends org.jdiameter.client.impl.helpers.Parameters {
 
   public static final Parameters RequestTableSize = new Parameters("RequestTableSize", Integer.class, new Integer(10240));
 
+  /**
+   * @deprecated ignored, request table entries expire after {@link #MessageTimeOut} instead of the table
+   * being cleared. Only read to warn about it.
+   */
+  @Deprecated
   public static final Parameters RequestTableClearSize = new Parameters("RequestTableClearSize", Integer.class, new Integer(2048));
 
   protected Parameters(String name, Class type) {
@@ -90,6 +90,7 @@ import static org.jdiameter.client.impl.helpers.Parameters.OwnIPAddress;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnProductName;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnRealm;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnVendorID;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMSharedExecutor;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMThreadCount;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerIp;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerLocalPortRange;
@@ -103,12 +104,16 @@ import static org.jdiameter.client.impl.helpers.Parameters.QueueSize;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmEntry;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmTable;
 import static org.jdiameter.client.impl.helpers.Parameters.RecTimeOut;
+import static org.jdiameter.client.impl.helpers.Parameters.ReceiveBufferSize;
 import static org.jdiameter.client.impl.helpers.Parameters.SDEnableSessionCreation;
 import static org.jdiameter.client.impl.helpers.Parameters.SDName;
 import static org.jdiameter.client.impl.helpers.Parameters.SDProtocol;
 import static org.jdiameter.client.impl.helpers.Parameters.SDUseClientMode;
 import static org.jdiameter.client.impl.helpers.Parameters.Security;
 import static org.jdiameter.client.impl.helpers.Parameters.SecurityRef;
+import static org.jdiameter.client.impl.helpers.Parameters.SelectorThreadCount;
+import static org.jdiameter.client.impl.helpers.Parameters.SendBufferSize;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionDataWriteVersion;
 import static org.jdiameter.client.impl.helpers.Parameters.Statistics;
 import static org.jdiameter.client.impl.helpers.Parameters.StatisticsActiveList;
 import static org.jdiameter.client.impl.helpers.Parameters.StatisticsEnabled;
@@ -119,17 +124,23 @@ import static org.jdiameter.client.impl.helpers.Parameters.TDFile;
 import static org.jdiameter.client.impl.helpers.Parameters.TDManager;
 import static org.jdiameter.client.impl.helpers.Parameters.TDPwd;
 import static org.jdiameter.client.impl.helpers.Parameters.TDStore;
+import static org.jdiameter.client.impl.helpers.Parameters.TcpNoDelay;
 import static org.jdiameter.client.impl.helpers.Parameters.ThreadPool;
 import static org.jdiameter.client.impl.helpers.Parameters.ThreadPoolPriority;
 import static org.jdiameter.client.impl.helpers.Parameters.ThreadPoolSize;
+import static org.jdiameter.client.impl.helpers.Parameters.TimerWheelTick;
 import static org.jdiameter.client.impl.helpers.Parameters.TrustData;
+import static org.jdiameter.client.impl.helpers.Parameters.UseNativeTransport;
 import static org.jdiameter.client.impl.helpers.Parameters.UseUriAsFqdn;
 import static org.jdiameter.client.impl.helpers.Parameters.VendorId;
+import static org.jdiameter.client.impl.helpers.Parameters.WriteBufferHighWaterMark;
+import static org.jdiameter.client.impl.helpers.Parameters.WriteBufferLowWaterMark;
 import static org.jdiameter.server.impl.helpers.ExtensionPoint.InternalNetWork;
 import static org.jdiameter.server.impl.helpers.ExtensionPoint.InternalNetworkGuard;
 import static org.jdiameter.server.impl.helpers.ExtensionPoint.InternalOverloadManager;
 import static org.jdiameter.server.impl.helpers.Parameters.AcceptUndefinedPeer;
 import static org.jdiameter.server.impl.helpers.Parameters.BindDelay;
+import static org.jdiameter.server.impl.helpers.Parameters.DuplicateMemory;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateProtection;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateSize;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateTimer;
@@ -373,6 +384,36 @@ public class XMLConfiguration extends EmptyConfiguration {
       else if (nodeName.equals("PeerFSMThreadCount")) {
         add(PeerFSMThreadCount, getIntValue(c.item(i)));
       }
+      else if (nodeName.equals("PeerFSMSharedExecutor")) {
+        add(PeerFSMSharedExecutor, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("TimerWheelTick")) {
+        add(TimerWheelTick, getLongValue(c.item(i)));
+      }
+      else if (nodeName.equals("SelectorThreadCount")) {
+        add(SelectorThreadCount, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("UseNativeTransport")) {
+        add(UseNativeTransport, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("TcpNoDelay")) {
+        add(TcpNoDelay, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("SendBufferSize")) {
+        add(SendBufferSize, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("ReceiveBufferSize")) {
+        add(ReceiveBufferSize, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("WriteBufferHighWaterMark")) {
+        add(WriteBufferHighWaterMark, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("WriteBufferLowWaterMark")) {
+        add(WriteBufferLowWaterMark, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionDataWriteVersion")) {
+        add(SessionDataWriteVersion, getIntValue(c.item(i)));
+      }
       else if (nodeName.equals("Statistics")) {
         addStatisticLogger(Statistics, c.item(i));
       }
@@ -750,6 +791,9 @@ public class XMLConfiguration extends EmptyConfiguration {
     if (nodeName.equals("DuplicateSize")) {
       add(DuplicateSize, getIntValue(node));
     }
+    if (nodeName.equals("DuplicateMemory")) {
+      add(DuplicateMemory, getLongValue(node));
+    }
     if (nodeName.equals("AcceptUndefinedPeer")) {
       add(AcceptUndefinedPeer, Boolean.valueOf(getValue(node)));
     }
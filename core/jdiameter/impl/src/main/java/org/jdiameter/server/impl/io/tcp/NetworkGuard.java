@@ -62,6 +62,8 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.api.io.IConnection;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.client.impl.transport.tcp.TCPClientConnection;
 import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
@@ -84,6 +86,8 @@ public class NetworkGuard implements INetworkGuard {
 
   protected IMessageParser parser;
   protected IConcurrentFactory concurrentFactory;
+  private boolean ownsConcurrentFactory;
+  protected Configuration config;
   protected int port;
   protected long bindDelay;
   protected CopyOnWriteArrayList<INetworkConnectionListener> listeners = new CopyOnWriteArrayList<INetworkConnectionListener>();
@@ -112,9 +116,11 @@ public class NetworkGuard implements INetworkGuard {
       IMetaData data) throws Exception {
     this.port = port;
     this.parser = parser;
-    this.concurrentFactory = concurrentFactory == null ? new DummyConcurrentFactory() : concurrentFactory;
+    this.ownsConcurrentFactory = concurrentFactory == null;
+    this.concurrentFactory = ownsConcurrentFactory ? new DummyConcurrentFactory() : concurrentFactory;
     //this.thread = this.concurrentFactory.getThread("NetworkGuard", this);
-    this.bindDelay = data.getConfiguration().getLongValue(BindDelay.ordinal(), (Long) BindDelay.defValue());
+    this.config = data.getConfiguration();
+    this.bindDelay = config.getLongValue(BindDelay.ordinal(), (Long) BindDelay.defValue());
 
     try {
       for (int addrIdx = 0; addrIdx < inetAddress.length; addrIdx++) {
@@ -161,6 +167,20 @@ public class NetworkGuard implements INetworkGuard {
       it.remove();
       gt.cleanTask();
     }
+    if (ownsConcurrentFactory) {
+      concurrentFactory.shutdownSelectorPool();
+    }
+  }
+
+  /**
+   * Creates the connection for an accepted socket.
+   *
+   * @param socket accepted socket
+   * @return started connection
+   * @throws Exception if the connection can not be created
+   */
+  protected IConnection createConnection(Socket socket) throws Exception {
+    return new TCPClientConnection(config, concurrentFactory, socket, parser, null);
   }
 
   private class GuardTask implements Runnable {
@@ -222,10 +242,9 @@ public class NetworkGuard implements INetworkGuard {
                 try {
                   Socket s = serverSocket.accept();
                   logger.info("Open incomming connection {}", s);
-                  TCPClientConnection client = new TCPClientConnection(null, concurrentFactory, s, parser,
-                      null);
+                  IConnection client = createConnection(s);
                   // PCB added logging
-                  logger.debug("Finished initialising TCPClientConnection for {}", s);
+                  logger.debug("Finished initialising connection for {}", s);
                   for (INetworkConnectionListener listener : listeners) {
                     listener.newNetworkConnection(client);
                   }
@@ -29,8 +29,11 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.transport.NettyTransportSupport;
 import org.jdiameter.client.impl.transport.tcp.netty.TCPClientConnection;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.server.api.IMetaData;
 import org.jdiameter.server.api.io.INetworkConnectionListener;
@@ -45,9 +48,7 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 /**
  * TCP implementation of {@link org.jdiameter.server.api.io.INetworkGuard}.
@@ -63,9 +64,11 @@ public class NetworkGuard implements INetworkGuard {
   protected int port;
   protected InetAddress[] localAddresses;
   protected long bindDelay;
+  protected IConcurrentFactory concurrentFactory;
+  // true when no factory was given and the guard runs on event loops of its own
+  private boolean ownsConcurrentFactory;
+  protected Configuration config;
 
-  protected final EventLoopGroup bossGroup = new NioEventLoopGroup();
-  protected final EventLoopGroup workerGroup = new NioEventLoopGroup();
   protected List<Channel> channels = new CopyOnWriteArrayList<Channel>();
 
   protected final ScheduledExecutorService binderExecutor = Executors.newSingleThreadScheduledExecutor();
@@ -84,14 +87,16 @@ public class NetworkGuard implements INetworkGuard {
 
   private void bind(InetSocketAddress localAddress) {
     logger.debug("Binding to socket [{}]", localAddress);
+    EventLoopGroup group = concurrentFactory.getEventLoopGroup();
     ServerBootstrap bootstrap = new ServerBootstrap();
-    bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+    bootstrap.group(group).channel(NettyTransportSupport.getServerSocketChannelClass(group))
         .childHandler(new ChannelInitializer<SocketChannel>() {
           @Override
           public void initChannel(SocketChannel ch) throws Exception {
             ch.pipeline().addLast(new ClientHandler());
           }
         }).option(ChannelOption.SO_BACKLOG, 128).childOption(ChannelOption.SO_KEEPALIVE, true);
+    NettyTransportSupport.applyChildSocketOptions(bootstrap, config);
 
     try {
       channels.add(bootstrap.bind(localAddress).sync().channel());
@@ -113,7 +118,7 @@ public class NetworkGuard implements INetworkGuard {
     public void channelActive(final ChannelHandlerContext ctx) {
       logger.debug("Received connection on socket [{}] from [{}]", ctx.channel().localAddress(), ctx.channel().remoteAddress());
 
-      TCPClientConnection client = new TCPClientConnection(ctx.channel(), parser);
+      TCPClientConnection client = new TCPClientConnection(ctx.channel(), concurrentFactory, parser);
       for (INetworkConnectionListener listener : listeners) {
         listener.newNetworkConnection(client);
       }
@@ -140,6 +145,9 @@ public class NetworkGuard implements INetworkGuard {
     this.parser = parser;
     this.localAddresses = inetAddress;
     this.port = port;
+    this.ownsConcurrentFactory = concurrentFactory == null;
+    this.concurrentFactory = ownsConcurrentFactory ? new DummyConcurrentFactory() : concurrentFactory;
+    this.config = data.getConfiguration();
     this.bindDelay = data.getConfiguration().getLongValue(BindDelay.ordinal(), (Long) BindDelay.defValue());
     this.binderExecutor.schedule(binderTask, bindDelay, TimeUnit.MILLISECONDS);
   }
@@ -161,25 +169,11 @@ public class NetworkGuard implements INetworkGuard {
 
   public void destroy() {
     logger.debug("Destroying network guard");
+    // event loops belong to the concurrent factory and are shut down with the stack
     closeChannels();
-    closeWorkerGroup();
-    closeBossGroup();
     binderExecutor.shutdown();
-  }
-
-  private void closeWorkerGroup() {
-    try {
-      workerGroup.shutdownGracefully().sync();
-    } catch (InterruptedException e) {
-      logger.error(e.getMessage(), e);
-    }
-  }
-
-  private void closeBossGroup() {
-    try {
-      bossGroup.shutdownGracefully().sync();
-    } catch (InterruptedException e) {
-      logger.error(e.getMessage(), e);
+    if (ownsConcurrentFactory) {
+      concurrentFactory.shutdownEventLoopGroups();
     }
   }
 
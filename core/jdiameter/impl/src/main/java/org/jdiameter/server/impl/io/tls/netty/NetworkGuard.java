@@ -31,6 +31,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.transport.NettyTransportSupport;
 import org.jdiameter.client.impl.transport.tls.TLSUtils;
 import org.jdiameter.client.impl.transport.tls.netty.TLSClientConnection;
 import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
@@ -49,9 +50,7 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 /**
  *
@@ -66,11 +65,12 @@ public class NetworkGuard implements INetworkGuard {
   protected int port;
   protected InetAddress[] localAddresses;
   private Configuration localPeerSSLConfig;
+  private Configuration config;
   private IConcurrentFactory concurrentFactory;
+  // true when no factory was given and the guard runs on event loops of its own
+  private boolean ownsConcurrentFactory;
   protected long bindDelay;
 
-  protected final EventLoopGroup bossGroup = new NioEventLoopGroup();
-  protected final EventLoopGroup workerGroup = new NioEventLoopGroup();
   protected List<Channel> channels = new CopyOnWriteArrayList<Channel>();
 
   protected final ScheduledExecutorService binderExecutor = Executors.newSingleThreadScheduledExecutor();
@@ -89,14 +89,16 @@ public class NetworkGuard implements INetworkGuard {
 
   private void bind(InetSocketAddress localAddress) {
     logger.debug("Binding to socket [{}]", localAddress);
+    EventLoopGroup group = concurrentFactory.getEventLoopGroup();
     ServerBootstrap bootstrap = new ServerBootstrap();
-    bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+    bootstrap.group(group).channel(NettyTransportSupport.getServerSocketChannelClass(group))
         .childHandler(new ChannelInitializer<SocketChannel>() {
           @Override
           public void initChannel(SocketChannel ch) throws Exception {
             ch.pipeline().addLast(new ClientHandler());
           }
         }).option(ChannelOption.SO_BACKLOG, 128).childOption(ChannelOption.SO_KEEPALIVE, true);
+    NettyTransportSupport.applyChildSocketOptions(bootstrap, config);
 
     try {
       channels.add(bootstrap.bind(localAddress).sync().channel());
@@ -140,9 +142,11 @@ public class NetworkGuard implements INetworkGuard {
     this.parser = parser;
     this.localAddresses = inetAddress;
     this.port = port;
-    this.concurrentFactory = concurrentFactory == null ? new DummyConcurrentFactory() : concurrentFactory;
+    this.ownsConcurrentFactory = concurrentFactory == null;
+    this.concurrentFactory = ownsConcurrentFactory ? new DummyConcurrentFactory() : concurrentFactory;
     // extract sec_ref from local peer;
     Configuration conf = data.getConfiguration();
+    this.config = conf;
 
     if (!conf.isAttributeExist(Parameters.SecurityRef.ordinal())) {
       throw new IllegalArgumentException("No security_ref attribute present in local peer!");
@@ -178,25 +182,11 @@ public class NetworkGuard implements INetworkGuard {
 
   public void destroy() {
     logger.debug("Destroying network guard");
+    // event loops belong to the concurrent factory and are shut down with the stack
     closeChannels();
-    closeWorkerGroup();
-    closeBossGroup();
     binderExecutor.shutdown();
-  }
-
-  private void closeWorkerGroup() {
-    try {
-      workerGroup.shutdownGracefully().sync();
-    } catch (InterruptedException e) {
-      logger.error(e.getMessage(), e);
-    }
-  }
-
-  private void closeBossGroup() {
-    try {
-      bossGroup.shutdownGracefully().sync();
-    } catch (InterruptedException e) {
-      logger.error(e.getMessage(), e);
+    if (ownsConcurrentFactory) {
+      concurrentFactory.shutdownEventLoopGroups();
     }
   }
 
@@ -0,0 +1,171 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.helpers;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ConcurrentLongHashMap}
+ */
+public class TestConcurrentLongHashMap {
+
+    @Test
+    public void testPutGetRemoveAcrossResize() {
+        // one segment of minimal size, so the table is resized several times
+        ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>(0, 1);
+        int count = 1000;
+        for (long key = 0; key < count; key++) {
+            assertNull(map.put(key * 31, "v" + key));
+        }
+        assertEquals(count, map.size());
+        for (long key = 0; key < count; key++) {
+            assertEquals("v" + key, map.get(key * 31));
+        }
+        assertNull(map.get(1));
+
+        // remove every other key, the rest has to stay reachable after backward shifts
+        for (long key = 0; key < count; key += 2) {
+            assertEquals("v" + key, map.remove(key * 31));
+        }
+        assertEquals(count / 2, map.size());
+        for (long key = 0; key < count; key++) {
+            assertEquals(key % 2 == 0 ? null : "v" + key, map.get(key * 31));
+        }
+        assertNull(map.remove(0));
+    }
+
+    @Test
+    public void testCollidingKeys() {
+        ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>(0, 1);
+        // keys differing only in high bits, all removed in insertion order
+        List<Long> keys = new ArrayList<Long>();
+        for (long i = 1; i <= 64; i++) {
+            keys.add(i << 40);
+        }
+        for (Long key : keys) {
+            map.put(key, key);
+        }
+        for (Long key : keys) {
+            assertEquals(key, map.remove(key));
+            assertNull(map.get(key));
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testPutIfAbsentAndReplace() {
+        ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+        assertNull(map.putIfAbsent(-1, "a"));
+        assertEquals("a", map.putIfAbsent(-1, "b"));
+        assertEquals("a", map.put(-1, "c"));
+        assertEquals("c", map.get(-1));
+        assertEquals(1, map.size());
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullValue() {
+        new ConcurrentLongHashMap<String>().put(1, null);
+    }
+
+    @Test
+    public void testDrainAndClear() {
+        ConcurrentLongHashMap<Integer> map = new ConcurrentLongHashMap<Integer>(0, 4);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        List<Integer> values = map.values();
+        Collections.sort(values);
+        assertEquals(100, values.size());
+        assertEquals(Integer.valueOf(99), values.get(99));
+
+        List<Integer> drained = map.drain();
+        assertEquals(100, drained.size());
+        assertTrue(map.isEmpty());
+        assertTrue(map.drain().isEmpty());
+
+        map.put(1, 1);
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void testConcurrentReadersDuringUpdates() throws Exception {
+        final ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>(0, 2);
+        // stable keys must stay visible with their own value while other keys move around them
+        for (long key = 0; key < 512; key++) {
+            map.put(key, key);
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int round = 0; round < 200; round++) {
+                        for (long key = 1000; key < 1500; key++) {
+                            map.put(key, key);
+                        }
+                        for (long key = 1000; key < 1500; key++) {
+                            map.remove(key);
+                        }
+                    }
+                }
+                finally {
+                    done.countDown();
+                }
+            }
+        };
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread() {
+                @Override
+                public void run() {
+                    while (done.getCount() > 0) {
+                        for (long key = 0; key < 512; key++) {
+                            Long value = map.get(key);
+                            if (value == null || value != key) {
+                                failure.compareAndSet(null, "Key " + key + " returned " + value);
+                            }
+                        }
+                    }
+                }
+            };
+            readers[r].start();
+        }
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        assertEquals(512, map.size());
+    }
+}
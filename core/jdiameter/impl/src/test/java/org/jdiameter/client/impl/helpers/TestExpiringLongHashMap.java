@@ -0,0 +1,99 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.helpers;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ExpiringLongHashMap}
+ */
+public class TestExpiringLongHashMap {
+
+    @Test
+    public void testPutGetRemove() {
+        ExpiringLongHashMap<String> map = new ExpiringLongHashMap<String>(60000, 0);
+        assertNull(map.put(1, "a"));
+        assertEquals("a", map.put(1, "b"));
+        assertEquals("b", map.get(1));
+        assertEquals(1, map.size());
+        assertEquals("b", map.remove(1));
+        assertNull(map.get(1));
+        assertNull(map.remove(1));
+        map.put(2, "c");
+        map.clear();
+        assertEquals(0, map.size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSingleGeneration() {
+        new ExpiringLongHashMap<String>(1000, 0, 1);
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        // two generations rotated every 100ms, an entry lives between 100ms and 200ms
+        ExpiringLongHashMap<String> map = new ExpiringLongHashMap<String>(100, 0, 2);
+        map.put(1, "a");
+        Thread.sleep(120);
+        // rotation happens on put, the entry moves to the older generation
+        map.put(2, "b");
+        assertEquals("a", map.get(1));
+        Thread.sleep(120);
+        map.put(3, "c");
+        assertNull(map.get(1));
+        assertEquals("b", map.get(2));
+        assertEquals("c", map.get(3));
+    }
+
+    @Test
+    public void testQuietPeriodExpiresAllGenerations() throws Exception {
+        ExpiringLongHashMap<String> map = new ExpiringLongHashMap<String>(60, 0, 4);
+        for (long key = 0; key < 10; key++) {
+            map.put(key, "v");
+        }
+        Thread.sleep(200);
+        map.put(100, "new");
+        assertEquals(1, map.size());
+        assertEquals("new", map.get(100));
+    }
+
+    @Test
+    public void testEarlyRotation() {
+        // three generations share 100 entries, so the newest one takes 50 before rotating early
+        ExpiringLongHashMap<Long> map = new ExpiringLongHashMap<Long>(60000, 100, 3);
+        for (long key = 0; key < 150; key++) {
+            map.put(key, key);
+        }
+        // nothing dropped yet, three generations of 50
+        assertEquals(150, map.size());
+        assertEquals(Long.valueOf(0), map.get(0));
+
+        map.put(150, 150L);
+        // the oldest generation is dropped on overflow, newer entries survive
+        assertNull(map.get(0));
+        assertNull(map.get(49));
+        assertEquals(Long.valueOf(50), map.get(50));
+        assertEquals(Long.valueOf(150), map.get(150));
+        assertEquals(101, map.size());
+    }
+}
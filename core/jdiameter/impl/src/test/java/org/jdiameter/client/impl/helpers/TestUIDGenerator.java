@@ -0,0 +1,147 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.helpers;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link UIDGenerator}
+ */
+public class TestUIDGenerator {
+
+    @Test
+    public void testSequentialInOneThread() {
+        UIDGenerator generator = new UIDGenerator(100, 4);
+        for (long i = 100; i < 120; i++) {
+            assertEquals(i, generator.nextLong());
+        }
+    }
+
+    @Test
+    public void testBlocksOfDifferentThreads() throws Exception {
+        final UIDGenerator generator = new UIDGenerator(0, 10);
+        assertEquals(0, generator.nextLong());
+        final long[] other = new long[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                other[0] = generator.nextLong();
+            }
+        };
+        thread.start();
+        thread.join();
+        // the second thread starts a new block, the first one keeps its own
+        assertEquals(10, other[0]);
+        assertEquals(1, generator.nextLong());
+    }
+
+    @Test
+    public void testInstancesAreIndependent() {
+        UIDGenerator first = new UIDGenerator(0, 8);
+        UIDGenerator second = new UIDGenerator(1000, 8);
+        assertEquals(0, first.nextLong());
+        assertEquals(1000, second.nextLong());
+        assertEquals(1, first.nextLong());
+        assertEquals(1001, second.nextLong());
+    }
+
+    @Test
+    public void testBlockSizeOne() {
+        UIDGenerator generator = new UIDGenerator(5, 1);
+        assertEquals(5, generator.nextLong());
+        assertEquals(6, generator.nextLong());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBlockSize() {
+        new UIDGenerator(0, 0);
+    }
+
+    @Test
+    public void testOverflow() {
+        UIDGenerator generator = new UIDGenerator(Long.MAX_VALUE - 1, 4);
+        assertEquals(Long.MAX_VALUE - 1, generator.nextLong());
+        assertEquals(Long.MAX_VALUE, generator.nextLong());
+        assertEquals(Long.MIN_VALUE, generator.nextLong());
+        // ints stay positive across the wrap
+        for (int i = 0; i < 10; i++) {
+            assertTrue(generator.nextInt() >= 0);
+        }
+    }
+
+    @Test
+    public void testConcurrentUniqueness() throws Exception {
+        final UIDGenerator generator = new UIDGenerator(0, 16);
+        final int threads = 8;
+        final int perThread = 50000;
+        final Set<Long> seen = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>(threads * perThread));
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger duplicates = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    long previous = -1;
+                    for (int i = 0; i < perThread; i++) {
+                        long uid = generator.nextLong();
+                        if (!seen.add(uid)) {
+                            duplicates.incrementAndGet();
+                        }
+                        // within a thread uids still increase
+                        if (uid <= previous) {
+                            duplicates.incrementAndGet();
+                        }
+                        previous = uid;
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(threads * perThread, seen.size());
+        // no block is lost: the ids are exactly 0 .. n-1
+        Set<Long> expected = new HashSet<Long>();
+        for (long i = 0; i < threads * perThread; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, seen);
+    }
+}
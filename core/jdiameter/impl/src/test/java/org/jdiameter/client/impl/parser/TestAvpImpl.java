@@ -0,0 +1,286 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.parser;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link AvpImpl} decoded as views over a message buffer
+ */
+public class TestAvpImpl {
+
+    private static final int VENDOR = 10415;
+    private static final int OFFSET = 13;
+
+    private final MessageParser parser = new MessageParser();
+
+    /**
+     * Encoded CCR with plain, vendor specific, padded and nested grouped AVPs.
+     */
+    private byte[] encoded() throws Exception {
+        IMessage message = parser.createEmptyMessage(272, 4);
+        message.setRequest(true);
+        AvpSet avps = message.getAvps();
+        avps.addAvp(Avp.SESSION_ID, "session;1;2", false);
+        avps.addAvp(Avp.ORIGIN_HOST, "client.example.net", true);
+        avps.addAvp(Avp.CC_REQUEST_NUMBER, 7L, true);
+        // 5 bytes, padded to 8
+        avps.addAvp(1000, new byte[] {1, 2, 3, 4, 5}, VENDOR, true, false);
+        AvpSet subscription = avps.addGroupedAvp(Avp.SUBSCRIPTION_ID);
+        subscription.addAvp(Avp.SUBSCRIPTION_ID_TYPE, 0);
+        subscription.addAvp(Avp.SUBSCRIPTION_ID_DATA, "12345", false);
+        AvpSet mscc = avps.addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+        mscc.addGroupedAvp(Avp.USED_SERVICE_UNIT).addAvp(Avp.CC_TIME, 60L, true);
+        mscc.addAvp(Avp.RATING_GROUP, 1L, true);
+        return parser.encodeMessage(message).array();
+    }
+
+    /**
+     * @return the message inside a larger array, at {@link #OFFSET}
+     */
+    private static byte[] embed(byte[] message) {
+        byte[] buffer = new byte[OFFSET + message.length + 11];
+        Arrays.fill(buffer, (byte) 0xEE);
+        System.arraycopy(message, 0, buffer, OFFSET, message.length);
+        return buffer;
+    }
+
+    private IMessage decode(byte[] buffer, int length) throws AvpDataException {
+        return parser.createMessage(buffer, OFFSET, length);
+    }
+
+    @Test
+    public void testDecodeFromOffset() throws Exception {
+        byte[] message = encoded();
+        byte[] buffer = embed(message);
+        IMessage decoded = decode(buffer, message.length);
+        AvpSet avps = decoded.getAvps();
+        assertEquals(6, avps.size());
+        assertEquals("session;1;2", avps.getAvp(Avp.SESSION_ID).getUTF8String());
+        assertEquals("client.example.net", avps.getAvp(Avp.ORIGIN_HOST).getDiameterIdentity());
+        assertEquals(7L, avps.getAvp(Avp.CC_REQUEST_NUMBER).getUnsigned32());
+
+        Avp vendorAvp = avps.getAvp(1000, VENDOR);
+        assertTrue(vendorAvp.isVendorId());
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3, 4, 5}, vendorAvp.getOctetString()));
+
+        // views over the buffer, nothing copied
+        AvpImpl sessionId = (AvpImpl) avps.getAvp(Avp.SESSION_ID);
+        assertSame(buffer, sessionId.payload.data);
+        assertEquals(OFFSET + 20 + 8, sessionId.payload.offset);
+
+        AvpSet subscription = avps.getAvp(Avp.SUBSCRIPTION_ID).getGrouped();
+        assertEquals(0, subscription.getAvp(Avp.SUBSCRIPTION_ID_TYPE).getInteger32());
+        assertEquals("12345", subscription.getAvp(Avp.SUBSCRIPTION_ID_DATA).getUTF8String());
+        assertSame(buffer, ((AvpImpl) subscription.getAvp(Avp.SUBSCRIPTION_ID_DATA)).payload.data);
+
+        AvpSet mscc = avps.getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).getGrouped();
+        assertEquals(60L, mscc.getAvp(Avp.USED_SERVICE_UNIT).getGrouped().getAvp(Avp.CC_TIME).getUnsigned32());
+        assertEquals(1L, mscc.getAvp(Avp.RATING_GROUP).getUnsigned32());
+
+        // the surrounding bytes are not part of any AVP, so the message encodes back to what it was decoded from
+        assertTrue(Arrays.equals(message, parser.encodeMessage(decoded).array()));
+    }
+
+    @Test
+    public void testGroupedDecodedOnce() throws Exception {
+        byte[] message = encoded();
+        AvpImpl grouped = (AvpImpl) decode(embed(message), message.length).getAvps().getAvp(Avp.SUBSCRIPTION_ID);
+        assertNull(grouped.groupedData);
+        AvpSet first = grouped.getGrouped();
+        assertSame(first, grouped.getGrouped());
+        // the children hold the payload now
+        assertEquals(0, grouped.payload.length);
+        assertTrue(Arrays.equals(parser.encodeAvpSet(first), grouped.getRawData()));
+    }
+
+    @Test
+    public void testMutationLeavesBufferAndSiblingsAlone() throws Exception {
+        byte[] message = encoded();
+        byte[] buffer = embed(message);
+        byte[] original = buffer.clone();
+        IMessage decoded = decode(buffer, message.length);
+        AvpSet avps = decoded.getAvps();
+
+        // the raw value is a copy of its own, changing it touches neither the buffer nor the next AVP
+        Avp vendorAvp = avps.getAvp(1000, VENDOR);
+        byte[] raw = vendorAvp.getOctetString();
+        raw[0] = 9;
+        assertTrue(Arrays.equals(original, buffer));
+        assertEquals(9, vendorAvp.getOctetString()[0]);
+        assertEquals(7L, avps.getAvp(Avp.CC_REQUEST_NUMBER).getUnsigned32());
+        assertEquals(0, avps.getAvp(Avp.SUBSCRIPTION_ID).getGrouped().getAvp(Avp.SUBSCRIPTION_ID_TYPE).getInteger32());
+
+        // changing the children of a grouped AVP
+        AvpSet subscription = avps.getAvp(Avp.SUBSCRIPTION_ID).getGrouped();
+        subscription.removeAvp(Avp.SUBSCRIPTION_ID_DATA);
+        subscription.addAvp(Avp.SUBSCRIPTION_ID_DATA, "678901234", false);
+        avps.removeAvp(Avp.ORIGIN_HOST);
+        assertTrue(Arrays.equals(original, buffer));
+        assertEquals("session;1;2", avps.getAvp(Avp.SESSION_ID).getUTF8String());
+
+        // the change is encoded, a second decode of the buffer still sees the original
+        IMessage reencoded = parser.createMessage(parser.encodeMessage(decoded).array());
+        assertEquals("678901234", reencoded.getAvps().getAvp(Avp.SUBSCRIPTION_ID).getGrouped()
+            .getAvp(Avp.SUBSCRIPTION_ID_DATA).getUTF8String());
+        assertNull(reencoded.getAvps().getAvp(Avp.ORIGIN_HOST));
+        assertEquals(9, reencoded.getAvps().getAvp(1000, VENDOR).getOctetString()[0]);
+        AvpSet again = decode(buffer, message.length).getAvps();
+        assertEquals("12345", again.getAvp(Avp.SUBSCRIPTION_ID).getGrouped().getAvp(Avp.SUBSCRIPTION_ID_DATA).getUTF8String());
+        assertEquals("client.example.net", again.getAvp(Avp.ORIGIN_HOST).getDiameterIdentity());
+        assertEquals(1, again.getAvp(1000, VENDOR).getOctetString()[0]);
+    }
+
+    private static byte[] avp(int code, int flags, int length, int payload) {
+        byte[] data = new byte[8 + payload];
+        data[3] = (byte) code;
+        data[4] = (byte) flags;
+        data[5] = (byte) (length >>> 16);
+        data[6] = (byte) (length >>> 8);
+        data[7] = (byte) length;
+        return data;
+    }
+
+    private void assertMalformed(byte[] data, int offset, int length) throws Exception {
+        try {
+            parser.decodeAvpSet(data, offset, length);
+            fail("Malformed AVPs accepted");
+        }
+        catch (AvpDataException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMalformedAvpLengths() throws Exception {
+        // shorter than its own header
+        assertMalformed(avp(1, 0, 7, 4), 0, 12);
+        assertMalformed(avp(1, 0, 0, 4), 0, 12);
+        // vendor flag set, but no room for the vendor id
+        assertMalformed(avp(1, 0x80, 8, 4), 0, 12);
+        // longer than the data
+        assertMalformed(avp(1, 0, 13, 4), 0, 12);
+        assertMalformed(avp(1, 0, 0xFFFFFF, 4), 0, 12);
+        // only part of a header left
+        assertMalformed(avp(1, 0, 8, 4), 0, 12);
+        // region outside of the array
+        assertMalformed(avp(1, 0, 12, 4), 4, 12);
+        assertMalformed(avp(1, 0, 12, 4), -1, 12);
+
+        // an AVP may not run into the bytes behind the region, even if they are in the array
+        byte[] data = avp(1, 0, 12, 8);
+        assertMalformed(data, 0, 8 + 3);
+        assertEquals(1, parser.decodeAvpSet(data, 0, 12).size());
+    }
+
+    @Test
+    public void testMalformedGroupedFailsOnAccess() throws Exception {
+        byte[] data = avp(1, 0, 8 + 12, 12);
+        // child claiming 100 bytes
+        System.arraycopy(avp(2, 0, 100, 4), 0, data, 8, 12);
+        Avp grouped = parser.decodeAvpSet(data, 0, data.length).getAvp(1);
+        try {
+            grouped.getGrouped();
+            fail("Malformed grouped AVP decoded");
+        }
+        catch (AvpDataException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMalformedMessageLength() throws Exception {
+        byte[] message = encoded();
+        byte[] buffer = embed(message);
+        try {
+            decode(buffer, message.length - 4);
+            fail("Message length mismatch accepted");
+        }
+        catch (AvpDataException e) {
+            // expected
+        }
+        try {
+            parser.createMessage(buffer, buffer.length - 10, 20);
+            fail("Message past the end of the array accepted");
+        }
+        catch (AvpDataException e) {
+            // expected
+        }
+    }
+
+    private static Avp roundTrip(Avp avp) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(avp);
+        out.close();
+        return (Avp) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void testSerializeView() throws Exception {
+        byte[] message = encoded();
+        // a large buffer, which must not be serialized along with the AVP
+        byte[] buffer = new byte[65536];
+        System.arraycopy(message, 0, buffer, OFFSET, message.length);
+        AvpSet avps = decode(buffer, message.length).getAvps();
+
+        Avp sessionId = avps.getAvp(Avp.SESSION_ID);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(sessionId);
+        out.close();
+        assertTrue("serialized size " + bytes.size(), bytes.size() < 1024);
+
+        Avp copy = roundTrip(sessionId);
+        assertEquals(Avp.SESSION_ID, copy.getCode());
+        assertTrue(copy.isMandatory() == sessionId.isMandatory());
+        assertEquals("session;1;2", copy.getUTF8String());
+        assertEquals(0, ((AvpImpl) copy).payload.offset);
+
+        Avp vendorAvp = roundTrip(avps.getAvp(1000, VENDOR));
+        assertEquals(VENDOR, vendorAvp.getVendorId());
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3, 4, 5}, vendorAvp.getOctetString()));
+
+        // grouped, before and after its children were decoded
+        Avp grouped = avps.getAvp(Avp.SUBSCRIPTION_ID);
+        assertEquals("12345", roundTrip(grouped).getGrouped().getAvp(Avp.SUBSCRIPTION_ID_DATA).getUTF8String());
+        grouped.getGrouped();
+        Avp decodedCopy = roundTrip(grouped);
+        assertEquals("12345", decodedCopy.getGrouped().getAvp(Avp.SUBSCRIPTION_ID_DATA).getUTF8String());
+        assertFalse(decodedCopy.getGrouped() == grouped.getGrouped());
+    }
+}
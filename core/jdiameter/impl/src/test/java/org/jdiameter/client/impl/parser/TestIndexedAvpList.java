@@ -0,0 +1,266 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.parser;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link IndexedAvpList}
+ */
+public class TestIndexedAvpList {
+
+    private static int serial;
+
+    private static Avp avp(int code) {
+        return avp(code, 0);
+    }
+
+    private static Avp avp(int code, long vendorId) {
+        // distinct payload, so equal codes are still different AVPs
+        return new AvpImpl(code, vendorId != 0 ? 0x80 : 0, vendorId, new byte[] {(byte) serial++});
+    }
+
+    /**
+     * @return AVPs found through first/next
+     */
+    private static List<Avp> chain(IndexedAvpList list, int code) {
+        List<Avp> found = new ArrayList<Avp>();
+        for (int i = list.first(code); i >= 0; i = list.next(i)) {
+            found.add(list.get(i));
+        }
+        return found;
+    }
+
+    /**
+     * @return AVPs found by scanning
+     */
+    private static List<Avp> scan(List<Avp> list, int code) {
+        List<Avp> found = new ArrayList<Avp>();
+        for (Avp avp : list) {
+            if (avp.getCode() == code) {
+                found.add(avp);
+            }
+        }
+        return found;
+    }
+
+    private static void assertLookups(IndexedAvpList list, int... codes) {
+        for (int code : codes) {
+            assertEquals("code " + code, scan(list, code), chain(list, code));
+        }
+    }
+
+    private static IndexedAvpList list(int... codes) {
+        IndexedAvpList list = new IndexedAvpList();
+        for (int code : codes) {
+            list.add(avp(code));
+        }
+        return list;
+    }
+
+    @Test
+    public void testLookupSmallAndIndexed() {
+        // below the index threshold, then well above it
+        for (int size : new int[] {3, 40}) {
+            IndexedAvpList list = new IndexedAvpList();
+            for (int i = 0; i < size; i++) {
+                list.add(avp(100 + i));
+            }
+            for (int i = 0; i < size; i++) {
+                assertEquals(i, list.first(100 + i));
+                assertEquals(-1, list.next(i));
+            }
+            assertEquals(-1, list.first(99));
+            assertEquals(-1, list.first(100 + size));
+        }
+    }
+
+    @Test
+    public void testDuplicateCodesKeepInsertionOrder() {
+        IndexedAvpList list = new IndexedAvpList();
+        List<Avp> expected = new ArrayList<Avp>();
+        for (int i = 0; i < 30; i++) {
+            list.add(avp(i % 3 == 0 ? 443 : 1000 + i));
+            if (i % 3 == 0) {
+                expected.add(list.get(i));
+            }
+            // looked up while growing, so the index is kept up to date by add
+            assertEquals(expected, chain(list, 443));
+        }
+    }
+
+    @Test
+    public void testLookupAfterInsert() {
+        IndexedAvpList list = list(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 2);
+        assertLookups(list, 1, 2, 10);
+        Avp inserted = avp(2);
+        list.add(0, inserted);
+        assertSame(inserted, list.get(list.first(2)));
+        assertLookups(list, 1, 2, 3, 10);
+        list.add(5, avp(11));
+        list.addAll(3, Arrays.asList(avp(2), avp(12)));
+        assertLookups(list, 1, 2, 3, 10, 11, 12);
+        assertEquals(4, chain(list, 2).size());
+    }
+
+    @Test
+    public void testLookupAfterRemove() {
+        IndexedAvpList list = list(1, 2, 3, 2, 4, 5, 6, 2, 7, 8, 9);
+        assertLookups(list, 2, 9);
+        list.remove(0);
+        assertLookups(list, 1, 2, 9);
+        Avp second = chain(list, 2).get(1);
+        list.remove(second);
+        assertLookups(list, 2, 5, 9);
+        assertEquals(2, chain(list, 2).size());
+        Iterator<Avp> it = list.iterator();
+        it.next();
+        it.remove();
+        assertLookups(list, 2, 3, 9);
+        list.clear();
+        assertEquals(-1, list.first(2));
+    }
+
+    @Test
+    public void testRemoveByCodeAndVendor() {
+        IndexedAvpList list = new IndexedAvpList();
+        for (int i = 0; i < 12; i++) {
+            list.add(avp(i % 4 == 0 ? 1000 : i, i % 8 == 0 ? 10415 : 0));
+        }
+        list.add(avp(1000, 10415));
+        assertLookups(list, 1000, 1, 11);
+        List<Avp> expected = new ArrayList<Avp>();
+        for (Avp avp : scan(list, 1000)) {
+            if (avp.getVendorId() == 10415) {
+                expected.add(avp);
+            }
+        }
+
+        List<Avp> removed = new ArrayList<Avp>();
+        list.remove(1000, 10415, removed);
+        assertEquals(expected, removed);
+        // the AVP with the same code of another vendor stays
+        assertEquals(1, chain(list, 1000).size());
+        for (Avp avp : chain(list, 1000)) {
+            assertEquals(0, avp.getVendorId());
+        }
+        assertLookups(list, 1000, 1, 2, 11);
+
+        removed.clear();
+        list.remove(1000, 10415, removed);
+        list.remove(7777, 0, removed);
+        assertEquals(0, removed.size());
+        assertLookups(list, 1000, 1, 11);
+    }
+
+    @Test
+    public void testAvpSetRemoveAvp() throws Exception {
+        AvpSet set = new AvpSetImpl();
+        for (int i = 0; i < 20; i++) {
+            set.addAvp(i % 2 == 0 ? 263 : 264, "v" + i, false);
+        }
+        set.addAvp(263, new byte[] {1}, 10415, false, false);
+        assertEquals(10, set.removeAvp(263).size());
+        assertNull(set.getAvp(263, 0));
+        assertEquals(10415, set.getAvp(263).getVendorId());
+        assertEquals(1, set.removeAvp(263, 10415).size());
+        assertNull(set.getAvp(263));
+        assertEquals(10, set.getAvps(264).size());
+        assertEquals("v1", set.getAvp(264).getUTF8String());
+    }
+
+    @Test
+    public void testManyCodesAfterIndexBuilt() {
+        IndexedAvpList list = list(1, 2, 3, 4, 5, 6, 7, 8);
+        assertEquals(0, list.first(1));
+        // enough new codes to outgrow the table of the index built above
+        for (int i = 0; i < 200; i++) {
+            list.add(avp(1000 + i * 31));
+            assertEquals(list.size() - 1, list.first(1000 + i * 31));
+        }
+        assertLookups(list, 1, 8, 1000, 1000 + 199 * 31);
+    }
+
+    @Test
+    public void testInterleavedMutations() {
+        Random random = new Random(42);
+        IndexedAvpList list = new IndexedAvpList();
+        List<Avp> model = new ArrayList<Avp>();
+        // few codes for long chains, and codes far apart for collisions in the table
+        int[] codes = {1, 2, 3, 263, 264, 443, 1 << 20, (1 << 20) + 1, 0x7FFFFFFF, 17, 33, 65};
+        for (int step = 0; step < 5000; step++) {
+            int op = random.nextInt(10);
+            int code = codes[random.nextInt(codes.length)];
+            if (op < 4 || model.isEmpty()) {
+                Avp avp = avp(code, random.nextInt(4) == 0 ? 10415 : 0);
+                list.add(avp);
+                model.add(avp);
+            }
+            else if (op < 6) {
+                int index = random.nextInt(model.size() + 1);
+                Avp avp = avp(code);
+                list.add(index, avp);
+                model.add(index, avp);
+            }
+            else if (op < 8) {
+                int index = random.nextInt(model.size());
+                assertSame(model.remove(index), list.remove(index));
+            }
+            else if (op < 9) {
+                long vendorId = random.nextBoolean() ? 10415 : 0;
+                List<Avp> removed = new ArrayList<Avp>();
+                list.remove(code, vendorId, removed);
+                List<Avp> expected = new ArrayList<Avp>();
+                for (Iterator<Avp> it = model.iterator(); it.hasNext();) {
+                    Avp avp = it.next();
+                    if (avp.getCode() == code && avp.getVendorId() == vendorId) {
+                        expected.add(avp);
+                        it.remove();
+                    }
+                }
+                assertEquals(expected, removed);
+            }
+            else if (model.size() > 50) {
+                // keep the list in a range where both the scan and the index are used
+                list.subList(0, 40).clear();
+                model.subList(0, 40).clear();
+            }
+            assertEquals(model, list);
+            if (step % 3 != 0) {
+                // not looked up after every change, so some changes pile up on a stale index
+                for (int c : codes) {
+                    assertEquals("step " + step + " code " + c, scan(model, c), chain(list, c));
+                }
+            }
+        }
+    }
+}
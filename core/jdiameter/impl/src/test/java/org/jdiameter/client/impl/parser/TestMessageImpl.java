@@ -0,0 +1,129 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.parser;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the header AVP cache of {@link MessageImpl}
+ */
+public class TestMessageImpl {
+
+    private final MessageParser parser = new MessageParser();
+
+    @Test
+    public void testSessionIdAndOriginHostFollowAvps() throws Exception {
+        IMessage message = parser.createEmptyMessage(272, 4);
+        assertNull(message.getSessionId());
+        assertNull(message.getOriginHost());
+
+        AvpSet avps = message.getAvps();
+        avps.addAvp(Avp.SESSION_ID, "session;1", false);
+        avps.addAvp(Avp.ORIGIN_HOST, "a.example.net", true);
+        avps.addAvp(Avp.ORIGIN_REALM, "example.net", true);
+        assertEquals("session;1", message.getSessionId());
+        assertEquals("a.example.net", message.getOriginHost());
+        assertEquals("example.net", message.getOriginRealm());
+
+        avps.removeAvp(Avp.SESSION_ID);
+        assertNull(message.getSessionId());
+        avps.insertAvp(0, Avp.SESSION_ID, "session;2", false);
+        assertEquals("session;2", message.getSessionId());
+
+        avps.removeAvp(Avp.ORIGIN_HOST);
+        avps.addAvp(Avp.ORIGIN_HOST, "b.example.net", true);
+        assertEquals("b.example.net", message.getOriginHost());
+        assertEquals("example.net", message.getOriginRealm());
+        assertNull(message.getDestinationHost());
+        avps.addAvp(Avp.DESTINATION_HOST, "c.example.net", true);
+        assertEquals("c.example.net", message.getDestinationHost());
+    }
+
+    @Test
+    public void testResultCodeFollowsAvps() throws Exception {
+        IMessage request = parser.createEmptyMessage(272, 4);
+        request.setRequest(true);
+        IMessage answer = (IMessage) request.createAnswer(2001);
+        assertEquals(2001L, answer.getResultCode().getUnsigned32());
+
+        answer.getAvps().removeAvp(Avp.RESULT_CODE);
+        assertNull(answer.getResultCode());
+        answer.getAvps().addAvp(Avp.RESULT_CODE, 5012L, true, false, true);
+        assertEquals(5012L, answer.getResultCode().getUnsigned32());
+    }
+
+    @Test
+    public void testDecodedMessage() throws Exception {
+        IMessage message = parser.createEmptyMessage(272, 4);
+        message.getAvps().addAvp(Avp.SESSION_ID, "session;1", false);
+        message.getAvps().addAvp(Avp.RESULT_CODE, 2001L, true, false, true);
+        IMessage decoded = parser.createMessage(parser.encodeMessage(message));
+        assertEquals("session;1", decoded.getSessionId());
+        assertEquals(2001L, decoded.getResultCode().getUnsigned32());
+
+        decoded.getAvps().removeAvp(Avp.SESSION_ID);
+        decoded.getAvps().removeAvp(Avp.RESULT_CODE);
+        decoded.getAvps().addAvp(Avp.SESSION_ID, "session;2", false);
+        decoded.getAvps().addAvp(Avp.RESULT_CODE, 3002L, true, false, true);
+        assertEquals("session;2", decoded.getSessionId());
+        assertEquals(3002L, decoded.getResultCode().getUnsigned32());
+    }
+
+    @Test
+    public void testSingleApplicationIdFollowsAvps() throws Exception {
+        IMessage message = parser.createEmptyMessage(272, 4);
+        // no Application-Id AVPs, taken from the header
+        assertEquals(ApplicationId.createByAuthAppId(4), message.getSingleApplicationId());
+
+        AvpSet avps = message.getAvps();
+        avps.addAvp(Avp.AUTH_APPLICATION_ID, 4L, true, false, true);
+        assertEquals(ApplicationId.createByAuthAppId(4), message.getSingleApplicationId());
+        assertEquals(1, message.getApplicationIdAvps().size());
+
+        // a vendor specific one wins over the plain one
+        AvpSet vendorSpecific = avps.addGroupedAvp(Avp.VENDOR_SPECIFIC_APPLICATION_ID);
+        vendorSpecific.addAvp(Avp.VENDOR_ID, 10415L, true, false, true);
+        vendorSpecific.addAvp(Avp.AUTH_APPLICATION_ID, 4L, true, false, true);
+        assertEquals(ApplicationId.createByAuthAppId(10415, 4), message.getSingleApplicationId());
+        assertEquals(2, message.getApplicationIdAvps().size());
+
+        avps.removeAvp(Avp.VENDOR_SPECIFIC_APPLICATION_ID);
+        assertEquals(ApplicationId.createByAuthAppId(4), message.getSingleApplicationId());
+
+        avps.removeAvp(Avp.AUTH_APPLICATION_ID);
+        avps.addAvp(Avp.ACCT_APPLICATION_ID, 3L, true, false, true);
+        // no AVP for the application of the header, the first one is taken
+        assertEquals(ApplicationId.createByAccAppId(3), message.getSingleApplicationId());
+
+        // the header application is part of the resolution too
+        avps.addAvp(Avp.AUTH_APPLICATION_ID, 16777238L, true, false, true);
+        message.setHeaderApplicationId(16777238L);
+        assertEquals(ApplicationId.createByAuthAppId(16777238L), message.getSingleApplicationId());
+        message.setHeaderApplicationId(3);
+        assertEquals(ApplicationId.createByAccAppId(3), message.getSingleApplicationId());
+    }
+}
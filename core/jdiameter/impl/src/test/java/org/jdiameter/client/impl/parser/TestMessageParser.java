@@ -0,0 +1,140 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.parser;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.ParseException;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link MessageParser} encoding
+ */
+public class TestMessageParser {
+
+    private static final int VENDOR = 10415;
+    private static final int POSITION = 7;
+
+    private final MessageParser parser = new MessageParser();
+
+    /**
+     * @param pad length of the padded values, so every padding from 0 to 3 bytes is used
+     */
+    private IMessage message(int pad) {
+        IMessage message = parser.createEmptyMessage(272, 4);
+        message.setRequest(true);
+        message.setHopByHopIdentifier(0x11223344L);
+        message.setEndToEndIdentifier(0xF0E0D0C0L);
+        AvpSet avps = message.getAvps();
+        avps.addAvp(Avp.SESSION_ID, "session;" + pad, false);
+        avps.addAvp(1000, new byte[pad], VENDOR, true, false);
+        AvpSet subscription = avps.addGroupedAvp(Avp.SUBSCRIPTION_ID);
+        subscription.addAvp(Avp.SUBSCRIPTION_ID_TYPE, 0);
+        subscription.addAvp(Avp.SUBSCRIPTION_ID_DATA, "123456789".substring(0, pad + 1), false);
+        // grouped inside grouped, vendor specific, with padded children
+        AvpSet mscc = avps.addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL, VENDOR, true, false);
+        AvpSet used = mscc.addGroupedAvp(Avp.USED_SERVICE_UNIT);
+        used.addAvp(Avp.CC_TIME, 60L, true);
+        used.addAvp(1001, new byte[pad + 2], VENDOR, false, false);
+        mscc.addAvp(Avp.RATING_GROUP, 1L, true);
+        // empty grouped AVP
+        avps.addGroupedAvp(Avp.PROXY_INFO);
+        return message;
+    }
+
+    @Test
+    public void testEncodeAtPosition() throws Exception {
+        for (int pad = 0; pad < 4; pad++) {
+            IMessage message = message(pad);
+            int length = parser.getMessageLength(message);
+            byte[] array = new byte[POSITION + length + 5];
+            Arrays.fill(array, (byte) 0xEE);
+            ByteBuffer buffer = ByteBuffer.wrap(array);
+            buffer.position(POSITION);
+            parser.encodeMessage(message, buffer);
+
+            assertEquals(POSITION + length, buffer.position());
+            assertEquals(length, buffer.getInt(POSITION) & 0xFFFFFF);
+            assertEquals(1, array[POSITION]);
+            // nothing written outside of the message
+            for (int i = 0; i < POSITION; i++) {
+                assertEquals((byte) 0xEE, array[i]);
+            }
+            for (int i = POSITION + length; i < array.length; i++) {
+                assertEquals((byte) 0xEE, array[i]);
+            }
+            byte[] copy = parser.encodeMessage(message).array();
+            assertTrue(Arrays.equals(copy, Arrays.copyOfRange(array, POSITION, POSITION + length)));
+
+            IMessage decoded = parser.createMessage(array, POSITION, length);
+            assertEquals(272, decoded.getCommandCode());
+            assertEquals(0x11223344L, decoded.getHopByHopIdentifier());
+            assertEquals(0xF0E0D0C0L, decoded.getEndToEndIdentifier());
+            AvpSet avps = decoded.getAvps();
+            assertEquals("session;" + pad, avps.getAvp(Avp.SESSION_ID).getUTF8String());
+            assertEquals(pad, avps.getAvp(1000, VENDOR).getRaw().length);
+            assertEquals("123456789".substring(0, pad + 1),
+                avps.getAvp(Avp.SUBSCRIPTION_ID).getGrouped().getAvp(Avp.SUBSCRIPTION_ID_DATA).getUTF8String());
+            AvpSet mscc = avps.getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL, VENDOR).getGrouped();
+            AvpSet used = mscc.getAvp(Avp.USED_SERVICE_UNIT).getGrouped();
+            assertEquals(60L, used.getAvp(Avp.CC_TIME).getUnsigned32());
+            assertEquals(pad + 2, used.getAvp(1001, VENDOR).getRaw().length);
+            assertEquals(1L, mscc.getAvp(Avp.RATING_GROUP).getUnsigned32());
+            assertEquals(0, avps.getAvp(Avp.PROXY_INFO).getGrouped().size());
+
+            // and again from the decoded form, whose AVPs are views over the array
+            ByteBuffer direct = ByteBuffer.allocateDirect(POSITION + length);
+            direct.position(POSITION);
+            parser.encodeMessage(decoded, direct);
+            assertEquals(POSITION + length, direct.position());
+            byte[] reencoded = new byte[length];
+            direct.position(POSITION);
+            direct.get(reencoded);
+            assertTrue(Arrays.equals(copy, reencoded));
+        }
+    }
+
+    @Test
+    public void testLengthIsExact() throws Exception {
+        for (int pad = 0; pad < 4; pad++) {
+            IMessage message = message(pad);
+            int length = parser.getMessageLength(message);
+            assertEquals(0, length % 4);
+            ByteBuffer exact = ByteBuffer.allocate(length);
+            parser.encodeMessage(message, exact);
+            assertEquals(0, exact.remaining());
+            try {
+                parser.encodeMessage(message, ByteBuffer.allocate(length - 1));
+                fail("Encoded into a buffer too small by one byte");
+            }
+            catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+}
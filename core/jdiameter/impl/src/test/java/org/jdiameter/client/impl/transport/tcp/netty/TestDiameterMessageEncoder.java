@@ -0,0 +1,72 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport.tcp.netty;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.testng.annotations.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * Tests for {@link DiameterMessageEncoder}
+ */
+public class TestDiameterMessageEncoder {
+
+    private static class CountingParser extends MessageParser {
+
+        int lengthCalls;
+
+        @Override
+        public int getMessageLength(IMessage message) {
+            lengthCalls++;
+            return super.getMessageLength(message);
+        }
+    }
+
+    @Test
+    public void testSingleLengthComputation() throws Exception {
+        CountingParser parser = new CountingParser();
+        EmbeddedChannel channel = new EmbeddedChannel(new DiameterMessageEncoder(parser));
+        for (int i = 0; i < 3; i++) {
+            IMessage message = parser.createEmptyMessage(272, 4);
+            message.getAvps().addAvp(Avp.SESSION_ID, "session;" + i, false);
+            message.getAvps().addGroupedAvp(Avp.SUBSCRIPTION_ID).addAvp(Avp.SUBSCRIPTION_ID_DATA, "123", false);
+            byte[] expected = parser.encodeMessage(message).array();
+            parser.lengthCalls = 0;
+
+            assertTrue(channel.writeOutbound(message));
+            ByteBuf out = (ByteBuf) channel.readOutbound();
+            byte[] written = new byte[out.readableBytes()];
+            out.readBytes(written);
+            out.release();
+            assertTrue(Arrays.equals(expected, written));
+            assertEquals(1, parser.lengthCalls);
+        }
+        channel.finish();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.Arrays;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link SessionStateCodec}
+ */
+public class TestSessionStateCodec {
+
+    private final MessageParser parser = new MessageParser();
+
+    private IMessage message() {
+        IMessage message = parser.createEmptyMessage(272, 4);
+        message.setRequest(true);
+        message.getAvps().addAvp(263, "session;1", false);
+        return message;
+    }
+
+    @Test
+    public void testFormatVersionRoundTrip() throws Exception {
+        SessionStateCodec codec = new SessionStateCodec(parser);
+        IMessage message = message();
+        byte[] data = codec.encodeMessage(message);
+        assertEquals((byte) (0x80 | SessionStateCodec.FORMAT_VERSION), data[0]);
+        IMessage decoded = codec.decodeMessage(data);
+        assertEquals(272, decoded.getCommandCode());
+        assertEquals("session;1", decoded.getSessionId());
+    }
+
+    @Test
+    public void testLegacyVersionWritesPlainMessage() throws Exception {
+        SessionStateCodec codec = new SessionStateCodec(parser, SessionStateCodec.LEGACY_VERSION);
+        IMessage message = message();
+        byte[] data = codec.encodeMessage(message);
+        // what nodes without the codec store and read
+        assertTrue(Arrays.equals(parser.encodeMessage(message).array(), data));
+        assertEquals("session;1", parser.createMessage(data).getSessionId());
+        // and read back by the codec of any version
+        assertEquals("session;1", new SessionStateCodec(parser).decodeMessage(data).getSessionId());
+    }
+
+    @Test
+    public void testApplicationId() throws Exception {
+        ApplicationId auth = ApplicationId.createByAuthAppId(10415, 4);
+        ApplicationId acct = ApplicationId.createByAccAppId(0, 3);
+        assertSame(auth, SessionStateCodec.encodeApplicationId(auth, SessionStateCodec.LEGACY_VERSION));
+        assertSame(auth, SessionStateCodec.decodeApplicationId(auth));
+
+        Object encoded = SessionStateCodec.encodeApplicationId(auth, SessionStateCodec.FORMAT_VERSION);
+        assertTrue(Arrays.equals(SessionStateCodec.encodeApplicationId(auth), (byte[]) encoded));
+        assertEquals(auth, SessionStateCodec.decodeApplicationId(encoded));
+        assertEquals(acct, SessionStateCodec.decodeApplicationId(SessionStateCodec.encodeApplicationId(acct)));
+    }
+
+    @Test
+    public void testUnsupportedWriteVersion() {
+        for (int version : new int[] {-1, SessionStateCodec.FORMAT_VERSION + 1}) {
+            try {
+                new SessionStateCodec(parser, version);
+                fail("Write version " + version + " accepted");
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jdiameter.common.api.data.IReplicatedSessionStoreListener;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link InMemorySessionStore}
+ */
+public class TestInMemorySessionStore {
+
+    private static InMemorySessionStore store(String nodeId, int partitions) {
+        Properties properties = new Properties();
+        properties.setProperty(InMemorySessionStore.NODE_ID, nodeId);
+        properties.setProperty(InMemorySessionStore.PARTITIONS, Integer.toString(partitions));
+        return new InMemorySessionStore(properties);
+    }
+
+    private static Map<String, Object> changes(Object... keyValues) {
+        Map<String, Object> changes = new HashMap<String, Object>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            changes.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return changes;
+    }
+
+    @Test
+    public void testCreatePutGetRemove() {
+        InMemorySessionStore store = store("a", 8);
+        assertFalse(store.exists("s1"));
+        assertNull(store.getAll("s1"));
+        assertNull(store.getOwner("s1"));
+
+        assertTrue(store.create("s1"));
+        assertFalse(store.create("s1"));
+        assertTrue(store.exists("s1"));
+        assertEquals("a", store.getOwner("s1"));
+        assertTrue(store.getAll("s1").isEmpty());
+
+        store.put("s1", changes("state", "OPEN", "count", 3, "flag", true, "data", new byte[] {1}));
+        assertEquals("OPEN", store.get("s1", "state"));
+        assertEquals(3, store.get("s1", "count"));
+        assertEquals(4, store.getAll("s1").size());
+
+        // null removes the attribute, others are left alone
+        store.put("s1", changes("state", null, "count", 4L));
+        assertNull(store.get("s1", "state"));
+        assertFalse(store.getAll("s1").containsKey("state"));
+        assertEquals(4L, store.get("s1", "count"));
+        assertEquals(Boolean.TRUE, store.get("s1", "flag"));
+
+        store.remove("s1");
+        assertFalse(store.exists("s1"));
+        assertNull(store.get("s1", "count"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testGetAllIsCopy() {
+        InMemorySessionStore store = store("a", 1);
+        store.create("s1");
+        store.put("s1", changes("k", "v"));
+        store.getAll("s1").put("k", "changed");
+        assertEquals("v", store.get("s1", "k"));
+    }
+
+    @Test
+    public void testPutToUnknownSessionIgnored() {
+        InMemorySessionStore store = store("a", 1);
+        store.put("s1", changes("k", "v"));
+        assertFalse(store.exists("s1"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testUnsupportedValueRejected() {
+        InMemorySessionStore store = store("a", 1);
+        store.create("s1");
+        store.put("s1", changes("k", "v"));
+        try {
+            store.put("s1", changes("k", "w", "date", new java.util.Date()));
+            fail("Serializable value stored");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        // nothing of the rejected update was applied
+        assertEquals("v", store.get("s1", "k"));
+        assertFalse(store.getAll("s1").containsKey("date"));
+    }
+
+    @Test
+    public void testPartitionCountRoundedUp() {
+        assertEquals(1, store("a", 0).getPartitionCount());
+        assertEquals(8, store("a", 5).getPartitionCount());
+        assertEquals(64, new InMemorySessionStore().getPartitionCount());
+    }
+
+    @Test
+    public void testApplyRemoteChanges() {
+        InMemorySessionStore store = store("a", 4);
+        final List<String> removed = new ArrayList<String>();
+        store.addListener(new Listener() {
+            @Override
+            public void sessionRemoved(String sessionId) {
+                removed.add(sessionId);
+            }
+        });
+        // partial changes to a session never seen are dropped
+        store.applyPut("s1", "b", changes("k", "v"), false);
+        assertFalse(store.exists("s1"));
+
+        store.applyPut("s1", "b", changes("k", "v", "x", 1), true);
+        assertEquals("b", store.getOwner("s1"));
+        store.applyPut("s1", "b", changes("x", null), false);
+        assertEquals(changes("k", "v"), store.getAll("s1"));
+        // replace drops what is not in the new set
+        store.applyPut("s1", "c", changes("y", 2), true);
+        assertEquals(changes("y", 2), store.getAll("s1"));
+        assertEquals("c", store.getOwner("s1"));
+
+        store.applyRemove("s1");
+        store.applyRemove("s1");
+        assertEquals(Collections.singletonList("s1"), removed);
+        // local removals are not notified
+        store.create("s2");
+        store.remove("s2");
+        assertEquals(1, removed.size());
+    }
+
+    @Test
+    public void testTakeOwnership() {
+        InMemorySessionStore store = store("a", 1);
+        store.applyPut("s1", "b", changes(), true);
+        store.takeOwnership("s1");
+        assertEquals("a", store.getOwner("s1"));
+        store.takeOwnership("unknown");
+        assertFalse(store.exists("unknown"));
+    }
+
+    @Test
+    public void testAdoptSessionsSpreadOverLiveNodes() {
+        List<String> live = Arrays.asList("a", "c");
+        InMemorySessionStore a = store("a", 16);
+        InMemorySessionStore c = store("c", 16);
+        final List<String> adoptedByA = new ArrayList<String>();
+        a.addListener(new Listener() {
+            @Override
+            public void sessionsAdopted(Collection<String> sessionIds) {
+                adoptedByA.addAll(sessionIds);
+            }
+        });
+        int sessions = 200;
+        for (int i = 0; i < sessions; i++) {
+            a.applyPut("s" + i, "b", changes(), true);
+            c.applyPut("s" + i, "b", changes(), true);
+        }
+        a.create("own");
+        a.adoptSessions("b", live);
+        c.adoptSessions("b", live);
+
+        // with the same view of the cluster each session is adopted by exactly one node
+        int byA = 0;
+        for (int i = 0; i < sessions; i++) {
+            boolean adoptedA = "a".equals(a.getOwner("s" + i));
+            boolean adoptedC = "c".equals(c.getOwner("s" + i));
+            assertTrue("s" + i, adoptedA ^ adoptedC);
+            if (adoptedA) {
+                byA++;
+            }
+        }
+        assertEquals(byA, adoptedByA.size());
+        assertEquals(byA, a.getOwnedBy("a").size() - 1);
+        assertEquals(sessions - byA, c.getOwnedBy("c").size());
+        assertTrue("uneven split " + byA, byA > sessions / 4 && byA < sessions * 3 / 4);
+        assertEquals("a", a.getOwner("own"));
+        // without replication between the two, a still sees the share of c as owned by b
+        assertEquals(sessions - byA, a.getOwnedBy("b").size());
+    }
+
+    private static class Listener implements IReplicatedSessionStoreListener {
+
+        @Override
+        public void sessionRemoved(String sessionId) {
+        }
+
+        @Override
+        public void sessionsAdopted(Collection<String> sessionIds) {
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.ProtocolException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ReplicationCodec}
+ */
+public class TestReplicationCodec {
+
+    private static final int MAX = 1024 * 1024;
+
+    private static byte[] read(byte[] frames) throws IOException {
+        return ReplicationCodec.readFrame(new DataInputStream(new ByteArrayInputStream(frames)), MAX);
+    }
+
+    /**
+     * Frame with a hand written PUT body, as a malicious or broken peer would send it.
+     */
+    private static byte[] rawPut(byte[] changes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ReplicationCodec.PUT);
+        out.writeInt(1);
+        out.writeByte('s');
+        out.writeInt(1);
+        out.writeByte('n');
+        out.writeBoolean(true);
+        out.write(changes);
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, Object> readPut(byte[] frame) throws IOException {
+        DataInputStream body = ReplicationCodec.body(frame);
+        ReplicationCodec.readString(body);
+        ReplicationCodec.readString(body);
+        body.readBoolean();
+        return ReplicationCodec.readChanges(body);
+    }
+
+    @Test
+    public void testPutRoundTrip() throws Exception {
+        Map<String, Object> changes = new HashMap<String, Object>();
+        changes.put("null", null);
+        changes.put("boolean", true);
+        changes.put("int", -7);
+        changes.put("long", Long.MAX_VALUE);
+        changes.put("string", "café");
+        changes.put("bytes", new byte[] {1, 2, 3});
+        changes.put("empty", new byte[0]);
+        byte[] frame = read(ReplicationCodec.put("session;1", "node-a", changes, true, MAX));
+        assertEquals(ReplicationCodec.PUT, frame[0]);
+        DataInputStream body = ReplicationCodec.body(frame);
+        assertEquals("session;1", ReplicationCodec.readString(body));
+        assertEquals("node-a", ReplicationCodec.readString(body));
+        assertTrue(body.readBoolean());
+        Map<String, Object> read = ReplicationCodec.readChanges(body);
+        assertEquals(changes.size(), read.size());
+        assertTrue(read.containsKey("null"));
+        assertNull(read.get("null"));
+        assertEquals(Boolean.TRUE, read.get("boolean"));
+        assertEquals(-7, read.get("int"));
+        assertEquals(Long.MAX_VALUE, read.get("long"));
+        assertEquals("café", read.get("string"));
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, (byte[]) read.get("bytes")));
+        assertEquals(0, ((byte[]) read.get("empty")).length);
+    }
+
+    @Test
+    public void testHelloAndRemove() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(ReplicationCodec.hello("127.0.0.1:3868", 42L, MAX));
+        stream.write(ReplicationCodec.PING_FRAME);
+        stream.write(ReplicationCodec.remove("session;2", MAX));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(stream.toByteArray()));
+
+        byte[] frame = ReplicationCodec.readFrame(in, MAX);
+        assertEquals(ReplicationCodec.HELLO, frame[0]);
+        DataInputStream body = ReplicationCodec.body(frame);
+        assertEquals("127.0.0.1:3868", ReplicationCodec.readString(body));
+        assertEquals(42L, body.readLong());
+
+        assertEquals(ReplicationCodec.PING, ReplicationCodec.readFrame(in, MAX)[0]);
+
+        frame = ReplicationCodec.readFrame(in, MAX);
+        assertEquals(ReplicationCodec.REMOVE, frame[0]);
+        assertEquals("session;2", ReplicationCodec.readString(ReplicationCodec.body(frame)));
+
+        // clean end of stream
+        assertNull(ReplicationCodec.readFrame(in, MAX));
+    }
+
+    @Test
+    public void testTimerSentAsRemainingTime() throws Exception {
+        long now = TimerValue.now();
+        // started 4s ago for 10s
+        byte[] timer = TimerValue.encode(10000, now - 4000);
+        Map<String, Object> read = readPut(read(ReplicationCodec.put("s", "n",
+            Collections.<String, Object>singletonMap("timer.tx", timer), false, MAX)));
+        byte[] restarted = (byte[]) read.get("timer.tx");
+        assertEquals(TimerValue.LENGTH, restarted.length);
+        long remaining = TimerValue.remaining(restarted, TimerValue.now());
+        assertTrue("remaining " + remaining, remaining <= 6000 && remaining > 5000);
+
+        // an expired timer stays expired
+        byte[] expired = TimerValue.encode(1000, now - 5000);
+        read = readPut(read(ReplicationCodec.put("s", "n", Collections.<String, Object>singletonMap("timer.tx", expired), false, MAX)));
+        assertEquals(0, TimerValue.remaining((byte[]) read.get("timer.tx"), TimerValue.now()));
+
+        // 16 bytes under another key are plain bytes
+        read = readPut(read(ReplicationCodec.put("s", "n", Collections.<String, Object>singletonMap("data", timer), false, MAX)));
+        assertTrue(Arrays.equals(timer, (byte[]) read.get("data")));
+    }
+
+    @Test
+    public void testUnsupportedValueNotEncoded() {
+        try {
+            ReplicationCodec.put("s", "n", Collections.<String, Object>singletonMap("date", new java.util.Date()), false, MAX);
+            fail("Serializable value encoded");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSerializedValueRejected() throws Exception {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(serialized);
+        oos.writeObject("payload");
+        oos.close();
+        ByteArrayOutputStream changes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(changes);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeByte('k');
+        // former tag of Java serialized values
+        out.writeByte(6);
+        out.writeInt(serialized.size());
+        serialized.writeTo(out);
+        try {
+            readPut(rawPut(changes.toByteArray()));
+            fail("Serialized value accepted");
+        }
+        catch (ProtocolException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOversizedFrame() throws Exception {
+        byte[] big = new byte[2048];
+        try {
+            ReplicationCodec.put("s", "n", Collections.<String, Object>singletonMap("k", big), false, 1024);
+            fail("Oversized frame encoded");
+        }
+        catch (IOException e) {
+            // expected
+        }
+        byte[] frame = ReplicationCodec.put("s", "n", Collections.<String, Object>singletonMap("k", big), false, MAX);
+        try {
+            ReplicationCodec.readFrame(new DataInputStream(new ByteArrayInputStream(frame)), 1024);
+            fail("Oversized frame read");
+        }
+        catch (ProtocolException e) {
+            // expected, nothing allocated for it
+        }
+    }
+
+    @Test
+    public void testInvalidFrameLengths() throws Exception {
+        for (int length : new int[] {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            byte[] header = {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length};
+            try {
+                read(header);
+                fail("Frame length " + length + " accepted");
+            }
+            catch (ProtocolException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLengthsCheckedAgainstFrame() throws Exception {
+        // string claiming more bytes than the frame holds
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ReplicationCodec.REMOVE);
+        out.writeInt(Integer.MAX_VALUE);
+        out.writeByte('s');
+        try {
+            ReplicationCodec.readString(ReplicationCodec.body(bytes.toByteArray()));
+            fail("String length accepted");
+        }
+        catch (ProtocolException e) {
+            // expected
+        }
+
+        // negative string length
+        bytes.reset();
+        out.writeByte(ReplicationCodec.REMOVE);
+        out.writeInt(-5);
+        try {
+            ReplicationCodec.readString(ReplicationCodec.body(bytes.toByteArray()));
+            fail("Negative length accepted");
+        }
+        catch (ProtocolException e) {
+            // expected
+        }
+
+        // attribute counts that can not fit
+        for (int count : new int[] {-1, 1000000, Integer.MAX_VALUE}) {
+            ByteArrayOutputStream changes = new ByteArrayOutputStream();
+            new DataOutputStream(changes).writeInt(count);
+            try {
+                readPut(rawPut(changes.toByteArray()));
+                fail("Attribute count " + count + " accepted");
+            }
+            catch (ProtocolException e) {
+                // expected
+            }
+        }
+
+        // byte array longer than the rest of the frame
+        ByteArrayOutputStream changes = new ByteArrayOutputStream();
+        DataOutputStream c = new DataOutputStream(changes);
+        c.writeInt(1);
+        c.writeInt(1);
+        c.writeByte('k');
+        c.writeByte(5);
+        c.writeInt(1 << 30);
+        c.write(new byte[16]);
+        try {
+            readPut(rawPut(changes.toByteArray()));
+            fail("Byte array length accepted");
+        }
+        catch (ProtocolException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testUnknownTagAndNegativeTimer() throws Exception {
+        for (byte[] value : new byte[][] {{99}, {7, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0, 0, 0}}) {
+            ByteArrayOutputStream changes = new ByteArrayOutputStream();
+            DataOutputStream c = new DataOutputStream(changes);
+            c.writeInt(1);
+            c.writeInt(1);
+            c.writeByte('k');
+            c.write(value);
+            try {
+                readPut(rawPut(changes.toByteArray()));
+                fail("Value " + Arrays.toString(value) + " accepted");
+            }
+            catch (ProtocolException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testHandshakeMac() throws Exception {
+        byte[] secret = ReplicationCodec.secret("secret");
+        byte[] a = ReplicationCodec.nonce();
+        byte[] b = ReplicationCodec.nonce();
+        assertFalse(Arrays.equals(a, b));
+        byte[] acceptor = ReplicationCodec.mac(secret, ReplicationCodec.ROLE_ACCEPTOR, a, b);
+        assertEquals(ReplicationCodec.MAC_LENGTH, acceptor.length);
+        assertTrue(ReplicationCodec.verify(acceptor, ReplicationCodec.mac(secret, ReplicationCodec.ROLE_ACCEPTOR, a, b)));
+        // the proof of one side is no proof for the other one
+        assertFalse(ReplicationCodec.verify(acceptor, ReplicationCodec.mac(secret, ReplicationCodec.ROLE_CONNECTOR, a, b)));
+        assertFalse(ReplicationCodec.verify(acceptor, ReplicationCodec.mac(secret, ReplicationCodec.ROLE_ACCEPTOR, b, a)));
+        assertFalse(ReplicationCodec.verify(acceptor, ReplicationCodec.mac(ReplicationCodec.secret("other"),
+            ReplicationCodec.ROLE_ACCEPTOR, a, b)));
+    }
+}
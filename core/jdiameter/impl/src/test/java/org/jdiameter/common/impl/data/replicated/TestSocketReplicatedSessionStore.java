@@ -0,0 +1,284 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data.replicated;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jdiameter.common.api.data.IReplicatedSessionStoreListener;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link SocketReplicatedSessionStore}, two nodes on the loopback interface
+ */
+public class TestSocketReplicatedSessionStore {
+
+    private static final long TIMEOUT = 10000;
+
+    private final List<SocketReplicatedSessionStore> stores = new ArrayList<SocketReplicatedSessionStore>();
+
+    @AfterMethod
+    public void tearDown() {
+        for (SocketReplicatedSessionStore store : stores) {
+            store.stop();
+        }
+        stores.clear();
+    }
+
+    private static String members() throws IOException {
+        // both ports are free when asked for, nothing else is expected to grab them right after
+        ServerSocket first = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        ServerSocket second = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        try {
+            return "127.0.0.1:" + first.getLocalPort() + ",127.0.0.1:" + second.getLocalPort();
+        }
+        finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * Starts a node, the first one started takes the first member address.
+     */
+    private SocketReplicatedSessionStore start(String members, String secret) {
+        Properties properties = new Properties();
+        properties.setProperty(SocketReplicatedSessionStore.MEMBERS, members);
+        properties.setProperty(SocketReplicatedSessionStore.FAILURE_TIMEOUT, "1000");
+        properties.setProperty(SocketReplicatedSessionStore.HEARTBEAT_INTERVAL, "200");
+        if (secret != null) {
+            properties.setProperty(SocketReplicatedSessionStore.SECRET, secret);
+        }
+        SocketReplicatedSessionStore store = new SocketReplicatedSessionStore(properties);
+        stores.add(store);
+        store.start();
+        return store;
+    }
+
+    private static void await(String what, Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.holds()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static Map<String, Object> changes(String key, Object value) {
+        Map<String, Object> changes = new HashMap<String, Object>();
+        changes.put(key, value);
+        return changes;
+    }
+
+    @Test
+    public void testReplication() throws Exception {
+        String members = members();
+        final SocketReplicatedSessionStore a = start(members, "secret");
+        final SocketReplicatedSessionStore b = start(members, "secret");
+        final List<String> removed = Collections.synchronizedList(new ArrayList<String>());
+        b.addListener(new Listener() {
+            @Override
+            public void sessionRemoved(String sessionId) {
+                removed.add(sessionId);
+            }
+        });
+        await("nodes to see each other", new Condition() {
+            @Override
+            public boolean holds() {
+                return a.getLiveMembers().contains(b.getLocalNodeId()) && b.getLiveMembers().contains(a.getLocalNodeId());
+            }
+        });
+
+        a.create("s1");
+        Map<String, Object> changes = new HashMap<String, Object>();
+        changes.put("state", "OPEN");
+        changes.put("count", 1);
+        changes.put("bytes", new byte[] {1, 2, 3});
+        a.put("s1", changes);
+        await("put", new Condition() {
+            @Override
+            public boolean holds() {
+                return "OPEN".equals(b.get("s1", "state")) && b.get("s1", "bytes") != null;
+            }
+        });
+        assertEquals(a.getLocalNodeId(), b.getOwner("s1"));
+        assertEquals(1, b.get("s1", "count"));
+
+        a.put("s1", changes("state", null));
+        await("attribute removal", new Condition() {
+            @Override
+            public boolean holds() {
+                return !b.getAll("s1").containsKey("state");
+            }
+        });
+
+        // the other direction, and ownership
+        b.put("s1", changes("count", 2));
+        b.takeOwnership("s1");
+        await("ownership", new Condition() {
+            @Override
+            public boolean holds() {
+                return b.getLocalNodeId().equals(a.getOwner("s1"));
+            }
+        });
+        assertEquals(2, a.get("s1", "count"));
+
+        a.remove("s1");
+        await("removal", new Condition() {
+            @Override
+            public boolean holds() {
+                return !b.exists("s1");
+            }
+        });
+        assertEquals(Collections.singletonList("s1"), removed);
+    }
+
+    @Test
+    public void testSnapshotOnJoin() throws Exception {
+        String members = members();
+        SocketReplicatedSessionStore a = start(members, "secret");
+        // large enough for the snapshot to be written in several chunks
+        char[] pad = new char[2048];
+        Arrays.fill(pad, 'x');
+        for (int i = 0; i < 100; i++) {
+            a.create("s" + i);
+            a.put("s" + i, changes("k", "v" + i));
+            a.put("s" + i, changes("pad", new String(pad)));
+        }
+        final SocketReplicatedSessionStore b = start(members, "secret");
+        await("snapshot", new Condition() {
+            @Override
+            public boolean holds() {
+                return b.size() == 100;
+            }
+        });
+        assertEquals("v42", b.get("s42", "k"));
+        assertEquals(a.getLocalNodeId(), b.getOwner("s42"));
+        assertEquals(new String(pad), b.get("s99", "pad"));
+    }
+
+    @Test
+    public void testTakeoverOnMemberLoss() throws Exception {
+        String members = members();
+        final SocketReplicatedSessionStore a = start(members, "secret");
+        final SocketReplicatedSessionStore b = start(members, "secret");
+        final List<String> adopted = Collections.synchronizedList(new ArrayList<String>());
+        b.addListener(new Listener() {
+            @Override
+            public void sessionsAdopted(Collection<String> sessionIds) {
+                adopted.addAll(sessionIds);
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            a.create("s" + i);
+        }
+        b.create("own");
+        await("replication", new Condition() {
+            @Override
+            public boolean holds() {
+                return b.size() == 21 && a.exists("own");
+            }
+        });
+
+        String lost = a.getLocalNodeId();
+        a.stop();
+        await("takeover", new Condition() {
+            @Override
+            public boolean holds() {
+                return adopted.size() == 20;
+            }
+        });
+        assertFalse(b.getLiveMembers().contains(lost));
+        assertTrue(b.getOwnedBy(lost).isEmpty());
+        assertEquals(b.getLocalNodeId(), b.getOwner("s7"));
+        assertFalse(adopted.contains("own"));
+    }
+
+    @Test
+    public void testSecretMismatch() throws Exception {
+        String members = members();
+        SocketReplicatedSessionStore a = start(members, "one");
+        SocketReplicatedSessionStore b = start(members, "two");
+        a.create("s1");
+        b.create("s2");
+        // several connection attempts with a failure timeout of 1s
+        Thread.sleep(2000);
+        assertFalse(b.exists("s1"));
+        assertFalse(a.exists("s2"));
+        assertTrue(a.getLiveMembers().isEmpty());
+        assertTrue(b.getLiveMembers().isEmpty());
+    }
+
+    @Test
+    public void testProtocolErrorClosesConnection() throws Exception {
+        SocketReplicatedSessionStore store = start(members(), null);
+        String self = store.getLocalNodeId();
+        int port = Integer.parseInt(self.substring(self.lastIndexOf(':') + 1));
+        store.create("s1");
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            socket.setSoTimeout((int) TIMEOUT);
+            OutputStream out = socket.getOutputStream();
+            out.write(ReplicationCodec.hello("127.0.0.1:1", 1L, 1024));
+            // ending a snapshot that never began would drop every session of the sender
+            out.write(ReplicationCodec.SNAPSHOT_END_FRAME);
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        finally {
+            socket.close();
+        }
+        assertTrue(store.exists("s1"));
+    }
+
+    private interface Condition {
+
+        boolean holds();
+    }
+
+    private static class Listener implements IReplicatedSessionStoreListener {
+
+        @Override
+        public void sessionRemoved(String sessionId) {
+        }
+
+        @Override
+        public void sessionsAdopted(Collection<String> sessionIds) {
+        }
+    }
+}
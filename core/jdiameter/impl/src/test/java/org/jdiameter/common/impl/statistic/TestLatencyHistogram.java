@@ -0,0 +1,152 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.statistic;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Random;
+
+import org.jdiameter.common.api.statistic.IMessageMetrics;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link LatencyHistogram}
+ */
+public class TestLatencyHistogram {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        assertEquals(20, histogram.getCount());
+        assertEquals(210, histogram.getSum());
+        assertEquals(20, histogram.getMax());
+        assertEquals(10.5, histogram.getMean(), 0.0);
+        assertEquals(10, histogram.getValueAtPercentile(50));
+        assertEquals(19, histogram.getValueAtPercentile(95));
+        assertEquals(20, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testNegativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        // every index maps back to a bucket whose upper bound is not below the value
+        long[] values = {0, 31, 32, 33, 63, 64, 65, 1000, 1L << 40, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.index(value);
+            long upper = LatencyHistogram.upperBound(index);
+            assertTrue("value " + value, upper >= value);
+            if (index > 0) {
+                assertTrue("value " + value, LatencyHistogram.upperBound(index - 1) < value);
+            }
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            long value = 1 + (long) (random.nextDouble() * 10000000);
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.index(value));
+            assertTrue("value " + value, (upper - value) <= value / 32 + 1);
+            histogram.record(value);
+        }
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue("p50 " + p50, p50 > 4800000 && p50 < 5200000);
+        assertTrue(histogram.getValueAtPercentile(99.9) <= histogram.getMax());
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long value = (t + 1) * 1000;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50000; i++) {
+                        histogram.record(value);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200000, histogram.getCount());
+        assertEquals(50000L * (1000 + 2000 + 3000 + 4000), histogram.getSum());
+        assertEquals(4000, histogram.getMax());
+    }
+
+    @Test
+    public void testTimeoutsCountInPercentiles() {
+        MessageMetricsImpl metrics = new MessageMetricsImpl(true);
+        for (int i = 0; i < 98; i++) {
+            metrics.recordAnswer("aaa://peer", 4, 272, 1000000, 2001);
+        }
+        // two requests out of a hundred time out after 10 seconds
+        metrics.recordTimeout("aaa://peer", 4, 272, 10000000000L);
+        metrics.recordTimeout("aaa://peer", 4, 272, 10000000000L);
+        assertEquals(1, metrics.getAnswerMetrics().size());
+        IMessageMetrics.IAnswerMetric metric = metrics.getAnswerMetrics().get(0);
+        assertEquals(100, metric.getCount());
+        assertEquals(2, metric.getTimeoutCount());
+        assertEquals(Long.valueOf(98), metric.getResultCodes().get(2001));
+        long p98 = metric.getLatencyAtPercentile(98);
+        assertTrue("p98 " + p98, p98 >= 1000 && p98 < 1100);
+        assertEquals(10000000, metric.getLatencyAtPercentile(99));
+        assertTrue(metrics.toText().contains("diameter_answer_timeouts_total{peer=\"aaa://peer\",application_id=\"4\",command_code=\"272\"} 2"));
+    }
+}
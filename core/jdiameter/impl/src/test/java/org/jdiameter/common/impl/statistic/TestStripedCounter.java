@@ -0,0 +1,82 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.statistic;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link StripedCounter}
+ */
+public class TestStripedCounter {
+
+    @Test
+    public void testSingleThread() {
+        StripedCounter counter = new StripedCounter(5);
+        assertEquals(5, counter.get());
+        counter.add(10);
+        counter.add(-3);
+        assertEquals(12, counter.get());
+        counter.set(0);
+        assertEquals(0, counter.get());
+        counter.add(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, counter.get());
+    }
+
+    @Test
+    public void testConcurrentAddsAreNotLost() throws Exception {
+        final StripedCounter counter = new StripedCounter(0);
+        final int threads = 8;
+        final int increments = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < increments; i++) {
+                        counter.add(1);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals((long) threads * increments, counter.get());
+
+        // set clears the cells of an inflated counter as well
+        counter.set(7);
+        assertEquals(7, counter.get());
+        counter.add(1);
+        assertEquals(8, counter.get());
+    }
+}
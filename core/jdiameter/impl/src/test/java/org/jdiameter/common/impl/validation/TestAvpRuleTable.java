@@ -0,0 +1,211 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.validation;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.api.validation.AvpRepresentation;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link AvpRuleTable}
+ */
+public class TestAvpRuleTable {
+
+    private static final MessageParser parser = new MessageParser();
+
+    private static AvpSet emptySet() {
+        return parser.createEmptyMessage(272, 4).getAvps();
+    }
+
+    private static AvpRepresentation rule(int code, long vendor) {
+        return new AvpRepresentationImpl(code, vendor, "avp-" + code + "-" + vendor);
+    }
+
+    @Test
+    public void testIndexOf() {
+        List<AvpRepresentation> rules = new ArrayList<AvpRepresentation>();
+        for (int i = 0; i < 100; i++) {
+            rules.add(rule(1 + i * 64, i % 3 == 0 ? 0 : 10415));
+        }
+        AvpRuleTable table = new AvpRuleTable(rules);
+        assertEquals(100, table.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, table.indexOf(1 + i * 64, i % 3 == 0 ? 0 : 10415));
+            assertEquals(rules.get(i), table.getRule(i));
+        }
+        assertEquals(-1, table.indexOf(2, 0));
+        // same code, other vendor
+        assertEquals(-1, table.indexOf(1, 10415));
+        assertEquals(-1, table.indexOf(65, 0));
+    }
+
+    @Test
+    public void testExtremeKeys() {
+        List<AvpRepresentation> rules = new ArrayList<AvpRepresentation>();
+        rules.add(rule(0, 0));
+        rules.add(rule(-1, 0xFFFFFFFFL));
+        rules.add(rule(Integer.MAX_VALUE, 0xFFFFFFFFL));
+        AvpRuleTable table = new AvpRuleTable(rules);
+        assertEquals(0, table.indexOf(0, 0));
+        assertEquals(1, table.indexOf(-1, 0xFFFFFFFFL));
+        assertEquals(2, table.indexOf(Integer.MAX_VALUE, 0xFFFFFFFFL));
+        assertEquals(-1, table.indexOf(-1, 0));
+    }
+
+    @Test
+    public void testEmpty() {
+        AvpRuleTable table = new AvpRuleTable(new ArrayList<AvpRepresentation>());
+        assertEquals(0, table.size());
+        assertEquals(-1, table.indexOf(263, 0));
+        assertFalse(table.hasGrouped());
+        AvpSet set = emptySet();
+        set.addAvp(263, "session", false);
+        // nothing to count, but the set is still walked without failing
+        table.count(set);
+    }
+
+    @Test
+    public void testCount() {
+        List<AvpRepresentation> rules = new ArrayList<AvpRepresentation>();
+        rules.add(rule(263, 0));
+        rules.add(rule(443, 0));
+        rules.add(rule(1, 10415));
+        AvpRuleTable table = new AvpRuleTable(rules);
+        AvpSet set = emptySet();
+        set.addAvp(263, "session", false);
+        set.addAvp(443, 1, false);
+        set.addAvp(443, 2, false);
+        set.addAvp(1, 3, 10415, false, false);
+        // not covered by any rule
+        set.addAvp(1, 3, false);
+        int[] counts = table.count(set);
+        assertEquals(1, counts[0]);
+        assertEquals(2, counts[1]);
+        assertEquals(1, counts[2]);
+
+        // the shared array is reset between calls
+        counts = table.count(emptySet());
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[1]);
+        assertEquals(0, counts[2]);
+    }
+
+    @Test
+    public void testDuplicateRulesShareCount() {
+        List<AvpRepresentation> rules = new ArrayList<AvpRepresentation>();
+        rules.add(rule(443, 0));
+        rules.add(rule(263, 0));
+        rules.add(rule(443, 0));
+        AvpRuleTable table = new AvpRuleTable(rules);
+        assertEquals(0, table.indexOf(443, 0));
+        AvpSet set = emptySet();
+        set.addAvp(443, 1, false);
+        set.addAvp(443, 2, false);
+        int[] counts = table.count(set);
+        assertEquals(2, counts[0]);
+        assertEquals(0, counts[1]);
+        assertEquals(2, counts[2]);
+    }
+
+    @Test
+    public void testCountersGrow() {
+        List<AvpRepresentation> small = new ArrayList<AvpRepresentation>();
+        small.add(rule(1, 0));
+        List<AvpRepresentation> large = new ArrayList<AvpRepresentation>();
+        for (int i = 0; i < 100; i++) {
+            large.add(rule(i + 1, 0));
+        }
+        AvpSet set = emptySet();
+        set.addAvp(1, 1, false);
+        set.addAvp(100, 1, false);
+        assertEquals(1, new AvpRuleTable(small).count(set)[0]);
+        int[] counts = new AvpRuleTable(large).count(set);
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[99]);
+        assertEquals(0, counts[50]);
+        // a smaller table after growing still starts from zero
+        assertEquals(0, new AvpRuleTable(small).count(emptySet())[0]);
+    }
+
+    @Test
+    public void testHasGrouped() {
+        List<AvpRepresentation> rules = new ArrayList<AvpRepresentation>();
+        rules.add(rule(263, 0));
+        assertFalse(new AvpRuleTable(rules).hasGrouped());
+        AvpRepresentationImpl grouped = new AvpRepresentationImpl(456, 0, "Multiple-Services-Credit-Control");
+        grouped.setGrouped(true);
+        rules.add(grouped);
+        assertTrue(new AvpRuleTable(rules).hasGrouped());
+    }
+
+    @Test
+    public void testConcurrentCount() throws Exception {
+        List<AvpRepresentation> rules = new ArrayList<AvpRepresentation>();
+        for (int i = 0; i < 40; i++) {
+            rules.add(rule(i + 1, 0));
+        }
+        final AvpRuleTable table = new AvpRuleTable(rules);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            // every thread counts its own rule a different number of times
+            final int code = t + 1;
+            final AvpSet set = emptySet();
+            for (int i = 0; i <= t; i++) {
+                set.addAvp(code, i, false);
+            }
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 10000; i++) {
+                            int[] counts = table.count(set);
+                            if (counts[code - 1] != code || counts[code % 40] != 0) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                    catch (Throwable e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(0, errors.get());
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.server.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link DuplicateAnswerStore}
+ */
+public class TestDuplicateAnswerStore {
+
+    private static byte[] answer(long endToEndId, int length) {
+        byte[] answer = new byte[length];
+        answer[16] = (byte) (endToEndId >>> 24);
+        answer[17] = (byte) (endToEndId >>> 16);
+        answer[18] = (byte) (endToEndId >>> 8);
+        answer[19] = (byte) endToEndId;
+        return answer;
+    }
+
+    @Test
+    public void testPutAndGet() {
+        DuplicateAnswerStore store = new DuplicateAnswerStore(60000, 0, 0);
+        long key = DuplicateAnswerStore.key("host;1;2");
+        byte[] answer = answer(0xFFFFFFF0L, 20);
+        store.put(key, answer);
+        assertSame(answer, store.get(key, 0xFFFFFFF0L));
+        assertEquals(1, store.size());
+        assertEquals(20 + DuplicateAnswerStore.ENTRY_OVERHEAD, store.getMemoryUsage());
+        assertNull(store.get(DuplicateAnswerStore.key("host;1;3"), 0xFFFFFFF0L));
+    }
+
+    @Test
+    public void testEndToEndMismatchIsMiss() {
+        DuplicateAnswerStore store = new DuplicateAnswerStore(60000, 0, 0);
+        long key = DuplicateAnswerStore.key("host;1;2");
+        store.put(key, answer(7, 20));
+        assertNull(store.get(key, 8));
+        // only the low 32 bits take part in the comparison
+        assertEquals(20, store.get(key, 7 | (1L << 32)).length);
+    }
+
+    @Test
+    public void testReplaceAccountsBytes() {
+        DuplicateAnswerStore store = new DuplicateAnswerStore(60000, 0, 0);
+        store.put(1, answer(1, 20));
+        store.put(1, answer(1, 50));
+        assertEquals(1, store.size());
+        assertEquals(50 + DuplicateAnswerStore.ENTRY_OVERHEAD, store.getMemoryUsage());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        DuplicateAnswerStore store = new DuplicateAnswerStore(30, 0, 0, 2);
+        store.put(1, answer(1, 20));
+        Thread.sleep(100);
+        store.expire();
+        assertNull(store.get(1, 1));
+        assertEquals(0, store.size());
+        assertEquals(0, store.getMemoryUsage());
+    }
+
+    @Test
+    public void testSizeLimitDropsOldest() {
+        // four generations of 25 entries each
+        DuplicateAnswerStore store = new DuplicateAnswerStore(600000, 0, 100);
+        for (int i = 0; i < 1000; i++) {
+            store.put(i, answer(i, 20));
+        }
+        assertTrue(store.size() <= 100);
+        assertEquals(20, store.get(999, 999).length);
+        assertNull(store.get(0, 0));
+    }
+
+    @Test
+    public void testMemoryLimit() {
+        DuplicateAnswerStore store = new DuplicateAnswerStore(600000, 4000, 0);
+        for (int i = 0; i < 1000; i++) {
+            store.put(i, answer(i, 60));
+        }
+        // the newest generation may overshoot its share by one entry
+        assertTrue(store.getMemoryUsage() <= 4000 + 4 * (60 + DuplicateAnswerStore.ENTRY_OVERHEAD));
+        assertEquals(60, store.get(999, 999).length);
+    }
+
+    @Test
+    public void testClear() {
+        DuplicateAnswerStore store = new DuplicateAnswerStore(60000, 0, 0);
+        store.put(1, answer(1, 20));
+        store.clear();
+        assertEquals(0, store.size());
+        assertNull(store.get(1, 1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSingleGenerationRejected() {
+        new DuplicateAnswerStore(60000, 0, 0, 1);
+    }
+
+    @Test
+    public void testConcurrentPutAndGet() throws Exception {
+        final DuplicateAnswerStore store = new DuplicateAnswerStore(600000, 0, 4000);
+        final int threads = 8;
+        final int perThread = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = base; i < base + perThread; i++) {
+                            store.put(i, answer(i, 24));
+                            byte[] found = store.get(i, i);
+                            // the entry may already be rotated out, but never belong to another request
+                            if (found != null && found.length != 24) {
+                                errors.incrementAndGet();
+                            }
+                            if (store.get(i, i + 1) != null) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                    catch (Throwable e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(0, errors.get());
+        // writers wait for a rotation of a full generation, each one may only overshoot it by its own put
+        assertTrue("size " + store.size(), store.size() <= 4000 + 4 * threads);
+    }
+}
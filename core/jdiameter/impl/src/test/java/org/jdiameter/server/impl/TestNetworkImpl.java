@@ -0,0 +1,220 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+package org.jdiameter.server.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jdiameter.api.Answer;
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Message;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.Selector;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.controller.IRealmTable;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.server.api.IMetaData;
+import org.jdiameter.server.api.IRouter;
+import org.jdiameter.server.impl.helpers.ApplicationIdSelector;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the listener dispatch of {@link NetworkImpl}
+ */
+public class TestNetworkImpl {
+
+    private static final ApplicationId COMMON_AUTH = ApplicationId.createByAuthAppId(0, ApplicationId.Standard.RELAY);
+    private static final ApplicationId APP_4 = ApplicationId.createByAuthAppId(4);
+    private static final ApplicationId APP_5 = ApplicationId.createByAuthAppId(5);
+
+    private static final int CUSTOM_COMMAND = 999;
+
+    private static final InvocationHandler NOTHING = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+        }
+    };
+
+    private final MessageParser parser = new MessageParser();
+
+    // application ids currently deployed in the realm table
+    private Set<ApplicationId> localApplicationIds;
+    private NetworkImpl network;
+
+    @BeforeMethod
+    public void setUp() {
+        localApplicationIds = new HashSet<ApplicationId>();
+        final IRealmTable realmTable = stub(IRealmTable.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("addLocalApplicationId")) {
+                    localApplicationIds.add((ApplicationId) args[0]);
+                }
+                else if (method.getName().equals("removeLocalApplicationId")) {
+                    localApplicationIds.remove(args[0]);
+                }
+                return null;
+            }
+        });
+        IRouter router = stub(IRouter.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("getRealmTable") ? realmTable : null;
+            }
+        });
+        network = new NetworkImpl(stub(IStatisticManager.class, NOTHING), stub(IMetaData.class, NOTHING), router);
+    }
+
+    @Test
+    public void testPrecedence() throws Exception {
+        NetworkReqListener plain = new Listener();
+        NetworkReqListener common = new Listener();
+        NetworkReqListener bySelector = new Listener();
+        NetworkReqListener custom = new Listener();
+
+        network.addNetworkReqListener(plain, APP_5);
+        network.addNetworkReqListener(common, COMMON_AUTH);
+        // the common listener shadows the plain one
+        assertSame(common, network.getListener(message(1, 5)));
+        assertSame(common, network.getListener(message(1, 4)));
+
+        network.addNetworkReqListener(bySelector, new ApplicationIdSelector(APP_4));
+        assertSame(bySelector, network.getListener(message(1, 4)));
+        assertSame(common, network.getListener(message(1, 5)));
+
+        network.addNetworkReqListener(custom, new CommandSelector(APP_4));
+        assertSame(custom, network.getListener(message(CUSTOM_COMMAND, 4)));
+        assertSame(custom, network.getListener(message(CUSTOM_COMMAND, 5)));
+        assertSame(bySelector, network.getListener(message(1, 4)));
+        assertSame(common, network.getListener(message(1, 5)));
+    }
+
+    @Test
+    public void testApplicationIdSelectorOverridesListener() throws Exception {
+        NetworkReqListener plain = new Listener();
+        NetworkReqListener bySelector = new Listener();
+
+        network.addNetworkReqListener(plain, APP_4, APP_5);
+        network.addNetworkReqListener(bySelector, new ApplicationIdSelector(APP_4));
+        assertSame(bySelector, network.getListener(message(1, 4)));
+        assertSame(plain, network.getListener(message(1, 5)));
+        assertNull(network.getListener(message(1, 6)));
+    }
+
+    @Test
+    public void testRemoveApplicationIdServedBySelector() throws Exception {
+        NetworkReqListener plain = new Listener();
+        NetworkReqListener bySelector = new Listener();
+        ApplicationIdSelector selector = new ApplicationIdSelector(APP_4);
+
+        network.addNetworkReqListener(plain, APP_4, APP_5);
+        network.addNetworkReqListener(bySelector, selector);
+
+        // application 4 stays deployed for the selector, application 5 is removed all the same
+        network.removeNetworkReqListener(APP_4, APP_5);
+        assertSame(bySelector, network.getListener(message(1, 4)));
+        assertNull(network.getListener(message(1, 5)));
+        assertEquals(singleton(APP_4), localApplicationIds);
+
+        network.removeNetworkReqListener(selector);
+        assertNull(network.getListener(message(1, 4)));
+        assertTrue(localApplicationIds.isEmpty());
+    }
+
+    @Test
+    public void testRemoveSelectorServedByListener() throws Exception {
+        NetworkReqListener plain = new Listener();
+        NetworkReqListener bySelector = new Listener();
+        NetworkReqListener custom = new Listener();
+        ApplicationIdSelector selector = new ApplicationIdSelector(APP_4);
+        CommandSelector customSelector = new CommandSelector(APP_5);
+
+        network.addNetworkReqListener(plain, APP_4);
+        network.addNetworkReqListener(bySelector, selector);
+        network.addNetworkReqListener(custom, customSelector);
+        assertSame(bySelector, network.getListener(message(1, 4)));
+
+        // application 4 stays deployed for the plain listener, the custom selector is removed all the same
+        network.removeNetworkReqListener(selector, customSelector);
+        assertSame(plain, network.getListener(message(1, 4)));
+        assertNull(network.getListener(message(CUSTOM_COMMAND, 5)));
+        assertTrue(localApplicationIds.contains(APP_4));
+        assertFalse(localApplicationIds.contains(APP_5));
+    }
+
+    private IMessage message(int commandCode, long applicationId) {
+        IMessage message = parser.createEmptyMessage(commandCode, applicationId);
+        message.setRequest(true);
+        return message;
+    }
+
+    private static Set<ApplicationId> singleton(ApplicationId applicationId) {
+        Set<ApplicationId> set = new HashSet<ApplicationId>();
+        set.add(applicationId);
+        return set;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static class Listener implements NetworkReqListener {
+
+        @Override
+        public Answer processRequest(Request request) {
+            return null;
+        }
+    }
+
+    /**
+     * Custom selector matching {@link #CUSTOM_COMMAND} requests of any application
+     */
+    private static class CommandSelector implements Selector<Message, ApplicationId> {
+
+        private final ApplicationId applicationId;
+
+        CommandSelector(ApplicationId applicationId) {
+            this.applicationId = applicationId;
+        }
+
+        @Override
+        public boolean checkRule(Message message) {
+            return message.getCommandCode() == CUSTOM_COMMAND;
+        }
+
+        @Override
+        public ApplicationId getMetaData() {
+            return applicationId;
+        }
+    }
+}
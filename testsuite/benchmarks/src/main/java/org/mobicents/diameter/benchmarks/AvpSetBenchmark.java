@@ -0,0 +1,88 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AVP lookups on a decoded CCR carrying {@link Fixtures#MSCC_COUNT} Multiple-Services-Credit-Control
+ * AVPs, the way an application reads a request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvpSetBenchmark {
+
+  private AvpSet avps;
+
+  @Setup
+  public void setup() throws AvpDataException {
+    IMessage message = new MessageParser().createMessage(Fixtures.encode(Fixtures.create(Fixtures.CCR_MSCC)));
+    avps = message.getAvps();
+  }
+
+  @Benchmark
+  public Avp getFirstAvp() {
+    return avps.getAvp(Avp.SESSION_ID);
+  }
+
+  @Benchmark
+  public Avp getLastVendorAvp() {
+    return avps.getAvp(Avp.SERVICE_INFORMATION, Fixtures.TGPP_VENDOR_ID);
+  }
+
+  @Benchmark
+  public Avp getMissingAvp() {
+    return avps.getAvp(Avp.USER_NAME);
+  }
+
+  @Benchmark
+  public AvpSet getRepeatedAvps() {
+    return avps.getAvps(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+  }
+
+  @Benchmark
+  public long readRatingGroups() throws AvpDataException {
+    long sum = 0;
+    for (Avp mscc : avps.getAvps(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL)) {
+      sum += mscc.getGrouped().getAvp(Avp.RATING_GROUP).getUnsigned32();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jdiameter.api.MetaData;
+import org.jdiameter.api.PeerState;
+import org.jdiameter.api.SessionFactory;
+import org.jdiameter.api.URI;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.controller.IPeerTable;
+import org.jdiameter.client.api.router.IRouter;
+import org.jdiameter.client.impl.StackImpl;
+import org.jdiameter.client.impl.helpers.XMLConfiguration;
+
+/**
+ * Client stack shared by the benchmarks which need real stack components (router, session
+ * factory, meta data). The stack is only initialized, never started, so it opens no connection.
+ */
+public class BenchmarkStack {
+
+  public static final String CONFIGURATION = "benchmark-config.xml";
+
+  private final StackImpl stack;
+  private final SessionFactory sessionFactory;
+
+  public BenchmarkStack() throws Exception {
+    InputStream is = BenchmarkStack.class.getClassLoader().getResourceAsStream(CONFIGURATION);
+    try {
+      this.stack = new StackImpl();
+      this.sessionFactory = stack.init(new XMLConfiguration(is));
+    }
+    finally {
+      is.close();
+    }
+  }
+
+  public IContainer getContainer() {
+    return stack;
+  }
+
+  public SessionFactory getSessionFactory() {
+    return sessionFactory;
+  }
+
+  public MetaData getMetaData() {
+    return stack.getMetaData();
+  }
+
+  public IRouter getRouter() {
+    return stack.getAssemblerFacility().getComponentInstance(IRouter.class);
+  }
+
+  /**
+   * @return a peer table in which every peer is connected and in OKAY state, so routing can be
+   *         measured without a remote stack
+   */
+  public IPeerTable getConnectedPeerTable() {
+    return (IPeerTable) Proxy.newProxyInstance(IPeerTable.class.getClassLoader(), new Class<?>[] {IPeerTable.class}, new PeerTableHandler());
+  }
+
+  public void destroy() {
+    stack.destroy();
+  }
+
+  private static class PeerTableHandler implements InvocationHandler {
+
+    private final ConcurrentHashMap<String, IPeer> peers = new ConcurrentHashMap<String, IPeer>();
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getName().equals("getPeer") && args.length == 1 && args[0] instanceof String) {
+        String name = (String) args[0];
+        IPeer peer = peers.get(name);
+        if (peer == null) {
+          peer = (IPeer) Proxy.newProxyInstance(IPeer.class.getClassLoader(), new Class<?>[] {IPeer.class},
+              new PeerHandler(new URI("aaa://" + name + ":3868")));
+          IPeer existing = peers.putIfAbsent(name, peer);
+          if (existing != null) {
+            peer = existing;
+          }
+        }
+        return peer;
+      }
+      return defaultValue(proxy, method, args);
+    }
+  }
+
+  private static class PeerHandler implements InvocationHandler {
+
+    private final URI uri;
+
+    PeerHandler(URI uri) {
+      this.uri = uri;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (name.equals("hasValidConnection")) {
+        return true;
+      }
+      else if (name.equals("getState")) {
+        return PeerState.OKAY;
+      }
+      else if (name.equals("getUri")) {
+        return uri;
+      }
+      else if (name.equals("getRating")) {
+        return 1;
+      }
+      else if (name.equals("toString")) {
+        return uri.toString();
+      }
+      return defaultValue(proxy, method, args);
+    }
+  }
+
+  private static Object defaultValue(Object proxy, Method method, Object[] args) {
+    String name = method.getName();
+    if (name.equals("equals")) {
+      return proxy == args[0];
+    }
+    else if (name.equals("hashCode")) {
+      return System.identityHashCode(proxy);
+    }
+    Class<?> type = method.getReturnType();
+    if (type == boolean.class) {
+      return false;
+    }
+    else if (type == int.class) {
+      return 0;
+    }
+    else if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import org.jdiameter.api.annotation.AvpDscr;
+import org.jdiameter.api.annotation.AvpFlag;
+import org.jdiameter.api.annotation.AvpType;
+import org.jdiameter.api.annotation.Child;
+import org.jdiameter.api.annotation.CommandDscr;
+import org.jdiameter.api.annotation.CommandFlag;
+import org.jdiameter.api.annotation.Getter;
+import org.jdiameter.api.annotation.Setter;
+
+/**
+ * Annotated Credit-Control-Request used to measure {@link org.jdiameter.client.impl.annotation.Recoder}.
+ * It covers simple AVPs of the common types and an array of grouped AVPs with a nested grouped AVP.
+ */
+@CommandDscr(code = 272, appId = 4, name = "Credit-Control-Request", flags = {CommandFlag.R, CommandFlag.P}, childs = {
+    @Child(ref = CreditControlRequest.SessionId.class, min = 1),
+    @Child(ref = CreditControlRequest.AuthApplicationId.class, min = 1),
+    @Child(ref = CreditControlRequest.CcRequestType.class, min = 1),
+    @Child(ref = CreditControlRequest.CcRequestNumber.class, min = 1),
+    @Child(ref = CreditControlRequest.MultipleServicesCreditControl.class, max = -1)
+    })
+public class CreditControlRequest {
+
+  private final SessionId sessionId;
+  private final AuthApplicationId authApplicationId;
+  private final CcRequestType ccRequestType;
+  private final CcRequestNumber ccRequestNumber;
+  private final MultipleServicesCreditControl[] multipleServicesCreditControl;
+
+  @Setter
+  public CreditControlRequest(SessionId sessionId, AuthApplicationId authApplicationId, CcRequestType ccRequestType, CcRequestNumber ccRequestNumber,
+      MultipleServicesCreditControl[] multipleServicesCreditControl) {
+    this.sessionId = sessionId;
+    this.authApplicationId = authApplicationId;
+    this.ccRequestType = ccRequestType;
+    this.ccRequestNumber = ccRequestNumber;
+    this.multipleServicesCreditControl = multipleServicesCreditControl;
+  }
+
+  public static CreditControlRequest create(String sessionId, int msccCount) {
+    MultipleServicesCreditControl[] mscc = new MultipleServicesCreditControl[msccCount];
+    for (int i = 0; i < msccCount; i++) {
+      mscc[i] = new MultipleServicesCreditControl(new RatingGroup(100L + i), new ServiceIdentifier(1000L + i),
+          new UsedServiceUnit(new CcTime(60L), new CcTotalOctets(1048576L * (i + 1))));
+    }
+    return new CreditControlRequest(new SessionId(sessionId), new AuthApplicationId(4L), new CcRequestType(2), new CcRequestNumber(1L), mscc);
+  }
+
+  @Getter
+  public SessionId getSessionId() {
+    return sessionId;
+  }
+
+  @Getter
+  public AuthApplicationId getAuthApplicationId() {
+    return authApplicationId;
+  }
+
+  @Getter
+  public CcRequestType getCcRequestType() {
+    return ccRequestType;
+  }
+
+  @Getter
+  public CcRequestNumber getCcRequestNumber() {
+    return ccRequestNumber;
+  }
+
+  @Getter
+  public MultipleServicesCreditControl[] getMultipleServicesCreditControl() {
+    return multipleServicesCreditControl;
+  }
+
+  @AvpDscr(code = 263, name = "Session-Id", type = AvpType.UTF8String, must = AvpFlag.M)
+  public static class SessionId {
+
+    private final String value;
+
+    @Setter
+    public SessionId(String value) {
+      this.value = value;
+    }
+
+    @Getter
+    public String getValue() {
+      return value;
+    }
+  }
+
+  @AvpDscr(code = 258, name = "Auth-Application-Id", type = AvpType.Unsigned32, must = AvpFlag.M)
+  public static class AuthApplicationId {
+
+    private final long value;
+
+    @Setter
+    public AuthApplicationId(long value) {
+      this.value = value;
+    }
+
+    @Getter
+    public long getValue() {
+      return value;
+    }
+  }
+
+  @AvpDscr(code = 416, name = "CC-Request-Type", type = AvpType.Enumerated, must = AvpFlag.M)
+  public static class CcRequestType {
+
+    private final int value;
+
+    @Setter
+    public CcRequestType(int value) {
+      this.value = value;
+    }
+
+    @Getter
+    public int getValue() {
+      return value;
+    }
+  }
+
+  @AvpDscr(code = 415, name = "CC-Request-Number", type = AvpType.Unsigned32, must = AvpFlag.M)
+  public static class CcRequestNumber {
+
+    private final long value;
+
+    @Setter
+    public CcRequestNumber(long value) {
+      this.value = value;
+    }
+
+    @Getter
+    public long getValue() {
+      return value;
+    }
+  }
+
+  @AvpDscr(code = 432, name = "Rating-Group", type = AvpType.Unsigned32, must = AvpFlag.M)
+  public static class RatingGroup {
+
+    private final long value;
+
+    @Setter
+    public RatingGroup(long value) {
+      this.value = value;
+    }
+
+    @Getter
+    public long getValue() {
+      return value;
+    }
+  }
+
+  @AvpDscr(code = 439, name = "Service-Identifier", type = AvpType.Unsigned32, must = AvpFlag.M)
+  public static class ServiceIdentifier {
+
+    private final long value;
+
+    @Setter
+    public ServiceIdentifier(long value) {
+      this.value = value;
+    }
+
+    @Getter
+    public long getValue() {
+      return value;
+    }
+  }
+
+  @AvpDscr(code = 420, name = "CC-Time", type = AvpType.Unsigned32, must = AvpFlag.M)
+  public static class CcTime {
+
+    private final long value;
+
+    @Setter
+    public CcTime(long value) {
+      this.value = value;
+    }
+
+    @Getter
+    public long getValue() {
+      return value;
+    }
+  }
+
+  @AvpDscr(code = 421, name = "CC-Total-Octets", type = AvpType.Unsigned64, must = AvpFlag.M)
+  public static class CcTotalOctets {
+
+    private final long value;
+
+    @Setter
+    public CcTotalOctets(long value) {
+      this.value = value;
+    }
+
+    @Getter
+    public long getValue() {
+      return value;
+    }
+  }
+
+  @AvpDscr(code = 446, name = "Used-Service-Unit", type = AvpType.Grouped, must = AvpFlag.M, childs = {
+      @Child(ref = CcTime.class),
+      @Child(ref = CcTotalOctets.class)
+      })
+  public static class UsedServiceUnit {
+
+    private final CcTime ccTime;
+    private final CcTotalOctets ccTotalOctets;
+
+    @Setter
+    public UsedServiceUnit(CcTime ccTime, CcTotalOctets ccTotalOctets) {
+      this.ccTime = ccTime;
+      this.ccTotalOctets = ccTotalOctets;
+    }
+
+    @Getter
+    public CcTime getCcTime() {
+      return ccTime;
+    }
+
+    @Getter
+    public CcTotalOctets getCcTotalOctets() {
+      return ccTotalOctets;
+    }
+  }
+
+  @AvpDscr(code = 456, name = "Multiple-Services-Credit-Control", type = AvpType.Grouped, must = AvpFlag.M, childs = {
+      @Child(ref = RatingGroup.class),
+      @Child(ref = ServiceIdentifier.class),
+      @Child(ref = UsedServiceUnit.class)
+      })
+  public static class MultipleServicesCreditControl {
+
+    private final RatingGroup ratingGroup;
+    private final ServiceIdentifier serviceIdentifier;
+    private final UsedServiceUnit usedServiceUnit;
+
+    @Setter
+    public MultipleServicesCreditControl(RatingGroup ratingGroup, ServiceIdentifier serviceIdentifier, UsedServiceUnit usedServiceUnit) {
+      this.ratingGroup = ratingGroup;
+      this.serviceIdentifier = serviceIdentifier;
+      this.usedServiceUnit = usedServiceUnit;
+    }
+
+    @Getter
+    public RatingGroup getRatingGroup() {
+      return ratingGroup;
+    }
+
+    @Getter
+    public ServiceIdentifier getServiceIdentifier() {
+      return serviceIdentifier;
+    }
+
+    @Getter
+    public UsedServiceUnit getUsedServiceUnit() {
+      return usedServiceUnit;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.validation.AvpNotAllowedException;
+import org.jdiameter.api.validation.Dictionary;
+import org.jdiameter.api.validation.MessageRepresentation;
+import org.jdiameter.api.validation.ValidatorLevel;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.impl.validation.DictionaryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dictionary validation of decoded messages against the testsuite dictionary, at the MESSAGE
+ * (top level AVPs only) and ALL (grouped AVPs too) levels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryBenchmark {
+
+  @Param({Fixtures.CCR, Fixtures.CCR_MSCC, Fixtures.ULA})
+  public String fixture;
+
+  @Param({"MESSAGE", "ALL"})
+  public String level;
+
+  private IMessage message;
+  private ValidatorLevel validatorLevel;
+  private Dictionary dictionary;
+  private MessageRepresentation representation;
+
+  @Setup
+  public void setup() throws AvpDataException, AvpNotAllowedException {
+    dictionary = DictionaryImpl.INSTANCE;
+    message = new MessageParser().createMessage(Fixtures.encode(Fixtures.create(fixture)));
+    validatorLevel = ValidatorLevel.fromString(level);
+    representation = dictionary.getMessage(message.getCommandCode(), message.getApplicationId(), message.isRequest());
+    if (representation == null) {
+      throw new IllegalStateException("Command " + message.getCommandCode() + " is not defined in the dictionary");
+    }
+    // fail fast on a fixture the dictionary rejects instead of measuring the exception path
+    representation.validate(message, validatorLevel);
+  }
+
+  @Benchmark
+  public void validate() throws AvpNotAllowedException {
+    representation.validate(message, validatorLevel);
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import java.util.Date;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+
+/**
+ * Messages used by the benchmarks. They carry the AVPs a real Gy (CCR/CCA) or S6a (ULR/ULA)
+ * peer sends, so parser and lookup costs are measured on realistic sizes and nesting.
+ */
+public final class Fixtures {
+
+  public static final String ORIGIN_HOST = "client.benchmark.mobicents.org";
+  public static final String ORIGIN_REALM = "benchmark.mobicents.org";
+  public static final String DESTINATION_HOST = "server.benchmark.mobicents.org";
+  public static final String DESTINATION_REALM = "server.benchmark.mobicents.org";
+
+  public static final long CCA_APPLICATION_ID = 4;
+  public static final long S6A_APPLICATION_ID = 16777251;
+  public static final long TGPP_VENDOR_ID = 10415;
+
+  public static final int CCR_CODE = 272;
+  public static final int ULR_CODE = 316;
+
+  // 3GPP TS 29.272 AVP codes, not defined in Avp
+  private static final int RAT_TYPE = 1032;
+  private static final int ULR_FLAGS = 1405;
+  private static final int ULA_FLAGS = 1406;
+  private static final int VISITED_PLMN_ID = 1407;
+  private static final int SUBSCRIPTION_DATA = 1400;
+  private static final int SUBSCRIBER_STATUS = 1424;
+  private static final int NETWORK_ACCESS_MODE = 1417;
+  private static final int AMBR = 1435;
+  private static final int APN_CONFIGURATION_PROFILE = 1429;
+  private static final int CONTEXT_IDENTIFIER = 1423;
+  private static final int ALL_APN_CONFIGURATIONS_INCLUDED_INDICATOR = 1428;
+  private static final int APN_CONFIGURATION = 1430;
+  private static final int PDN_TYPE = 1456;
+  private static final int SERVICE_SELECTION = 493;
+  private static final int EPS_SUBSCRIBED_QOS_PROFILE = 1431;
+  private static final int CALLED_STATION_ID = 30;
+
+  /**
+   * Message shapes available to the benchmarks through {@link #create(String)}.
+   */
+  public static final String CCR = "CCR";
+  public static final String CCA = "CCA";
+  public static final String CCR_MSCC = "CCR_MSCC";
+  public static final String ULR = "ULR";
+  public static final String ULA = "ULA";
+
+  // number of Multiple-Services-Credit-Control AVPs in the CCR_MSCC fixture
+  public static final int MSCC_COUNT = 12;
+
+  private static final MessageParser parser = new MessageParser();
+
+  private Fixtures() {
+  }
+
+  public static IMessage create(String name) {
+    if (CCR.equals(name)) {
+      return ccr("benchmark;1;1", 0);
+    }
+    else if (CCA.equals(name)) {
+      return cca("benchmark;1;1");
+    }
+    else if (CCR_MSCC.equals(name)) {
+      return ccr("benchmark;1;1", MSCC_COUNT);
+    }
+    else if (ULR.equals(name)) {
+      return ulr("benchmark;2;1");
+    }
+    else if (ULA.equals(name)) {
+      return ula("benchmark;2;1");
+    }
+    throw new IllegalArgumentException("Unknown fixture " + name);
+  }
+
+  public static byte[] encode(IMessage message) {
+    try {
+      return parser.encodeMessage(message).array();
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("Failed to encode " + message, e);
+    }
+  }
+
+  /**
+   * Gy CCR-Update carrying the given number of Multiple-Services-Credit-Control AVPs, each with
+   * requested and used service units, plus the usual PS-Information.
+   */
+  public static IMessage ccr(String sessionId, int msccCount) {
+    IMessage message = request(CCR_CODE, CCA_APPLICATION_ID, sessionId);
+    AvpSet avps = message.getAvps();
+    avps.addAvp(Avp.AUTH_APPLICATION_ID, CCA_APPLICATION_ID, true, false, true);
+    avps.addAvp(Avp.SERVICE_CONTEXT_ID, "32251@3gpp.org", true, false, false);
+    avps.addAvp(Avp.CC_REQUEST_TYPE, msccCount == 0 ? 1 : 2, true, false);
+    avps.addAvp(Avp.CC_REQUEST_NUMBER, 1L, true, false, true);
+    avps.addAvp(Avp.EVENT_TIMESTAMP, new Date(), true, false);
+    AvpSet subscriptionId = avps.addGroupedAvp(Avp.SUBSCRIPTION_ID, true, false);
+    subscriptionId.addAvp(Avp.SUBSCRIPTION_ID_TYPE, 0, true, false);
+    subscriptionId.addAvp(Avp.SUBSCRIPTION_ID_DATA, "491701234567", true, false, false);
+    subscriptionId = avps.addGroupedAvp(Avp.SUBSCRIPTION_ID, true, false);
+    subscriptionId.addAvp(Avp.SUBSCRIPTION_ID_TYPE, 1, true, false);
+    subscriptionId.addAvp(Avp.SUBSCRIPTION_ID_DATA, "262011234567890", true, false, false);
+    avps.addAvp(Avp.MULTIPLE_SERVICES_INDICATOR, 1, true, false);
+    for (int i = 0; i < msccCount; i++) {
+      AvpSet mscc = avps.addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL, true, false);
+      mscc.addGroupedAvp(Avp.REQUESTED_SERVICE_UNIT, true, false);
+      AvpSet used = mscc.addGroupedAvp(Avp.USED_SERVICE_UNIT, true, false);
+      used.addAvp(Avp.CC_TIME, 60L, true, false, true);
+      used.addAvp(Avp.CC_TOTAL_OCTETS, 1048576L * (i + 1), true, false);
+      used.addAvp(Avp.CC_INPUT_OCTETS, 262144L * (i + 1), true, false);
+      used.addAvp(Avp.CC_OUTPUT_OCTETS, 786432L * (i + 1), true, false);
+      mscc.addAvp(Avp.SERVICE_IDENTIFIER_CCA, 1000L + i, true, false, true);
+      mscc.addAvp(Avp.RATING_GROUP, 100L + i, true, false, true);
+    }
+    AvpSet serviceInformation = avps.addGroupedAvp(Avp.SERVICE_INFORMATION, TGPP_VENDOR_ID, true, false);
+    AvpSet psInformation = serviceInformation.addGroupedAvp(Avp.PS_INFORMATION, TGPP_VENDOR_ID, true, false);
+    psInformation.addAvp(Avp.TGPP_CHARGING_ID, "12345678", TGPP_VENDOR_ID, true, false, true);
+    psInformation.addAvp(CALLED_STATION_ID, "internet.mnc001.mcc262.gprs", true, false, false);
+    return message;
+  }
+
+  public static IMessage cca(String sessionId) {
+    IMessage message = answer(CCR_CODE, CCA_APPLICATION_ID, sessionId);
+    AvpSet avps = message.getAvps();
+    avps.addAvp(Avp.AUTH_APPLICATION_ID, CCA_APPLICATION_ID, true, false, true);
+    avps.addAvp(Avp.CC_REQUEST_TYPE, 1, true, false);
+    avps.addAvp(Avp.CC_REQUEST_NUMBER, 0L, true, false, true);
+    for (int i = 0; i < 2; i++) {
+      AvpSet mscc = avps.addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL, true, false);
+      AvpSet granted = mscc.addGroupedAvp(Avp.GRANTED_SERVICE_UNIT, true, false);
+      granted.addAvp(Avp.CC_TOTAL_OCTETS, 10485760L, true, false);
+      mscc.addAvp(Avp.RATING_GROUP, 100L + i, true, false, true);
+      mscc.addAvp(Avp.VALIDITY_TIME, 3600L, true, false, true);
+      mscc.addAvp(Avp.RESULT_CODE, 2001L, true, false, true);
+    }
+    return message;
+  }
+
+  public static IMessage ulr(String sessionId) {
+    IMessage message = request(ULR_CODE, S6A_APPLICATION_ID, sessionId);
+    AvpSet avps = message.getAvps();
+    addS6aApplicationId(avps);
+    avps.addAvp(Avp.AUTH_SESSION_STATE, 1, true, false);
+    avps.addAvp(Avp.USER_NAME, "262011234567890", true, false, false);
+    avps.addAvp(RAT_TYPE, 1004, TGPP_VENDOR_ID, true, false);
+    avps.addAvp(ULR_FLAGS, 34L, TGPP_VENDOR_ID, true, false, true);
+    avps.addAvp(VISITED_PLMN_ID, new byte[] {0x62, (byte) 0xF2, 0x10}, TGPP_VENDOR_ID, true, false);
+    return message;
+  }
+
+  public static IMessage ula(String sessionId) {
+    IMessage message = answer(ULR_CODE, S6A_APPLICATION_ID, sessionId);
+    AvpSet avps = message.getAvps();
+    addS6aApplicationId(avps);
+    avps.addAvp(Avp.AUTH_SESSION_STATE, 1, true, false);
+    avps.addAvp(ULA_FLAGS, 1L, TGPP_VENDOR_ID, true, false, true);
+    AvpSet subscriptionData = avps.addGroupedAvp(SUBSCRIPTION_DATA, TGPP_VENDOR_ID, true, false);
+    subscriptionData.addAvp(Avp.MSISDN, new byte[] {0x19, 0x07, 0x21, 0x43, 0x65, 0x07}, TGPP_VENDOR_ID, true, false);
+    subscriptionData.addAvp(SUBSCRIBER_STATUS, 0, TGPP_VENDOR_ID, true, false);
+    subscriptionData.addAvp(NETWORK_ACCESS_MODE, 2, TGPP_VENDOR_ID, true, false);
+    AvpSet ambr = subscriptionData.addGroupedAvp(AMBR, TGPP_VENDOR_ID, true, false);
+    ambr.addAvp(Avp.MAX_REQUESTED_BANDWIDTH_UL, 50000000L, TGPP_VENDOR_ID, true, false, true);
+    ambr.addAvp(Avp.MAX_REQUESTED_BANDWIDTH_DL, 100000000L, TGPP_VENDOR_ID, true, false, true);
+    AvpSet profile = subscriptionData.addGroupedAvp(APN_CONFIGURATION_PROFILE, TGPP_VENDOR_ID, true, false);
+    profile.addAvp(CONTEXT_IDENTIFIER, 1L, TGPP_VENDOR_ID, true, false, true);
+    profile.addAvp(ALL_APN_CONFIGURATIONS_INCLUDED_INDICATOR, 0, TGPP_VENDOR_ID, true, false);
+    String[] apns = {"internet", "ims", "mms"};
+    for (int i = 0; i < apns.length; i++) {
+      AvpSet apn = profile.addGroupedAvp(APN_CONFIGURATION, TGPP_VENDOR_ID, true, false);
+      apn.addAvp(CONTEXT_IDENTIFIER, i + 1L, TGPP_VENDOR_ID, true, false, true);
+      apn.addAvp(PDN_TYPE, 2, TGPP_VENDOR_ID, true, false);
+      apn.addAvp(SERVICE_SELECTION, apns[i], true, false, false);
+      AvpSet qos = apn.addGroupedAvp(EPS_SUBSCRIBED_QOS_PROFILE, TGPP_VENDOR_ID, true, false);
+      qos.addAvp(Avp.QOS_CLASS_IDENTIFIER, i == 1 ? 5 : 9, TGPP_VENDOR_ID, true, false);
+      AvpSet arp = qos.addGroupedAvp(Avp.ALLOCATION_RETENTION_PRIORITY, TGPP_VENDOR_ID, true, false);
+      arp.addAvp(Avp.PRIORITY_LEVEL, 8L, TGPP_VENDOR_ID, true, false, true);
+    }
+    return message;
+  }
+
+  private static IMessage request(int commandCode, long applicationId, String sessionId) {
+    IMessage message = parser.createEmptyMessage(commandCode, applicationId);
+    message.setRequest(true);
+    message.setProxiable(true);
+    message.setHopByHopIdentifier(0x1234);
+    message.setEndToEndIdentifier(0x5678);
+    AvpSet avps = message.getAvps();
+    avps.addAvp(Avp.SESSION_ID, sessionId, true, false, false);
+    avps.addAvp(Avp.ORIGIN_HOST, ORIGIN_HOST, true, false, true);
+    avps.addAvp(Avp.ORIGIN_REALM, ORIGIN_REALM, true, false, true);
+    avps.addAvp(Avp.DESTINATION_HOST, DESTINATION_HOST, true, false, true);
+    avps.addAvp(Avp.DESTINATION_REALM, DESTINATION_REALM, true, false, true);
+    return message;
+  }
+
+  private static IMessage answer(int commandCode, long applicationId, String sessionId) {
+    IMessage message = parser.createEmptyMessage(commandCode, applicationId);
+    message.setProxiable(true);
+    message.setHopByHopIdentifier(0x1234);
+    message.setEndToEndIdentifier(0x5678);
+    AvpSet avps = message.getAvps();
+    avps.addAvp(Avp.SESSION_ID, sessionId, true, false, false);
+    avps.addAvp(Avp.RESULT_CODE, 2001L, true, false, true);
+    avps.addAvp(Avp.ORIGIN_HOST, DESTINATION_HOST, true, false, true);
+    avps.addAvp(Avp.ORIGIN_REALM, DESTINATION_REALM, true, false, true);
+    return message;
+  }
+
+  private static void addS6aApplicationId(AvpSet avps) {
+    AvpSet vsai = avps.addGroupedAvp(Avp.VENDOR_SPECIFIC_APPLICATION_ID, true, false);
+    vsai.addAvp(Avp.VENDOR_ID, TGPP_VENDOR_ID, true, false, true);
+    vsai.addAvp(Avp.AUTH_APPLICATION_ID, S6A_APPLICATION_ID, true, false, true);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.ParseException;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding and encoding of whole messages by {@link MessageParser}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({Fixtures.CCR, Fixtures.CCA, Fixtures.CCR_MSCC, Fixtures.ULR, Fixtures.ULA})
+  public String fixture;
+
+  private MessageParser parser;
+  private byte[] encoded;
+  private IMessage decoded;
+
+  @Setup
+  public void setup() throws AvpDataException {
+    parser = new MessageParser();
+    encoded = Fixtures.encode(Fixtures.create(fixture));
+    decoded = parser.createMessage(encoded);
+  }
+
+  @Benchmark
+  public IMessage createMessage() throws AvpDataException {
+    return parser.createMessage(encoded);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeMessage() throws ParseException {
+    return parser.encodeMessage(decoded);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Message;
+import org.jdiameter.client.api.annotation.RecoderException;
+import org.jdiameter.client.impl.annotation.Recoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping between the annotated {@link CreditControlRequest} and a Diameter message by {@link Recoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecoderBenchmark {
+
+  @Param({"1", "12"})
+  public int mscc;
+
+  private BenchmarkStack stack;
+  private Recoder recoder;
+  private CreditControlRequest request;
+  private Message message;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = new BenchmarkStack();
+    recoder = new Recoder(stack.getSessionFactory(), stack.getMetaData());
+    request = CreditControlRequest.create("client.benchmark.mobicents.org;1;1", mscc);
+    message = recoder.encodeToRequest(request);
+  }
+
+  @TearDown
+  public void tearDown() {
+    stack.destroy();
+  }
+
+  @Benchmark
+  public Message encode() throws RecoderException {
+    return recoder.encodeToRequest(request);
+  }
+
+  @Benchmark
+  public CreditControlRequest decode() throws RecoderException {
+    return recoder.decode(message, CreditControlRequest.class);
+  }
+}
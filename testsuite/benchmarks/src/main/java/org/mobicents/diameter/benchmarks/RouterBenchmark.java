@@ -0,0 +1,92 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.RouteException;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.controller.IPeerTable;
+import org.jdiameter.client.api.router.IRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Peer selection by {@link IRouter#getPeer}, either through the Destination-Host of the request or,
+ * when it has none, through the peers of the Destination-Realm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+  @Param({"host", "realm"})
+  public String route;
+
+  private BenchmarkStack stack;
+  private IRouter router;
+  private IPeerTable peerTable;
+  private IMessage ccr;
+  private IMessage ulr;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = new BenchmarkStack();
+    router = stack.getRouter();
+    peerTable = stack.getConnectedPeerTable();
+    ccr = Fixtures.create(Fixtures.CCR);
+    ulr = Fixtures.create(Fixtures.ULR);
+    if (route.equals("realm")) {
+      ccr.getAvps().removeAvp(Avp.DESTINATION_HOST);
+      ulr.getAvps().removeAvp(Avp.DESTINATION_HOST);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    stack.destroy();
+  }
+
+  @Benchmark
+  public IPeer getPeerForCcr() throws RouteException, AvpDataException {
+    return router.getPeer(ccr, peerTable);
+  }
+
+  @Benchmark
+  public IPeer getPeerForUlr() throws RouteException, AvpDataException {
+    return router.getPeer(ulr, peerTable);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.diameter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.common.impl.data.LocalDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Session add, lookup and removal on {@link LocalDataSource} holding a population of live
+ * sessions, from several threads at once as the stack does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SessionDataSourceBenchmark {
+
+  @Param({"10000", "100000"})
+  public int sessions;
+
+  private LocalDataSource dataSource;
+  private String[] sessionIds;
+  private final AtomicLong next = new AtomicLong();
+
+  @Setup
+  public void setup() {
+    dataSource = new LocalDataSource();
+    sessionIds = new String[sessions];
+    for (int i = 0; i < sessions; i++) {
+      sessionIds[i] = "client.benchmark.mobicents.org;1;" + i;
+      dataSource.addSession(new Session(sessionIds[i]));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    int index;
+  }
+
+  @Benchmark
+  public BaseSession getSession(ThreadState state) {
+    int index = state.index++;
+    if (state.index == sessionIds.length) {
+      state.index = 0;
+    }
+    return dataSource.getSession(sessionIds[index]);
+  }
+
+  @Benchmark
+  public void addAndRemoveSession() {
+    String sessionId = "client.benchmark.mobicents.org;2;" + next.getAndIncrement();
+    dataSource.addSession(new Session(sessionId));
+    dataSource.removeSession(sessionId);
+  }
+
+  private static class Session implements BaseSession {
+
+    private final String sessionId;
+    private final long creationTime = System.currentTimeMillis();
+
+    Session(String sessionId) {
+      this.sessionId = sessionId;
+    }
+
+    @Override
+    public long getCreationTime() {
+      return creationTime;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+      return creationTime;
+    }
+
+    @Override
+    public boolean isValid() {
+      return true;
+    }
+
+    @Override
+    public void release() {
+    }
+
+    @Override
+    public boolean isAppSession() {
+      return false;
+    }
+
+    @Override
+    public boolean isReplicable() {
+      return false;
+    }
+
+    @Override
+    public String getSessionId() {
+      return sessionId;
+    }
+  }
+}
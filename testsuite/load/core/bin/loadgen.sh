@@ -0,0 +1,34 @@
+#!/bin/sh
+
+# Runs the in-process load generator, e.g.:
+#   loadgen.sh --rate cca=2000,gx=1000,sh=500,s6a=500 --duration 120 --warmup 20
+#   loadgen.sh --rate s6a=5000 --duration 300 --headless > s6a-5000.txt
+
+DIRNAME=`dirname $0`
+
+# Force IPv4 on Linux systems since IPv6 doesn't work correctly with jdk5 and lower
+case "`uname`" in
+    Linux)
+        JAVA_OPTS="$JAVA_OPTS -Djava.net.preferIPv4Stack=true"
+        ;;
+esac
+
+if [ "x$TEST_CORE" = "x" ]; then
+    TEST_CORE=`cd $DIRNAME/..; pwd`
+fi
+
+if [ "x$JAVA" = "x" ]; then
+    if [ "x$JAVA_HOME" != "x" ]; then
+        JAVA="$JAVA_HOME/bin/java"
+    else
+        JAVA="java"
+    fi
+fi
+
+RUN_CLASSPATH="$TEST_CORE/target/testsuite-load-1.7.0-SNAPSHOT-jar-with-dependencies.jar"
+
+if [ "$#" = "0" ]; then
+    set -- --usage
+fi
+
+exec "$JAVA" $JAVA_OPTS -classpath "$RUN_CLASSPATH" org.mobicents.tests.diameter.loadgen.LoadGenerator "$@"
@@ -0,0 +1,403 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.tests.diameter.loadgen;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.jdiameter.api.Answer;
+import org.jdiameter.api.DisconnectCause;
+import org.jdiameter.api.Mode;
+import org.jdiameter.api.Network;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.ResultCode;
+import org.jdiameter.api.SessionFactory;
+import org.jdiameter.api.Stack;
+import org.jdiameter.common.impl.statistic.LatencyHistogram;
+import org.jdiameter.server.impl.StackImpl;
+import org.jdiameter.server.impl.helpers.XMLConfiguration;
+
+import gnu.getopt.Getopt;
+import gnu.getopt.LongOpt;
+
+/**
+ * Self-contained load generator. Starts a server and a client stack in the same JVM, connects them over
+ * loopback and drives each selected application at a fixed, open-loop request rate. After a warm-up
+ * period the latency of every request is recorded and a throughput/percentile/error report is printed.
+ * <p>
+ * Example: <code>--rate cca=2000,s6a=500 --duration 120 --warmup 20</code>. With <code>--headless</code>
+ * no progress is printed and the report is one <code>key=value</code> line per application, which is
+ * easy to diff between releases.
+ */
+public class LoadGenerator {
+
+  private static final Logger log = Logger.getLogger(LoadGenerator.class);
+
+  private static final LongOpt[] _LONG_OPTS = new LongOpt[] {
+    new LongOpt("usage", LongOpt.NO_ARGUMENT, null, 'h'),
+    new LongOpt("rate", LongOpt.REQUIRED_ARGUMENT, null, 'r'),
+    new LongOpt("duration", LongOpt.REQUIRED_ARGUMENT, null, 'd'),
+    new LongOpt("warmup", LongOpt.REQUIRED_ARGUMENT, null, 'w'),
+    new LongOpt("timeout", LongOpt.REQUIRED_ARGUMENT, null, 't'),
+    new LongOpt("interval", LongOpt.REQUIRED_ARGUMENT, null, 'i'),
+    new LongOpt("maxoutstanding", LongOpt.REQUIRED_ARGUMENT, null, 'm'),
+    new LongOpt("realm", LongOpt.REQUIRED_ARGUMENT, null, 'e'),
+    new LongOpt("clientconfig", LongOpt.REQUIRED_ARGUMENT, null, 'c'),
+    new LongOpt("serverconfig", LongOpt.REQUIRED_ARGUMENT, null, 's'),
+    new LongOpt("headless", LongOpt.NO_ARGUMENT, null, 'H')
+  };
+  private static final String _GETOPT_PARAMS_STRING = "hr:d:w:t:i:m:e:c:s:H";
+
+  private final Map<LoadProfile, Long> rates = new EnumMap<LoadProfile, Long>(LoadProfile.class);
+  private long durationSeconds = 60;
+  private long warmupSeconds = 10;
+  private long timeoutMillis = 5000;
+  private long intervalSeconds = 5;
+  private int maxOutstanding = 50000;
+  private String destinationRealm = "server.mobicents.org";
+  private String clientConfig = "loadgen-client-config.xml";
+  private String serverConfig = "loadgen-server-config.xml";
+  private boolean headless;
+
+  private Stack serverStack;
+  private Stack clientStack;
+  private final List<RateDriver> drivers = new ArrayList<RateDriver>();
+  private final PrintStream out = System.out;
+
+  public static void main(String[] args) {
+    configLog4j();
+    LoadGenerator generator = new LoadGenerator();
+    if (!generator.parseArgs(args)) {
+      generator.usage();
+      System.exit(1);
+    }
+    if (generator.headless) {
+      // keep stdout to the report lines
+      LogManager.getLoggerRepository().setThreshold(Level.WARN);
+    }
+    int status = 0;
+    try {
+      status = generator.run() ? 0 : 2;
+    }
+    catch (Exception e) {
+      log.error("Load run failed.", e);
+      status = 1;
+    }
+    finally {
+      generator.stopStacks();
+    }
+    System.exit(status);
+  }
+
+  private boolean parseArgs(String[] args) {
+    Getopt getOpt = new Getopt("LoadGenerator", args, _GETOPT_PARAMS_STRING, _LONG_OPTS);
+    getOpt.setOpterr(true);
+    int c;
+    try {
+      while ((c = getOpt.getopt()) != -1) {
+        switch (c) {
+          case 'h':
+            usage();
+            System.exit(0);
+            break;
+          case 'r':
+            parseRates(getOpt.getOptarg());
+            break;
+          case 'd':
+            durationSeconds = Long.parseLong(getOpt.getOptarg());
+            break;
+          case 'w':
+            warmupSeconds = Long.parseLong(getOpt.getOptarg());
+            break;
+          case 't':
+            timeoutMillis = Long.parseLong(getOpt.getOptarg());
+            break;
+          case 'i':
+            intervalSeconds = Long.parseLong(getOpt.getOptarg());
+            break;
+          case 'm':
+            maxOutstanding = Integer.parseInt(getOpt.getOptarg());
+            break;
+          case 'e':
+            destinationRealm = getOpt.getOptarg();
+            break;
+          case 'c':
+            clientConfig = getOpt.getOptarg();
+            break;
+          case 's':
+            serverConfig = getOpt.getOptarg();
+            break;
+          case 'H':
+            headless = true;
+            break;
+          default:
+            log.error("Wrong parameter!! ---> " + Character.toString((char) c));
+            return false;
+        }
+      }
+    }
+    catch (IllegalArgumentException e) {
+      log.error(e.getMessage());
+      return false;
+    }
+    if (rates.isEmpty()) {
+      log.error("No application rate given.");
+      return false;
+    }
+    return durationSeconds > 0 && warmupSeconds >= 0 && timeoutMillis > 0 && intervalSeconds > 0 && maxOutstanding > 0;
+  }
+
+  private void parseRates(String value) {
+    for (String entry : value.split(",")) {
+      String[] pair = entry.trim().split("=");
+      LoadProfile profile = pair.length == 2 ? LoadProfile.forName(pair[0].trim()) : null;
+      if (profile == null) {
+        throw new IllegalArgumentException("Wrong rate entry: \"" + entry + "\"");
+      }
+      long rate = Long.parseLong(pair[1].trim());
+      if (rate <= 0) {
+        throw new IllegalArgumentException("Rate must be positive: \"" + entry + "\"");
+      }
+      rates.put(profile, rate);
+    }
+  }
+
+  private void usage() {
+    StringBuffer sb = new StringBuffer();
+
+    sb.append("java " + LoadGenerator.class.getName() + " [OPTIONS] \n");
+    sb.append("Where options can be:\n");
+    sb.append("--usage           : prints this message.\n");
+    sb.append("--rate            : requests per second per application, e.g. cca=1000,gx=500,sh=200,s6a=100.\n");
+    sb.append("--duration        : measured run time in seconds, default is 60.\n");
+    sb.append("--warmup          : seconds of load sent before measuring starts, default is 10.\n");
+    sb.append("--timeout         : answer timeout in milliseconds, default is 5000.\n");
+    sb.append("--interval        : progress report interval in seconds, default is 5.\n");
+    sb.append("--maxoutstanding  : requests in flight per application before new ones are skipped, default is 50000.\n");
+    sb.append("--realm           : destination realm, default is server.mobicents.org.\n");
+    sb.append("--clientconfig    : file or resource with the client stack config.\n");
+    sb.append("--serverconfig    : file or resource with the server stack config.\n");
+    sb.append("--headless        : no progress output, report as one key=value line per application.\n");
+
+    log.info("Usage: \n" + sb);
+  }
+
+  /**
+   * @return <code>true</code> if no request failed during the measured window
+   */
+  private boolean run() throws Exception {
+    serverStack = startStack(serverConfig, false);
+    clientStack = startStack(clientConfig, true);
+
+    SessionFactory factory = clientStack.getSessionFactory();
+    for (Map.Entry<LoadProfile, Long> entry : rates.entrySet()) {
+      drivers.add(new RateDriver(entry.getKey(), entry.getValue(), factory, destinationRealm, timeoutMillis, maxOutstanding));
+    }
+    for (RateDriver driver : drivers) {
+      driver.start();
+    }
+
+    if (warmupSeconds > 0) {
+      log.info("Warming up for " + warmupSeconds + "s.");
+      Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+    }
+    for (RateDriver driver : drivers) {
+      driver.resetStatistics();
+    }
+    log.info("Measuring for " + durationSeconds + "s.");
+
+    long start = System.nanoTime();
+    long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+    long[] previous = new long[drivers.size()];
+    long lastReport = start;
+    long now;
+    while ((now = System.nanoTime()) < end) {
+      Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(intervalSeconds), TimeUnit.NANOSECONDS.toMillis(end - now) + 1));
+      if (!headless && System.nanoTime() < end) {
+        lastReport = printProgress(previous, lastReport);
+      }
+    }
+    for (RateDriver driver : drivers) {
+      driver.shutdown();
+    }
+    long elapsed = System.nanoTime() - start;
+    for (RateDriver driver : drivers) {
+      driver.join();
+    }
+    awaitOutstanding();
+
+    boolean clean = true;
+    if (!headless) {
+      out.println();
+      out.println("Latencies in microseconds, measured from the intended send time.");
+      out.println(String.format("%-5s %9s %10s %10s %10s %9s %9s %9s %9s %9s %9s",
+          "app", "rate", "sent", "ok", "errors", "tps", "mean", "p50", "p99", "p999", "max"));
+    }
+    for (RateDriver driver : drivers) {
+      LoadStatistics statistics = driver.getStatistics();
+      clean &= statistics.getErrorCount() == 0;
+      if (headless) {
+        printLine(driver, statistics, elapsed);
+      }
+      else {
+        printRow(driver, statistics, elapsed);
+      }
+    }
+    return clean;
+  }
+
+  private long printProgress(long[] previous, long lastReport) {
+    long now = System.nanoTime();
+    double seconds = (now - lastReport) / 1e9;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < drivers.size(); i++) {
+      RateDriver driver = drivers.get(i);
+      LoadStatistics statistics = driver.getStatistics();
+      long succeeded = statistics.getSucceeded();
+      sb.append(String.format("[%s] tps=%.0f ok=%d errors=%d p99=%dus inflight=%d  ", driver.getProfile().getName(),
+          (succeeded - previous[i]) / seconds, succeeded, statistics.getErrorCount(),
+          statistics.getLatency().getValueAtPercentile(99), driver.getOutstanding()));
+      previous[i] = succeeded;
+    }
+    out.println(sb.toString().trim());
+    return now;
+  }
+
+  private void printRow(RateDriver driver, LoadStatistics statistics, long elapsed) {
+    LatencyHistogram latency = statistics.getLatency();
+    out.println(String.format("%-5s %9d %10d %10d %10d %9.1f %9.0f %9d %9d %9d %9d",
+        driver.getProfile().getName(), driver.getRate(), statistics.getSent(), statistics.getSucceeded(),
+        statistics.getErrorCount(), statistics.getSucceeded() / (elapsed / 1e9), latency.getMean(),
+        latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), latency.getValueAtPercentile(99.9),
+        latency.getMax()));
+    for (Map.Entry<String, Long> error : statistics.getErrors().entrySet()) {
+      out.println(String.format("      %-40s %10d", error.getKey(), error.getValue()));
+    }
+  }
+
+  private void printLine(RateDriver driver, LoadStatistics statistics, long elapsed) {
+    LatencyHistogram latency = statistics.getLatency();
+    StringBuilder sb = new StringBuilder();
+    sb.append("app=").append(driver.getProfile().getName());
+    sb.append(" rate=").append(driver.getRate());
+    sb.append(" duration_ms=").append(TimeUnit.NANOSECONDS.toMillis(elapsed));
+    sb.append(" sent=").append(statistics.getSent());
+    sb.append(" ok=").append(statistics.getSucceeded());
+    sb.append(" errors=").append(statistics.getErrorCount());
+    sb.append(" tps=").append(String.format("%.1f", statistics.getSucceeded() / (elapsed / 1e9)));
+    sb.append(" mean_us=").append(String.format("%.0f", latency.getMean()));
+    sb.append(" p50_us=").append(latency.getValueAtPercentile(50));
+    sb.append(" p99_us=").append(latency.getValueAtPercentile(99));
+    sb.append(" p999_us=").append(latency.getValueAtPercentile(99.9));
+    sb.append(" max_us=").append(latency.getMax());
+    for (Map.Entry<String, Long> error : statistics.getErrors().entrySet()) {
+      sb.append(' ').append(error.getKey()).append('=').append(error.getValue());
+    }
+    out.println(sb);
+  }
+
+  private void awaitOutstanding() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis + 1000;
+    for (RateDriver driver : drivers) {
+      while (driver.getOutstanding() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  private Stack startStack(String config, boolean client) throws Exception {
+    Stack stack = new StackImpl();
+    InputStream is = openConfig(config);
+    try {
+      stack.init(new XMLConfiguration(is));
+    }
+    finally {
+      is.close();
+    }
+    Network network = stack.unwrap(Network.class);
+    NetworkReqListener responder = new Responder();
+    for (LoadProfile profile : LoadProfile.values()) {
+      network.addNetworkReqListener(responder, profile.getApplicationId());
+    }
+    if (client) {
+      stack.start(Mode.ALL_PEERS, 10, TimeUnit.SECONDS);
+    }
+    else {
+      stack.start();
+    }
+    log.info((client ? "Client" : "Server") + " stack started from " + config + ".");
+    return stack;
+  }
+
+  private void stopStacks() {
+    for (Stack stack : new Stack[] { clientStack, serverStack }) {
+      if (stack == null) {
+        continue;
+      }
+      try {
+        stack.stop(10, TimeUnit.SECONDS, DisconnectCause.REBOOTING);
+      }
+      catch (Exception e) {
+        log.warn("Failed to stop stack.", e);
+      }
+      stack.destroy();
+    }
+  }
+
+  private static InputStream openConfig(String config) throws Exception {
+    InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(config);
+    return is != null ? is : new FileInputStream(config);
+  }
+
+  private static void configLog4j() {
+    InputStream inStreamLog4j = LoadGenerator.class.getClassLoader().getResourceAsStream("log4j.properties");
+    Properties propertiesLog4j = new Properties();
+    try {
+      propertiesLog4j.load(inStreamLog4j);
+      PropertyConfigurator.configure(propertiesLog4j);
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Answers every request with DIAMETER_SUCCESS, so the run measures the stacks and not an application.
+   */
+  private static class Responder implements NetworkReqListener {
+
+    @Override
+    public Answer processRequest(Request request) {
+      return request.createAnswer(ResultCode.SUCCESS);
+    }
+  }
+}
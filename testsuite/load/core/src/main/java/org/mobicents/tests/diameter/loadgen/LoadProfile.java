@@ -0,0 +1,148 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.tests.diameter.loadgen;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.Session;
+
+/**
+ * Applications the load generator can drive. Each one knows its application id, the command it sends
+ * and the minimal set of AVPs that makes the request look like real traffic on the wire.
+ */
+public enum LoadProfile {
+
+  /**
+   * Diameter Credit Control (RFC 4006), event based CCR.
+   */
+  CCA("cca", ApplicationId.createByAuthAppId(0, 4), 272) {
+    @Override
+    protected void fill(AvpSet avps, long sequence) {
+      avps.addAvp(Avp.CC_REQUEST_TYPE, 4);
+      avps.addAvp(Avp.CC_REQUEST_NUMBER, 0);
+      avps.addAvp(Avp.SERVICE_CONTEXT_ID, "32251@3gpp.org", false);
+      avps.addAvp(Avp.REQUESTED_ACTION, 0);
+      addSubscriptionId(avps, sequence);
+    }
+  },
+
+  /**
+   * 3GPP Gx (TS 29.212), initial CCR.
+   */
+  GX("gx", ApplicationId.createByAuthAppId(10415, 16777238), 272) {
+    @Override
+    protected void fill(AvpSet avps, long sequence) {
+      avps.addAvp(Avp.CC_REQUEST_TYPE, 1);
+      avps.addAvp(Avp.CC_REQUEST_NUMBER, 0);
+      addSubscriptionId(avps, sequence);
+    }
+  },
+
+  /**
+   * 3GPP Sh (TS 29.329), User-Data-Request.
+   */
+  SH("sh", ApplicationId.createByAuthAppId(10415, 16777217), 306) {
+    @Override
+    protected void fill(AvpSet avps, long sequence) {
+      avps.addAvp(Avp.AUTH_SESSION_STATE, 1);
+      avps.addGroupedAvp(Avp.USER_IDENTITY, 10415, true, false)
+          .addAvp(Avp.PUBLIC_IDENTITY, "sip:user" + sequence + "@mobicents.org", 10415, true, false, false);
+      avps.addAvp(Avp.DATA_REFERENCE, 0, 10415, true, false);
+    }
+  },
+
+  /**
+   * 3GPP S6a (TS 29.272), Update-Location-Request.
+   */
+  S6A("s6a", ApplicationId.createByAuthAppId(10415, 16777251), 316) {
+    @Override
+    protected void fill(AvpSet avps, long sequence) {
+      avps.addAvp(Avp.AUTH_SESSION_STATE, 1);
+      avps.addAvp(Avp.USER_NAME, imsi(sequence), false);
+      // RAT-Type EUTRAN, ULR-Flags S6a-indicator|Initial-Attach, Visited-PLMN-Id 001/01
+      avps.addAvp(1032, 1004, 10415, true, false);
+      avps.addAvp(1405, 34L, 10415, true, false, true);
+      avps.addAvp(1407, new byte[] { 0x00, (byte) 0xF1, 0x10 }, 10415, true, false);
+    }
+  };
+
+  private final String name;
+  private final ApplicationId applicationId;
+  private final int commandCode;
+
+  private LoadProfile(String name, ApplicationId applicationId, int commandCode) {
+    this.name = name;
+    this.applicationId = applicationId;
+    this.commandCode = commandCode;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public ApplicationId getApplicationId() {
+    return applicationId;
+  }
+
+  public int getCommandCode() {
+    return commandCode;
+  }
+
+  /**
+   * Creates a fully populated request in the given session.
+   *
+   * @param session session the request belongs to
+   * @param destinationRealm realm the request is routed to
+   * @param sequence running number used to vary the subscriber identity
+   */
+  public Request createRequest(Session session, String destinationRealm, long sequence) {
+    Request request = session.createRequest(commandCode, applicationId, destinationRealm);
+    fill(request.getAvps(), sequence);
+    return request;
+  }
+
+  protected abstract void fill(AvpSet avps, long sequence);
+
+  /**
+   * @param name profile name as used on the command line, case insensitive
+   * @return matching profile or <code>null</code>
+   */
+  public static LoadProfile forName(String name) {
+    for (LoadProfile profile : values()) {
+      if (profile.name.equalsIgnoreCase(name)) {
+        return profile;
+      }
+    }
+    return null;
+  }
+
+  private static void addSubscriptionId(AvpSet avps, long sequence) {
+    AvpSet subscriptionId = avps.addGroupedAvp(Avp.SUBSCRIPTION_ID);
+    subscriptionId.addAvp(Avp.SUBSCRIPTION_ID_TYPE, 1);
+    subscriptionId.addAvp(Avp.SUBSCRIPTION_ID_DATA, imsi(sequence), false);
+  }
+
+  private static String imsi(long sequence) {
+    String digits = Long.toString(sequence % 10000000000L);
+    return "00101" + "0000000000".substring(digits.length()) + digits;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.tests.diameter.loadgen;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.common.impl.statistic.LatencyHistogram;
+
+/**
+ * Counters and latency histogram of one application over one measurement window. Latencies are kept in
+ * microseconds and are taken from the intended send time, so a stalled stack shows up in the tail instead
+ * of silently lowering the offered rate.
+ */
+public class LoadStatistics {
+
+  private final LoadProfile profile;
+  private final long startNanos = System.nanoTime();
+
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong succeeded = new AtomicLong();
+  private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
+  public LoadStatistics(LoadProfile profile) {
+    this.profile = profile;
+  }
+
+  public LoadProfile getProfile() {
+    return profile;
+  }
+
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  public void sent() {
+    sent.incrementAndGet();
+  }
+
+  public void answered(long latencyNanos, boolean success, String error) {
+    latency.record(latencyNanos / 1000);
+    if (success) {
+      succeeded.incrementAndGet();
+    }
+    else {
+      error(error);
+    }
+  }
+
+  public void error(String cause) {
+    AtomicLong counter = errors.get(cause);
+    if (counter == null) {
+      AtomicLong created = new AtomicLong();
+      counter = errors.putIfAbsent(cause, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    counter.incrementAndGet();
+  }
+
+  public long getSent() {
+    return sent.get();
+  }
+
+  public long getSucceeded() {
+    return succeeded.get();
+  }
+
+  public long getErrorCount() {
+    long count = 0;
+    for (AtomicLong counter : errors.values()) {
+      count += counter.get();
+    }
+    return count;
+  }
+
+  /**
+   * @return error counters keyed by cause, sorted by name
+   */
+  public Map<String, Long> getErrors() {
+    Map<String, Long> snapshot = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().get());
+    }
+    return snapshot;
+  }
+
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+}
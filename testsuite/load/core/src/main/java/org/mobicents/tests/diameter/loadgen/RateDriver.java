@@ -0,0 +1,212 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.mobicents.tests.diameter.loadgen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+import org.jdiameter.api.Answer;
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.api.EventListener;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.Session;
+import org.jdiameter.api.SessionFactory;
+
+/**
+ * Open-loop sender for a single application. Requests are issued on a fixed schedule derived from the
+ * target rate and never wait for earlier answers; when the thread falls behind it sends the overdue
+ * requests back to back. Every request is timed from the moment it should have been sent, which keeps
+ * coordinated omission out of the reported percentiles.
+ */
+public class RateDriver extends Thread {
+
+  private static final Logger log = Logger.getLogger(RateDriver.class);
+
+  private final LoadProfile profile;
+  private final long rate;
+  private final SessionFactory factory;
+  private final String destinationRealm;
+  private final long timeoutMillis;
+  private final int maxOutstanding;
+
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private volatile LoadStatistics statistics;
+  private volatile boolean running = true;
+  private long sequence;
+
+  /**
+   * @param profile application to drive
+   * @param rate requests per second
+   * @param factory client stack session factory
+   * @param destinationRealm realm the requests are routed to
+   * @param timeoutMillis time after which an unanswered request is counted as timed out
+   * @param maxOutstanding upper bound of requests in flight, further requests are counted as skipped
+   */
+  public RateDriver(LoadProfile profile, long rate, SessionFactory factory, String destinationRealm, long timeoutMillis, int maxOutstanding) {
+    super("LoadGenerator-" + profile.getName());
+    if (rate <= 0) {
+      throw new IllegalArgumentException("Rate must be positive: " + rate);
+    }
+    this.profile = profile;
+    this.rate = rate;
+    this.factory = factory;
+    this.destinationRealm = destinationRealm;
+    this.timeoutMillis = timeoutMillis;
+    this.maxOutstanding = maxOutstanding;
+    this.statistics = new LoadStatistics(profile);
+    setDaemon(true);
+  }
+
+  public LoadProfile getProfile() {
+    return profile;
+  }
+
+  public long getRate() {
+    return rate;
+  }
+
+  public int getOutstanding() {
+    return outstanding.get();
+  }
+
+  public LoadStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Starts a new measurement window. Answers to requests sent before the swap still land in the old one.
+   *
+   * @return statistics of the window that just ended
+   */
+  public LoadStatistics resetStatistics() {
+    LoadStatistics previous = statistics;
+    statistics = new LoadStatistics(profile);
+    return previous;
+  }
+
+  public void shutdown() {
+    running = false;
+    LockSupport.unpark(this);
+  }
+
+  @Override
+  public void run() {
+    long start = System.nanoTime();
+    long sentCount = 0;
+    while (running) {
+      long intended = start + sentCount * 1000000000L / rate;
+      long delay = intended - System.nanoTime();
+      if (delay > 0) {
+        LockSupport.parkNanos(delay);
+        continue;
+      }
+      send(intended);
+      sentCount++;
+    }
+  }
+
+  private void send(long intended) {
+    LoadStatistics current = statistics;
+    if (outstanding.get() >= maxOutstanding) {
+      current.error("skipped:max-outstanding");
+      return;
+    }
+    Session session = null;
+    boolean inFlight = false;
+    try {
+      session = factory.getNewSession();
+      Request request = profile.createRequest(session, destinationRealm, sequence++);
+      current.sent();
+      outstanding.incrementAndGet();
+      inFlight = true;
+      session.send(request, new AnswerListener(session, current, intended), timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    catch (Exception e) {
+      if (inFlight) {
+        outstanding.decrementAndGet();
+      }
+      if (session != null) {
+        session.release();
+      }
+      current.error("exception:" + e.getClass().getSimpleName());
+      if (log.isDebugEnabled()) {
+        log.debug("Failed to send " + profile.getName() + " request", e);
+      }
+    }
+  }
+
+  private static long getResultCode(Answer answer) throws AvpDataException {
+    Avp resultCode = answer.getResultCode();
+    if (resultCode != null) {
+      return resultCode.getUnsigned32();
+    }
+    Avp experimentalResult = answer.getAvps().getAvp(Avp.EXPERIMENTAL_RESULT);
+    if (experimentalResult != null) {
+      AvpSet grouped = experimentalResult.getGrouped();
+      Avp code = grouped.getAvp(Avp.EXPERIMENTAL_RESULT_CODE);
+      if (code != null) {
+        return code.getUnsigned32();
+      }
+    }
+    return -1;
+  }
+
+  private class AnswerListener implements EventListener<Request, Answer> {
+
+    private final Session session;
+    private final LoadStatistics statistics;
+    private final long intended;
+
+    AnswerListener(Session session, LoadStatistics statistics, long intended) {
+      this.session = session;
+      this.statistics = statistics;
+      this.intended = intended;
+    }
+
+    @Override
+    public void receivedSuccessMessage(Request request, Answer answer) {
+      long latency = System.nanoTime() - intended;
+      outstanding.decrementAndGet();
+      try {
+        long resultCode = getResultCode(answer);
+        boolean success = resultCode >= 2000 && resultCode < 3000;
+        statistics.answered(latency, success, resultCode < 0 ? "result-code:missing" : "result-code:" + resultCode);
+      }
+      catch (AvpDataException e) {
+        statistics.answered(latency, false, "result-code:malformed");
+      }
+      finally {
+        session.release();
+      }
+    }
+
+    @Override
+    public void timeoutExpired(Request request) {
+      long latency = System.nanoTime() - intended;
+      outstanding.decrementAndGet();
+      statistics.answered(latency, false, "timeout");
+      session.release();
+    }
+  }
+}